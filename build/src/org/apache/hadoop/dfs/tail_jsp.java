@@ -0,0 +1,143 @@
+package org.apache.hadoop.dfs;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.jsp.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.*;
+import java.util.*;
+import java.net.*;
+import org.apache.hadoop.dfs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.net.DNS;
+import java.text.DateFormat;
+
+public final class tail_jsp extends org.apache.jasper.runtime.HttpJspBase
+    implements org.apache.jasper.runtime.JspSourceDependent {
+
+
+  static JspHelper jspHelper = new JspHelper();
+
+  public void generateFileChunks(JspWriter out, HttpServletRequest req) 
+    throws IOException {
+    long startOffset = 0;
+    
+    int chunkSizeToView = 0;
+
+    String referrer = req.getParameter("referrer");
+    boolean noLink = false;
+    if (referrer == null) {
+      noLink = true;
+    }
+
+    String filename = req.getParameter("filename");
+    if (filename == null) {
+      out.print("Invalid input (filename absent)");
+      return;
+    }
+
+    String chunkSizeToViewStr = req.getParameter("chunkSizeToView");
+    if (chunkSizeToViewStr != null && Integer.parseInt(chunkSizeToViewStr) > 0)
+      chunkSizeToView = Integer.parseInt(chunkSizeToViewStr);
+    else chunkSizeToView = jspHelper.defaultChunkSizeToView;
+
+    if (!noLink)
+      out.print("<h2><a href=\"" + referrer + "\">" + filename + "</a></h2>");
+    else
+      out.print("<h2>" + filename + "</h2>");
+    out.print("<b>Chunk Size to view (in bytes, upto file's DFS blocksize): </b>");
+    out.print("<input type=\"text\" name=\"chunkSizeToView\" value=" +
+              chunkSizeToView + " size=10 maxlength=10>");
+    out.print("&nbsp;&nbsp;<input type=\"submit\" name=\"submit\" value=\"Refresh\"><hr>");
+    out.print("<input type=\"hidden\" name=\"filename\" value=\"" + filename +
+              "\">");
+    if (!noLink)
+      out.print("<input type=\"hidden\" name=\"referrer\" value=\"" + 
+                referrer+ "\">");
+
+    //fetch the block from the datanode that has the last block for this file
+    DFSClient dfs = new DFSClient(jspHelper.nameNodeAddr, 
+                                         jspHelper.conf);
+    LocatedBlock blocks[] = dfs.namenode.open(filename); 
+    if (blocks == null || blocks.length == 0) {
+      out.print("No datanodes contain blocks of file "+filename);
+      dfs.close();
+      return;
+    }
+    LocatedBlock lastBlk = blocks[blocks.length - 1];
+    long blockSize = lastBlk.getBlock().getNumBytes();
+    long blockId = lastBlk.getBlock().getBlockId();
+    DatanodeInfo chosenNode;
+    try {
+      chosenNode = jspHelper.bestNode(lastBlk);
+    } catch (IOException e) {
+      out.print(e.toString());
+      dfs.close();
+      return;
+    }      
+    InetSocketAddress addr = DataNode.createSocketAddr(chosenNode.getName());
+    //view the last chunkSizeToView bytes while Tailing
+    if (blockSize >= chunkSizeToView)
+      startOffset = blockSize - chunkSizeToView;
+    else startOffset = 0;
+
+    out.print("<textarea cols=\"100\" rows=\"25\" wrap=\"virtual\" READONLY>");
+    jspHelper.streamBlockInAscii(addr, blockId, blockSize, startOffset, chunkSizeToView, out);
+    out.print("</textarea>");
+    dfs.close();
+  }
+
+
+  private static java.util.Vector _jspx_dependants;
+
+  public java.util.List getDependants() {
+    return _jspx_dependants;
+  }
+
+  public void _jspService(HttpServletRequest request, HttpServletResponse response)
+        throws java.io.IOException, ServletException {
+
+    JspFactory _jspxFactory = null;
+    PageContext pageContext = null;
+    HttpSession session = null;
+    ServletContext application = null;
+    ServletConfig config = null;
+    JspWriter out = null;
+    Object page = this;
+    JspWriter _jspx_out = null;
+    PageContext _jspx_page_context = null;
+
+
+    try {
+      _jspxFactory = JspFactory.getDefaultFactory();
+      response.setContentType("text/html; charset=UTF-8");
+      pageContext = _jspxFactory.getPageContext(this, request, response,
+      			null, true, 8192, true);
+      _jspx_page_context = pageContext;
+      application = pageContext.getServletContext();
+      config = pageContext.getServletConfig();
+      session = pageContext.getSession();
+      out = pageContext.getOut();
+      _jspx_out = out;
+
+      out.write('\n');
+      out.write('\n');
+      out.write("\n\n\n\n<html>\n<meta http-equiv=\"refresh\" content=60>\n<title>Hadoop DFS File Viewer</title>\n\n<body>\n<form action=\"/tail.jsp\" method=GET>\n");
+ 
+   generateFileChunks(out,request);
+
+      out.write("\n</form>\n<hr>\n\n<h2>Local logs</h2>\n<a href=\"/logs/\">Log</a> directory\n\n<hr>\n<a href=\"http://lucene.apache.org/hadoop\">Hadoop</a>, 2006.<br>\n</body>\n</html>\n");
+    } catch (Throwable t) {
+      if (!(t instanceof SkipPageException)){
+        out = _jspx_out;
+        if (out != null && out.getBufferSize() != 0)
+          out.clearBuffer();
+        if (_jspx_page_context != null) _jspx_page_context.handlePageException(t);
+      }
+    } finally {
+      if (_jspxFactory != null) _jspxFactory.releasePageContext(_jspx_page_context);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.apache.hadoop.mapred;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.jsp.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.*;
+import java.net.URL;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+public final class jobconf_jsp extends org.apache.jasper.runtime.HttpJspBase
+    implements org.apache.jasper.runtime.JspSourceDependent {
+
+  private static java.util.Vector _jspx_dependants;
+
+  public java.util.List getDependants() {
+    return _jspx_dependants;
+  }
+
+  public void _jspService(HttpServletRequest request, HttpServletResponse response)
+        throws java.io.IOException, ServletException {
+
+    JspFactory _jspxFactory = null;
+    PageContext pageContext = null;
+    HttpSession session = null;
+    ServletContext application = null;
+    ServletConfig config = null;
+    JspWriter out = null;
+    Object page = this;
+    JspWriter _jspx_out = null;
+    PageContext _jspx_page_context = null;
+
+
+    try {
+      _jspxFactory = JspFactory.getDefaultFactory();
+      response.setContentType("text/html; charset=UTF-8");
+      pageContext = _jspxFactory.getPageContext(this, request, response,
+      			null, true, 8192, true);
+      _jspx_page_context = pageContext;
+      application = pageContext.getServletContext();
+      config = pageContext.getServletConfig();
+      session = pageContext.getSession();
+      out = pageContext.getOut();
+      _jspx_out = out;
+
+      out.write('\n');
+      out.write('\n');
+      out.write('\n');
+
+  String jobId = request.getParameter("jobid");
+  if (jobId == null) {
+    out.println("<h2>Missing 'jobid' for fetching job configuration!</h2>");
+ 	return;
+  }
+
+      out.write("\n  \n<html>\n\n<title>Job Configuration: JobId - ");
+      out.print( jobId );
+      out.write("</title>\n\n<body>\n<h2>Job Configuration: JobId - ");
+      out.print( jobId );
+      out.write("</h2><br>\n\n");
+
+  JobTracker tracker = JobTracker.getTracker();
+  
+  JobInProgress job = (JobInProgress)tracker.getJob(jobId);
+  if (job == null) {
+    out.print("<h4>Job '" + jobId + "' not found!</h4><br>\n");
+    return;
+  }
+  
+  JobStatus status = job.getStatus();
+  int runState = status.getRunState();
+  if (runState != JobStatus.RUNNING) {
+    out.print("<h4>Job '" + jobId + "' not running!</h4><br>\n");
+    return;
+  }
+  
+  try {
+    JobConf jobConf = job.getJobConf();
+    ByteArrayOutputStream jobConfXML = new ByteArrayOutputStream();
+    jobConf.write(jobConfXML);
+    XMLUtils.transform(
+        jobConf.getConfResourceAsInputStream("webapps/static/jobconf.xsl"),
+	    new ByteArrayInputStream(jobConfXML.toByteArray()), 
+	    out
+	  );
+  } catch (Exception e) {
+    out.println("Failed to retreive job configuration for job '" + jobId + "!");
+    out.println(e);
+  }
+
+      out.write("\n\n<br>\n<hr>\n<a href=\"http://lucene.apache.org/hadoop\">Hadoop</a>, 2006.<br>\n\n</body>\n</html>");
+    } catch (Throwable t) {
+      if (!(t instanceof SkipPageException)){
+        out = _jspx_out;
+        if (out != null && out.getBufferSize() != 0)
+          out.clearBuffer();
+        if (_jspx_page_context != null) _jspx_page_context.handlePageException(t);
+      }
+    } finally {
+      if (_jspxFactory != null) _jspxFactory.releasePageContext(_jspx_page_context);
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package org.apache.hadoop.mapred;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.jsp.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.text.DecimalFormat;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+public final class jobdetails_jsp extends org.apache.jasper.runtime.HttpJspBase
+    implements org.apache.jasper.runtime.JspSourceDependent {
+
+
+  
+  JobTracker tracker = JobTracker.getTracker();
+  String trackerName = 
+           StringUtils.simpleHostname(tracker.getJobTrackerMachine());
+  
+  private void printTaskSummary(JspWriter out,
+                                String jobId,
+                                String kind,
+                                double completePercent,
+                                TaskInProgress[] tasks
+                               ) throws IOException {
+    int totalTasks = tasks.length;
+    int runningTasks = 0;
+    int finishedTasks = 0;
+    int killedTasks = 0;
+    int failedTaskAttempts = 0;
+    int killedTaskAttempts = 0;
+    for(int i=0; i < totalTasks; ++i) {
+      TaskInProgress task = tasks[i];
+      if (task.isComplete()) {
+        finishedTasks += 1;
+      } else if (task.isRunning()) {
+        runningTasks += 1;
+      } else if (task.wasKilled()) {
+        killedTasks += 1;
+      }
+      failedTaskAttempts += task.numTaskFailures();
+      killedTaskAttempts += task.numKilledTasks();
+    }
+    out.print("<tr><th><a href=\"/jobtasks.jsp?jobid=" + jobId + 
+              "&type="+ kind + "&pagenum=1\">" + kind + 
+              "</a></th><td align=\"right\">" + 
+              StringUtils.formatPercent(completePercent, 2) +
+              "</td><td align=\"right\">" + 
+              totalTasks + 
+              "</td><td align=\"right\">" + 
+              (totalTasks - runningTasks - finishedTasks - killedTasks) + 
+              "</td><td align=\"right\">" +
+              runningTasks + 
+              "</td><td align=\"right\">" +
+              finishedTasks + 
+              "</td><td align=\"right\">" +
+              killedTasks +
+              "</td><td align=\"right\">" + 
+              ((failedTaskAttempts > 0) ? 
+                  new String("<a href=\"/jobfailures.jsp?jobid=" + jobId + 
+                      "&kind=" + kind + "&cause=failed\">" + failedTaskAttempts + 
+                      "</a>") : 
+                  "0"
+                  ) + 
+              " / " +
+              ((killedTaskAttempts > 0) ? 
+                  new String("<a href=\"/jobfailures.jsp?jobid=" + jobId + 
+                      "&kind=" + kind + "&cause=killed\">" + killedTaskAttempts + 
+                      "</a>") : 
+                  "0"
+                  ) + 
+              "</td></tr>\n");
+  }
+
+  private static java.util.Vector _jspx_dependants;
+
+  public java.util.List getDependants() {
+    return _jspx_dependants;
+  }
+
+  public void _jspService(HttpServletRequest request, HttpServletResponse response)
+        throws java.io.IOException, ServletException {
+
+    JspFactory _jspxFactory = null;
+    PageContext pageContext = null;
+    HttpSession session = null;
+    ServletContext application = null;
+    ServletConfig config = null;
+    JspWriter out = null;
+    Object page = this;
+    JspWriter _jspx_out = null;
+    PageContext _jspx_page_context = null;
+
+
+    try {
+      _jspxFactory = JspFactory.getDefaultFactory();
+      response.setContentType("text/html; charset=UTF-8");
+      pageContext = _jspxFactory.getPageContext(this, request, response,
+      			null, true, 8192, true);
+      _jspx_page_context = pageContext;
+      application = pageContext.getServletContext();
+      config = pageContext.getServletConfig();
+      session = pageContext.getSession();
+      out = pageContext.getOut();
+      _jspx_out = out;
+
+      out.write('\n');
+      out.write('\n');
+      out.write("       \n");
+   
+    String jobId = request.getParameter("jobid"); 
+    String refreshParam = request.getParameter("refresh");
+    
+    int refresh = 60; // refresh every 60 seconds by default
+    if (refreshParam != null) {
+        try {
+            refresh = Integer.parseInt(refreshParam);
+        }
+        catch (NumberFormatException ignored) {
+        }
+    }
+
+      out.write("\n\n<html>\n<head>\n  ");
+ 
+  if (refresh != 0) {
+      
+      out.write("\n      <meta http-equiv=\"refresh\" content=\"");
+      out.print(refresh);
+      out.write("\">\n      ");
+
+  }
+  
+      out.write("\n<title>Hadoop ");
+      out.print(jobId);
+      out.write(" on ");
+      out.print(trackerName);
+      out.write("</title>\n</head>\n<body>\n<h1>Hadoop ");
+      out.print(jobId);
+      out.write(" on <a href=\"/jobtracker.jsp\">");
+      out.print(trackerName);
+      out.write("</a></h1>\n\n");
+ 
+    JobInProgress job = (JobInProgress) tracker.getJob(jobId);
+    if (job == null) {
+      out.print("<b>Job " + jobId + " not found.</b><br>\n");
+      return;
+    }
+    JobProfile profile = job.getProfile();
+    JobStatus status = job.getStatus();
+    int runState = status.getRunState();
+    int flakyTaskTrackers = job.getNoOfBlackListedTrackers();
+    out.print("<b>User:</b> " + profile.getUser() + "<br>\n");
+    out.print("<b>Job Name:</b> " + profile.getJobName() + "<br>\n");
+    if (runState == JobStatus.RUNNING) {
+      out.print("<b>Job File:</b> <a href=\"/jobconf.jsp?jobid=" + jobId + "\">" + 
+          profile.getJobFile() + "</a><br>\n");
+    } else {
+      out.print("<b>Job File:</b> " + profile.getJobFile() + "<br>\n");
+    }
+    out.print("<b>Started at:</b> " + new Date(job.getStartTime()) + "<br>\n");
+    if (runState == JobStatus.RUNNING) {
+      out.print("<b>Status:</b> Running<br>\n");
+    } else {
+      if (runState == JobStatus.SUCCEEDED) {
+        out.print("<b>Status:</b> Succeeded<br>\n");
+      } else if (runState == JobStatus.FAILED) {
+        out.print("<b>Status:</b> Failed<br>\n");
+      }
+      out.print("<b>Finished at:</b> " + new Date(job.getFinishTime()) +
+                "<br>\n");
+    }
+    if (flakyTaskTrackers > 0) {
+      out.print("<b>Black-listed TaskTrackers:</b> " + 
+          "<a href=\"/jobblacklistedtrackers.jsp?jobid=" + jobId + "\">" +
+          flakyTaskTrackers + "</a><br>\n");
+    }
+    out.print("<hr>\n");
+    out.print("<table border=2 cellpadding=\"5\" cellspacing=\"2\">");
+    out.print("<tr><th>Kind</th><th>% Complete</th><th>Num Tasks</th>" +
+              "<th>Pending</th><th>Running</th><th>Complete</th>" +
+              "<th>Killed</th>" +
+              "<th><a href=\"/jobfailures.jsp?jobid=" + jobId + 
+              "\">Failed/Killed<br>Task Attempts</a></th></tr>\n");
+    printTaskSummary(out, jobId, "map", status.mapProgress(), 
+                     job.getMapTasks());
+    printTaskSummary(out, jobId, "reduce", status.reduceProgress(),
+                     job.getReduceTasks());
+    out.print("</table>\n");
+    
+    
+      out.write("\n    <p/>\n    <table border=2 cellpadding=\"5\" cellspacing=\"2\">\n    <tr>\n      <th><br/></th>\n      <th>Counter</th>\n      <th>Map</th>\n      <th>Reduce</th>\n      <th>Total</th>\n    </tr>\n    ");
+
+    Counters mapCounters = job.getMapCounters();
+    Counters reduceCounters = job.getReduceCounters();
+    Counters totalCounters = job.getCounters();
+    
+    for (String groupName : totalCounters.getGroupNames()) {
+      Counters.Group totalGroup = totalCounters.getGroup(groupName);
+      Counters.Group mapGroup = mapCounters.getGroup(groupName);
+      Counters.Group reduceGroup = reduceCounters.getGroup(groupName);
+      
+      Format decimal = new DecimalFormat();
+      
+      boolean isFirst = true;
+      for (String counter : totalGroup.getCounterNames()) {
+        String mapValue = decimal.format(mapGroup.getCounter(counter));
+        String reduceValue = decimal.format(reduceGroup.getCounter(counter));
+        String totalValue = decimal.format(totalGroup.getCounter(counter));
+        
+      out.write("\n        <tr>\n          ");
+
+          if (isFirst) {
+            isFirst = false;
+            
+      out.write("\n            <td rowspan=\"");
+      out.print(totalGroup.size());
+      out.write('"');
+      out.write('>');
+      out.print(totalGroup.getDisplayName());
+      out.write("</td>\n            ");
+
+          }
+          
+      out.write("\n          <td>");
+      out.print(totalGroup.getDisplayName(counter));
+      out.write("</td>\n          <td align=\"right\">");
+      out.print(mapValue);
+      out.write("</td>\n          <td align=\"right\">");
+      out.print(reduceValue);
+      out.write("</td>\n          <td align=\"right\">");
+      out.print(totalValue);
+      out.write("</td>\n        </tr>\n        ");
+
+      }
+    }
+    
+      out.write("\n    </table>\n\n<hr>\n<a href=\"/jobtracker.jsp\">Go back to JobTracker</a><br>\n<a href=\"http://lucene.apache.org/hadoop\">Hadoop</a>, 2006.<br>\n</body>\n</html>\n");
+    } catch (Throwable t) {
+      if (!(t instanceof SkipPageException)){
+        out = _jspx_out;
+        if (out != null && out.getBufferSize() != 0)
+          out.clearBuffer();
+        if (_jspx_page_context != null) _jspx_page_context.handlePageException(t);
+      }
+    } finally {
+      if (_jspxFactory != null) _jspxFactory.releasePageContext(_jspx_page_context);
+    }
+  }
+}
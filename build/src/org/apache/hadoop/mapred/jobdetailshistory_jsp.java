@@ -0,0 +1,244 @@
+package org.apache.hadoop.mapred;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.jsp.*;
+import javax.servlet.http.*;
+import java.io.*;
+import java.util.*;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+import java.text.SimpleDateFormat;
+import org.apache.hadoop.mapred.JobHistory.*;
+
+public final class jobdetailshistory_jsp extends org.apache.jasper.runtime.HttpJspBase
+    implements org.apache.jasper.runtime.JspSourceDependent {
+
+ static SimpleDateFormat dateFormat = new SimpleDateFormat("d-MMM-yyyy HH:mm:ss") ; 
+  private static java.util.Vector _jspx_dependants;
+
+  public java.util.List getDependants() {
+    return _jspx_dependants;
+  }
+
+  public void _jspService(HttpServletRequest request, HttpServletResponse response)
+        throws java.io.IOException, ServletException {
+
+    JspFactory _jspxFactory = null;
+    PageContext pageContext = null;
+    HttpSession session = null;
+    ServletContext application = null;
+    ServletConfig config = null;
+    JspWriter out = null;
+    Object page = this;
+    JspWriter _jspx_out = null;
+    PageContext _jspx_page_context = null;
+
+
+    try {
+      _jspxFactory = JspFactory.getDefaultFactory();
+      response.setContentType("text/html; charset=UTF-8");
+      pageContext = _jspxFactory.getPageContext(this, request, response,
+      			null, true, 8192, true);
+      _jspx_page_context = pageContext;
+      application = pageContext.getServletContext();
+      config = pageContext.getServletConfig();
+      session = pageContext.getSession();
+      out = pageContext.getOut();
+      _jspx_out = out;
+
+      out.write('\n');
+      org.apache.jasper.runtime.JspRuntimeLibrary.include(request, response, "loadhistory.jsp" + (("loadhistory.jsp").indexOf('?')>0? '&': '?') + org.apache.jasper.runtime.JspRuntimeLibrary.URLEncode("jobid", request.getCharacterEncoding())+ "=" + org.apache.jasper.runtime.JspRuntimeLibrary.URLEncode(String.valueOf(request.getParameter("jobid") ), request.getCharacterEncoding()) + "&" + org.apache.jasper.runtime.JspRuntimeLibrary.URLEncode("jobTrackerId", request.getCharacterEncoding())+ "=" + org.apache.jasper.runtime.JspRuntimeLibrary.URLEncode(String.valueOf(request.getParameter("jobTrackerId") ), request.getCharacterEncoding()), out, false);
+      out.write('\n');
+      out.write('\n');
+
+	String jobid = request.getParameter("jobid");
+	String jobTrackerId = request.getParameter("jobTrackerId");
+	
+	JobInfo job = (JobInfo)request.getSession().getAttribute("job");
+
+      out.write("\n<html><body>\n<h2>Hadoop Job ");
+      out.print(jobid );
+      out.write(" </h2>\n\n<b>User : </b> ");
+      out.print(job.get(Keys.USER) );
+      out.write("<br/> \n<b>JobName : </b> ");
+      out.print(job.get(Keys.JOBNAME) );
+      out.write("<br/> \n<b>JobConf : </b> ");
+      out.print(job.get(Keys.JOBCONF) );
+      out.write("<br/> \n<b>Submitted At : </b> ");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, job.getLong(Keys.SUBMIT_TIME), 0 )  );
+      out.write("<br/> \n<b>Launched At : </b> ");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, job.getLong(Keys.LAUNCH_TIME), job.getLong(Keys.SUBMIT_TIME)) );
+      out.write("<br/>\n<b>Finished At : </b>  ");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, job.getLong(Keys.FINISH_TIME), job.getLong(Keys.LAUNCH_TIME)) );
+      out.write("<br/>\n<b>Status : </b> ");
+      out.print( ((job.get(Keys.JOB_STATUS) == null)?"Incomplete" :job.get(Keys.JOB_STATUS)) );
+      out.write("<br/> \n<b><a href=\"analysejobhistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("\">Analyse This Job</a></b> \n<hr/>\n<center>\n");
+
+	Map<String, JobHistory.Task> tasks = job.getAllTasks();
+	int totalMaps = 0 ; 
+	int totalReduces = 0; 
+	int failedMaps = 0; 
+	int failedReduces = 0 ; 
+	
+	long mapStarted = 0 ; 
+	long mapFinished = 0 ; 
+	long reduceStarted = 0 ; 
+	long reduceFinished = 0; 
+	
+	for( JobHistory.Task task : tasks.values() ) {
+	  
+	  long startTime = task.getLong(Keys.START_TIME) ; 
+	  long finishTime = task.getLong(Keys.FINISH_TIME) ; 
+	  
+	  if( Values.MAP.name().equals(task.get(Keys.TASK_TYPE)) ){
+	    if( mapStarted==0 || mapStarted > startTime ){
+	      mapStarted = startTime; 
+	    }
+	    if(  mapFinished < finishTime ){
+	      mapFinished = finishTime ; 
+	    }
+	    
+	    Map<String, TaskAttempt> attempts = task.getTaskAttempts();
+	    for( TaskAttempt attempt : attempts.values() ) {
+	        totalMaps++; 
+	        if( Values.FAILED.name().equals(attempt.get(Keys.TASK_STATUS)) ) {
+	            failedMaps++; 
+	        }
+	    }
+	  }else{
+	    if( reduceStarted==0||reduceStarted > startTime ){
+	      reduceStarted = startTime ; 
+	    }
+	    if(  reduceFinished < finishTime ){
+	      reduceFinished = finishTime; 
+	    }
+	    Map<String, TaskAttempt> attempts = task.getTaskAttempts();
+	    for( TaskAttempt attempt : attempts.values() ) {
+	        totalReduces++; 
+	        if( Values.FAILED.name().equals(attempt.get(Keys.TASK_STATUS)) ) {
+	            failedReduces++; 
+	        }
+	    }
+	  }
+	}
+
+      out.write("\n<table border=\"2\" cellpadding=\"5\" cellspacing=\"2\">\n<tr>\n<td>Kind</td><td>Total Tasks</td><td>Finished tasks</td><td>Failed tasks</td><td>Start Time</td><td>Finish Time</td>\n</tr>\n<tr>\n<td>Map</td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.MAP.name() );
+      out.write("&status=all\">\n\t  ");
+      out.print(totalMaps );
+      out.write("</a></td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.MAP.name() );
+      out.write("&status=");
+      out.print(Values.SUCCESS );
+      out.write("\">\n\t  ");
+      out.print(job.getInt(Keys.FINISHED_MAPS) );
+      out.write("</a></td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.MAP.name() );
+      out.write("&status=");
+      out.print(Values.FAILED );
+      out.write("\">\n\t  ");
+      out.print(failedMaps );
+      out.write("</a></td>\n\t<td>");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, mapStarted, 0) );
+      out.write("</td>\n\t<td>");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, mapFinished, mapStarted) );
+      out.write("</td>\n</tr>\n<tr>\n<td>Reduce</td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.REDUCE.name() );
+      out.write("&status=all\">\n\t  ");
+      out.print(totalReduces);
+      out.write("</a></td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.REDUCE.name() );
+      out.write("&status=");
+      out.print(Values.SUCCESS );
+      out.write("\">\n\t  ");
+      out.print(job.getInt(Keys.FINISHED_REDUCES));
+      out.write("</a></td>\n\t<td><a href=\"jobtaskshistory.jsp?jobid=");
+      out.print(jobid );
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskType=");
+      out.print(Values.REDUCE.name() );
+      out.write("&status=");
+      out.print(Values.FAILED );
+      out.write("\">\n\t  ");
+      out.print(failedReduces);
+      out.write("</a></td>\n\t<td>");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, reduceStarted, 0) );
+      out.write("</td>\n\t<td>");
+      out.print(StringUtils.getFormattedTimeWithDiff(dateFormat, reduceFinished, reduceStarted) );
+      out.write("</td>\n</tr>\n </table>\n\n<br/>\n ");
+
+	DefaultJobHistoryParser.BadNodesFilter filter = new DefaultJobHistoryParser.BadNodesFilter();
+	String dir = System.getProperty("hadoop.log.dir") + File.separator + "history" ; 
+ 
+	JobHistory.parseHistory(new File(dir, jobTrackerId+"_" + jobid), filter); 
+	Map<String, Set<String>> badNodes = filter.getValues(); 
+	if( badNodes.size() > 0 ) {
+ 
+      out.write("\n<h3>Failed tasks attempts by nodes </h3>\n<table border=\"1\">\n<tr><td>Hostname</td><td>Failed Tasks</td></tr>\n ");
+	  
+	for( String node : badNodes.keySet() ) {
+	  Set<String> failedTasks = badNodes.get(node); 
+
+      out.write("\n\t<tr>\n\t\t<td>");
+      out.print(node );
+      out.write("</td>\n\t\t<td>\n");
+
+		for( String t : failedTasks ) {
+
+      out.write("\n\t\t <a href=\"taskdetailshistory.jsp?jobid=");
+      out.print(jobid);
+      out.write("&jobTrackerId=");
+      out.print(jobTrackerId );
+      out.write("&taskid=");
+      out.print(t );
+      out.write('"');
+      out.write('>');
+      out.print(t );
+      out.write("</a>,&nbsp;\n");
+		  
+		}
+
+      out.write("\t\n\t\t</td>\n\t</tr>\n");
+	  
+     }
+	}
+ 
+      out.write("\n</table>\n </center>\n\n</body></html>");
+    } catch (Throwable t) {
+      if (!(t instanceof SkipPageException)){
+        out = _jspx_out;
+        if (out != null && out.getBufferSize() != 0)
+          out.clearBuffer();
+        if (_jspx_page_context != null) _jspx_page_context.handlePageException(t);
+      }
+    } finally {
+      if (_jspxFactory != null) _jspxFactory.releasePageContext(_jspx_page_context);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package org.apache.hadoop.mapred;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+import javax.servlet.jsp.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+import java.io.*;
+import java.util.*;
+import java.text.DecimalFormat;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.*;
+
+public final class machines_jsp extends org.apache.jasper.runtime.HttpJspBase
+    implements org.apache.jasper.runtime.JspSourceDependent {
+
+
+  JobTracker tracker = JobTracker.getTracker();
+  String trackerLabel = 
+           StringUtils.simpleHostname(tracker.getJobTrackerMachine());
+
+  public void generateTaskTrackerTable(JspWriter out) throws IOException {
+    Collection c = tracker.taskTrackers();
+
+    if (c.size() == 0) {
+      out.print("There are currently no known TaskTracker(s).");
+    } else {
+      out.print("<center>\n");
+      out.print("<table border=\"2\" cellpadding=\"5\" cellspacing=\"2\">\n");
+      out.print("<tr><td align=\"center\" colspan=\"5\"><b>Task Trackers</b></td></tr>\n");
+      out.print("<tr><td><b>Name</b></td><td><b>Host</b></td>" +
+                "<td><b># running tasks</b></td><td><b>Failures</b></td>" +
+                "<td><b>Secs since heartbeat</b></td></tr>\n");
+      int maxFailures = 0;
+      String failureKing = null;
+      for (Iterator it = c.iterator(); it.hasNext(); ) {
+        TaskTrackerStatus tt = (TaskTrackerStatus) it.next();
+        long sinceHeartbeat = System.currentTimeMillis() - tt.getLastSeen();
+        if (sinceHeartbeat > 0) {
+          sinceHeartbeat = sinceHeartbeat / 1000;
+        }
+        int numCurTasks = 0;
+        for (Iterator it2 = tt.getTaskReports().iterator(); it2.hasNext(); ) {
+          it2.next();
+          numCurTasks++;
+        }
+        int numFailures = tt.getFailures();
+        if (numFailures > maxFailures) {
+          maxFailures = numFailures;
+          failureKing = tt.getTrackerName();
+        }
+        out.print("<tr><td><a href=\"http://");
+        out.print(tt.getHost() + ":" + tt.getHttpPort() + "/\">");
+        out.print(tt.getTrackerName() + "</a></td><td>");
+        out.print(tt.getHost() + "</td><td>" + numCurTasks +
+                  "</td><td>" + numFailures + 
+                  "</td><td>" + sinceHeartbeat + "</td></tr>\n");
+      }
+      out.print("</table>\n");
+      out.print("</center>\n");
+      if (maxFailures > 0) {
+        out.print("Highest Failures: " + failureKing + " with " + maxFailures + 
+                  " failures<br>\n");
+      }
+    }
+  }
+
+
+  private static java.util.Vector _jspx_dependants;
+
+  public java.util.List getDependants() {
+    return _jspx_dependants;
+  }
+
+  public void _jspService(HttpServletRequest request, HttpServletResponse response)
+        throws java.io.IOException, ServletException {
+
+    JspFactory _jspxFactory = null;
+    PageContext pageContext = null;
+    HttpSession session = null;
+    ServletContext application = null;
+    ServletConfig config = null;
+    JspWriter out = null;
+    Object page = this;
+    JspWriter _jspx_out = null;
+    PageContext _jspx_page_context = null;
+
+
+    try {
+      _jspxFactory = JspFactory.getDefaultFactory();
+      response.setContentType("text/html; charset=UTF-8");
+      pageContext = _jspxFactory.getPageContext(this, request, response,
+      			null, true, 8192, true);
+      _jspx_page_context = pageContext;
+      application = pageContext.getServletContext();
+      config = pageContext.getServletConfig();
+      session = pageContext.getSession();
+      out = pageContext.getOut();
+      _jspx_out = out;
+
+      out.write('\n');
+      out.write("\n\n<html>\n\n<title>");
+      out.print(trackerLabel);
+      out.write(" Hadoop Machine List</title>\n\n<body>\n<h1><a href=\"/jobtracker.jsp\">");
+      out.print(trackerLabel);
+      out.write("</a> Hadoop Machine List</h1>\n\n<h2>Task Trackers</h2>\n");
+
+  generateTaskTrackerTable(out);
+
+      out.write("\n\n<hr>\n<a href=\"http://lucene.apache.org/hadoop\">Hadoop</a>, 2006.<br>\n</body>\n</html>\n");
+    } catch (Throwable t) {
+      if (!(t instanceof SkipPageException)){
+        out = _jspx_out;
+        if (out != null && out.getBufferSize() != 0)
+          out.clearBuffer();
+        if (_jspx_page_context != null) _jspx_page_context.handlePageException(t);
+      }
+    } finally {
+      if (_jspxFactory != null) _jspxFactory.releasePageContext(_jspx_page_context);
+    }
+  }
+}
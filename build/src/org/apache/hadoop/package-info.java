@@ -0,0 +1,6 @@
+/*
+ * Generated by src/saveVersion.sh
+ */
+@HadoopVersionAnnotation(version="0.13.2-dev", revision="", 
+                         user="root", date="Sat Oct 17 13:49:04 UTC 2026", url="")
+package org.apache.hadoop;
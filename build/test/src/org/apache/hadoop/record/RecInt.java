@@ -0,0 +1,112 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.hadoop.record;
+
+public class RecInt extends org.apache.hadoop.record.Record {
+  private int data;
+  public RecInt() { }
+  public RecInt(
+    final int data) {
+    this.data = data;
+  }
+  public int getData() {
+    return data;
+  }
+  public void setData(final int data) {
+    this.data=data;
+  }
+  public void serialize(final org.apache.hadoop.record.RecordOutput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(this,tag);
+    a.writeInt(data,"data");
+    a.endRecord(this,tag);
+  }
+  public void deserialize(final org.apache.hadoop.record.RecordInput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(tag);
+    data=a.readInt("data");
+    a.endRecord(tag);
+  }
+  public int compareTo (final Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof RecInt)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    RecInt peer = (RecInt) peer_;
+    int ret = 0;
+    ret = (data == peer.data)? 0 :((data<peer.data)?-1:1);
+    if (ret != 0) return ret;
+    return ret;
+  }
+  public boolean equals(final Object peer_) {
+    if (!(peer_ instanceof RecInt)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    RecInt peer = (RecInt) peer_;
+    boolean ret = false;
+    ret = (data==peer.data);
+    if (!ret) return ret;
+    return ret;
+  }
+  public Object clone() throws CloneNotSupportedException {
+    RecInt other = new RecInt();
+    other.data = this.data;
+    return other;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (int)data;
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LRecInt(i)";
+  }
+  public static class Comparator extends org.apache.hadoop.record.RecordComparator {
+    public Comparator() {
+      super(RecInt.class);
+    }
+    static public int slurpRaw(byte[] b, int s, int l) {
+      try {
+        int os = s;
+        {
+          int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s+=z; l-=z;
+        }
+        return (os - s);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    static public int compareRaw(byte[] b1, int s1, int l1,
+                                   byte[] b2, int s2, int l2) {
+      try {
+        int os1 = s1;
+        {
+          int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          if (i1 != i2) {
+            return ((i1-i2) < 0) ? -1 : 0;
+          }
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+        }
+        return (os1 - s1);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    public int compare(byte[] b1, int s1, int l1,
+                         byte[] b2, int s2, int l2) {
+      int ret = compareRaw(b1,s1,l1,b2,s2,l2);
+      return (ret == -1)? -1 : ((ret==0)? 1 : 0);}
+  }
+  
+  static {
+    org.apache.hadoop.record.RecordComparator.define(RecInt.class, new Comparator());
+  }
+}
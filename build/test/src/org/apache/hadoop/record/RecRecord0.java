@@ -0,0 +1,112 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.hadoop.record;
+
+public class RecRecord0 extends org.apache.hadoop.record.Record {
+  private String stringVal;
+  public RecRecord0() { }
+  public RecRecord0(
+    final String stringVal) {
+    this.stringVal = stringVal;
+  }
+  public String getStringVal() {
+    return stringVal;
+  }
+  public void setStringVal(final String stringVal) {
+    this.stringVal=stringVal;
+  }
+  public void serialize(final org.apache.hadoop.record.RecordOutput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(this,tag);
+    a.writeString(stringVal,"stringVal");
+    a.endRecord(this,tag);
+  }
+  public void deserialize(final org.apache.hadoop.record.RecordInput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(tag);
+    stringVal=a.readString("stringVal");
+    a.endRecord(tag);
+  }
+  public int compareTo (final Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof RecRecord0)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    RecRecord0 peer = (RecRecord0) peer_;
+    int ret = 0;
+    ret = stringVal.compareTo(peer.stringVal);
+    if (ret != 0) return ret;
+    return ret;
+  }
+  public boolean equals(final Object peer_) {
+    if (!(peer_ instanceof RecRecord0)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    RecRecord0 peer = (RecRecord0) peer_;
+    boolean ret = false;
+    ret = stringVal.equals(peer.stringVal);
+    if (!ret) return ret;
+    return ret;
+  }
+  public Object clone() throws CloneNotSupportedException {
+    RecRecord0 other = new RecRecord0();
+    other.stringVal = this.stringVal;
+    return other;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = stringVal.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LRecRecord0(s)";
+  }
+  public static class Comparator extends org.apache.hadoop.record.RecordComparator {
+    public Comparator() {
+      super(RecRecord0.class);
+    }
+    static public int slurpRaw(byte[] b, int s, int l) {
+      try {
+        int os = s;
+        {
+          int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s+=(z+i); l-= (z+i);
+        }
+        return (os - s);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    static public int compareRaw(byte[] b1, int s1, int l1,
+                                   byte[] b2, int s2, int l2) {
+      try {
+        int os1 = s1;
+        {
+          int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+          int r1 = org.apache.hadoop.record.Utils.compareBytes(b1,s1,i1,b2,s2,i2);
+          if (r1 != 0) { return (r1<0)?-1:0; }
+          s1+=i1; s2+=i2; l1-=i1; l1-=i2;
+        }
+        return (os1 - s1);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    public int compare(byte[] b1, int s1, int l1,
+                         byte[] b2, int s2, int l2) {
+      int ret = compareRaw(b1,s1,l1,b2,s2,l2);
+      return (ret == -1)? -1 : ((ret==0)? 1 : 0);}
+  }
+  
+  static {
+    org.apache.hadoop.record.RecordComparator.define(RecRecord0.class, new Comparator());
+  }
+}
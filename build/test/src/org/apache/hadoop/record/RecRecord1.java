@@ -0,0 +1,545 @@
+// File generated by hadoop record compiler. Do not edit.
+package org.apache.hadoop.record;
+
+public class RecRecord1 extends org.apache.hadoop.record.Record {
+  private boolean boolVal;
+  private byte byteVal;
+  private int intVal;
+  private long longVal;
+  private float floatVal;
+  private double doubleVal;
+  private String stringVal;
+  private org.apache.hadoop.record.Buffer bufferVal;
+  private java.util.ArrayList<String> vectorVal;
+  private java.util.TreeMap<String,String> mapVal;
+  private org.apache.hadoop.record.RecRecord0 recordVal;
+  public RecRecord1() { }
+  public RecRecord1(
+    final boolean boolVal,
+    final byte byteVal,
+    final int intVal,
+    final long longVal,
+    final float floatVal,
+    final double doubleVal,
+    final String stringVal,
+    final org.apache.hadoop.record.Buffer bufferVal,
+    final java.util.ArrayList<String> vectorVal,
+    final java.util.TreeMap<String,String> mapVal,
+    final org.apache.hadoop.record.RecRecord0 recordVal) {
+    this.boolVal = boolVal;
+    this.byteVal = byteVal;
+    this.intVal = intVal;
+    this.longVal = longVal;
+    this.floatVal = floatVal;
+    this.doubleVal = doubleVal;
+    this.stringVal = stringVal;
+    this.bufferVal = bufferVal;
+    this.vectorVal = vectorVal;
+    this.mapVal = mapVal;
+    this.recordVal = recordVal;
+  }
+  public boolean getBoolVal() {
+    return boolVal;
+  }
+  public void setBoolVal(final boolean boolVal) {
+    this.boolVal=boolVal;
+  }
+  public byte getByteVal() {
+    return byteVal;
+  }
+  public void setByteVal(final byte byteVal) {
+    this.byteVal=byteVal;
+  }
+  public int getIntVal() {
+    return intVal;
+  }
+  public void setIntVal(final int intVal) {
+    this.intVal=intVal;
+  }
+  public long getLongVal() {
+    return longVal;
+  }
+  public void setLongVal(final long longVal) {
+    this.longVal=longVal;
+  }
+  public float getFloatVal() {
+    return floatVal;
+  }
+  public void setFloatVal(final float floatVal) {
+    this.floatVal=floatVal;
+  }
+  public double getDoubleVal() {
+    return doubleVal;
+  }
+  public void setDoubleVal(final double doubleVal) {
+    this.doubleVal=doubleVal;
+  }
+  public String getStringVal() {
+    return stringVal;
+  }
+  public void setStringVal(final String stringVal) {
+    this.stringVal=stringVal;
+  }
+  public org.apache.hadoop.record.Buffer getBufferVal() {
+    return bufferVal;
+  }
+  public void setBufferVal(final org.apache.hadoop.record.Buffer bufferVal) {
+    this.bufferVal=bufferVal;
+  }
+  public java.util.ArrayList<String> getVectorVal() {
+    return vectorVal;
+  }
+  public void setVectorVal(final java.util.ArrayList<String> vectorVal) {
+    this.vectorVal=vectorVal;
+  }
+  public java.util.TreeMap<String,String> getMapVal() {
+    return mapVal;
+  }
+  public void setMapVal(final java.util.TreeMap<String,String> mapVal) {
+    this.mapVal=mapVal;
+  }
+  public org.apache.hadoop.record.RecRecord0 getRecordVal() {
+    return recordVal;
+  }
+  public void setRecordVal(final org.apache.hadoop.record.RecRecord0 recordVal) {
+    this.recordVal=recordVal;
+  }
+  public void serialize(final org.apache.hadoop.record.RecordOutput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(this,tag);
+    a.writeBool(boolVal,"boolVal");
+    a.writeByte(byteVal,"byteVal");
+    a.writeInt(intVal,"intVal");
+    a.writeLong(longVal,"longVal");
+    a.writeFloat(floatVal,"floatVal");
+    a.writeDouble(doubleVal,"doubleVal");
+    a.writeString(stringVal,"stringVal");
+    a.writeBuffer(bufferVal,"bufferVal");
+    {
+      a.startVector(vectorVal,"vectorVal");
+      int len1 = vectorVal.size();
+      for(int vidx1 = 0; vidx1<len1; vidx1++) {
+        String e1 = vectorVal.get(vidx1);
+        a.writeString(e1,"e1");
+      }
+      a.endVector(vectorVal,"vectorVal");
+    }
+    {
+      a.startMap(mapVal,"mapVal");
+      java.util.Set<java.util.Map.Entry<String,String>> es1 = mapVal.entrySet();
+      for(java.util.Iterator<java.util.Map.Entry<String,String>> midx1 = es1.iterator(); midx1.hasNext();) {
+        java.util.Map.Entry<String,String> me1 = midx1.next();
+        String k1 = me1.getKey();
+        String v1 = me1.getValue();
+        a.writeString(k1,"k1");
+        a.writeString(v1,"v1");
+      }
+      a.endMap(mapVal,"mapVal");
+    }
+    recordVal.serialize(a,"recordVal");
+    a.endRecord(this,tag);
+  }
+  public void deserialize(final org.apache.hadoop.record.RecordInput a, final String tag)
+  throws java.io.IOException {
+    a.startRecord(tag);
+    boolVal=a.readBool("boolVal");
+    byteVal=a.readByte("byteVal");
+    intVal=a.readInt("intVal");
+    longVal=a.readLong("longVal");
+    floatVal=a.readFloat("floatVal");
+    doubleVal=a.readDouble("doubleVal");
+    stringVal=a.readString("stringVal");
+    bufferVal=a.readBuffer("bufferVal");
+    {
+      org.apache.hadoop.record.Index vidx1 = a.startVector("vectorVal");
+      vectorVal=new java.util.ArrayList<String>();
+      for (; !vidx1.done(); vidx1.incr()) {
+        String e1;
+        e1=a.readString("e1");
+        vectorVal.add(e1);
+      }
+      a.endVector("vectorVal");
+    }
+    {
+      org.apache.hadoop.record.Index midx1 = a.startMap("mapVal");
+      mapVal=new java.util.TreeMap<String,String>();
+      for (; !midx1.done(); midx1.incr()) {
+        String k1;
+        k1=a.readString("k1");
+        String v1;
+        v1=a.readString("v1");
+        mapVal.put(k1,v1);
+      }
+      a.endMap("mapVal");
+    }
+    recordVal= new org.apache.hadoop.record.RecRecord0();
+    recordVal.deserialize(a,"recordVal");
+    a.endRecord(tag);
+  }
+  public int compareTo (final Object peer_) throws ClassCastException {
+    if (!(peer_ instanceof RecRecord1)) {
+      throw new ClassCastException("Comparing different types of records.");
+    }
+    RecRecord1 peer = (RecRecord1) peer_;
+    int ret = 0;
+    ret = (boolVal == peer.boolVal)? 0 : (boolVal?1:-1);
+    if (ret != 0) return ret;
+    ret = (byteVal == peer.byteVal)? 0 :((byteVal<peer.byteVal)?-1:1);
+    if (ret != 0) return ret;
+    ret = (intVal == peer.intVal)? 0 :((intVal<peer.intVal)?-1:1);
+    if (ret != 0) return ret;
+    ret = (longVal == peer.longVal)? 0 :((longVal<peer.longVal)?-1:1);
+    if (ret != 0) return ret;
+    ret = (floatVal == peer.floatVal)? 0 :((floatVal<peer.floatVal)?-1:1);
+    if (ret != 0) return ret;
+    ret = (doubleVal == peer.doubleVal)? 0 :((doubleVal<peer.doubleVal)?-1:1);
+    if (ret != 0) return ret;
+    ret = stringVal.compareTo(peer.stringVal);
+    if (ret != 0) return ret;
+    ret = bufferVal.compareTo(peer.bufferVal);
+    if (ret != 0) return ret;
+    {
+      int len10 = vectorVal.size();
+      int len20 = peer.vectorVal.size();
+      for(int vidx0 = 0; vidx0<len10 && vidx0<len20; vidx0++) {
+        String e10 = vectorVal.get(vidx0);
+        String e20 = peer.vectorVal.get(vidx0);
+        ret = e10.compareTo(e20);
+        if (ret != 0) { return ret; }
+      }
+      ret = (len10 - len20);
+    }
+    if (ret != 0) return ret;
+    {
+      java.util.Set<String> set10 = mapVal.keySet();
+      java.util.Set<String> set20 = peer.mapVal.keySet();
+      java.util.Iterator<String> miter10 = set10.iterator();
+      java.util.Iterator<String> miter20 = set20.iterator();
+      for(; miter10.hasNext() && miter20.hasNext();) {
+        String k10 = miter10.next();
+        String k20 = miter20.next();
+        ret = k10.compareTo(k20);
+        if (ret != 0) { return ret; }
+      }
+      ret = (set10.size() - set20.size());
+    }
+    if (ret != 0) return ret;
+    ret = recordVal.compareTo(peer.recordVal);
+    if (ret != 0) return ret;
+    return ret;
+  }
+  public boolean equals(final Object peer_) {
+    if (!(peer_ instanceof RecRecord1)) {
+      return false;
+    }
+    if (peer_ == this) {
+      return true;
+    }
+    RecRecord1 peer = (RecRecord1) peer_;
+    boolean ret = false;
+    ret = (boolVal==peer.boolVal);
+    if (!ret) return ret;
+    ret = (byteVal==peer.byteVal);
+    if (!ret) return ret;
+    ret = (intVal==peer.intVal);
+    if (!ret) return ret;
+    ret = (longVal==peer.longVal);
+    if (!ret) return ret;
+    ret = (floatVal==peer.floatVal);
+    if (!ret) return ret;
+    ret = (doubleVal==peer.doubleVal);
+    if (!ret) return ret;
+    ret = stringVal.equals(peer.stringVal);
+    if (!ret) return ret;
+    ret = bufferVal.equals(peer.bufferVal);
+    if (!ret) return ret;
+    ret = vectorVal.equals(peer.vectorVal);
+    if (!ret) return ret;
+    ret = mapVal.equals(peer.mapVal);
+    if (!ret) return ret;
+    ret = recordVal.equals(peer.recordVal);
+    if (!ret) return ret;
+    return ret;
+  }
+  public Object clone() throws CloneNotSupportedException {
+    RecRecord1 other = new RecRecord1();
+    other.boolVal = this.boolVal;
+    other.byteVal = this.byteVal;
+    other.intVal = this.intVal;
+    other.longVal = this.longVal;
+    other.floatVal = this.floatVal;
+    other.doubleVal = this.doubleVal;
+    other.stringVal = this.stringVal;
+    other.bufferVal = (org.apache.hadoop.record.Buffer) this.bufferVal.clone();
+    other.vectorVal = (java.util.ArrayList<String>) this.vectorVal.clone();
+    other.mapVal = (java.util.TreeMap<String,String>) this.mapVal.clone();
+    other.recordVal = (org.apache.hadoop.record.RecRecord0) this.recordVal.clone();
+    return other;
+  }
+  public int hashCode() {
+    int result = 17;
+    int ret;
+    ret = (boolVal)?0:1;
+    result = 37*result + ret;
+    ret = (int)byteVal;
+    result = 37*result + ret;
+    ret = (int)intVal;
+    result = 37*result + ret;
+    ret = (int) (longVal^(longVal>>>32));
+    result = 37*result + ret;
+    ret = Float.floatToIntBits(floatVal);
+    result = 37*result + ret;
+    ret = (int)(Double.doubleToLongBits(doubleVal)^(Double.doubleToLongBits(doubleVal)>>>32));
+    result = 37*result + ret;
+    ret = stringVal.hashCode();
+    result = 37*result + ret;
+    ret = bufferVal.hashCode();
+    result = 37*result + ret;
+    ret = vectorVal.hashCode();
+    result = 37*result + ret;
+    ret = mapVal.hashCode();
+    result = 37*result + ret;
+    ret = recordVal.hashCode();
+    result = 37*result + ret;
+    return result;
+  }
+  public static String signature() {
+    return "LRecRecord1(zbilfdsB[s]{ss}LRecRecord0(s))";
+  }
+  public static class Comparator extends org.apache.hadoop.record.RecordComparator {
+    public Comparator() {
+      super(RecRecord1.class);
+    }
+    static public int slurpRaw(byte[] b, int s, int l) {
+      try {
+        int os = s;
+        {
+          if (l<1) {
+            throw new java.io.IOException("Boolean is exactly 1 byte. Provided buffer is smaller.");
+          }
+          s++; l--;
+        }
+        {
+          if (l<1) {
+            throw new java.io.IOException("Byte is exactly 1 byte. Provided buffer is smaller.");
+          }
+          s++; l--;
+        }
+        {
+          int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s+=z; l-=z;
+        }
+        {
+          long i = org.apache.hadoop.record.Utils.readVLong(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s+=z; l-=z;
+        }
+        {
+          if (l<4) {
+            throw new java.io.IOException("Float is exactly 4 bytes. Provided buffer is smaller.");
+          }
+          s+=4; l-=4;
+        }
+        {
+          if (l<8) {
+            throw new java.io.IOException("Double is exactly 8 bytes. Provided buffer is smaller.");
+          }
+          s+=8; l-=8;
+        }
+        {
+          int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s+=(z+i); l-= (z+i);
+        }
+        {
+          int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+          s += z+i; l -= (z+i);
+        }
+        {
+          int vi1 = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int vz1 = org.apache.hadoop.record.Utils.getVIntSize(vi1);
+          s+=vz1; l-=vz1;
+          for (int vidx1 = 0; vidx1 < vi1; vidx1++){
+            int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+            int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+            s+=(z+i); l-= (z+i);
+          }
+        }
+        {
+          int mi1 = org.apache.hadoop.record.Utils.readVInt(b, s);
+          int mz1 = org.apache.hadoop.record.Utils.getVIntSize(mi1);
+          s+=mz1; l-=mz1;
+          for (int midx1 = 0; midx1 < mi1; midx1++) {{
+              int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+              int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+              s+=(z+i); l-= (z+i);
+            }
+            {
+              int i = org.apache.hadoop.record.Utils.readVInt(b, s);
+              int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+              s+=(z+i); l-= (z+i);
+            }
+          }
+        }
+        {
+          int r = org.apache.hadoop.record.RecRecord0.Comparator.slurpRaw(b,s,l);
+          s+=r; l-=r;
+        }
+        return (os - s);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    static public int compareRaw(byte[] b1, int s1, int l1,
+                                   byte[] b2, int s2, int l2) {
+      try {
+        int os1 = s1;
+        {
+          if (l1<1 || l2<1) {
+            throw new java.io.IOException("Boolean is exactly 1 byte. Provided buffer is smaller.");
+          }
+          if (b1[s1] != b2[s2]) {
+            return (b1[s1]<b2[s2])? -1 : 0;
+          }
+          s1++; s2++; l1--; l2--;
+        }
+        {
+          if (l1<1 || l2<1) {
+            throw new java.io.IOException("Byte is exactly 1 byte. Provided buffer is smaller.");
+          }
+          if (b1[s1] != b2[s2]) {
+            return (b1[s1]<b2[s2])?-1:0;
+          }
+          s1++; s2++; l1--; l2--;
+        }
+        {
+          int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          if (i1 != i2) {
+            return ((i1-i2) < 0) ? -1 : 0;
+          }
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+        }
+        {
+          long i1 = org.apache.hadoop.record.Utils.readVLong(b1, s1);
+          long i2 = org.apache.hadoop.record.Utils.readVLong(b2, s2);
+          if (i1 != i2) {
+            return ((i1-i2) < 0) ? -1 : 0;
+          }
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+        }
+        {
+          if (l1<4 || l2<4) {
+            throw new java.io.IOException("Float is exactly 4 bytes. Provided buffer is smaller.");
+          }
+          float f1 = org.apache.hadoop.record.Utils.readFloat(b1, s1);
+          float f2 = org.apache.hadoop.record.Utils.readFloat(b2, s2);
+          if (f1 != f2) {
+            return ((f1-f2) < 0) ? -1 : 0;
+          }
+          s1+=4; s2+=4; l1-=4; l2-=4;
+        }
+        {
+          if (l1<8 || l2<8) {
+            throw new java.io.IOException("Double is exactly 8 bytes. Provided buffer is smaller.");
+          }
+          double d1 = org.apache.hadoop.record.Utils.readDouble(b1, s1);
+          double d2 = org.apache.hadoop.record.Utils.readDouble(b2, s2);
+          if (d1 != d2) {
+            return ((d1-d2) < 0) ? -1 : 0;
+          }
+          s1+=8; s2+=8; l1-=8; l2-=8;
+        }
+        {
+          int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+          int r1 = org.apache.hadoop.record.Utils.compareBytes(b1,s1,i1,b2,s2,i2);
+          if (r1 != 0) { return (r1<0)?-1:0; }
+          s1+=i1; s2+=i2; l1-=i1; l1-=i2;
+        }
+        {
+          int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+          int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+          s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+          int r1 = org.apache.hadoop.record.Utils.compareBytes(b1,s1,i1,b2,s2,i2);
+          if (r1 != 0) { return (r1<0)?-1:0; }
+          s1+=i1; s2+=i2; l1-=i1; l1-=i2;
+        }
+        {
+          int vi11 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int vi21 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          int vz11 = org.apache.hadoop.record.Utils.getVIntSize(vi11);
+          int vz21 = org.apache.hadoop.record.Utils.getVIntSize(vi21);
+          s1+=vz11; s2+=vz21; l1-=vz11; l2-=vz21;
+          for (int vidx1 = 0; vidx1 < vi11 && vidx1 < vi21; vidx1++){
+            int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+            int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+            int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+            int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+            s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+            int r1 = org.apache.hadoop.record.Utils.compareBytes(b1,s1,i1,b2,s2,i2);
+            if (r1 != 0) { return (r1<0)?-1:0; }
+            s1+=i1; s2+=i2; l1-=i1; l1-=i2;
+          }
+          if (vi11 != vi21) { return (vi11<vi21)?-1:0; }
+        }
+        {
+          int mi11 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+          int mi21 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+          int mz11 = org.apache.hadoop.record.Utils.getVIntSize(mi11);
+          int mz21 = org.apache.hadoop.record.Utils.getVIntSize(mi21);
+          s1+=mz11; s2+=mz21; l1-=mz11; l2-=mz21;
+          for (int midx1 = 0; midx1 < mi11 && midx1 < mi21; midx1++) {{
+              int i1 = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+              int i2 = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+              int z1 = org.apache.hadoop.record.Utils.getVIntSize(i1);
+              int z2 = org.apache.hadoop.record.Utils.getVIntSize(i2);
+              s1+=z1; s2+=z2; l1-=z1; l2-=z2;
+              int r1 = org.apache.hadoop.record.Utils.compareBytes(b1,s1,i1,b2,s2,i2);
+              if (r1 != 0) { return (r1<0)?-1:0; }
+              s1+=i1; s2+=i2; l1-=i1; l1-=i2;
+            }
+            {
+              int i = org.apache.hadoop.record.Utils.readVInt(b1, s1);
+              int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+              s1+=(z+i); l1-= (z+i);
+            }
+            {
+              int i = org.apache.hadoop.record.Utils.readVInt(b2, s2);
+              int z = org.apache.hadoop.record.Utils.getVIntSize(i);
+              s2+=(z+i); l2-= (z+i);
+            }
+          }
+          if (mi11 != mi21) { return (mi11<mi21)?-1:0; }
+        }
+        {
+          int r1 = org.apache.hadoop.record.RecRecord0.Comparator.compareRaw(b1,s1,l1,b2,s2,l2);
+          if (r1 <= 0) { return r1; }
+          s1+=r1; s2+=r1; l1-=r1; l2-=r1;
+        }
+        return (os1 - s1);
+      } catch(java.io.IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    public int compare(byte[] b1, int s1, int l1,
+                         byte[] b2, int s2, int l2) {
+      int ret = compareRaw(b1,s1,l1,b2,s2,l2);
+      return (ret == -1)? -1 : ((ret==0)? 1 : 0);}
+  }
+  
+  static {
+    org.apache.hadoop.record.RecordComparator.define(RecRecord1.class, new Comparator());
+  }
+}
@@ -50,6 +50,8 @@ class DFSClient implements FSConstants {
   static int MAX_BLOCK_ACQUIRE_FAILURES = 3;
   private static final int TCP_WINDOW_SIZE = 128 * 1024; // 128 KB
   private static final long DEFAULT_BLOCK_SIZE = 64 * 1024 * 1024;
+  // the packets of a block which may be sent without being acknowledged
+  private static final int MAX_PACKETS = 80;
   ClientProtocol namenode;
   boolean running = true;
   Random r = new Random();
@@ -58,6 +60,7 @@ class DFSClient implements FSConstants {
   private Configuration conf;
   private long defaultBlockSize;
   private short defaultReplication;
+  private boolean shortCircuitLocalReads;
     
   /**
    * A map from name -> DFSOutputStream of files that are currently being
@@ -159,6 +162,7 @@ class DFSClient implements FSConstants {
     }
     defaultBlockSize = conf.getLong("dfs.block.size", DEFAULT_BLOCK_SIZE);
     defaultReplication = (short) conf.getInt("dfs.replication", 3);
+    shortCircuitLocalReads = conf.getBoolean("dfs.client.read.shortcircuit", false);
     this.leaseChecker = new Daemon(new LeaseChecker());
     this.leaseChecker.start();
   }
@@ -478,6 +482,23 @@ class DFSClient implements FSConstants {
     }
   }
 
+  /**
+   * Whether an address is one of this machine's.
+   */
+  private static boolean isLocalAddress(InetAddress addr) {
+    if (addr == null) {
+      return false;
+    }
+    if (addr.isLoopbackAddress() || addr.isAnyLocalAddress()) {
+      return true;
+    }
+    try {
+      return NetworkInterface.getByInetAddress(addr) != null;
+    } catch (SocketException se) {
+      return false;
+    }
+  }
+
   /**
    * Pick the best node from which to stream the data.
    * Entries in <i>nodes</i> are already in the priority order
@@ -550,6 +571,9 @@ class DFSClient implements FSConstants {
     private long filelen = 0;
     private long blockEnd = -1;
     private TreeSet<DatanodeInfo> deadNodes = new TreeSet<DatanodeInfo>();
+    // the dead nodes which only refused to serve for being busy
+    private TreeSet<DatanodeInfo> busyNodes = new TreeSet<DatanodeInfo>();
+    private int localBlockReads = 0;    // blocks opened from the local disk
         
     /**
      */
@@ -615,6 +639,14 @@ class DFSClient implements FSConstants {
       return nodes;
     }
 
+    /**
+     * Used by the automatic tests to count the blocks, or ranges of them,
+     * read straight from the local file system
+     */
+    synchronized int getLocalBlockReads() {
+      return localBlockReads;
+    }
+
     /**
      * Open a DataInputStream to a DataNode so that it can be read from.
      * We get block ID and the IDs of the destinations at startup, from the namenode.
@@ -627,7 +659,10 @@ class DFSClient implements FSConstants {
       if (s != null) {
         s.close();
         s = null;
+      } else if (blockStream != null) {
+        blockStream.close();
       }
+      blockStream = null;
 
       //
       // Compute desired block
@@ -660,6 +695,18 @@ class DFSClient implements FSConstants {
         chosenNode = retval.info;
         InetSocketAddress targetAddr = retval.addr;
 
+        if (shortCircuitLocalReads && isLocalAddress(targetAddr.getAddress())) {
+          DataInputStream in = openLocalBlock(targetAddr, blocks[targetBlock], 
+                                              offsetIntoBlock);
+          if (in != null) {
+            this.pos = target;
+            this.blockEnd = targetBlockEnd;
+            this.currentBlock = blocks[targetBlock];
+            this.blockStream = in;
+            return chosenNode;
+          }
+        }
+
         try {
           s = new Socket();
           s.connect(targetAddr, READ_TIMEOUT);
@@ -679,6 +726,10 @@ class DFSClient implements FSConstants {
           //
           DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
           long curBlockSize = in.readLong();
+          if (curBlockSize == DATANODE_BUSY) {
+            throw new DatanodeBusyException("Datanode " + targetAddr + 
+                                            " is busy");
+          }
           long amtSkipped = in.readLong();
           if (curBlockSize != blocks[targetBlock].len) {
             throw new IOException("Recorded block size is " + blocks[targetBlock].len + ", but datanode reports size of " + curBlockSize);
@@ -697,6 +748,9 @@ class DFSClient implements FSConstants {
           LOG.debug("Failed to connect to " + targetAddr + ":" 
                     + StringUtils.stringifyException(ex));
           deadNodes.add(chosenNode);
+          if (ex instanceof DatanodeBusyException) {
+            busyNodes.add(chosenNode);
+          }
           if (s != null) {
             try {
               s.close();
@@ -709,6 +763,62 @@ class DFSClient implements FSConstants {
       return chosenNode;
     }
 
+    /**
+     * Open a block held by a datanode on this machine from the local file
+     * system, after asking the datanode for the path of the block file, so
+     * that the data is not sent through the datanode.  Checksums are still
+     * verified above this stream.  Returns null if the block can't be read
+     * this way, and should be read from the datanode.
+     */
+    private DataInputStream openLocalBlock(InetSocketAddress targetAddr,
+                                           Block block, long offsetIntoBlock) {
+      Socket dn = null;
+      FileInputStream file = null;
+      try {
+        dn = new Socket();
+        dn.connect(targetAddr, READ_TIMEOUT);
+        dn.setSoTimeout(READ_TIMEOUT);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(dn.getOutputStream()));
+        out.write(OP_BLOCK_PATH);
+        block.write(out);
+        out.flush();
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(dn.getInputStream()));
+        long curBlockSize = in.readLong();
+        if (curBlockSize != block.len) {
+          LOG.debug("Datanode " + targetAddr + " reports size " + curBlockSize
+                    + " of block " + block + " to read locally");
+          return null;
+        }
+        String path = UTF8.readString(in);
+        file = new FileInputStream(path);
+        file.getChannel().position(offsetIntoBlock);
+        DataInputStream result = 
+          new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE));
+        file = null;
+        synchronized (this) {
+          localBlockReads++;
+        }
+        return result;
+      } catch (IOException ie) {
+        LOG.debug("Could not read block " + block + " locally: " + ie);
+        return null;
+      } finally {
+        if (file != null) {
+          try {
+            file.close();
+          } catch (IOException ie) {
+          }
+        }
+        if (dn != null) {
+          try {
+            dn.close();
+          } catch (IOException ie) {
+          }
+        }
+      }
+    }
+
     /**
      * Close it down!
      */
@@ -722,6 +832,8 @@ class DFSClient implements FSConstants {
         blockStream.close();
         s.close();
         s = null;
+      } else if (blockStream != null) {
+        blockStream.close();            // a block file read locally
       }
       super.close();
       closed = true;
@@ -785,9 +897,15 @@ class DFSClient implements FSConstants {
     }
 
         
+    /**
+     * Choose a datanode to read a block from, among the ones not found
+     * dead.  Once all of them are, the ones which were only busy are tried
+     * again after a while, a few times, before the block is looked up again.
+     */
     private DNAddrPair chooseDataNode(int blockId)
       throws IOException {
       int failures = 0;
+      int busyWaits = 0;
       while (true) {
         try {
           DatanodeInfo chosenNode = bestNode(nodes[blockId], deadNodes);
@@ -796,6 +914,19 @@ class DFSClient implements FSConstants {
         } catch (IOException ie) {
           String blockInfo =
             blocks[blockId]+" file="+src;
+          if (!busyNodes.isEmpty() && busyWaits < BUSY_RETRIES) {
+            LOG.info("Datanodes " + busyNodes + " of block " + blockInfo + 
+                     " are busy, trying them again");
+            try {
+              Thread.sleep(BUSY_RETRY_INTERVAL);
+            } catch (InterruptedException iex) {
+            }
+            deadNodes.removeAll(busyNodes);
+            busyNodes.clear();
+            busyWaits++;
+            continue;
+          }
+          busyNodes.clear();
           if (failures >= MAX_BLOCK_ACQUIRE_FAILURES) {
             throw new IOException("Could not obtain block: " + blockInfo);
           }
@@ -825,6 +956,21 @@ class DFSClient implements FSConstants {
         DNAddrPair retval = chooseDataNode(blockId);
         DatanodeInfo chosenNode = retval.info;
         InetSocketAddress targetAddr = retval.addr;
+
+        if (shortCircuitLocalReads && isLocalAddress(targetAddr.getAddress())) {
+          DataInputStream in = openLocalBlock(targetAddr, blocks[blockId], start);
+          if (in != null) {
+            try {
+              in.readFully(buf, offset, (int)(end - start + 1));
+              return;
+            } catch (IOException ie) {
+              LOG.debug("Could not read block " + blocks[blockId] + 
+                        " locally: " + ie);
+            } finally {
+              in.close();
+            }
+          }
+        }
             
         try {
           dn = new Socket();
@@ -846,6 +992,10 @@ class DFSClient implements FSConstants {
           //
           DataInputStream in = new DataInputStream(new BufferedInputStream(dn.getInputStream()));
           long curBlockSize = in.readLong();
+          if (curBlockSize == DATANODE_BUSY) {
+            throw new DatanodeBusyException("Datanode " + targetAddr + 
+                                            " is busy");
+          }
           long actualStart = in.readLong();
           long actualEnd = in.readLong();
           if (curBlockSize != blocks[blockId].len) {
@@ -864,6 +1014,9 @@ class DFSClient implements FSConstants {
           LOG.debug("Failed to connect to " + targetAddr + ":" 
                     + StringUtils.stringifyException(ex));
           deadNodes.add(chosenNode);
+          if (ex instanceof DatanodeBusyException) {
+            busyNodes.add(chosenNode);
+          }
           if (dn != null) {
             try {
               dn.close();
@@ -1036,24 +1189,169 @@ class DFSClient implements FSConstants {
     private Socket s;
     boolean closed = false;
 
-    private byte outBuf[] = new byte[BUFFER_SIZE];
-    private int pos = 0;
-
     private UTF8 src;
     private boolean overwrite;
     private short replication;
     private boolean firstTime = true;
     private DataOutputStream blockStream;
     private DataInputStream blockReplyStream;
-    private File backupFile;
-    private OutputStream backupStream;
     private Block block;
+    private DatanodeInfo nodes[];                 // the pipeline of the block
     private long filePos = 0;
     private int bytesWrittenToBlock = 0;
     private String datanodeName;
     private long blockSize;
+    private int remainingAttempts;
+
+    // the packet being filled, and the number of the next one
+    private int packetSize;
+    private Packet packet;
+    private long nextSeqno = 0;
+
+    // packets sent to the pipeline and not acknowledged yet, kept to be
+    // sent again if the first datanode fails
+    private LinkedList<Packet> ackQueue = new LinkedList<Packet>();
+    private long bytesAcked = 0;                  // of the block
+    private ResponseProcessor response;
+    private IOException responseError;
+    private volatile long lastSent;               // to the pipeline
 
     private Progressable progress;
+
+    /**
+     * A piece of a block, sent to the pipeline as it is filled.
+     */
+    private class Packet {
+      long seqno;
+      byte[] buf;
+      int len = 0;
+
+      Packet() {
+        this.seqno = nextSeqno++;
+        this.buf = new byte[packetSize];
+      }
+    }
+
+    /**
+     * Reads the acknowledgements of the packets sent to the pipeline, and
+     * then the reply of the first datanode once the block is complete.
+     * While no packet is outstanding, it sends a heartbeat packet whenever
+     * nothing was sent for half of READ_TIMEOUT, so that the datanodes
+     * don't drop the connections of a slow writer.
+     */
+    private class ResponseProcessor implements Runnable {
+      private Socket s;
+      private DataInputStream in;
+      private DataOutputStream out;
+      private volatile boolean stopped = false;
+      private Daemon thread;
+
+      ResponseProcessor(Socket s, DataInputStream in, DataOutputStream out) {
+        this.s = s;
+        this.in = in;
+        this.out = out;
+      }
+
+      void start() {
+        thread = new Daemon(this);
+        thread.start();
+      }
+
+      public void run() {
+        try {
+          boolean lastPacket = false;
+          while (!lastPacket) {
+            // only wait for the pipeline when packets are outstanding, as
+            // the writer may take long to fill the next one
+            boolean idle;
+            synchronized (ackQueue) {
+              while (ackQueue.isEmpty() && !stopped) {
+                long wait = lastSent + READ_TIMEOUT / 2 - 
+                  System.currentTimeMillis();
+                if (wait <= 0) {
+                  break;
+                }
+                try {
+                  ackQueue.wait(wait);
+                } catch (InterruptedException ie) {
+                }
+              }
+              if (stopped) {
+                return;
+              }
+              idle = ackQueue.isEmpty();
+            }
+            if (idle) {
+              sendHeartbeat();
+              continue;
+            }
+            long seqno = in.readLong();
+            synchronized (ackQueue) {
+              Packet acked = ackQueue.peek();
+              if (acked == null || acked.seqno != seqno) {
+                throw new IOException("Unexpected acknowledgement of packet "
+                                      + seqno + " from " + datanodeName);
+              }
+              ackQueue.removeFirst();
+              bytesAcked += acked.len;
+              lastPacket = (acked.len == 0);
+              ackQueue.notifyAll();
+            }
+          }
+          long complete = in.readLong();
+          if (complete != WRITE_COMPLETE) {
+            LOG.info("Did not receive WRITE_COMPLETE flag: " + complete);
+            throw new IOException("Did not receive WRITE_COMPLETE_FLAG: " +
+                                  complete);
+          }
+          LocatedBlock lb = new LocatedBlock();
+          lb.readFields(in);
+        } catch (IOException ie) {
+          synchronized (ackQueue) {
+            if (!stopped) {
+              responseError = ie;
+            }
+            ackQueue.notifyAll();
+          }
+        }
+      }
+
+      /** Send an empty packet, which the datanodes don't acknowledge. */
+      private void sendHeartbeat() throws IOException {
+        synchronized (out) {
+          out.writeLong(HEARTBEAT_SEQNO);
+          out.writeInt(0);
+          out.flush();
+          lastSent = System.currentTimeMillis();
+        }
+      }
+
+      /** Wait for the reply to the block, or for an error. */
+      void join() {
+        try {
+          thread.join();
+        } catch (InterruptedException ie) {
+        }
+      }
+
+      /** Stop reading the replies of the pipeline, and wait for it. */
+      void stop() {
+        synchronized (ackQueue) {
+          stopped = true;
+          ackQueue.notifyAll();
+        }
+        try {
+          s.close();
+        } catch (IOException ie) {
+          LOG.warn("Error closing socket.", ie);
+        }
+        try {
+          thread.join();
+        } catch (InterruptedException ie) {
+        }
+      }
+    }
+
     /**
      * Create a new output stream to the given DataNode.
      */
@@ -1064,48 +1362,15 @@ class DFSClient implements FSConstants {
       this.src = src;
       this.overwrite = overwrite;
       this.replication = replication;
-      this.backupFile = newBackupFile();
       this.blockSize = blockSize;
-      this.backupStream = new FileOutputStream(backupFile);
+      this.packetSize = conf.getInt("dfs.write.packet.size", 64 * 1024);
+      this.packet = new Packet();
       this.progress = progress;
       if (progress != null) {
         LOG.debug("Set non-null progress callback on DFSOutputStream "+src);
       }
     }
 
-    /* Wrapper for closing backupStream. This sets backupStream to null so
-     * that we do not attempt to write to backupStream that could be
-     * invalid in subsequent writes. Otherwise we might end trying to write
-     * filedescriptor that we don't own.
-     */
-    private void closeBackupStream() throws IOException {
-      if (backupStream != null) {
-        OutputStream stream = backupStream;
-        backupStream = null;
-        stream.close();
-      }   
-    }
-    /* Similar to closeBackupStream(). Theoritically deleting a file
-     * twice could result in deleting a file that we should not.
-     */
-    private void deleteBackupFile() {
-      if (backupFile != null) {
-        File file = backupFile;
-        backupFile = null;
-        file.delete();
-      }
-    }
-        
-    private File newBackupFile() throws IOException {
-      File file = conf.getFile("dfs.client.buffer.dir", "tmp");
-      File dir = file.getParentFile();
-      String prefix = "client-" + Math.abs(r.nextLong());
-      String suffix = ".tmp";
-      File result = File.createTempFile(prefix, suffix, dir);
-      result.deleteOnExit();
-      return result;
-    }
-
     /**
      * Open a DataOutputStream to a DataNode so that it can be written to.
      * This happens when a file is created and each time a new block is allocated.
@@ -1125,25 +1390,16 @@ class DFSClient implements FSConstants {
         }
 
         block = lb.getBlock();
-        if (block.getNumBytes() < bytesWrittenToBlock) {
-          block.setNumBytes(bytesWrittenToBlock);
-        }
-        DatanodeInfo nodes[] = lb.getLocations();
+        nodes = lb.getLocations();
 
         //
         // Connect to first DataNode in the list.  Abort if this fails.
         //
-        InetSocketAddress target = DataNode.createSocketAddr(nodes[0].getName());
-        try {
-          s = new Socket();
-          s.connect(target, READ_TIMEOUT);
-          s.setSoTimeout(replication * READ_TIMEOUT);
-          datanodeName = nodes[0].getName();
-        } catch (IOException ie) {
+        if (!connect(0)) {
           // Connection failed.  Let's wait a little bit and retry
           try {
             if (System.currentTimeMillis() - startTime > 5000) {
-              LOG.info("Waiting to find target node: " + target);
+              LOG.info("Waiting to find target node: " + nodes[0].getName());
             }
             Thread.sleep(6000);
           } catch (InterruptedException iex) {
@@ -1155,27 +1411,82 @@ class DFSClient implements FSConstants {
             namenode.abandonBlock(block, src.toString());
           }
           retry = true;
-          continue;
-        }
-
-        //
-        // Xmit header info to datanode
-        //
-        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
-        out.write(OP_WRITE_BLOCK);
-        out.writeBoolean(true);
-        block.write(out);
-        out.writeInt(nodes.length);
-        for (int i = 0; i < nodes.length; i++) {
-          nodes[i].write(out);
         }
-        out.write(CHUNKED_ENCODING);
-        blockStream = out;
-        blockReplyStream = new DataInputStream(new BufferedInputStream(s.getInputStream()));
       } while (retry);
       firstTime = false;
     }
 
+    /**
+     * Connect to the first of the datanodes of the block, send it the
+     * header of the block and wait for the pipeline to start the block.
+     * The block is continued from the data acknowledged so far, if any.
+     * A datanode replying it is busy is connected to again a few times.
+     * @return false if the datanode could not be connected to
+     */
+    private boolean connect(long offset) throws IOException {
+      InetSocketAddress target = DataNode.createSocketAddr(nodes[0].getName());
+      datanodeName = nodes[0].getName();
+      for (int attempt = 1; ; attempt++) {
+        try {
+          s = new Socket();
+          s.connect(target, READ_TIMEOUT);
+          s.setSoTimeout(nodes.length * READ_TIMEOUT);
+
+          //
+          // Xmit header info to datanode
+          //
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+          out.write(OP_WRITE_BLOCK);
+          out.writeBoolean(true);
+          block.write(out);
+          out.writeInt(nodes.length);
+          for (int i = 0; i < nodes.length; i++) {
+            nodes[i].write(out);
+          }
+          out.write(PACKET_ENCODING);
+          out.writeLong(offset);
+          out.flush();
+
+          DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+          long status = in.readLong();
+          if (status == WRITE_STARTED) {
+            blockStream = out;
+            blockReplyStream = in;
+            lastSent = System.currentTimeMillis();
+            response = new ResponseProcessor(s, blockReplyStream, blockStream);
+            response.start();
+            return true;
+          } else if (status != DATANODE_BUSY) {
+            throw new IOException("Unexpected reply " + status + 
+                                  " to the header of block " + block);
+          }
+        } catch (IOException ie) {
+          LOG.info("Could not connect to " + target + ": " + ie);
+          closeSocket();
+          return false;
+        }
+        closeSocket();
+        if (attempt >= BUSY_RETRIES) {
+          LOG.info("Datanode " + target + " still busy after " + attempt + 
+                   " attempts");
+          return false;
+        }
+        LOG.info("Datanode " + target + " is busy, connecting again");
+        try {
+          Thread.sleep(BUSY_RETRY_INTERVAL);
+        } catch (InterruptedException ie) {
+        }
+      }
+    }
+
+    private void closeSocket() {
+      try {
+        s.close();
+      } catch (IOException ie) {
+      }
+      s = null;
+    }
+
     private LocatedBlock locateNewBlock() throws IOException {     
       return namenode.create(src.toString(), clientName.toString(),
           overwrite, replication, blockSize);
@@ -1221,6 +1532,13 @@ class DFSClient implements FSConstants {
     public synchronized long getPos() throws IOException {
       return filePos;
     }
+
+    /**
+     * The datanodes the current block is written to, the first one first.
+     */
+    synchronized DatanodeInfo[] getPipeline() {
+      return nodes;
+    }
 			
     /**
      * Writes the specified byte to this output stream.
@@ -1231,12 +1549,12 @@ class DFSClient implements FSConstants {
         throw new IOException("Stream closed");
       }
 
-      if ((bytesWrittenToBlock + pos == blockSize) ||
-          (pos >= BUFFER_SIZE)) {
-        flush();
-      }
-      outBuf[pos++] = (byte) b;
+      packet.buf[packet.len++] = (byte) b;
       filePos++;
+      bytesWrittenToBlock++;
+      if (packet.len == packetSize || bytesWrittenToBlock == blockSize) {
+        sendPacket();
+      }
     }
 
     /**
@@ -1249,161 +1567,177 @@ class DFSClient implements FSConstants {
         throw new IOException("Stream closed");
       }
       while (len > 0) {
-        int remaining = Math.min(BUFFER_SIZE - pos,
-                                 (int)((blockSize - bytesWrittenToBlock) - pos));
+        int remaining = Math.min(packetSize - packet.len,
+                                 (int)(blockSize - bytesWrittenToBlock));
         int toWrite = Math.min(remaining, len);
-        System.arraycopy(b, off, outBuf, pos, toWrite);
-        pos += toWrite;
+        System.arraycopy(b, off, packet.buf, packet.len, toWrite);
+        packet.len += toWrite;
         off += toWrite;
         len -= toWrite;
         filePos += toWrite;
+        bytesWrittenToBlock += toWrite;
 
-        if ((bytesWrittenToBlock + pos >= blockSize) ||
-            (pos == BUFFER_SIZE)) {
-          flush();
+        if (packet.len == packetSize || bytesWrittenToBlock == blockSize) {
+          sendPacket();
         }
       }
     }
 
     /**
-     * Flush the buffer, getting a stream to a new block if necessary.
+     * The data is sent in packets as they fill, and a block is only visible
+     * once it is complete, so there is nothing to flush.
      */
     public synchronized void flush() throws IOException {
       checkOpen();
       if (closed) {
         throw new IOException("Stream closed");
       }
+    }
 
-      if (bytesWrittenToBlock + pos >= blockSize) {
-        flushData((int) blockSize - bytesWrittenToBlock);
+    /**
+     * Send the packet being filled to the pipeline, opening a pipeline for
+     * a new block if necessary, and end the block if it is full.
+     */
+    private synchronized void sendPacket() throws IOException {
+      if (s == null) {
+        startBlock();
       }
+      enqueue(packet);
+      packet = new Packet();
       if (bytesWrittenToBlock == blockSize) {
         endBlock();
       }
-      flushData(pos);
+    }
+
+    private void startBlock() throws IOException {
+      nextBlockOutputStream();
+      remainingAttempts = conf.getInt("dfs.client.block.write.retries", 3);
     }
 
     /**
-     * Actually flush the accumulated bytes to the remote node,
-     * but no more bytes than the indicated number.
+     * Send a packet, waiting if too many of the packets sent have not been
+     * acknowledged yet.
      */
-    private synchronized void flushData(int maxPos) throws IOException {
-      int workingPos = Math.min(pos, maxPos);
-            
-      if (workingPos > 0) {
-        if (backupStream == null) {
-          throw new IOException("Trying to write to backupStream " +
-                                "but it already closed or not open");
+    private void enqueue(Packet p) throws IOException {
+      synchronized (ackQueue) {
+        while (ackQueue.size() >= MAX_PACKETS && responseError == null) {
+          try {
+            ackQueue.wait();
+          } catch (InterruptedException ie) {
+          }
         }
-        //
-        // To the local block backup, write just the bytes
-        //
-        backupStream.write(outBuf, 0, workingPos);
+        ackQueue.addLast(p);
+        ackQueue.notifyAll();
+      }
+      try {
+        checkResponse();
+        writePacket(p);
+      } catch (IOException ie) {
+        recoverBlock(ie);
+      }
+      if (progress != null) { progress.progress(); }
+    }
 
-        //
-        // Track position
-        //
-        bytesWrittenToBlock += workingPos;
-        System.arraycopy(outBuf, workingPos, outBuf, 0, pos - workingPos);
-        pos -= workingPos;
+    private void writePacket(Packet p) throws IOException {
+      // heartbeats are sent to the same stream by the response processor
+      synchronized (blockStream) {
+        blockStream.writeLong(p.seqno);
+        blockStream.writeInt(p.len);
+        blockStream.write(p.buf, 0, p.len);
+        blockStream.flush();
+        lastSent = System.currentTimeMillis();
+      }
+    }
+
+    private void checkResponse() throws IOException {
+      synchronized (ackQueue) {
+        if (responseError != null) {
+          IOException ie = responseError;
+          responseError = null;
+          throw ie;
+        }
       }
     }
 
     /**
-     * We're done writing to the current block.
+     * Recover from an error writing to the pipeline, by sending the packets
+     * not acknowledged yet to a new pipeline.  Datanodes after the first one
+     * in the pipeline carry on without the ones after them that fail, so it
+     * is the first one that is dropped.  If no data was acknowledged, the
+     * block is started again on datanodes chosen by the namenode.
      */
-    private synchronized void endBlock() throws IOException {
-      long sleeptime = 400;
-      //
-      // Done with local copy
-      //
-      closeBackupStream();
-
-      //
-      // Send it to datanode
-      //
-      boolean sentOk = false;
-      int remainingAttempts = 
-        conf.getInt("dfs.client.block.write.retries", 3);
-      while (!sentOk) {
-        nextBlockOutputStream();
-        InputStream in = new FileInputStream(backupFile);
+    private void recoverBlock(IOException ie) throws IOException {
+      while (true) {
+        LOG.warn("Error while writing block " + block + " to " + 
+                 datanodeName, ie);
+        response.stop();
+        s = null;
+        synchronized (ackQueue) {
+          responseError = null;
+        }
+        if (--remainingAttempts <= 0) {
+          throw ie;
+        }
         try {
-          byte buf[] = new byte[BUFFER_SIZE];
-          int bytesRead = in.read(buf);
-          while (bytesRead > 0) {
-            blockStream.writeLong((long) bytesRead);
-            blockStream.write(buf, 0, bytesRead);
-            if (progress != null) { progress.progress(); }
-            bytesRead = in.read(buf);
+          Thread.sleep(400);
+        } catch (InterruptedException e) {
+        }
+        if (bytesAcked == 0) {
+          namenode.abandonBlock(block, src.toString());
+          nextBlockOutputStream();
+        } else {
+          boolean connected = false;
+          while (!connected && nodes.length > 1) {
+            DatanodeInfo[] rest = new DatanodeInfo[nodes.length - 1];
+            System.arraycopy(nodes, 1, rest, 0, rest.length);
+            nodes = rest;
+            connected = connect(bytesAcked);
           }
-          internalClose();
-          sentOk = true;
-        } catch (IOException ie) {
-          handleSocketException(ie);
-          remainingAttempts -= 1;
-          if (remainingAttempts == 0) {
-            throw ie;
+          if (!connected) {
+            throw (IOException) new IOException("All datanodes of block " +
+                                                block + " failed").initCause(ie);
           }
-          try {
-            Thread.sleep(sleeptime);
-          } catch (InterruptedException e) {
+        }
+        List<Packet> unacked;
+        synchronized (ackQueue) {
+          unacked = new ArrayList<Packet>(ackQueue);
+        }
+        try {
+          for (Packet p : unacked) {
+            writePacket(p);
           }
-        } finally {
-          in.close();
+          return;
+        } catch (IOException e) {
+          ie = e;
         }
       }
-
-      bytesWrittenToBlock = 0;
-      //
-      // Delete local backup, start new one
-      //
-      deleteBackupFile();
-      File tmpFile = newBackupFile();
-      bytesWrittenToBlock = 0;
-      backupStream = new FileOutputStream(tmpFile);
-      backupFile = tmpFile;
     }
 
     /**
-     * Close down stream to remote datanode.
+     * We're done writing to the current block.
      */
-    private synchronized void internalClose() throws IOException {
-      try {
-        blockStream.writeLong(0);
-        blockStream.flush();
-
-        long complete = blockReplyStream.readLong();
-        if (complete != WRITE_COMPLETE) {
-          LOG.info("Did not receive WRITE_COMPLETE flag: " + complete);
-          throw new IOException("Did not receive WRITE_COMPLETE_FLAG: " + complete);
+    private synchronized void endBlock() throws IOException {
+      if (packet.len > 0) {
+        enqueue(packet);
+        packet = new Packet();
+      }
+      // an empty packet ends the block
+      enqueue(packet);
+      packet = new Packet();
+      while (true) {
+        // wait for all the packets to be acknowledged, and for the reply
+        response.join();
+        try {
+          checkResponse();
+          break;
+        } catch (IOException ie) {
+          recoverBlock(ie);
         }
-      } catch (IOException ie) {
-        throw (IOException)
-          new IOException("failure closing block of file " +
-                          src.toString() + " to node " +
-                          (datanodeName == null ? "?" : datanodeName)
-                          ).initCause(ie);
       }
-                    
-      LocatedBlock lb = new LocatedBlock();
-      lb.readFields(blockReplyStream);
-
       s.close();
       s = null;
-    }
-
-    private void handleSocketException(IOException ie) throws IOException {
-      LOG.warn("Error while writing.", ie);
-      try {
-        if (s != null) {
-          s.close();
-          s = null;
-        }
-      } catch (IOException ie2) {
-        LOG.warn("Error closing socket.", ie2);
-      }
-      namenode.abandonBlock(block, src.toString());
+      bytesWrittenToBlock = 0;
+      bytesAcked = 0;
     }
 
     /**
@@ -1417,9 +1751,11 @@ class DFSClient implements FSConstants {
       }
           
       try {
-        flush();
         if (filePos == 0 || bytesWrittenToBlock != 0) {
           try {
+            if (s == null) {
+              startBlock();
+            }
             endBlock();
           } catch (IOException e) {
             namenode.abandonFileInProgress(src.toString(), clientName);
@@ -1427,11 +1763,8 @@ class DFSClient implements FSConstants {
           }
         }
             
-        closeBackupStream();
-        deleteBackupFile();
-
         if (s != null) {
-          s.close();
+          response.stop();
           s = null;
         }
         super.close();
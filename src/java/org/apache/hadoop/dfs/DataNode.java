@@ -20,11 +20,14 @@ package org.apache.hadoop.dfs;
 import org.apache.commons.logging.*;
 
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.UTF8;
 import org.apache.hadoop.ipc.*;
 import org.apache.hadoop.conf.*;
 import org.apache.hadoop.metrics.MetricsUtil;
 import org.apache.hadoop.net.DNS;
 import org.apache.hadoop.net.NodeBase;
+import org.apache.hadoop.net.SocketInputStream;
+import org.apache.hadoop.net.SocketOutputStream;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
 import org.apache.hadoop.util.DiskChecker.DiskOutOfSpaceException;
@@ -33,6 +36,8 @@ import org.apache.hadoop.net.NetworkTopology;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
 import java.util.*;
 import org.apache.hadoop.metrics.MetricsContext;
 import org.apache.hadoop.metrics.MetricsRecord;
@@ -118,9 +123,10 @@ public class DataNode implements FSConstants, Runnable {
   long lastBlockReport = 0;
   long lastHeartbeat = 0;
   long heartBeatInterval;
+  int packetQueueSize;       // packets of a block received ahead of the disk
   private DataStorage storage = null;
   private StatusHttpServer infoServer = null;
-  private DataNodeMetrics myMetrics = new DataNodeMetrics();
+  DataNodeMetrics myMetrics = new DataNodeMetrics();
   private static InetSocketAddress nameNodeAddr;
   private static DataNode datanodeObject = null;
   private static Thread dataNodeThread = null;
@@ -134,6 +140,13 @@ public class DataNode implements FSConstants, Runnable {
     private int blocksRead = 0;
     private int blocksReplicated = 0;
     private int blocksRemoved = 0;
+    private int connectionsRefused = 0;
+    // the time spent by each stage of the packet pipeline, in nanoseconds
+    private int packetsReceived = 0;
+    private long packetReceiveTime = 0;
+    private long packetMirrorTime = 0;
+    private long packetDiskTime = 0;
+    private long packetAckTime = 0;
       
     DataNodeMetrics() {
       MetricsContext context = MetricsUtil.getContext("dfs");
@@ -153,6 +166,12 @@ public class DataNode implements FSConstants, Runnable {
         metricsRecord.incrMetric("blocks_written", blocksWritten);
         metricsRecord.incrMetric("blocks_replicated", blocksReplicated);
         metricsRecord.incrMetric("blocks_removed", blocksRemoved);
+        metricsRecord.incrMetric("connections_refused", connectionsRefused);
+        metricsRecord.incrMetric("packets_received", packetsReceived);
+        metricsRecord.incrMetric("packet_receive_time", millis(packetReceiveTime));
+        metricsRecord.incrMetric("packet_mirror_time", millis(packetMirrorTime));
+        metricsRecord.incrMetric("packet_disk_time", millis(packetDiskTime));
+        metricsRecord.incrMetric("packet_ack_time", millis(packetAckTime));
               
         bytesWritten = 0;
         bytesRead = 0;
@@ -160,10 +179,20 @@ public class DataNode implements FSConstants, Runnable {
         blocksRead = 0;
         blocksReplicated = 0;
         blocksRemoved = 0;
+        connectionsRefused = 0;
+        packetsReceived = 0;
+        packetReceiveTime = 0;
+        packetMirrorTime = 0;
+        packetDiskTime = 0;
+        packetAckTime = 0;
       }
       metricsRecord.update();
     }
 
+    private int millis(long nanos) {
+      return (int) (nanos / 1000000);
+    }
+
     synchronized void readBytes(int nbytes) {
       bytesRead += nbytes;
     }
@@ -187,6 +216,31 @@ public class DataNode implements FSConstants, Runnable {
     synchronized void removedBlocks(int nblocks) {
       blocksRemoved += nblocks;
     }
+
+    synchronized void refusedConnections(int nconnections) {
+      connectionsRefused += nconnections;
+    }
+
+    /** A packet was read from upstream, in the given time. */
+    synchronized void receivedPacket(long nanos) {
+      packetsReceived++;
+      packetReceiveTime += nanos;
+    }
+
+    /** A packet was forwarded to the next datanode, in the given time. */
+    synchronized void mirroredPacket(long nanos) {
+      packetMirrorTime += nanos;
+    }
+
+    /** A packet was written to disk, in the given time. */
+    synchronized void wrotePacket(long nanos) {
+      packetDiskTime += nanos;
+    }
+
+    /** A packet was acknowledged by the next datanode, after that wait. */
+    synchronized void ackedPacket(long nanos) {
+      packetAckTime += nanos;
+    }
   }
     
   /**
@@ -233,15 +287,19 @@ public class DataNode implements FSConstants, Runnable {
     this.data = new FSDataset(storage, conf);
       
     // find free port
-    ServerSocket ss = null;
+    ServerSocketChannel ss = null;
     int tmpPort = conf.getInt("dfs.datanode.port", 50010);
     String bindAddress = conf.get("dfs.datanode.bindAddress", "0.0.0.0");
     while (ss == null) {
+      ss = ServerSocketChannel.open();
       try {
-        ss = new ServerSocket(tmpPort, 0, InetAddress.getByName(bindAddress));
+        ss.socket().bind(new InetSocketAddress(InetAddress.getByName(bindAddress),
+                                               tmpPort));
         LOG.info("Opened server at " + tmpPort);
       } catch (IOException ie) {
         LOG.info("Could not open server at " + tmpPort + ", trying new port");
+        ss.close();
+        ss = null;
         tmpPort++;
       }
     }
@@ -251,13 +309,16 @@ public class DataNode implements FSConstants, Runnable {
                                                    -1,   // info port determined later
                                                    storage);
       
-    this.dataXceiveServer = new Daemon(new DataXceiveServer(ss));
+    this.dataXceiveServer = new Daemon(new DataXceiveServer(ss, 
+                                         conf.getInt("dfs.datanode.max.xceivers", 256),
+                                         conf.getInt("dfs.datanode.xceiver.queue.size", 64)));
 
     long blockReportIntervalBasis =
       conf.getLong("dfs.blockreport.intervalMsec", BLOCKREPORT_INTERVAL);
     this.blockReportInterval =
       blockReportIntervalBasis - new Random().nextInt((int)(blockReportIntervalBasis/10));
     this.heartBeatInterval = conf.getLong("dfs.heartbeat.interval", HEARTBEAT_INTERVAL) * 1000L;
+    this.packetQueueSize = conf.getInt("dfs.datanode.packet.queue.size", 8);
     DataNode.nameNodeAddr = nameNodeAddr;
 
     //create a servlet to serve full-file content
@@ -431,6 +492,9 @@ public class DataNode implements FSConstants, Runnable {
   }
     
   Count xceiverCount = new Count(0);
+  // the xceivers writing blocks, to be stopped if a block is continued
+  Map<Block, DataXceiver> blockWriters = 
+    new HashMap<Block, DataXceiver>();
     
   /**
    * Main loop for the DataNode.  Runs until shutdown,
@@ -604,44 +668,230 @@ public class DataNode implements FSConstants, Runnable {
    * Server used for receiving/sending a block of data.
    * This is created to listen for requests from clients or 
    * other DataNodes.  This small server does not use the 
-   * Hadoop IPC mechanism.
+   * Hadoop IPC mechanism.  Connections are accepted by a selector and
+   * served by a bounded pool of handler threads, behind a bounded queue.
+   * The connections refused once the queue is full are told this datanode
+   * is busy by the selector thread.
    */
   class DataXceiveServer implements Runnable {
-    ServerSocket ss;
-    public DataXceiveServer(ServerSocket ss) {
-      this.ss = ss;
+    private ServerSocketChannel acceptChannel;
+    private Selector selector;
+    private int maxHandlers;
+    private int maxPending;
+
+    // the connections accepted and not served yet
+    private LinkedList<SocketChannel> pending = new LinkedList<SocketChannel>();
+    private int handlers = 0;               // threads serving connections
+    private int idleHandlers = 0;           // threads waiting for one
+
+    // to drop what refused connections send
+    private ByteBuffer drain = ByteBuffer.allocate(BUFFER_SIZE);
+
+    public DataXceiveServer(ServerSocketChannel acceptChannel, 
+                            int maxHandlers, int maxPending
+                            ) throws IOException {
+      this.acceptChannel = acceptChannel;
+      this.maxHandlers = maxHandlers;
+      this.maxPending = maxPending;
+      acceptChannel.configureBlocking(false);
+      selector = Selector.open();
+      acceptChannel.register(selector, SelectionKey.OP_ACCEPT);
     }
 
     /**
+     * Accept connections as the selector reports them, and queue them for
+     * the handler threads.
      */
     public void run() {
       try {
         while (shouldRun) {
-          Socket s = ss.accept();
-          //s.setSoTimeout(READ_TIMEOUT);
-          xceiverCount.incr();
-          new Daemon(new DataXceiver(s)).start();
+          // refused connections are waited for a little at most
+          boolean refusing = selector.keys().size() > 1;
+          selector.select(refusing ? BUSY_RETRY_INTERVAL : 0);
+          Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+          while (iter.hasNext()) {
+            SelectionKey key = iter.next();
+            iter.remove();
+            if (key.isValid() && key.isAcceptable()) {
+              SocketChannel channel;
+              while ((channel = acceptChannel.accept()) != null) {
+                if (!dispatch(channel)) {
+                  refuse(channel);
+                }
+              }
+            } else if (key.isValid() && key.isReadable()) {
+              drainRefused(key);
+            }
+          }
+          if (refusing) {
+            closeRefused(false);
+          }
         }
-        ss.close();
       } catch (IOException ie) {
         LOG.info("Exiting DataXceiveServer due to " + ie.toString());
+      } catch (ClosedSelectorException cse) {
+        LOG.info("Exiting DataXceiveServer due to " + cse.toString());
+      } finally {
+        try {
+          acceptChannel.close();
+          closeRefused(true);
+          selector.close();
+        } catch (IOException ie) {
+        } catch (ClosedSelectorException cse) {
+        }
+        // stop the idle handlers, and drop the connections not served
+        synchronized (pending) {
+          for (SocketChannel channel : pending) {
+            xceiverCount.decr();
+            try {
+              channel.close();
+            } catch (IOException ie) {
+            }
+          }
+          pending.clear();
+          pending.notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Queue a connection to be served, starting a handler thread for it if
+     * none is idle and there are fewer than maxHandlers.
+     * @return false if maxPending connections wait for a handler already,
+     *         and the connection is refused
+     */
+    private boolean dispatch(SocketChannel channel) {
+      synchronized (pending) {
+        if (handlers >= maxHandlers && 
+            pending.size() - idleHandlers >= maxPending) {
+          LOG.warn("Refusing connection from " + 
+                   channel.socket().getInetAddress() + ": " + handlers + 
+                   " handlers busy and " + pending.size() + 
+                   " connections queued");
+          myMetrics.refusedConnections(1);
+          return false;
+        }
+        xceiverCount.incr();
+        pending.addLast(channel);
+        if (pending.size() > idleHandlers && handlers < maxHandlers) {
+          handlers++;
+          new Daemon(new Handler()).start();
+        }
+        pending.notify();
+      }
+      return true;
+    }
+
+    /**
+     * Reply DATANODE_BUSY to a connection refused, so that clients and
+     * datanodes try again a little later rather than take this datanode
+     * for failed.  What the other end sends is then read and dropped until
+     * it closes the connection, or for READ_TIMEOUT at most: closing a
+     * connection with data unread resets it, which could lose the reply.
+     */
+    private void refuse(SocketChannel channel) {
+      try {
+        channel.configureBlocking(false);
+        ByteBuffer busy = ByteBuffer.allocate(8);
+        busy.putLong(DATANODE_BUSY);
+        busy.flip();
+        // a new connection has room for it
+        channel.write(busy);
+        channel.socket().shutdownOutput();
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        channel.register(selector, SelectionKey.OP_READ, Long.valueOf(deadline));
+      } catch (IOException ie) {
+        try {
+          channel.close();
+        } catch (IOException ie2) {
+        }
+      }
+    }
+
+    private void drainRefused(SelectionKey key) {
+      SocketChannel channel = (SocketChannel) key.channel();
+      try {
+        int n;
+        do {
+          drain.clear();
+          n = channel.read(drain);
+        } while (n > 0);
+        if (n == 0) {
+          return;
+        }
+      } catch (IOException ie) {
+      }
+      key.cancel();
+      try {
+        channel.close();
+      } catch (IOException ie) {
+      }
+    }
+
+    /**
+     * Close the refused connections which timed out, or all of them.
+     */
+    private void closeRefused(boolean all) {
+      long now = System.currentTimeMillis();
+      for (SelectionKey key : selector.keys()) {
+        Long deadline = (Long) key.attachment();
+        if (deadline != null && (all || deadline.longValue() <= now)) {
+          key.cancel();
+          try {
+            key.channel().close();
+          } catch (IOException ie) {
+          }
+        }
       }
     }
+
     public void kill() {
       assert shouldRun == false :
         "shoudRun should be set to false before killing";
       try {
-        this.ss.close();
+        this.acceptChannel.close();
       } catch (IOException iex) {
       }
+      selector.wakeup();
+    }
+
+    /**
+     * Serves the queued connections one after the other.
+     */
+    class Handler implements Runnable {
+      public void run() {
+        while (true) {
+          SocketChannel channel;
+          synchronized (pending) {
+            idleHandlers++;
+            while (shouldRun && pending.isEmpty()) {
+              try {
+                pending.wait();
+              } catch (InterruptedException ie) {
+              }
+            }
+            idleHandlers--;
+            if (pending.isEmpty()) {
+              handlers--;
+              return;
+            }
+            channel = pending.removeFirst();
+          }
+          new DataXceiver(channel.socket()).run();
+        }
+      }
     }
   }
 
   /**
-   * Thread for processing incoming/outgoing data stream
+   * Thread for processing incoming/outgoing data stream.  The socket is
+   * read and written through non-blocking streams, so that a block is
+   * received and acknowledged at the same time, and a connection idle for
+   * READ_TIMEOUT is dropped.
    */
   class DataXceiver implements Runnable {
     Socket s;
+    private SocketOutputStream sockOut;
     public DataXceiver(Socket s) {
       this.s = s;
       LOG.debug("Number of active connections is: "+xceiverCount);
@@ -652,7 +902,10 @@ public class DataNode implements FSConstants, Runnable {
      */
     public void run() {
       try {
-        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        SocketChannel channel = s.getChannel();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new SocketInputStream(channel, READ_TIMEOUT)));
+        sockOut = new SocketOutputStream(channel, 0);
         try {
           byte op = (byte) in.read();
           if (op == OP_WRITE_BLOCK) {
@@ -660,6 +913,8 @@ public class DataNode implements FSConstants, Runnable {
           } else if (op == OP_READ_BLOCK || op == OP_READSKIP_BLOCK ||
                      op == OP_READ_RANGE_BLOCK) {
             readBlock(in, op);
+          } else if (op == OP_BLOCK_PATH) {
+            sendBlockPath(in);
           } else {
             while (op >= 0) {
               System.out.println("Faulty op: " + op);
@@ -669,6 +924,7 @@ public class DataNode implements FSConstants, Runnable {
           }
         } finally {
           in.close();
+          sockOut.close();
         }
       } catch (Throwable t) {
         LOG.error("DataXCeiver", t);
@@ -707,7 +963,7 @@ public class DataNode implements FSConstants, Runnable {
       //
       // Open reply stream
       //
-      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(sockOut));
       try {
         //
         // Write filelen of -1 if error
@@ -720,7 +976,8 @@ public class DataNode implements FSConstants, Runnable {
           //
           long len = data.getLength(b);
           if (endOffset < 0) { endOffset = len; }
-          DataInputStream in2 = new DataInputStream(data.getBlockData(b));
+          InputStream blockIn = data.getBlockData(b);
+          DataInputStream in2 = new DataInputStream(blockIn);
           out.writeLong(len);
 
           long amtSkipped = 0;
@@ -743,39 +1000,80 @@ public class DataNode implements FSConstants, Runnable {
             out.writeLong(endOffset);
           }
 
-          byte buf[] = new byte[BUFFER_SIZE];
-          try {
-            int toRead = (int) (endOffset - amtSkipped + 1);
-            int bytesRead = 0;
+          if (blockIn instanceof FileInputStream) {
+            //
+            // Send the block file straight to the socket, without copying
+            // it through this process
+            //
+            out.flush();
+            FileChannel blockCh = ((FileInputStream) blockIn).getChannel();
+            long position = amtSkipped;
+            long end = Math.min(endOffset + 1, len);
             try {
-              bytesRead = in2.read(buf, 0, Math.min(BUFFER_SIZE, toRead));
-              myMetrics.readBytes(bytesRead);
-            } catch (IOException iex) {
-              shutdown();
-              throw iex;
-            }
-            while (toRead > 0 && bytesRead >= 0) {
-              out.write(buf, 0, bytesRead);
-              toRead -= bytesRead;
-              if (toRead > 0) {
+              while (position < end) {
+                long sent;
                 try {
-                  bytesRead = in2.read(buf, 0, Math.min(BUFFER_SIZE, toRead));
-                  myMetrics.readBytes(bytesRead);
-                } catch (IOException iex) {
-                  shutdown();
-                  throw iex;
+                  sent = sockOut.transferTo(blockCh, position, end - position);
+                } catch (EOFException eof) {
+                  // the block file is shorter than its length; as when
+                  // copying it, the reader gets what there is
+                  LOG.warn("Sending block " + b + " to " + 
+                           s.getInetAddress() + " failed: " + eof);
+                  break;
+                } catch (IOException ie) {
+                  checkBlockFile(blockCh, position, ie);
+                  // This might be because the reader
+                  // closed the stream early
+                  LOG.debug("Sending block " + b + " to " + 
+                            s.getInetAddress() + " failed: " + ie);
+                  break;
                 }
+                myMetrics.readBytes((int) sent);
+                position += sent;
+              }
+            } finally {
+              try {
+                in2.close();
+              } catch (IOException iex) {
+                shutdown();
+                throw iex;
               }
             }
-          } catch (SocketException se) {
-            // This might be because the reader
-            // closed the stream early
-          } finally {
+          } else {
+            byte buf[] = new byte[BUFFER_SIZE];
             try {
-              in2.close();
-            } catch (IOException iex) {
-              shutdown();
-              throw iex;
+              int toRead = (int) (endOffset - amtSkipped + 1);
+              int bytesRead = 0;
+              try {
+                bytesRead = in2.read(buf, 0, Math.min(BUFFER_SIZE, toRead));
+                myMetrics.readBytes(bytesRead);
+              } catch (IOException iex) {
+                shutdown();
+                throw iex;
+              }
+              while (toRead > 0 && bytesRead >= 0) {
+                out.write(buf, 0, bytesRead);
+                toRead -= bytesRead;
+                if (toRead > 0) {
+                  try {
+                    bytesRead = in2.read(buf, 0, Math.min(BUFFER_SIZE, toRead));
+                    myMetrics.readBytes(bytesRead);
+                  } catch (IOException iex) {
+                    shutdown();
+                    throw iex;
+                  }
+                }
+              }
+            } catch (SocketException se) {
+              // This might be because the reader
+              // closed the stream early
+            } finally {
+              try {
+                in2.close();
+              } catch (IOException iex) {
+                shutdown();
+                throw iex;
+              }
             }
           }
         }
@@ -786,6 +1084,53 @@ public class DataNode implements FSConstants, Runnable {
       }
     }
 
+    /**
+     * Tell apart a transfer of a block file that failed because the file
+     * could not be read from one that failed on the socket, by reading the
+     * file where the transfer stopped.  A file which can't be read is
+     * handled as when copying it: the datanode is shut down and the error
+     * of the transfer thrown.
+     */
+    private void checkBlockFile(FileChannel blockCh, long position,
+                                IOException transferError) throws IOException {
+      try {
+        blockCh.read(ByteBuffer.allocate(1), position);
+      } catch (IOException iex) {
+        LOG.warn("Failed to read block file at " + position + ": " + iex);
+        shutdown();
+        throw transferError;
+      }
+    }
+
+    /**
+     * Send the length and the path of a block file to a client on this
+     * machine, which then reads the file itself.  The length is -1 if the
+     * block is not valid or the client is on another machine.
+     * @param in The stream to read from
+     * @throws IOException
+     */
+    private void sendBlockPath(DataInputStream in) throws IOException {
+      Block b = new Block();
+      b.readFields(in);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(sockOut));
+      try {
+        if (!s.getInetAddress().equals(s.getLocalAddress()) && 
+            !s.getInetAddress().isLoopbackAddress()) {
+          LOG.warn("Refusing the path of block " + b + " to remote client " + 
+                   s.getInetAddress());
+          out.writeLong(-1);
+        } else if (!data.isValidBlock(b)) {
+          out.writeLong(-1);
+        } else {
+          out.writeLong(data.getLength(b));
+          UTF8.writeString(out, data.getFile(b).getAbsolutePath());
+          LOG.debug("Sent the path of block " + b + " to " + s.getInetAddress());
+        }
+      } finally {
+        out.close();
+      }
+    }
+
     /**
      * Write a block to disk.
      * @param in The stream to read from
@@ -796,10 +1141,11 @@ public class DataNode implements FSConstants, Runnable {
       // Read in the header
       //
       DataOutputStream reply = 
-        new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        new DataOutputStream(new BufferedOutputStream(sockOut));
+      Block b = null;
       try {
         boolean shouldReportBlock = in.readBoolean();
-        Block b = new Block();
+        b = new Block();
         b.readFields(in);
         int numTargets = in.readInt();
         if (numTargets <= 0) {
@@ -812,6 +1158,7 @@ public class DataNode implements FSConstants, Runnable {
           targets[i] = tmp;
         }
         byte encodingType = (byte) in.read();
+        // the length of the data, or where in the block packets start
         long len = in.readLong();
             
         //
@@ -825,182 +1172,63 @@ public class DataNode implements FSConstants, Runnable {
         Vector<DatanodeInfo> mirrors = new Vector<DatanodeInfo>();
             
         //
-        // Open local disk out
+        // Open local disk out.  A block continued after a failure in the
+        // pipeline is first taken from the xceiver which was writing it.
         //
         OutputStream o;
         try {
-          o = data.writeToBlock(b);
+          if (encodingType == PACKET_ENCODING && len > 0) {
+            stopWriter(b);
+            o = data.continueBlock(b, len);
+          } else {
+            if (shouldReportBlock) {
+              // a block the namenode asks for is complete on other
+              // datanodes, so a write of it left unfinished here, by a
+              // pipeline this datanode failed in, was abandoned
+              stopWriter(b);
+              data.removeUnfinishedBlock(b);
+            }
+            o = data.writeToBlock(b);
+          }
         } catch( IOException e ) {
           checkDiskError( e );
           throw e;
         }
-        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(o));
-        InetSocketAddress mirrorTarget = null;
-        String mirrorNode = null;
+        synchronized (blockWriters) {
+          blockWriters.put(b, this);
+        }
+        BlockReceiver receiver = 
+          new BlockReceiver(s, in, new DataOutputStream(new BufferedOutputStream(o)));
         try {
           //
           // Open network conn to backup machine, if 
           // appropriate
           //
-          DataInputStream in2 = null;
-          DataOutputStream out2 = null;
           if (targets.length > 1) {
-            // Connect to backup machine
-            mirrorNode = targets[1].getName();
-            mirrorTarget = createSocketAddr(mirrorNode);
-            try {
-              Socket s2 = new Socket();
-              s2.connect(mirrorTarget, READ_TIMEOUT);
-              s2.setSoTimeout(READ_TIMEOUT);
-              out2 = new DataOutputStream(new BufferedOutputStream(s2.getOutputStream()));
-              in2 = new DataInputStream(new BufferedInputStream(s2.getInputStream()));
-                  
-              // Write connection header
-              out2.write(OP_WRITE_BLOCK);
-              out2.writeBoolean(shouldReportBlock);
-              b.write(out2);
-              out2.writeInt(targets.length - 1);
-              for (int i = 1; i < targets.length; i++) {
-                targets[i].write(out2);
-              }
-              out2.write(encodingType);
-              out2.writeLong(len);
-              myMetrics.replicatedBlocks(1);
-            } catch (IOException ie) {
-              if (out2 != null) {
-                LOG.info("Exception connecting to mirror " + mirrorNode 
-                         + "\n" + StringUtils.stringifyException(ie));
-                try {
-                  out2.close();
-                  in2.close();
-                } catch (IOException out2close) {
-                } finally {
-                  out2 = null;
-                  in2 = null;
-                }
-              }
-            }
-          }
-              
-          //
-          // Process incoming data, copy to disk and
-          // maybe to network. First copy to the network before
-          // writing to local disk so that all datanodes might
-          // write to local disk in parallel.
-          //
-          boolean anotherChunk = len != 0;
-          byte buf[] = new byte[BUFFER_SIZE];
-              
-          while (anotherChunk) {
-            while (len > 0) {
-              int bytesRead = in.read(buf, 0, (int)Math.min(buf.length, len));
-              if (bytesRead < 0) {
-                throw new EOFException("EOF reading from "+s.toString());
-              }
-              if (bytesRead > 0) {
-                if (out2 != null) {
-                  try {
-                    out2.write(buf, 0, bytesRead);
-                  } catch (IOException out2e) {
-                    LOG.info("Exception writing to mirror " + mirrorNode 
-                             + "\n" + StringUtils.stringifyException(out2e));
-                    //
-                    // If stream-copy fails, continue 
-                    // writing to disk.  We shouldn't 
-                    // interrupt client write.
-                    //
-                    try {
-                      out2.close();
-                      in2.close();
-                    } catch (IOException out2close) {
-                    } finally {
-                      out2 = null;
-                      in2 = null;
-                    }
-                  }
-                }
-                try {
-                  out.write(buf, 0, bytesRead);
-                  myMetrics.wroteBytes(bytesRead);
-                } catch (IOException iex) {
-                  checkDiskError(iex);
-                  throw iex;
-                }
-                len -= bytesRead;
-              }
-            }
-                
-            if (encodingType == RUNLENGTH_ENCODING) {
-              anotherChunk = false;
-            } else if (encodingType == CHUNKED_ENCODING) {
-              len = in.readLong();
-              if (out2 != null) {
-                try {
-                  out2.writeLong(len);
-                } catch (IOException ie) {
-                  LOG.info("Exception writing to mirror " + mirrorNode 
-                           + "\n" + StringUtils.stringifyException(ie));
-                  try {
-                    out2.close();
-                    in2.close();
-                  } catch (IOException ie2) {
-                    // NOTHING
-                  } finally {
-                    out2 = null;
-                    in2 = null;
-                  }
-                }
-              }
-              if (len == 0) {
-                anotherChunk = false;
-              }
-            }
+            receiver.connectMirror(targets, shouldReportBlock, b, 
+                                   encodingType, len);
           }
               
-          if (out2 != null) {
-            try {
-              out2.flush();
-              long complete = in2.readLong();
-              if (complete != WRITE_COMPLETE) {
-                LOG.info("Conflicting value for WRITE_COMPLETE: " + complete);
-              }
-              LocatedBlock newLB = new LocatedBlock();
-              newLB.readFields(in2);
-              in2.close();
-              out2.close();
-              DatanodeInfo mirrorsSoFar[] = newLB.getLocations();
-              for (int k = 0; k < mirrorsSoFar.length; k++) {
-                mirrors.add(mirrorsSoFar[k]);
-              }
-            } catch (IOException ie) {
-              LOG.info("Exception writing to mirror " + mirrorNode 
-                       + "\n" + StringUtils.stringifyException(ie));
-              try {
-                out2.close();
-                in2.close();
-              } catch (IOException ie2) {
-                // NOTHING
-              } finally {
-                out2 = null;
-                in2 = null;
-              }
-            }
+          if (encodingType == PACKET_ENCODING) {
+            // a block written in packets is acknowledged from the start,
+            // which tells the writer the connection was not refused
+            reply.writeLong(WRITE_STARTED);
+            reply.flush();
+            receiver.receivePackets(reply);
+          } else {
+            receiver.receiveChunks(encodingType, len);
           }
-          if (out2 == null) {
+          receiver.closeMirror(mirrors);
+          if (receiver.mirrorTarget == null) {
             LOG.info("Received block " + b + " from " + 
                      s.getInetAddress());
           } else {
             LOG.info("Received block " + b + " from " + 
                      s.getInetAddress() + 
-                     " and mirrored to " + mirrorTarget);
+                     " and mirrored to " + receiver.mirrorTarget);
           }
         } finally {
-          try {
-            out.close();
-          } catch (IOException iex) {
-            checkDiskError(iex);
-            throw iex;
-          }
+          receiver.close();
         }
         data.finalizeBlock(b);
         myMetrics.wroteBlocks(1);
@@ -1027,9 +1255,528 @@ public class DataNode implements FSConstants, Runnable {
         LocatedBlock newLB = new LocatedBlock(b, mirrors.toArray(new DatanodeInfo[mirrors.size()]));
         newLB.write(reply);
       } finally {
+        if (b != null) {
+          synchronized (blockWriters) {
+            if (blockWriters.get(b) == this) {
+              blockWriters.remove(b);
+              blockWriters.notifyAll();
+            }
+          }
+        }
         reply.close();
       }
     }
+
+    /**
+     * Stop the xceiver writing the given block, if any, and wait for it.
+     */
+    private void stopWriter(Block b) {
+      DataXceiver writer;
+      synchronized (blockWriters) {
+        writer = blockWriters.get(b);
+      }
+      if (writer != null) {
+        LOG.info("Stopping the write of block " + b + " from " + 
+                 writer.s.getInetAddress());
+        try {
+          writer.s.close();
+        } catch (IOException ie) {
+        }
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        synchronized (blockWriters) {
+          long remaining;
+          while (blockWriters.get(b) == writer && 
+                 (remaining = deadline - System.currentTimeMillis()) > 0) {
+            try {
+              blockWriters.wait(remaining);
+            } catch (InterruptedException ie) {
+              break;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Receives the data of a block, and writes it to disk as well as to the
+   * next datanode of the pipeline, if any.  If writing to the next datanode
+   * fails the block is still written to disk: we shouldn't interrupt the
+   * client write.
+   */
+  class BlockReceiver {
+    private Socket s;                     // to the client or datanode
+    private DataInputStream in;           // from the client or datanode
+    private DataOutputStream out;         // to the block file
+    private byte buf[] = new byte[BUFFER_SIZE];
+
+    // the next datanode of the pipeline, closed if it fails
+    InetSocketAddress mirrorTarget;
+    private String mirrorNode;
+    private volatile DataOutputStream mirrorOut;
+    private volatile DataInputStream mirrorIn;
+
+    BlockReceiver(Socket s, DataInputStream in, DataOutputStream out) {
+      this.s = s;
+      this.in = in;
+      this.out = out;
+    }
+
+    /**
+     * Connect to the next datanode of the pipeline, and pass the header on
+     * to it.  For a block written in packets, the next datanode replies
+     * once it has started the block in turn, and is connected to again a
+     * few times if it replies it is busy.
+     */
+    void connectMirror(DatanodeInfo targets[], boolean shouldReportBlock,
+                       Block b, byte encodingType, long len) {
+      mirrorNode = targets[1].getName();
+      try {
+        mirrorTarget = createSocketAddr(mirrorNode);
+        for (int attempt = 1; ; attempt++) {
+          Socket s2 = new Socket();
+          s2.connect(mirrorTarget, READ_TIMEOUT);
+          // the reply waits for the datanodes after the next one
+          s2.setSoTimeout((targets.length - 1) * READ_TIMEOUT);
+          mirrorOut = new DataOutputStream(new BufferedOutputStream(s2.getOutputStream()));
+          mirrorIn = new DataInputStream(new BufferedInputStream(s2.getInputStream()));
+                  
+          // Write connection header
+          mirrorOut.write(OP_WRITE_BLOCK);
+          mirrorOut.writeBoolean(shouldReportBlock);
+          b.write(mirrorOut);
+          mirrorOut.writeInt(targets.length - 1);
+          for (int i = 1; i < targets.length; i++) {
+            targets[i].write(mirrorOut);
+          }
+          mirrorOut.write(encodingType);
+          mirrorOut.writeLong(len);
+          if (encodingType != PACKET_ENCODING) {
+            break;
+          }
+          mirrorOut.flush();
+          long status = mirrorIn.readLong();
+          if (status == WRITE_STARTED) {
+            break;
+          } else if (status != DATANODE_BUSY) {
+            throw new IOException("Unexpected reply " + status + 
+                                  " to the header of block " + b);
+          } else if (attempt >= BUSY_RETRIES) {
+            throw new DatanodeBusyException("Mirror " + mirrorNode + 
+                                            " still busy after " + attempt +
+                                            " attempts");
+          }
+          LOG.info("Mirror " + mirrorNode + " is busy, connecting again");
+          s2.close();
+          try {
+            Thread.sleep(BUSY_RETRY_INTERVAL);
+          } catch (InterruptedException ie) {
+            throw new IOException("Interrupted connecting to " + mirrorNode);
+          }
+        }
+        myMetrics.replicatedBlocks(1);
+      } catch (IOException ie) {
+        mirrorFailed(ie);
+      }
+    }
+
+    /**
+     * Stop writing to the next datanode, after it failed.
+     */
+    synchronized void mirrorFailed(IOException ie) {
+      if (mirrorOut != null) {
+        LOG.info("Exception writing to mirror " + mirrorNode 
+                 + "\n" + StringUtils.stringifyException(ie));
+        try {
+          mirrorOut.close();
+          mirrorIn.close();
+        } catch (IOException out2close) {
+        } finally {
+          mirrorOut = null;
+          mirrorIn = null;
+        }
+      }
+    }
+
+    /**
+     * Copy data to the next datanode, if it has not failed.
+     */
+    private void mirror(byte[] b, int off, int len) {
+      DataOutputStream mout = mirrorOut;
+      if (mout != null) {
+        try {
+          mout.write(b, off, len);
+        } catch (IOException ie) {
+          mirrorFailed(ie);
+        }
+      }
+    }
+
+    private void mirrorLong(long l) {
+      DataOutputStream mout = mirrorOut;
+      if (mout != null) {
+        try {
+          mout.writeLong(l);
+        } catch (IOException ie) {
+          mirrorFailed(ie);
+        }
+      }
+    }
+
+    /**
+     * Write data to disk.
+     */
+    private void write(byte[] b, int off, int len) throws IOException {
+      try {
+        out.write(b, off, len);
+        myMetrics.wroteBytes(len);
+      } catch (IOException iex) {
+        checkDiskError(iex);
+        throw iex;
+      }
+    }
+
+    /**
+     * Receive the data of a block in one piece, or in chunks each preceded
+     * by its length.  Data is copied to the network before being written
+     * to local disk, so that all datanodes might write to local disk in
+     * parallel.
+     */
+    void receiveChunks(byte encodingType, long len) throws IOException {
+      boolean anotherChunk = len != 0;
+      while (anotherChunk) {
+        while (len > 0) {
+          int bytesRead = in.read(buf, 0, (int)Math.min(buf.length, len));
+          if (bytesRead < 0) {
+            throw new EOFException("EOF reading from "+s.toString());
+          }
+          if (bytesRead > 0) {
+            mirror(buf, 0, bytesRead);
+            write(buf, 0, bytesRead);
+            len -= bytesRead;
+          }
+        }
+                
+        if (encodingType == RUNLENGTH_ENCODING) {
+          anotherChunk = false;
+        } else if (encodingType == CHUNKED_ENCODING) {
+          len = in.readLong();
+          mirrorLong(len);
+          if (len == 0) {
+            anotherChunk = false;
+          }
+        }
+      }
+    }
+
+    /**
+     * Receive the data of a block in numbered packets, each preceded by its
+     * number and length, and ended with an empty packet.  The receiving
+     * thread only reads packets and forwards them to the next datanode:
+     * a writer thread writes them to disk meanwhile, and a responder
+     * thread acknowledges them upstream once they are on disk here and
+     * acknowledged by the next datanode.  At most packetQueueSize packets
+     * are received ahead of the disk.  Empty packets numbered
+     * HEARTBEAT_SEQNO keep the connections from timing out while the
+     * writer is idle: they are only passed on to the next datanode.
+     */
+    void receivePackets(DataOutputStream reply) throws IOException {
+      PacketResponder responder = new PacketResponder(reply);
+      PacketWriter writer = new PacketWriter(responder);
+      Daemon responderThread = new Daemon(responder);
+      Daemon writerThread = new Daemon(writer);
+      responderThread.start();
+      writerThread.start();
+      try {
+        boolean lastPacket = false;
+        while (!lastPacket) {
+          Packet p = writer.getFreePacket();
+          long start = System.nanoTime();
+          p.seqno = in.readLong();
+          int len = in.readInt();
+          if (len < 0) {
+            throw new IOException("Bad length " + len + " of packet " + 
+                                  p.seqno + " from " + s.getInetAddress());
+          }
+          if (len > p.buf.length) {
+            p.buf = new byte[len];
+          }
+          in.readFully(p.buf, 0, len);
+          p.len = len;
+          boolean heartbeat = (p.seqno == HEARTBEAT_SEQNO && len == 0);
+          long received = System.nanoTime();
+          myMetrics.receivedPacket(received - start);
+          DataOutputStream mout = mirrorOut;
+          if (mout != null) {
+            try {
+              mout.writeLong(p.seqno);
+              mout.writeInt(len);
+              mout.write(p.buf, 0, len);
+              mout.flush();
+              myMetrics.mirroredPacket(System.nanoTime() - received);
+            } catch (IOException ie) {
+              mirrorFailed(ie);
+            }
+          }
+          if (heartbeat) {
+            writer.release(p);
+          } else {
+            lastPacket = (len == 0);
+            writer.enqueue(p);
+          }
+        }
+        writerThread.join();
+        writer.checkError();
+        responderThread.join();
+      } catch (InterruptedException ie) {
+        throw new IOException("Interrupted receiving block from " + 
+                              s.getInetAddress());
+      } finally {
+        writer.close();
+        responder.close();
+      }
+      writer.checkError();
+      responder.checkError();
+    }
+
+    /**
+     * Read the reply of the next datanode, once it has all the block, and
+     * add the datanodes it wrote the block to.
+     */
+    void closeMirror(Vector<DatanodeInfo> mirrors) {
+      DataOutputStream mout = mirrorOut;
+      DataInputStream min = mirrorIn;
+      if (mout != null) {
+        try {
+          mout.flush();
+          long complete = min.readLong();
+          if (complete == DATANODE_BUSY) {
+            throw new DatanodeBusyException("Mirror " + mirrorNode + 
+                                            " was busy and refused the block");
+          }
+          if (complete != WRITE_COMPLETE) {
+            LOG.info("Conflicting value for WRITE_COMPLETE: " + complete);
+          }
+          LocatedBlock newLB = new LocatedBlock();
+          newLB.readFields(min);
+          min.close();
+          mout.close();
+          mirrorIn = null;
+          mirrorOut = null;
+          DatanodeInfo mirrorsSoFar[] = newLB.getLocations();
+          for (int k = 0; k < mirrorsSoFar.length; k++) {
+            mirrors.add(mirrorsSoFar[k]);
+          }
+        } catch (IOException ie) {
+          mirrorFailed(ie);
+        }
+      }
+    }
+
+    /**
+     * Close the block file, and the connection to the next datanode if
+     * the block was not received in full.
+     */
+    void close() throws IOException {
+      mirrorFailed(new IOException("Block not received in full"));
+      try {
+        out.close();
+      } catch (IOException iex) {
+        checkDiskError(iex);
+        throw iex;
+      }
+    }
+
+    /**
+     * A packet of a block, passed from the receiving thread to the writer.
+     */
+    class Packet {
+      long seqno;
+      byte[] buf = new byte[BUFFER_SIZE];
+      int len;
+    }
+
+    /**
+     * Writes the packets received to disk, in order, and hands them to the
+     * responder.  The packets are taken from a fixed pool, so the receiving
+     * thread waits for the disk once the pool is used up.  If writing
+     * fails the upstream connection is closed to stop the receiving thread,
+     * and the responder is closed as it will not get the last packet.
+     */
+    class PacketWriter implements Runnable {
+      private PacketResponder responder;
+      private LinkedList<Packet> freePackets = new LinkedList<Packet>();
+      private LinkedList<Packet> filledPackets = new LinkedList<Packet>();
+      private boolean running = true;
+      private IOException error;
+
+      PacketWriter(PacketResponder responder) {
+        this.responder = responder;
+        for (int i = 0; i < Math.max(packetQueueSize, 1); i++) {
+          freePackets.add(new Packet());
+        }
+      }
+
+      /** Wait for a packet to receive into. */
+      synchronized Packet getFreePacket() throws IOException {
+        while (running && error == null && freePackets.isEmpty()) {
+          try {
+            wait();
+          } catch (InterruptedException ie) {
+            throw new IOException("Interrupted receiving block from " + 
+                                  s.getInetAddress());
+          }
+        }
+        checkError();
+        if (!running) {
+          throw new IOException("Block writer closed");
+        }
+        return freePackets.removeFirst();
+      }
+
+      /** Write a packet received to disk. */
+      synchronized void enqueue(Packet p) {
+        filledPackets.addLast(p);
+        notifyAll();
+      }
+
+      /** Return a packet to receive into again. */
+      synchronized void release(Packet p) {
+        freePackets.addLast(p);
+        notifyAll();
+      }
+
+      synchronized void close() {
+        running = false;
+        notifyAll();
+      }
+
+      synchronized void checkError() throws IOException {
+        if (error != null) {
+          throw error;
+        }
+      }
+
+      public void run() {
+        try {
+          boolean lastPacket = false;
+          while (!lastPacket) {
+            Packet p;
+            synchronized (this) {
+              while (running && filledPackets.isEmpty()) {
+                wait();
+              }
+              if (!running) {
+                return;
+              }
+              p = filledPackets.removeFirst();
+            }
+            long start = System.nanoTime();
+            write(p.buf, 0, p.len);
+            out.flush();
+            myMetrics.wrotePacket(System.nanoTime() - start);
+            lastPacket = (p.len == 0);
+            responder.enqueue(p.seqno, lastPacket);
+            release(p);
+          }
+        } catch (InterruptedException ie) {
+          // the block was not received in full
+        } catch (IOException ie) {
+          synchronized (this) {
+            error = ie;
+            notifyAll();
+          }
+          responder.close();
+          try {
+            s.close();
+          } catch (IOException ie2) {
+          }
+        }
+      }
+    }
+
+    /**
+     * Acknowledges the packets received, in order, once the next datanode
+     * has acknowledged them too.  If the next datanode fails the packets
+     * are acknowledged for this datanode alone.
+     */
+    class PacketResponder implements Runnable {
+      private DataOutputStream reply;
+      private LinkedList<Long> packets = new LinkedList<Long>();
+      private long lastSeqno = -1;
+      private boolean running = true;
+      private IOException error;
+
+      PacketResponder(DataOutputStream reply) {
+        this.reply = reply;
+      }
+
+      /** Acknowledge a packet once it is acknowledged downstream. */
+      synchronized void enqueue(long seqno, boolean lastPacket) {
+        if (lastPacket) {
+          lastSeqno = seqno;
+        }
+        packets.addLast(seqno);
+        notifyAll();
+      }
+
+      synchronized void close() {
+        running = false;
+        notifyAll();
+      }
+
+      synchronized void checkError() throws IOException {
+        if (error != null) {
+          throw error;
+        }
+      }
+
+      public void run() {
+        try {
+          boolean lastPacket = false;
+          while (!lastPacket) {
+            long seqno;
+            synchronized (this) {
+              while (running && packets.isEmpty()) {
+                wait();
+              }
+              if (!running) {
+                return;
+              }
+              seqno = packets.removeFirst();
+              lastPacket = (seqno == lastSeqno);
+            }
+            DataInputStream min = mirrorIn;
+            if (min != null) {
+              try {
+                long start = System.nanoTime();
+                long ack = min.readLong();
+                if (ack != seqno) {
+                  throw new IOException("Packet " + ack + 
+                                        " acknowledged instead of " + seqno);
+                }
+                myMetrics.ackedPacket(System.nanoTime() - start);
+              } catch (IOException ie) {
+                mirrorFailed(ie);
+              }
+            }
+            reply.writeLong(seqno);
+            reply.flush();
+          }
+        } catch (InterruptedException ie) {
+          // the block was not received in full
+        } catch (IOException ie) {
+          synchronized (this) {
+            error = ie;
+          }
+          // the upstream connection failed, stop receiving from it too
+          try {
+            s.close();
+          } catch (IOException ie2) {
+          }
+        }
+      }
+    }
   }
 
   /**
@@ -29,6 +29,14 @@ public interface FSConstants {
 
   public static final long WRITE_COMPLETE = 0xcafae11a;
 
+  // Sent by a datanode instead of the first value of its reply when it
+  // refuses a connection for serving too many already
+  public static final long DATANODE_BUSY = -2;
+  // Sent by a datanode once it has started a block written in packets
+  public static final long WRITE_STARTED = 0x5ea1ab1e;
+  // The number of a packet only sent to keep an idle write from timing out
+  public static final long HEARTBEAT_SEQNO = -1;
+
   //
   // IPC Opcodes 
   //
@@ -89,10 +97,12 @@ public interface FSConstants {
   public static final byte OP_READ_BLOCK = (byte) 81;
   public static final byte OP_READSKIP_BLOCK = (byte) 82;
   public static final byte OP_READ_RANGE_BLOCK = (byte) 83;
+  public static final byte OP_BLOCK_PATH = (byte) 84;
 
   // Encoding types
   public static final byte RUNLENGTH_ENCODING = 0;
   public static final byte CHUNKED_ENCODING = 1;
+  public static final byte PACKET_ENCODING = 2;
 
   // Return codes for file create
   public static final int OPERATION_FAILED = 0;
@@ -110,6 +120,8 @@ public interface FSConstants {
   public static final long LEASE_SOFTLIMIT_PERIOD = 60 * 1000;
   public static final long LEASE_HARDLIMIT_PERIOD = 60 * LEASE_SOFTLIMIT_PERIOD;
   public static int READ_TIMEOUT = 60 * 1000;
+  public static int BUSY_RETRY_INTERVAL = 1000;
+  public static int BUSY_RETRIES = 5;
 
   // We need to limit the length and depth of a path in the filesystem.  HADOOP-438
   // Currently we set the maximum length to 8k characters and the maximum depth to 1k.  
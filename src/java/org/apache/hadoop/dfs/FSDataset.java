@@ -531,6 +531,47 @@ class FSDataset implements FSConstants {
     return new FileOutputStream(f);
   }
 
+  /**
+   * Continue writing a block which is being created, from the given offset.
+   * This is used when a datanode before this one in the pipeline failed.
+   */
+  public OutputStream continueBlock(Block b, long offset) throws IOException {
+    File f;
+    synchronized (this) {
+      f = ongoingCreates.get(b);
+    }
+    if (f == null) {
+      throw new IOException("Block " + b + 
+                            " is not being created, and cannot be continued.");
+    }
+    if (f.length() < offset) {
+      throw new IOException("Block " + b + " has " + f.length() + 
+                            " bytes, and cannot be continued at " + offset);
+    }
+    RandomAccessFile raf = new RandomAccessFile(f, "rw");
+    try {
+      raf.setLength(offset);
+    } finally {
+      raf.close();
+    }
+    return new FileOutputStream(f, true);
+  }
+
+  /**
+   * Remove what was written of a block whose creation was not completed.
+   * This is used when the write of the block was abandoned.
+   */
+  public synchronized void removeUnfinishedBlock(Block b) {
+    File f = ongoingCreates.remove(b);
+    if (f != null) {
+      volumeMap.remove(b);
+      if (!f.delete()) {
+        DataNode.LOG.warn("Unable to remove temp file " + f + 
+                          " of block " + b);
+      }
+    }
+  }
+
   //
   // REMIND - mjc - eventually we should have a timeout system
   // in place to clean up block files left by abandoned clients.
@@ -36,8 +36,11 @@ import java.net.URI;
  * @author Mahadev Konar
  ******************************************************************************/
 public class DistributedCache {
-  // cacheID to cacheStatus mapping
-  private static TreeMap<String, CacheStatus> cachedArchives = new TreeMap<String, CacheStatus>();
+  // cacheID to cacheStatus mapping, least recently used first. Its lock
+  // also guards the refcounts; the lock of a cacheStatus guards the rest of
+  // it, and is never taken while holding this one
+  private static LinkedHashMap<String, CacheStatus> cachedArchives = 
+    new LinkedHashMap<String, CacheStatus>(16, 0.75f, true);
   // buffer size for reading checksum files
   private static final int CRC_BUFFER_SIZE = 64 * 1024;
   
@@ -55,7 +58,9 @@ public class DistributedCache {
    *  In case of a file, the path to the file is returned
    * @param md5 this is a mere checksum to verufy if you are using the right cache. 
    * You need to pass the md5 of the crc file in DFS. This is matched against the one
-   * calculated in this api and if it does not match, the cache is not localized.
+   * of the cache already localized, if any, so that the DFS is only looked at 
+   * when the cache has to be localized. It is then matched against the one in 
+   * DFS and if it does not match, the cache is not localized.
    * @param currentWorkDir this is the directory where you would want to create symlinks 
    * for the locally cached files/archives
    * @return the path to directory where the archives are unjarred in case of archives,
@@ -68,7 +73,8 @@ public class DistributedCache {
     CacheStatus lcacheStatus;
     Path localizedPath;
     synchronized (cachedArchives) {
-      if (!cachedArchives.containsKey(cacheId)) {
+      lcacheStatus = cachedArchives.get(cacheId);
+      if (lcacheStatus == null) {
         // was never localized
         lcacheStatus = new CacheStatus();
         lcacheStatus.currentStatus = false;
@@ -76,23 +82,16 @@ public class DistributedCache {
         lcacheStatus.localLoadPath = new Path(baseDir, new Path(cacheId));
         cachedArchives.put(cacheId, lcacheStatus);
       } else {
-        lcacheStatus = (CacheStatus) cachedArchives.get(cacheId);
-        synchronized (lcacheStatus) {
-          lcacheStatus.refcount++;
-        }
+        lcacheStatus.refcount++;
       }
     }
     synchronized (lcacheStatus) {
       localizedPath = localizeCache(cache, lcacheStatus, conf, isArchive, md5, currentWorkDir);
     }
     // try deleting stuff if you can
-    long size = FileUtil.getDU(new File(baseDir.toString()));
     // setting the cache size to a default of 1MB
     long allowedSize = conf.getLong("local.cache.size", 1048576L);
-    if (allowedSize < size) {
-      // try some cache deletions
-      deleteCache(conf);
-    }
+    deleteCache(conf, allowedSize);
     return localizedPath;
   }
   
@@ -111,24 +110,57 @@ public class DistributedCache {
       CacheStatus lcacheStatus = (CacheStatus) cachedArchives.get(cacheId);
       if (lcacheStatus == null)
         return;
-      synchronized (lcacheStatus) {
-        lcacheStatus.refcount--;
-      }
+      lcacheStatus.refcount--;
+    }
+  }
+  
+  private static int getRefCount(CacheStatus lcacheStatus) {
+    synchronized (cachedArchives) {
+      return lcacheStatus.refcount;
     }
   }
   
-  // To delete the caches which have a refcount of zero
+  // To delete the caches which have a refcount of zero, least recently used
+  // first, until the caches are within the allowed size. The caches to
+  // delete are picked under the lock of the map, and deleted outside it
   
-  private static void deleteCache(Configuration conf) throws IOException {
-    // try deleting cache Status with refcount of zero
+  private static void deleteCache(Configuration conf, long allowedSize
+                                  ) throws IOException {
+    List<String> victimIds = new ArrayList<String>();
+    List<CacheStatus> victims = new ArrayList<CacheStatus>();
     synchronized (cachedArchives) {
-      for (Iterator it = cachedArchives.keySet().iterator(); it.hasNext();) {
-        String cacheId = (String) it.next();
-        CacheStatus lcacheStatus = (CacheStatus) cachedArchives.get(cacheId);
-        if (lcacheStatus.refcount == 0) {
-          // delete this cache entry
-          FileSystem.getLocal(conf).delete(lcacheStatus.localLoadPath);
-          it.remove();
+      long size = 0;
+      for (CacheStatus lcacheStatus : cachedArchives.values()) {
+        size += lcacheStatus.size;
+      }
+      for (Iterator<Map.Entry<String, CacheStatus>> it =
+             cachedArchives.entrySet().iterator();
+           size > allowedSize && it.hasNext();) {
+        Map.Entry<String, CacheStatus> entry = it.next();
+        if (entry.getValue().refcount == 0) {
+          victimIds.add(entry.getKey());
+          victims.add(entry.getValue());
+          size -= entry.getValue().size;
+        }
+      }
+    }
+    FileSystem localFs = FileSystem.getLocal(conf);
+    for (int i = 0; i < victims.size(); i++) {
+      CacheStatus lcacheStatus = victims.get(i);
+      synchronized (lcacheStatus) {
+        // a job may have started using it meanwhile
+        if (getRefCount(lcacheStatus) != 0) {
+          continue;
+        }
+        localFs.delete(lcacheStatus.localLoadPath);
+        // localized again if a job gets it before it is removed
+        lcacheStatus.currentStatus = false;
+        lcacheStatus.size = 0;
+        synchronized (cachedArchives) {
+          if (lcacheStatus.refcount == 0 &&
+              cachedArchives.get(victimIds.get(i)) == lcacheStatus) {
+            cachedArchives.remove(victimIds.get(i));
+          }
         }
       }
     }
@@ -166,7 +198,7 @@ public class DistributedCache {
     boolean b = true;
     boolean doSymlink = getSymlink(conf);
     FileSystem dfs = getFileSystem(cache, conf);
-    b = ifExistsAndFresh(cacheStatus, cache, dfs, md5, conf);
+    b = ifExistsAndFresh(cacheStatus, md5);
     String link = currentWorkDir.toString() + Path.SEPARATOR + cache.getFragment();
     File flink = new File(link);
     if (b) {
@@ -191,10 +223,14 @@ public class DistributedCache {
       // if the old archive cannot be removed since it is being used by another
       // job
       // return null
-      if (cacheStatus.refcount > 1 && (cacheStatus.currentStatus == true))
+      if (getRefCount(cacheStatus) > 1 && (cacheStatus.currentStatus == true))
         throw new IOException("Cache " + cacheStatus.localLoadPath.toString()
                               + " is in use and cannot be refreshed");
       byte[] checkSum = createMD5(cache, conf);
+      if (!MessageDigest.isEqual(StringUtils.hexStringToByte(md5), checkSum)) {
+        throw new IOException("Inconsistencty in data caching, "
+                              + "Cache archives have been changed");
+      }
       FileSystem localFs = FileSystem.getLocal(conf);
       localFs.delete(cacheStatus.localLoadPath);
       Path parchive = new Path(cacheStatus.localLoadPath,
@@ -225,6 +261,8 @@ public class DistributedCache {
       // symlink
       cacheStatus.currentStatus = true;
       cacheStatus.md5 = checkSum;
+      cacheStatus.size = 
+        FileUtil.getDU(new File(cacheStatus.localLoadPath.toString()));
     }
     
     if (isArchive){
@@ -245,31 +283,15 @@ public class DistributedCache {
     }
   }
 
-  // Checks if the cache has already been localized and is fresh
-  private static boolean ifExistsAndFresh(CacheStatus lcacheStatus, URI cache,
-                                          FileSystem dfs, String confMD5, Configuration conf) throws IOException {
-    // compute the md5 of the crc
-    byte[] digest = null;
-    byte[] fsDigest = createMD5(cache, conf);
-    byte[] confDigest = StringUtils.hexStringToByte(confMD5);
-    // check for existence of the cache
+  // Checks if the cache has already been localized and is fresh, that is,
+  // whether it was localized with the md5 the job was submitted with
+  private static boolean ifExistsAndFresh(CacheStatus lcacheStatus, 
+                                          String confMD5) {
     if (lcacheStatus.currentStatus == false) {
       return false;
-    } else {
-      digest = lcacheStatus.md5;
-      if (!MessageDigest.isEqual(confDigest, fsDigest)) {
-        throw new IOException("Inconsistencty in data caching, "
-                              + "Cache archives have been changed");
-      } else {
-        if (!MessageDigest.isEqual(confDigest, digest)) {
-          // needs refreshing
-          return false;
-        } else {
-          // does not need any refreshing
-          return true;
-        }
-      }
     }
+    byte[] confDigest = StringUtils.hexStringToByte(confMD5);
+    return MessageDigest.isEqual(confDigest, lcacheStatus.md5);
   }
 
   /**
@@ -676,6 +698,9 @@ public class DistributedCache {
 
     // The md5 checksum of the crc file of this cache
     public byte[] md5;
+
+    // the size of the localized cache
+    public long size;
   }
 
 }
@@ -185,7 +185,8 @@ public class BytesWritable implements WritableComparable {
   }
 
   /** A Comparator optimized for BytesWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+    implements NormalizedKeyComparator {
     public Comparator() {
       super(BytesWritable.class);
     }
@@ -199,6 +200,13 @@ public class BytesWritable implements WritableComparable {
       int size2 = readInt(b2, s2);
       return compareBytes(b1, s1+4, size1, b2, s2+4, size2);
     }
+    
+    /**
+     * The leading bytes of the buffer in serialized form.
+     */
+    public int getNormalizedKey(byte[] b, int s, int l) {
+      return normalizeBytes(b, s+4, readInt(b, s));
+    }
   }
   
   static {                                        // register this comparator
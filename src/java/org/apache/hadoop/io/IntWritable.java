@@ -66,7 +66,8 @@ public class IntWritable implements WritableComparable {
   }
 
   /** A Comparator optimized for IntWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+    implements NormalizedKeyComparator {
     public Comparator() {
       super(IntWritable.class);
     }
@@ -77,6 +78,11 @@ public class IntWritable implements WritableComparable {
       int thatValue = readInt(b2, s2);
       return (thisValue<thatValue ? -1 : (thisValue==thatValue ? 0 : 1));
     }
+
+    public int getNormalizedKey(byte[] b, int s, int l) {
+      //flip the sign bit so that negative values order first
+      return readInt(b, s) ^ Integer.MIN_VALUE;
+    }
   }
 
   static {                                        // register this comparator
@@ -66,7 +66,8 @@ public class LongWritable implements WritableComparable {
   }
 
   /** A Comparator optimized for LongWritable. */ 
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+    implements NormalizedKeyComparator {
     public Comparator() {
       super(LongWritable.class);
     }
@@ -77,6 +78,12 @@ public class LongWritable implements WritableComparable {
       long thatValue = readLong(b2, s2);
       return (thisValue<thatValue ? -1 : (thisValue==thatValue ? 0 : 1));
     }
+
+    public int getNormalizedKey(byte[] b, int s, int l) {
+      //the high int of the value, with the sign bit flipped so that
+      //negative values order first
+      return readInt(b, s) ^ Integer.MIN_VALUE;
+    }
   }
 
   /** A decreasing Comparator optimized for LongWritable. */ 
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.io;
+
+/** An optional contract for {@link WritableComparator}s that can map a
+ * serialized key to a normalized key: a fixed-length, binary comparable
+ * prefix of the key.
+ *
+ * <p>Sorts compare the normalized keys of two keys first, as unsigned ints
+ * (see {@link WritableComparator#compareNormalizedKeys(int,int)}), and
+ * only call {@link WritableComparator#compare(byte[],int,int,byte[],int,int)}
+ * when they are equal.  So, if the normalized key of one key is less than
+ * that of another, the first key must also compare less than the second.
+ */
+public interface NormalizedKeyComparator {
+
+  /** Returns the normalized key of the key serialized in the given bytes.
+   * @param b the buffer holding the key
+   * @param s the start offset of the key
+   * @param l the length of the key
+   */
+  public int getNormalizedKey(byte[] b, int s, int l);
+}
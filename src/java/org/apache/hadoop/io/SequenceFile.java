@@ -409,6 +409,9 @@ public class SequenceFile {
      */
     public void writeCompressedBytes(DataOutputStream outStream) 
       throws IllegalArgumentException, IOException;
+
+    /** Size of stored data. */
+    public int getSize();
   }
   
   private static class UncompressedBytes implements ValueBytes {
@@ -781,8 +784,7 @@ public class SequenceFile {
       if (keyLength == 0)
         throw new IOException("zero length keys not allowed: " + keyLength);
 
-      UncompressedBytes value = (UncompressedBytes)val;
-      int valLength = value.getSize();
+      int valLength = val.getSize();
 
       checkAndWriteSync();
       
@@ -1081,8 +1083,7 @@ public class SequenceFile {
       if (keyLength == 0)
         throw new IOException("zero length keys not allowed");
 
-      UncompressedBytes value = (UncompressedBytes)val;
-      int valLength = value.getSize();
+      int valLength = val.getSize();
       
       // Save key/value data in relevant buffers
       WritableUtils.writeVInt(keyLenBuffer, keyLength);
@@ -1883,7 +1884,10 @@ public class SequenceFile {
       private int[] pointers = new int[keyOffsets.length];
       private int[] pointersCopy = new int[keyOffsets.length];
       private int[] keyLengths = new int[keyOffsets.length];
+      private int[] keyPrefixes = new int[keyOffsets.length];
       private ValueBytes[] rawValues = new ValueBytes[keyOffsets.length];
+      private NormalizedKeyComparator normalizer =
+        WritableComparator.getNormalizedKeyComparator(comparator);
       
       private ArrayList segmentLengths = new ArrayList();
       
@@ -1952,6 +1956,10 @@ public class SequenceFile {
             keyOffsets[count] = keyOffset;                // update pointers
             pointers[count] = count;
             keyLengths[count] = keyLength;
+            if (normalizer != null) {
+              keyPrefixes[count] = normalizer.getNormalizedKey(
+                                     rawKeys.getData(), keyOffset, keyLength);
+            }
             rawValues[count] = rawValue;
 
             bytesProcessed += recordLength; 
@@ -1987,6 +1995,7 @@ public class SequenceFile {
         pointers = grow(pointers, newLength);
         pointersCopy = new int[newLength];
         keyLengths = grow(keyLengths, newLength);
+        keyPrefixes = grow(keyPrefixes, newLength);
         rawValues = grow(rawValues, newLength);
       }
 
@@ -2046,6 +2055,14 @@ public class SequenceFile {
       }
       class SeqFileComparator implements Comparator<IntWritable> {
         public int compare(IntWritable I, IntWritable J) {
+          if (normalizer != null) {
+            //the full compare is only needed if the normalized keys are equal
+            int prefixCmp = WritableComparator.compareNormalizedKeys(
+                              keyPrefixes[I.get()], keyPrefixes[J.get()]);
+            if (prefixCmp != 0) {
+              return prefixCmp;
+            }
+          }
           return comparator.compare(rawBuffer, keyOffsets[I.get()], 
                                     keyLengths[I.get()], rawBuffer, 
                                     keyOffsets[J.get()], keyLengths[J.get()]);
@@ -2129,7 +2146,8 @@ public class SequenceFile {
       ArrayList <SegmentDescriptor> a = new ArrayList <SegmentDescriptor>();
       for (int i = 0; i < inNames.length; i++) {
         SegmentDescriptor s = new SegmentDescriptor(0, 
-                                                    fs.getLength(inNames[i]), inNames[i]);
+                                                    getFileSystem(inNames[i]).getLength(inNames[i]), 
+                                                    inNames[i]);
         s.preserveInput(!deleteInputs);
         s.doSync();
         a.add(s);
@@ -2158,7 +2176,8 @@ public class SequenceFile {
       ArrayList <SegmentDescriptor> a = new ArrayList <SegmentDescriptor>();
       for (int i = 0; i < inNames.length; i++) {
         SegmentDescriptor s = new SegmentDescriptor(0, 
-                                                    fs.getLength(inNames[i]), inNames[i]);
+                                                    getFileSystem(inNames[i]).getLength(inNames[i]), 
+                                                    inNames[i]);
         s.preserveInput(!deleteInputs);
         s.doSync();
         a.add(s);
@@ -2283,6 +2302,15 @@ public class SequenceFile {
       return mQueue.merge();
     }
     
+    /** The file system of a file to merge: the sorter's, unless the path
+     * of the file is qualified with another one. */
+    private FileSystem getFileSystem(Path file) throws IOException {
+      if (file.toUri().getScheme() == null) {
+        return fs;
+      }
+      return file.getFileSystem(conf);
+    }
+    
     /** This class implements the core of the merge logic */
     private class MergeQueue extends PriorityQueue 
       implements RawKeyValueIterator {
@@ -2451,7 +2479,8 @@ public class SequenceFile {
                                                 approxOutputSize, conf);
             LOG.info("writing intermediate results to " + outputFile);
             Writer writer = cloneFileAttributes(
-                                                fs.makeQualified(segmentsToMerge.get(0).segmentPathName), 
+                                                getFileSystem(segmentsToMerge.get(0).segmentPathName).
+                                                makeQualified(segmentsToMerge.get(0).segmentPathName), 
                                                 fs.makeQualified(outputFile), null);
             writer.sync = null; //disable sync for temp files
             writeFile(this, writer);
@@ -2558,11 +2587,12 @@ public class SequenceFile {
        */
       public boolean nextRawKey() throws IOException {
         if (in == null) {
+          FileSystem segmentFs = getFileSystem(segmentPathName);
           int bufferSize = conf.getInt("io.file.buffer.size", 4096); 
-          if (fs.getUri().getScheme().startsWith("ramfs")) {
+          if (segmentFs.getUri().getScheme().startsWith("ramfs")) {
             bufferSize = conf.getInt("io.bytes.per.checksum", 512);
           }
-          Reader reader = new Reader(fs, segmentPathName, 
+          Reader reader = new Reader(segmentFs, segmentPathName, 
                                      bufferSize, segmentOffset, 
                                      segmentLength, conf);
         
@@ -2612,7 +2642,7 @@ public class SequenceFile {
       public void cleanup() throws IOException {
         close();
         if (!preserveInput) {
-          fs.delete(segmentPathName);
+          getFileSystem(segmentPathName).delete(segmentPathName);
         }
       }
     } // SequenceFile.Sorter.SegmentDescriptor
@@ -188,23 +188,51 @@ public class Text implements WritableComparable {
    * @param len the number of bytes of the new string
    */
   public void set(byte[] utf8, int start, int len) {
-    setCapacity(len);
+    setCapacity(len, false);
     System.arraycopy(utf8, start, bytes, 0, len);
     this.length = len;
   }
 
+  /**
+   * Append a range of bytes to the end of the given text
+   * @param utf8 the data to copy from
+   * @param start the first position to append from utf8
+   * @param len the number of bytes to append
+   */
+  public void append(byte[] utf8, int start, int len) {
+    setCapacity(length + len, true);
+    System.arraycopy(utf8, start, bytes, length, len);
+    length += len;
+  }
+
+  /**
+   * Clear the string to empty.
+   */
+  public void clear() {
+    length = 0;
+  }
+
   /*
    * Sets the capacity of this Text object to <em>at least</em>
    * <code>len</code> bytes. If the current buffer is longer,
    * then the capacity and existing content of the buffer are
    * unchanged. If <code>len</code> is larger
    * than the current capacity, the Text object's capacity is
-   * increased to match. The existing contents of the buffer
-   * (if any) are deleted.
+   * increased to match, by at least half again when the content is
+   * kept. The existing contents of the buffer (if any) are deleted,
+   * unless <code>keepData</code> is true.
    */
-  private void setCapacity(int len) {
-    if (bytes == null || bytes.length < len)
-      bytes = new byte[len];      
+  private void setCapacity(int len, boolean keepData) {
+    if (bytes == null || bytes.length < len) {
+      byte[] newBytes;
+      if (keepData && bytes != null) {
+        newBytes = new byte[Math.max(len, bytes.length + (bytes.length >> 1))];
+        System.arraycopy(bytes, 0, newBytes, 0, length);
+      } else {
+        newBytes = new byte[len];
+      }
+      bytes = newBytes;
+    }
   }
    
   /** 
@@ -223,7 +251,7 @@ public class Text implements WritableComparable {
    */
   public void readFields(DataInput in) throws IOException {
     length = WritableUtils.readVInt(in);
-    setCapacity(length);
+    setCapacity(length, false);
     in.readFully(bytes, 0, length);
   }
 
@@ -273,7 +301,8 @@ public class Text implements WritableComparable {
   }
 
   /** A WritableComparator optimized for Text keys. */
-  public static class Comparator extends WritableComparator {
+  public static class Comparator extends WritableComparator
+    implements NormalizedKeyComparator {
     public Comparator() {
       super(Text.class);
     }
@@ -290,6 +319,16 @@ public class Text implements WritableComparable {
         throw new RuntimeException(e);
       }
     }
+
+    public int getNormalizedKey(byte[] b, int s, int l) {
+      try {
+        int n = readVInt(b, s);
+        return normalizeBytes(b, s+WritableUtils.getVIntSize(n), n);
+      }catch(IOException e) {
+        LOG.warn(e);
+        throw new RuntimeException(e);
+      }
+    }
   }
 
   static {
@@ -21,6 +21,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NormalizedKeyComparator;
 import org.apache.hadoop.io.SequenceFile.ValueBytes;
 import org.apache.hadoop.io.WritableComparator;
 import org.apache.hadoop.util.Progress;
@@ -29,47 +30,54 @@ import org.apache.hadoop.io.SequenceFile.Sorter.RawKeyValueIterator;
 
 
 /** This class implements the sort interface using primitive int arrays as 
- * the data structures (that is why this class is called 'BasicType'SorterBase)
+ * the data structures (that is why this class is called 'BasicType'SorterBase).
+ * The records of all the partitions are tracked in a single metadata array,
+ * so the per-record cost and the memory used do not grow with the number of 
+ * partitions.
  * @author ddas
  */
 abstract class BasicTypeSorterBase implements BufferSorter {
   
+  //the layout of the metadata of a record in the kvindices array
+  protected static final int PARTITION = 0; //the partition of the record
+  protected static final int KEYSTART = 1;  //the start offset of the key
+  protected static final int VALSTART = 2;  //the start offset of the value
+  protected static final int VALEND = 3;    //the end offset of the value
+  protected static final int KEYPREFIX = 4; //the normalized key
+  protected static final int RECORD_META = 5; //the no. of ints per record
+  
   protected DataOutputBuffer keyValBuffer; //the buffer used for storing
                                            //key/values
-  protected int[] startOffsets; //the array used to store the start offsets of
-                                //keys in keyValBuffer
-  protected int[] keyLengths; //the array used to store the lengths of
-                              //keys
-  protected int[] valueLengths; //the array used to store the value lengths 
-  protected int[] pointers; //the array of startOffsets's indices. This will
+  protected int[] kvindices; //the array used to store the metadata of the 
+                             //records, RECORD_META ints per record
+  protected int[] pointers; //the array of record indices. This will
                             //be sorted at the end to contain a sorted array of
-                            //indices to offsets
+                            //indices to the records
   protected WritableComparator comparator; //the comparator for the map output
+  protected NormalizedKeyComparator normalizer; //the comparator as a source
+                                                //of normalized keys, if any
   protected int count; //the number of key/values
-  //the overhead of the arrays in memory 
-  //12 => 4 for keyoffsets, 4 for keylengths, 4 for valueLengths, and
-  //4 for indices into startOffsets array in the
-  //pointers array (ignored the partpointers list itself)
-  private final int BUFFERED_KEY_VAL_OVERHEAD = 16;
 
   //Implementation of methods of the SorterBase interface
   //
   public void configure(JobConf conf) {
-    startOffsets = new int[1024];
-    keyLengths = new int[1024];
-    valueLengths = new int[1024];
+    kvindices = new int[1024 * RECORD_META];
     pointers = new int[1024];
     comparator = conf.getOutputKeyComparator();
+    normalizer = WritableComparator.getNormalizedKeyComparator(comparator);
   }
   
-  public void addKeyValue(int recordOffset, int keyLength, int valLength) {
-    //Add the start offset of the key in the startOffsets array and the
-    //length in the keyLengths array.
-    if (count == startOffsets.length)
+  public void addKeyValue(int partition, int recordOffset, int keyLength,
+                          int valLength) {
+    //Add the partition and the offsets of the key and the value to the 
+    //kvindices array
+    if (count == pointers.length)
       grow();
-    startOffsets[count] = recordOffset;
-    keyLengths[count] = keyLength;
-    valueLengths[count] = valLength;
+    int meta = count * RECORD_META;
+    kvindices[meta + PARTITION] = partition;
+    kvindices[meta + KEYSTART] = recordOffset;
+    kvindices[meta + VALSTART] = recordOffset + keyLength;
+    kvindices[meta + VALEND] = recordOffset + keyLength + valLength;
     pointers[count] = count;
     count++;
   }
@@ -80,29 +88,82 @@ abstract class BasicTypeSorterBase implements BufferSorter {
   }
 
   public long getMemoryUtilized() {
-    return (startOffsets.length) * BUFFERED_KEY_VAL_OVERHEAD;
+    return (kvindices.length + pointers.length) * 4L;
   }
 
-  public abstract RawKeyValueIterator sort();
+  public abstract void sort();
+  
+  public RawKeyValueIterator iterator(int partition) {
+    //the sorted pointers are grouped by partition; find the range of the
+    //requested partition
+    int start = firstIndexOf(partition);
+    int end = firstIndexOf(partition + 1);
+    if (start == end) return null;
+    return new MRSortResultIterator(keyValBuffer, pointers, start, end, 
+                                    kvindices);
+  }
+  
+  //Computes the normalized keys of the records, if the comparator supports
+  //them. This is invoked before the sort, once the keyValBuffer is set
+  protected void normalizeKeys() {
+    if (normalizer == null) return;
+    byte[] data = keyValBuffer.getData();
+    for (int meta = 0; meta < count * RECORD_META; meta += RECORD_META) {
+      int keyStart = kvindices[meta + KEYSTART];
+      kvindices[meta + KEYPREFIX] = normalizer.getNormalizedKey(data, 
+                                      keyStart, 
+                                      kvindices[meta + VALSTART] - keyStart);
+    }
+  }
   
   public void close() {
     //just set count to 0; we reuse the arrays
     count = 0;
   }
-  //A compare method that references the keyValBuffer through the indirect
-  //pointers
+  
+  //A compare method that orders records by partition, and then by key 
+  //through the indirect pointers to the keyValBuffer. The keys are only
+  //compared in full if their normalized keys are equal
   protected int compare(int i, int j) {
-    return comparator.compare(keyValBuffer.getData(), startOffsets[i],
-                              keyLengths[i],
-                              keyValBuffer.getData(), startOffsets[j], 
-                              keyLengths[j]);
+    int mi = i * RECORD_META;
+    int mj = j * RECORD_META;
+    int pi = kvindices[mi + PARTITION];
+    int pj = kvindices[mj + PARTITION];
+    if (pi != pj) {
+      return pi < pj ? -1 : 1;
+    }
+    if (normalizer != null) {
+      int prefixCmp = WritableComparator.compareNormalizedKeys(
+                        kvindices[mi + KEYPREFIX], kvindices[mj + KEYPREFIX]);
+      if (prefixCmp != 0) {
+        return prefixCmp;
+      }
+    }
+    return comparator.compare(keyValBuffer.getData(), kvindices[mi + KEYSTART],
+                              kvindices[mi + VALSTART] - kvindices[mi + KEYSTART],
+                              keyValBuffer.getData(), kvindices[mj + KEYSTART], 
+                              kvindices[mj + VALSTART] - kvindices[mj + KEYSTART]);
+  }
+  
+  //Returns the index in the sorted pointers of the first record whose 
+  //partition is not less than the given one
+  private int firstIndexOf(int partition) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (kvindices[pointers[mid] * RECORD_META + PARTITION] < partition) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
   }
   
   private void grow() {
-    int newLength = startOffsets.length * 3/2;
-    startOffsets = grow(startOffsets, newLength);
-    keyLengths = grow(keyLengths, newLength);
-    valueLengths = grow(valueLengths, newLength);
+    int newLength = pointers.length * 3/2;
+    kvindices = grow(kvindices, newLength * RECORD_META);
     pointers = grow(pointers, newLength);
   }
   
@@ -118,25 +179,23 @@ abstract class BasicTypeSorterBase implements BufferSorter {
 //
 class MRSortResultIterator implements RawKeyValueIterator {
   
-  private int count;
+  private int end;
   private int[] pointers;
-  private int[] startOffsets;
-  private int[] keyLengths;
-  private int[] valLengths;
-  private int currStartOffsetIndex;
+  private int[] kvindices;
+  private int currRecordMeta;
   private int currIndexInPointers;
   private DataOutputBuffer keyValBuffer;
   private DataOutputBuffer key = new DataOutputBuffer();
   private InMemUncompressedBytes value = new InMemUncompressedBytes();
   
+  /** Iterates over the records whose indices are in pointers[start, end) */
   public MRSortResultIterator(DataOutputBuffer keyValBuffer, 
-                              int []pointers, int []startOffsets,
-                              int []keyLengths, int []valLengths) {
-    this.count = pointers.length;
+                              int []pointers, int start, int end,
+                              int []kvindices) {
     this.pointers = pointers;
-    this.startOffsets = startOffsets;
-    this.keyLengths = keyLengths;
-    this.valLengths = valLengths;
+    this.currIndexInPointers = start;
+    this.end = end;
+    this.kvindices = kvindices;
     this.keyValBuffer = keyValBuffer;
   }
   
@@ -145,8 +204,9 @@ class MRSortResultIterator implements RawKeyValueIterator {
   }
   
   public DataOutputBuffer getKey() throws IOException {
-    int currKeyOffset = startOffsets[currStartOffsetIndex];
-    int currKeyLength = keyLengths[currStartOffsetIndex];
+    int currKeyOffset = kvindices[currRecordMeta + BasicTypeSorterBase.KEYSTART];
+    int currKeyLength = 
+      kvindices[currRecordMeta + BasicTypeSorterBase.VALSTART] - currKeyOffset;
     //reuse the same key
     key.reset();
     key.write(keyValBuffer.getData(), currKeyOffset, currKeyLength);
@@ -154,18 +214,19 @@ class MRSortResultIterator implements RawKeyValueIterator {
   }
 
   public ValueBytes getValue() throws IOException {
-    //value[i] is stored in the following byte range:
-    //startOffsets[i] + keyLengths[i] through valLengths[i]
-    value.reset(keyValBuffer,
-                startOffsets[currStartOffsetIndex] + keyLengths[currStartOffsetIndex],
-                valLengths[currStartOffsetIndex]);
+    //the value is stored in the byte range VALSTART through VALEND
+    int currValOffset = kvindices[currRecordMeta + BasicTypeSorterBase.VALSTART];
+    value.reset(keyValBuffer, currValOffset,
+                kvindices[currRecordMeta + BasicTypeSorterBase.VALEND] - 
+                currValOffset);
     return value;
   }
 
   public boolean next() throws IOException {
-    if (count == currIndexInPointers)
+    if (end == currIndexInPointers)
       return false;
-    currStartOffsetIndex = pointers[currIndexInPointers];
+    currRecordMeta = 
+      pointers[currIndexInPointers] * BasicTypeSorterBase.RECORD_META;
     currIndexInPointers++;
     return true;
   }
@@ -187,7 +248,7 @@ class MRSortResultIterator implements RawKeyValueIterator {
       dataSize = length;
     }
             
-    public int getSize() throws IOException {
+    public int getSize() {
       return dataSize;
     }
             
@@ -40,11 +40,13 @@ interface BufferSorter extends JobConfigurable {
   /** When a key/value is added at a particular offset in the key/value buffer, 
    * this method is invoked by the user class so that the impl of this sort 
    * interface can update its datastructures. 
+   * @param partition the partition the key/value belongs to
    * @param recordOffset the offset of the key in the buffer
    * @param keyLength the length of the key
    * @param valLength the length of the val in the buffer
    */
-  public void addKeyValue(int recordoffset, int keyLength, int valLength);
+  public void addKeyValue(int partition, int recordOffset, int keyLength,
+                          int valLength);
   
   /** The user class invokes this method to set the buffer that the specific 
    * sort algorithm should "indirectly" sort (generally, sort algorithm impl 
@@ -60,9 +62,18 @@ interface BufferSorter extends JobConfigurable {
    */
   public long getMemoryUtilized();
   
-  /** Framework decides when to actually sort
+  /** Framework decides when to actually sort. The records of all the 
+   * partitions are sorted in one pass, by partition and then by key.
    */
-  public RawKeyValueIterator sort();
+  public void sort();
+  
+  /** After the sort, the framework invokes this to iterate over the sorted
+   * records of one partition.
+   * @param partition the partition to iterate over
+   * @return an iterator over the key/values of the partition, or null if
+   * the partition is empty
+   */
+  public RawKeyValueIterator iterator(int partition);
   
   /** Framework invokes this to signal the sorter to cleanup
    */
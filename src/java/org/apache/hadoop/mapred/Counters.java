@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
@@ -164,16 +165,52 @@ public class Counters implements Writable {
   } // end class Group
   
   
+  /**
+   * A counter that is resolved once and then incremented without locking or
+   * lookups, for the counters the framework updates for every record.  A
+   * handle is not thread-safe: it must be incremented by one thread at a
+   * time, e.g. under the lock of the code whose records it counts.  Its
+   * amounts are added to the counters it came from whenever those are read
+   * or written, by whichever thread does so.  The value is a plain long: a
+   * task writes its counters for a report under the lock of its reporter,
+   * which the threads counting records also take when they report progress,
+   * so a report sees what they counted up to their last progress, and the
+   * next report the rest.  The final report of a task is exact, since it is
+   * made once those threads are done.
+   */
+  public static class Handle {
+    
+    private final Enum key;
+    private long value = 0;       // incremented by the owning thread
+    private long folded = 0;      // the part of value added to the counters
+    
+    private Handle(Enum key) {
+      this.key = key;
+    }
+    
+    /**
+     * Increments the counter by the specified amount.
+     */
+    public void increment(long amount) {
+      value += amount;
+    }
+    
+  } // end class Handle
+  
   // Map from group name (enum class name) to map of int (enum ordinal) to
   // counter record (name-value pair).
   private Map<String,Map<Integer,CounterRec>> counters =
     new TreeMap<String,Map<Integer,CounterRec>>();
   
+  // The handles on these counters, whose amounts are still to be added.
+  private List<Handle> handles = new ArrayList<Handle>();
+  
   /**
    * Returns the names of all counter classes.
    * @return Set of counter names.
    */
   public synchronized Collection<String> getGroupNames() {
+    foldHandles();
     return new ArrayList<String>(counters.keySet());
   }
   
@@ -182,6 +219,7 @@ public class Counters implements Writable {
    * with the specified name.
    */
   public synchronized Group getGroup(String groupName) {
+    foldHandles();
     Map<Integer,CounterRec> counterMap = counters.get(groupName);
     Collection<CounterRec> groupCounters;
     if (counterMap == null) {
@@ -208,11 +246,41 @@ public class Counters implements Writable {
     counter.value += amount;
   }
   
+  /**
+   * Returns a handle on the specified counter.  The counter is only created
+   * once the handle is incremented.
+   * @param key identifies a counter
+   */
+  public synchronized Handle getHandle(Enum key) {
+    Handle handle = new Handle(key);
+    handles.add(handle);
+    return handle;
+  }
+  
+  /**
+   * Adds what the handles were incremented by since they were last folded.
+   * A value read while another thread increments it may be stale, or even
+   * torn on a JVM which does not write longs atomically.  The next fold
+   * makes up for it, since it adds the difference to the value folded, so
+   * the counters are exact once the threads are done with their handles.
+   */
+  private void foldHandles() {
+    for (Handle handle : handles) {
+      long value = handle.value;
+      long amount = value - handle.folded;
+      if (amount != 0) {
+        incrCounter(handle.key, amount);
+        handle.folded = value;
+      }
+    }
+  }
+  
   /**
    * Returns current value of the specified counter, or 0 if the counter
    * does not exist.
    */
   public synchronized long getCounter(Enum key) {
+    foldHandles();
     long result = 0L;
     String groupName = key.getDeclaringClass().getName();
     Map<Integer,CounterRec> counterMap = counters.get(groupName);
@@ -271,14 +339,19 @@ public class Counters implements Writable {
    * instance.
    * @param other the other Counters instance
    */
-  public synchronized void incrAllCounters(Counters other) {
-    for (String groupName : other.counters.keySet()) {
-      Map<Integer,CounterRec> otherCounters = other.counters.get(groupName);
-      Map<Integer,CounterRec> myCounters = getCounterMap(groupName);
-      for (int i : otherCounters.keySet()) {
-        CounterRec otherCounter = otherCounters.get(i);
-        CounterRec counter = getCounter(myCounters, otherCounter.name, i);
-        counter.value += otherCounter.value;
+  public void incrAllCounters(Counters other) {
+    synchronized (other) {
+      other.foldHandles();
+    }
+    synchronized (this) {
+      for (String groupName : other.counters.keySet()) {
+        Map<Integer,CounterRec> otherCounters = other.counters.get(groupName);
+        Map<Integer,CounterRec> myCounters = getCounterMap(groupName);
+        for (int i : otherCounters.keySet()) {
+          CounterRec otherCounter = otherCounters.get(i);
+          CounterRec counter = getCounter(myCounters, otherCounter.name, i);
+          counter.value += otherCounter.value;
+        }
       }
     }
   }
@@ -298,6 +371,7 @@ public class Counters implements Writable {
    * in each group.
    */
   public synchronized  int size() {
+    foldHandles();
     int result = 0;
     for (String groupName : counters.keySet()) {
       result += counters.get(groupName).size();
@@ -320,6 +394,7 @@ public class Counters implements Writable {
   //
   
   public synchronized void write(DataOutput out) throws IOException {
+    foldHandles();
     out.writeInt(counters.size());
     for (String groupName : counters.keySet()) {
       UTF8.writeString(out, groupName);
@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * A bounded cache of the map output index files served by the task tracker,
+ * keyed by map task id. An index holds the offset and the length of every
+ * partition of the map output; the least recently used indices are dropped
+ * once the cache holds more than tasktracker.indexcache.mb of them.
+ */
+class IndexCache {
+
+  //the rough memory used by a cache entry besides the index itself
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final long maxMemory;
+  private long memoryUsed = 0;
+  //the indices in access order, so that the eldest is the least recently used
+  private final LinkedHashMap<String, long[]> cache =
+    new LinkedHashMap<String, long[]>(16, 0.75f, true);
+  //the index files being read, each with a token for the last read started.
+  //Removing an index cancels its reads, so that an index read before its
+  //map output was removed is not cached after the removal
+  private final Map<String, Object> reads = new HashMap<String, Object>();
+
+  public IndexCache(JobConf conf) {
+    maxMemory = conf.getInt("tasktracker.indexcache.mb", 10) * 1024L * 1024L;
+  }
+
+  /** Return the cached index of a map output, or null if it is not cached.
+   * The offset of partition i is at 2*i and its length at 2*i+1.
+   * @param mapTaskId a map task id
+   */
+  public synchronized long[] getIndex(String mapTaskId) {
+    return cache.get(mapTaskId);
+  }
+
+  /** Read the index file of a map output and cache it.
+   * @param mapTaskId a map task id
+   * @param fs the local file system
+   * @param indexFile the index file of the map output
+   */
+  public long[] readIndex(String mapTaskId, FileSystem fs, Path indexFile)
+    throws IOException {
+    Object read = new Object();
+    synchronized (this) {
+      reads.put(mapTaskId, read);
+    }
+    long[] index;
+    try {
+      index = new long[(int)(fs.getLength(indexFile) / 8)];
+      FSDataInputStream in = fs.open(indexFile);
+      try {
+        for (int i = 0; i < index.length; i++) {
+          index[i] = in.readLong();
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException ie) {
+      synchronized (this) {
+        if (reads.get(mapTaskId) == read) {
+          reads.remove(mapTaskId);
+        }
+      }
+      throw ie;
+    }
+    putIndex(mapTaskId, index, read);
+    return index;
+  }
+
+  /** Drop the index of a map output whose files are gone.
+   * @param mapTaskId a map task id
+   */
+  public synchronized void removeIndex(String mapTaskId) {
+    reads.remove(mapTaskId);
+    long[] index = cache.remove(mapTaskId);
+    if (index != null) {
+      memoryUsed -= getSize(index);
+    }
+  }
+
+  private synchronized void putIndex(String mapTaskId, long[] index, 
+                                     Object read) {
+    //the index is only cached by the last read, unless it was removed since
+    if (reads.get(mapTaskId) != read) {
+      return;
+    }
+    reads.remove(mapTaskId);
+    long size = getSize(index);
+    if (size > maxMemory) {
+      return;
+    }
+    long[] old = cache.put(mapTaskId, index);
+    if (old != null) {
+      memoryUsed -= getSize(old);
+    }
+    memoryUsed += size;
+    Iterator<long[]> indices = cache.values().iterator();
+    while (memoryUsed > maxMemory) {
+      memoryUsed -= getSize(indices.next());
+      indices.remove();
+    }
+  }
+
+  private static long getSize(long[] index) {
+    return index.length * 8L + ENTRY_OVERHEAD;
+  }
+}
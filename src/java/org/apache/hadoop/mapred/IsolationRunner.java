@@ -55,6 +55,10 @@ public class IsolationRunner {
       return null;
     }
 
+    public String getNextTask(String taskid) throws IOException {
+      return null;
+    }
+
     public boolean ping(String taskid) throws IOException {
       return true;
     }
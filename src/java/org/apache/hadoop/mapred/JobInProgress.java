@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.Vector;
 
@@ -73,6 +75,15 @@ class JobInProgress {
   JobTracker jobtracker = null;
   Map<String,List<TaskInProgress>> hostToMaps =
     new HashMap<String,List<TaskInProgress>>();
+  
+  // The tips waiting to be run, in the order they are to be scheduled in,
+  // and the running tips, which are the candidates for speculation. Tips
+  // that have started to run or are no longer runnable are dropped lazily,
+  // as they are found by findNewTask.
+  Set<TaskInProgress> nonRunningMaps = new LinkedHashSet<TaskInProgress>();
+  Set<TaskInProgress> runningMaps = new LinkedHashSet<TaskInProgress>();
+  Set<TaskInProgress> nonRunningReduces = new LinkedHashSet<TaskInProgress>();
+  Set<TaskInProgress> runningReduces = new LinkedHashSet<TaskInProgress>();
   private int taskCompletionEventTracker = 0; 
   List<TaskCompletionEvent> taskCompletionEvents;
     
@@ -205,6 +216,7 @@ class JobInProgress {
                                    splits[i].getClassName(),
                                    splits[i].getBytes(), 
                                    jobtracker, conf, this, i);
+      nonRunningMaps.add(maps[i]);
       for(String host: splits[i].getLocations()) {
         List<TaskInProgress> hostMaps = hostToMaps.get(host);
         if (hostMaps == null) {
@@ -239,6 +251,7 @@ class JobInProgress {
       reduces[i] = new TaskInProgress(uniqueString, jobFile, 
                                       numMapTasks, i, 
                                       jobtracker, conf, this);
+      nonRunningReduces.add(reduces[i]);
     }
 
     this.status = new JobStatus(status.getJobId(), 0.0f, 0.0f, JobStatus.RUNNING);
@@ -496,12 +509,14 @@ class JobInProgress {
     }
     ArrayList mapCache = (ArrayList)hostToMaps.get(tts.getHost());
     int target = findNewTask(tts, clusterSize, status.mapProgress(), 
-                             maps, mapCache);
+                             nonRunningMaps, runningMaps, mapCache);
     if (target == -1) {
       return null;
     }
     boolean wasRunning = maps[target].isRunning();
     Task result = maps[target].getTaskToRun(tts.getTrackerName());
+    nonRunningMaps.remove(maps[target]);
+    runningMaps.add(maps[target]);
     if (!wasRunning) {
       runningMapTasks += 1;
       JobHistory.Task.logStarted(profile.getJobId(), 
@@ -525,12 +540,14 @@ class JobInProgress {
     }
 
     int target = findNewTask(tts, clusterSize, status.reduceProgress() , 
-                             reduces, null);
+                             nonRunningReduces, runningReduces, null);
     if (target == -1) {
       return null;
     }
     boolean wasRunning = reduces[target].isRunning();
     Task result = reduces[target].getTaskToRun(tts.getTrackerName());
+    nonRunningReduces.remove(reduces[target]);
+    runningReduces.add(reduces[target]);
     if (!wasRunning) {
       runningReduceTasks += 1;
       JobHistory.Task.logStarted(profile.getJobId(), 
@@ -609,15 +626,16 @@ class JobInProgress {
    * @param tts The task tracker that is asking for a task
    * @param clusterSize The number of task trackers in the cluster
    * @param avgProgress The average progress of this kind of task in this job
-   * @param tasks The list of potential tasks to try
-   * @param firstTaskToTry The first index in tasks to check
+   * @param nonRunningTasks The tips waiting to be run, in order
+   * @param runningTasks The running tips, to try for speculative tasks
    * @param cachedTasks A list of tasks that would like to run on this node
    * @return the index in tasks of the selected task (or -1 for no task)
    */
   private int findNewTask(TaskTrackerStatus tts, 
                           int clusterSize,
                           double avgProgress,
-                          TaskInProgress[] tasks,
+                          Set<TaskInProgress> nonRunningTasks,
+                          Set<TaskInProgress> runningTasks,
                           List cachedTasks) {
     String taskTracker = tts.getTrackerName();
 
@@ -666,44 +684,52 @@ class JobInProgress {
     // If there's no cached target, see if there's
     // a std. task to run.
     //
-    int failedTarget = -1;
-    int specTarget = -1;
-    for (int i = 0; i < tasks.length; i++) {
-      TaskInProgress task = tasks[i];
-      if (task.isRunnable()) {
-        // if it failed here and we haven't tried every machine, we
-        // don't schedule it here.
-        boolean hasFailed = task.hasFailedOnMachine(taskTracker);
-        if (hasFailed && (task.getNumberOfFailedMachines() < clusterSize)) {
-          continue;
-        }
-        boolean isRunning = task.isRunning();
-        if (hasFailed) {
-          // failed tasks that aren't running can be scheduled as a last
-          // resort
-          if (!isRunning && failedTarget == -1) {
-            failedTarget = i;
-          }
-        } else {
-          if (!isRunning) {
-            LOG.info("Choosing normal task " + tasks[i].getTIPId());
-            return i;
-          } else if (specTarget == -1 &&
-                     task.hasSpeculativeTask(avgProgress) && 
-                     !task.hasRunOnMachine(taskTracker)) {
-            specTarget = i;
-          }
+    TaskInProgress failedTarget = null;
+    Iterator<TaskInProgress> iter = nonRunningTasks.iterator();
+    while (iter.hasNext()) {
+      TaskInProgress task = iter.next();
+      if (!task.isRunnable() || task.isRunning()) {
+        iter.remove();
+        continue;
+      }
+      // if it failed here and we haven't tried every machine, we
+      // don't schedule it here.
+      if (task.hasFailedOnMachine(taskTracker)) {
+        // failed tasks that aren't running can be scheduled as a last
+        // resort
+        if (failedTarget == null && 
+            task.getNumberOfFailedMachines() >= clusterSize) {
+          failedTarget = task;
         }
+        continue;
+      }
+      LOG.info("Choosing normal task " + task.getTIPId());
+      return task.getIdWithinJob();
+    }
+    
+    //
+    // Else see if a running task can be speculated here.
+    //
+    iter = runningTasks.iterator();
+    while (iter.hasNext()) {
+      TaskInProgress task = iter.next();
+      if (!task.isRunning()) {
+        iter.remove();
+        continue;
+      }
+      if (task.isRunnable() &&
+          !task.hasFailedOnMachine(taskTracker) &&
+          task.hasSpeculativeTask(avgProgress) && 
+          !task.hasRunOnMachine(taskTracker)) {
+        LOG.info("Choosing speculative task " + task.getTIPId());
+        return task.getIdWithinJob();
       }
     }
-    if (specTarget != -1) {
-      LOG.info("Choosing speculative task " + 
-               tasks[specTarget].getTIPId());
-    } else if (failedTarget != -1) {
-      LOG.info("Choosing failed task " + 
-               tasks[failedTarget].getTIPId());          
+    if (failedTarget != null) {
+      LOG.info("Choosing failed task " + failedTarget.getTIPId());
+      return failedTarget.getIdWithinJob();
     }
-    return specTarget != -1 ? specTarget : failedTarget;
+    return -1;
   }
 
   /**
@@ -921,6 +947,12 @@ class JobInProgress {
     } else {
       failedReduceTasks++; 
     }
+    if (!isRunning && tip.isRunnable()) {
+      Set<TaskInProgress> nonRunningTasks = 
+        tip.isMapTask() ? nonRunningMaps : nonRunningReduces;
+      nonRunningTasks.remove(tip);
+      nonRunningTasks.add(tip);
+    }
             
     //
     // Note down that a task has failed on this tasktracker 
@@ -1109,8 +1109,8 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
       
     // Check for new tasks to be executed on the tasktracker
     if (acceptNewTasks) {
-      Task task = getNewTaskForTaskTracker(trackerName);
-      if (task != null) {
+      List<Task> tasks = getNewTasksForTaskTracker(trackerName);
+      for (Task task : tasks) {
         LOG.debug(trackerName + " -> LaunchTask: " + task.getTaskId());
         actions.add(new LaunchTaskAction(task));
       }
@@ -1225,14 +1225,16 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
   }
 
   /**
-   * Returns a task we'd like the TaskTracker to execute right now.
+   * Returns the tasks we'd like the TaskTracker to execute right now, as
+   * many as it has room for under the load limits.
    *
    * Eventually this function should compute load on the various TaskTrackers,
    * and incorporate knowledge of DFS file placement.  But for right now, it
-   * just grabs a single item out of the pending task list and hands it back.
+   * just grabs items out of the pending task list and hands them back.
    */
-  private synchronized Task getNewTaskForTaskTracker(String taskTracker
-                                                     ) throws IOException {
+  private synchronized List<Task> getNewTasksForTaskTracker(String taskTracker
+                                                            ) throws IOException {
+    List<Task> newTasks = new ArrayList<Task>();
     //
     // Compute average map and reduce task numbers across pool
     //
@@ -1247,7 +1249,7 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
     }
     if (tts == null) {
       LOG.warn("Unknown task tracker polling; ignoring: " + taskTracker);
-      return null;
+      return newTasks;
     }
     int totalCapacity = numTaskTrackers * maxCurrentTasks;
 
@@ -1284,10 +1286,11 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
     int numReduces = tts.countReduceTasks();
 
     //
-    // In the below steps, we allocate first a map task (if appropriate),
-    // and then a reduce task if appropriate.  We go through all jobs
-    // in order of job arrival; jobs only get serviced if their 
-    // predecessors are serviced, too.
+    // In the below steps, we allocate first map tasks (if appropriate),
+    // and then reduce tasks if appropriate, one at a time until the
+    // tracker is loaded.  We go through all jobs in order of job arrival
+    // for each task; jobs only get serviced if their predecessors are 
+    // serviced, too.
     //
 
     //
@@ -1297,8 +1300,10 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
     //
        
     synchronized (jobsByArrival) {
-      if (numMaps < maxMapLoad) {
+      int newMaps = 0;
+      while (numMaps + newMaps < maxMapLoad) {
 
+        Task t = null;
         int totalNeededMaps = 0;
         for (Iterator it = jobsByArrival.iterator(); it.hasNext();) {
           JobInProgress job = (JobInProgress) it.next();
@@ -1306,11 +1311,11 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
             continue;
           }
 
-          Task t = job.obtainNewMapTask(tts, numTaskTrackers);
+          t = job.obtainNewMapTask(tts, numTaskTrackers);
           if (t != null) {
             expireLaunchingTasks.addNewTask(t.getTaskId());
             myMetrics.launchMap();
-            return t;
+            break;
           }
 
           //
@@ -1324,17 +1329,24 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
             padding = Math.min(maxCurrentTasks,
                                (int)(totalNeededMaps * PAD_FRACTION));
           }
-          if (totalMaps + padding >= totalCapacity) {
+          if (totalMaps + newMaps + padding >= totalCapacity) {
             break;
           }
         }
+        if (t == null) {
+          break;
+        }
+        newTasks.add(t);
+        newMaps++;
       }
 
       //
       // Same thing, but for reduce tasks
       //
-      if (numReduces < maxReduceLoad) {
+      int newReduces = 0;
+      while (numReduces + newReduces < maxReduceLoad) {
 
+        Task t = null;
         int totalNeededReduces = 0;
         for (Iterator it = jobsByArrival.iterator(); it.hasNext();) {
           JobInProgress job = (JobInProgress) it.next();
@@ -1343,11 +1355,11 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
             continue;
           }
 
-          Task t = job.obtainNewReduceTask(tts, numTaskTrackers);
+          t = job.obtainNewReduceTask(tts, numTaskTrackers);
           if (t != null) {
             expireLaunchingTasks.addNewTask(t.getTaskId());
             myMetrics.launchReduce();
-            return t;
+            break;
           }
 
           //
@@ -1362,13 +1374,18 @@ public class JobTracker implements MRConstants, InterTrackerProtocol, JobSubmiss
               Math.min(maxCurrentTasks,
                        (int) (totalNeededReduces * PAD_FRACTION));
           }
-          if (totalReduces + padding >= totalCapacity) {
+          if (totalReduces + newReduces + padding >= totalCapacity) {
             break;
           }
         }
+        if (t == null) {
+          break;
+        }
+        newTasks.add(t);
+        newReduces++;
       }
     }
-    return null;
+    return newTasks;
   }
 
   /**
@@ -80,16 +80,12 @@ public class KeyValueLineRecordReader extends LineRecordReader {
     int pos = findSeparator(line, 0, lineLen, this.separator);
     if (pos == -1) {
       tKey.set(line, 0, lineLen);
-      tValue.set("");
+      tValue.clear();
     } else {
       int keyLen = pos;
-      byte[] keyBytes = new byte[keyLen];
-      System.arraycopy(line, 0, keyBytes, 0, keyLen);
       int valLen = lineLen - keyLen - 1;
-      byte[] valBytes = new byte[valLen];
-      System.arraycopy(line, pos + 1, valBytes, 0, valLen);
-      tKey.set(keyBytes);
-      tValue.set(valBytes);
+      tKey.set(line, 0, keyLen);
+      tValue.set(line, pos + 1, valLen);
     }
     return true;
   }
@@ -1,7 +1,5 @@
 package org.apache.hadoop.mapred;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,22 +25,109 @@ public class LineRecordReader implements RecordReader {
   private long start; 
   private long pos;
   private long end;
-  private BufferedInputStream in;
-  private ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+  private LineReader in;
+
   /**
-   * Provide a bridge to get the bytes from the ByteArrayOutputStream
-   * without creating a new byte array.
+   * Reads lines from an input stream through a buffer that it scans for the
+   * ends of lines in bulk, copying each line into a {@link Text} directly
+   * from the buffer.  Lines end with LF, CR or CRLF, also when these
+   * straddle the end of the buffer.
    */
-  private static class TextStuffer extends OutputStream {
-    public Text target;
-    public void write(int b) {
-      throw new UnsupportedOperationException("write(byte) not supported");
+  public static class LineReader {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private InputStream in;
+    private byte[] buffer;
+    // the number of bytes of real data in the buffer
+    private int bufferLength = 0;
+    // the current position in the buffer
+    private int bufferPosn = 0;
+
+    /**
+     * Create a line reader that reads from the given stream using the 
+     * given buffer size.
+     * @param in The input stream
+     * @param bufferSize Size of the read buffer
+     */
+    public LineReader(InputStream in, int bufferSize) {
+      this.in = in;
+      this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Create a line reader that reads from the given stream using the
+     * <code>io.file.buffer.size</code> specified in the given
+     * <code>Configuration</code>, but a buffer of at least 64k, since the
+     * buffer is filled and scanned in bulk.
+     * @param in input stream
+     * @param conf configuration
+     */
+    public LineReader(InputStream in, Configuration conf) {
+      this(in, Math.max(conf.getInt("io.file.buffer.size", 
+                                    DEFAULT_BUFFER_SIZE),
+                        DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Read one line from the InputStream into the given Text, without the
+     * line terminator.
+     * @param str the object to store the given line
+     * @return the number of bytes read including the line terminator, or 0
+     * at the end of the stream
+     * @throws IOException if the underlying stream throws
+     */
+    public long readLine(Text str) throws IOException {
+      str.clear();
+      long bytesConsumed = 0;
+      int newlineLength = 0;            // the length of the terminator
+      boolean prevCharCR = false;       // the last byte read was a CR
+      do {
+        if (bufferPosn >= bufferLength) {
+          bufferPosn = 0;
+          bufferLength = in.read(buffer);
+          if (bufferLength <= 0) {
+            bufferLength = 0;
+            break;                      // end of the stream
+          }
+        }
+        int startPosn = bufferPosn;
+        for (; bufferPosn < bufferLength; ++bufferPosn) {
+          if (buffer[bufferPosn] == LF) {
+            newlineLength = prevCharCR ? 2 : 1;
+            ++bufferPosn;               // the next line starts after the LF
+            break;
+          }
+          if (prevCharCR) {             // a CR not followed by a LF
+            newlineLength = 1;
+            break;
+          }
+          prevCharCR = (buffer[bufferPosn] == CR);
+        }
+        int readLength = bufferPosn - startPosn;
+        bytesConsumed += readLength;
+        // the terminator, or the CR the buffer ends with, which may have been
+        // read with an earlier buffer, is not part of the line
+        int appendLength = readLength - newlineLength;
+        if (prevCharCR && newlineLength == 0) {
+          --appendLength;
+        }
+        if (appendLength > 0) {
+          str.append(buffer, startPosn, appendLength);
+        }
+      } while (newlineLength == 0);
+      return bytesConsumed;
+    }
+
+    /**
+     * Close the underlying stream.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+      in.close();
     }
-    public void write(byte[] data, int offset, int len) throws IOException {
-      target.set(data, offset, len);
-    }      
   }
-  private TextStuffer bridge = new TextStuffer();
 
   public LineRecordReader(Configuration job, FileSplit split)
     throws IOException {
@@ -55,17 +140,22 @@ public class LineRecordReader implements RecordReader {
     // open the file and seek to the start of the split
     FileSystem fs = FileSystem.get(job);
     FSDataInputStream fileIn = fs.open(split.getPath());
-    InputStream in = fileIn;
+    boolean skipFirstLine = false;
     if (codec != null) {
-      in = codec.createInputStream(fileIn);
+      in = new LineReader(codec.createInputStream(fileIn), job);
       end = Long.MAX_VALUE;
-    } else if (start != 0) {
-      fileIn.seek(start - 1);
-      LineRecordReader.readLine(fileIn, null);
-      start = fileIn.getPos();
+    } else {
+      if (start != 0) {
+        // the line the split starts in belongs to the previous split
+        skipFirstLine = true;
+        --start;
+        fileIn.seek(start);
+      }
+      in = new LineReader(fileIn, job);
+    }
+    if (skipFirstLine) {
+      start += in.readLine(new Text());
     }
-
-    this.in = new BufferedInputStream(in);
     this.start = start;
     this.pos = start;
     this.end = end;
@@ -73,11 +163,10 @@ public class LineRecordReader implements RecordReader {
   
   public LineRecordReader(InputStream in, long offset, long endOffset) 
     throws IOException{
-    this.in = new BufferedInputStream(in);
+    this.in = new LineReader(in, LineReader.DEFAULT_BUFFER_SIZE);
     this.start = offset;
     this.pos = offset;
     this.end = endOffset;    
-    //    readLine(in, null); 
   }
   
   public WritableComparable createKey() {
@@ -95,21 +184,14 @@ public class LineRecordReader implements RecordReader {
       return false;
 
     ((LongWritable)key).set(pos);           // key is position
-    buffer.reset();
-    long bytesRead = readLine();
+    long bytesRead = in.readLine((Text) value);
     if (bytesRead == 0) {
       return false;
     }
     pos += bytesRead;
-    bridge.target = (Text) value;
-    buffer.writeTo(bridge);
     return true;
   }
   
-  protected long readLine() throws IOException {
-    return LineRecordReader.readLine(in, buffer);
-  }
-
   public static long readLine(InputStream in, 
                               OutputStream out) throws IOException {
     long bytes = 0;
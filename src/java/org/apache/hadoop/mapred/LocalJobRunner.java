@@ -195,6 +195,8 @@ class LocalJobRunner implements JobSubmissionProtocol {
 
     public Task getTask(String taskid) { return null; }
 
+    public String getNextTask(String taskid) { return null; }
+
     public void progress(String taskId, float progress, String state, 
                          TaskStatus.Phase phase, Counters taskCounters) {
       LOG.info(state);
@@ -22,6 +22,8 @@ import java.io.IOException;
 
 import java.io.*;
 import java.net.*;
+import java.util.Collection;
+import java.util.Iterator;
 
 import org.apache.hadoop.fs.InMemoryFileSystem;
 import org.apache.hadoop.fs.Path;
@@ -192,25 +194,54 @@ class MapOutputLocation implements Writable, MRConstants {
                       LocalDirAllocator lDirAlloc,
                       Configuration conf, int reduce,
                       int timeout) throws IOException, InterruptedException {
+    URL path = new URL(toString() + "&reduce=" + reduce);
+    URLConnection connection = path.openConnection();
+    if (timeout > 0) {
+      connection.setConnectTimeout(timeout);
+      connection.setReadTimeout(timeout);
+    }
+    InputStream input = connection.getInputStream();
+    try {
+      long length = Long.parseLong(connection.getHeaderField(MAP_OUTPUT_LENGTH));
+      return getFile(input, length, inMemFileSys, localFileSys, shuffleMetrics,
+                     localFilename, lDirAlloc, conf);
+    } finally {
+      input.close();
+    }
+  }
+  
+  /**
+   * Get the map output into a local file (either in the inmemory fs or on the 
+   * local fs) from a stream that was opened on the remote server. Exactly
+   * length bytes are read from the stream, which is left open.
+   * @param input the stream to read the map output from
+   * @param length the length of the map output
+   * @param inMemFileSys the inmemory filesystem to write the file to
+   * @param localFileSys the local filesystem to write the file to
+   * @param shuffleMetrics the metrics context
+   * @param localFilename the filename to write the data into
+   * @param lDirAlloc the LocalDirAllocator object
+   * @param conf the Configuration object
+   * @return the path of the file that got created
+   * @throws IOException when something goes wrong
+   */
+  public Path getFile(InputStream input, long length,
+                      InMemoryFileSystem inMemFileSys,
+                      FileSystem localFileSys,
+                      MetricsRecord shuffleMetrics,
+                      Path localFilename, 
+                      LocalDirAllocator lDirAlloc,
+                      Configuration conf
+                      ) throws IOException, InterruptedException {
     boolean good = false;
     long totalBytes = 0;
     FileSystem fileSys = localFileSys;
     Thread currentThread = Thread.currentThread();
-    URL path = new URL(toString() + "&reduce=" + reduce);
     try {
-      URLConnection connection = path.openConnection();
-      if (timeout > 0) {
-        connection.setConnectTimeout(timeout);
-        connection.setReadTimeout(timeout);
-      }
-      InputStream input = connection.getInputStream();
-      OutputStream output = null;
-      
       //We will put a file in memory if it meets certain criteria:
       //1. The size of the file should be less than 25% of the total inmem fs
       //2. There is space available in the inmem fs
       
-      long length = Long.parseLong(connection.getHeaderField(MAP_OUTPUT_LENGTH));
       long inMemFSSize = inMemFileSys.getFSSize();
       long checksumLength = (int)inMemFileSys.getChecksumFileLength(
                                                   localFilename, length);
@@ -229,33 +260,31 @@ class MapOutputLocation implements Writable, MRConstants {
             localFilename.toUri().getPath(), length + checksumLength, conf);
       }
       
-      output = fileSys.create(localFilename);
-      try {  
-        try {
-          byte[] buffer = new byte[64 * 1024];
+      OutputStream output = fileSys.create(localFilename);
+      try {
+        byte[] buffer = new byte[64 * 1024];
+        if (currentThread.isInterrupted()) {
+          throw new InterruptedException();
+        }
+        int len = input.read(buffer, 0, 
+                             (int)Math.min(buffer.length, length));
+        while (len > 0) {
+          totalBytes += len;
+          shuffleMetrics.incrMetric("shuffle_input_bytes", len);
+          shuffleMetrics.update();
+          output.write(buffer, 0 , len);
           if (currentThread.isInterrupted()) {
             throw new InterruptedException();
           }
-          int len = input.read(buffer);
-          while (len > 0) {
-            totalBytes += len;
-            shuffleMetrics.incrMetric("shuffle_input_bytes", len);
-            shuffleMetrics.update();
-            output.write(buffer, 0 , len);
-            if (currentThread.isInterrupted()) {
-              throw new InterruptedException();
-            }
-            len = input.read(buffer);
-          }
-        } finally {
-          output.close();
+          len = input.read(buffer, 0, 
+                           (int)Math.min(buffer.length, length - totalBytes));
         }
       } finally {
-        input.close();
+        output.close();
       }
       good = (totalBytes == length);
       if (!good) {
-        throw new IOException("Incomplete map output received for " + path +
+        throw new IOException("Incomplete map output received for " + this +
                               " (" + totalBytes + " instead of " + length + ")"
                               );
       }
@@ -271,5 +300,34 @@ class MapOutputLocation implements Writable, MRConstants {
     }
     return fileSys.makeQualified(localFilename);
   }
+  
+  /**
+   * Open a single connection to get the map outputs of several maps, all of
+   * which completed on the same host. The map outputs are sent one after
+   * the other, each as the map task id, the length of the map output, or -1
+   * if it is not available, and then the map output itself.
+   * @param locs the locations of the map outputs
+   * @param reduce the reduce id to get for
+   * @param timeout number of ms for connection and read timeout
+   * @return the stream of map outputs
+   * @throws IOException when something goes wrong
+   */
+  public static DataInputStream openMapOutputs(
+                                   Collection<MapOutputLocation> locs,
+                                   int reduce, int timeout) throws IOException {
+    Iterator<MapOutputLocation> locIt = locs.iterator();
+    StringBuffer path = new StringBuffer(locIt.next().toString());
+    while (locIt.hasNext()) {
+      path.append(',').append(locIt.next().getMapTaskId());
+    }
+    path.append("&reduce=").append(reduce);
+    URLConnection connection = new URL(path.toString()).openConnection();
+    if (timeout > 0) {
+      connection.setConnectTimeout(timeout);
+      connection.setReadTimeout(timeout);
+    }
+    return new DataInputStream(
+             new BufferedInputStream(connection.getInputStream()));
+  }
 
 }
@@ -149,6 +149,10 @@ class MapTask extends Task {
     final RecordReader rawIn =                  // open input
       job.getInputFormat().getRecordReader(instantiatedSplit, job, reporter);
 
+    final Counters.Handle inputRecordCounter = 
+      getCounters().getHandle(MAP_INPUT_RECORDS);
+    final Counters.Handle inputByteCounter = 
+      getCounters().getHandle(MAP_INPUT_BYTES);
     RecordReader in = new RecordReader() {      // wrap in progress reporter
 
         public WritableComparable createKey() {
@@ -167,8 +171,8 @@ class MapTask extends Task {
           long beforePos = getPos();
           boolean ret = rawIn.next(key, value);
           if (ret) {
-            reporter.incrCounter(MAP_INPUT_RECORDS, 1);
-            reporter.incrCounter(MAP_INPUT_BYTES, (getPos() - beforePos));
+            inputRecordCounter.increment(1);
+            inputByteCounter.increment(getPos() - beforePos);
           }
           return ret;
         }
@@ -274,20 +278,44 @@ class MapTask extends Task {
     private JobConf job;
     private Reporter reporter;
 
-    private DataOutputBuffer keyValBuffer; //the buffer where key/val will
-                                           //be stored before they are 
-                                           //spilled to disk
-    private int maxBufferSize; //the max amount of in-memory space after which
-                               //we will spill the keyValBuffer to disk
+    //The map output is collected into one of two buffers. When the buffer
+    //being collected into crosses the soft limit, it is handed over to the
+    //spill thread and collection continues into the other buffer. The map
+    //blocks only if the collect buffer reaches the hard limit while the
+    //previous spill is still in progress.
+    private SpillBuffer[] buffers = new SpillBuffer[2];
+    private SpillBuffer collectBuffer; //the buffer where key/val will
+                                       //be stored before they are
+                                       //spilled to disk
+    private SpillBuffer spillBuffer; //the buffer being spilled by the spill
+                                     //thread; null if no spill is running
+    private int softBufferLimit; //the in-memory space after which we start
+                                 //spilling the collect buffer in the background
+    private int hardBufferLimit; //the max amount of in-memory space per
+                                 //buffer after which collection waits for
+                                 //the running spill to finish
     private int numSpills; //maintains the no. of spills to disk done so far
-    
+    private int minSpillsForCombine; //the min no. of spills for which the
+                                     //combiner is run again on the merge
+    private final Object spillLock = new Object();
+    private SpillThread spillThread;
+    private Throwable spillException; //the failure of the spill thread, if any
+
+    private final Counters.Handle mapOutputRecordCounter = 
+      getCounters().getHandle(MAP_OUTPUT_RECORDS);
+    private final Counters.Handle mapOutputByteCounter = 
+      getCounters().getHandle(MAP_OUTPUT_BYTES);
+    private final Counters.Handle combineInputCounter = 
+      getCounters().getHandle(COMBINE_INPUT_RECORDS);
+    private final Counters.Handle combineOutputCounter = 
+      getCounters().getHandle(COMBINE_OUTPUT_RECORDS);
+
     private FileSystem localFs;
     private CompressionCodec codec;
     private CompressionType compressionType;
     private Class keyClass;
     private Class valClass;
     private WritableComparator comparator;
-    private BufferSorter []sortImpl;
     private SequenceFile.Writer writer;
     private FSDataOutputStream out;
     private FSDataOutputStream indexOut;
@@ -297,8 +325,16 @@ class MapTask extends Task {
       this.partitions = job.getNumReduceTasks();
       this.partitioner = (Partitioner)ReflectionUtils.newInstance(
                                                                   job.getPartitionerClass(), job);
-      maxBufferSize = job.getInt("io.sort.mb", 100) * 1024 * 1024;
-      keyValBuffer = new DataOutputBuffer();
+      //the two buffers share io.sort.mb between them
+      int maxBufferSize = job.getInt("io.sort.mb", 100) * 1024 * 1024;
+      float spillPercent = job.getFloat("io.sort.spill.percent", 0.8f);
+      if (spillPercent <= 0 || spillPercent > 1) {
+        throw new IOException("Invalid \"io.sort.spill.percent\": " +
+                              spillPercent);
+      }
+      hardBufferLimit = maxBufferSize / 2;
+      softBufferLimit = (int)(hardBufferLimit * spillPercent);
+      minSpillsForCombine = job.getInt("min.num.spills.for.combine", 3);
 
       this.umbilical = umbilical;
       this.job = job;
@@ -319,12 +355,128 @@ class MapTask extends Task {
         codec = (CompressionCodec) 
           ReflectionUtils.newInstance(codecClass, job);
       }
-      sortImpl = new BufferSorter[partitions];
-      for (int i = 0; i < partitions; i++)
-        sortImpl[i] = (BufferSorter)ReflectionUtils.newInstance(
-                                                                job.getClass("map.sort.class", MergeSorter.class,
-                                                                             BufferSorter.class), job);
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = new SpillBuffer();
+      }
+      collectBuffer = buffers[0];
+      spillThread = new SpillThread();
+      spillThread.setName("Spill thread for task " + getTaskId());
+      spillThread.setDaemon(true);
+      spillThread.start();
+    }
+
+    /** The serialized map output along with the sort datastructures
+     * describing it. */
+    private class SpillBuffer {
+      private DataOutputBuffer keyValBuffer = new DataOutputBuffer();
+      //a single sorter tracks the records of all the partitions
+      private BufferSorter sortImpl = (BufferSorter)ReflectionUtils.newInstance(
+                                        job.getClass("map.sort.class", MergeSorter.class,
+                                                     BufferSorter.class), job);
+
+      long getMemoryUtilized() {
+        return keyValBuffer.getLength() + sortImpl.getMemoryUtilized();
+      }
+
+      boolean isEmpty() {
+        return keyValBuffer.getLength() == 0;
+      }
+
+      void reset() {
+        keyValBuffer.reset();
+        sortImpl.close();
+      }
+    }
+
+    /** Sorts and spills the buffers handed over by the collecting thread, so
+     * that the map can proceed while the spill is written to disk. */
+    private class SpillThread extends Thread {
+      public void run() {
+        try {
+          while (true) {
+            SpillBuffer buffer;
+            synchronized (spillLock) {
+              while (spillBuffer == null) {
+                spillLock.wait();
+              }
+              buffer = spillBuffer;
+            }
+            // Start the progress thread
+            Thread progress = createProgressThread(umbilical);
+            try {
+              sortAndSpillToDisk(buffer);
+              buffer.reset();
+            } finally {
+              // Stop the progress thread
+              progress.interrupt();
+            }
+            synchronized (spillLock) {
+              spillBuffer = null;
+              spillLock.notifyAll();
+            }
+          }
+        } catch (InterruptedException ie) {
+          // we are being shut down
+        } catch (Throwable t) {
+          LOG.warn("Spill failed: " + StringUtils.stringifyException(t));
+          synchronized (spillLock) {
+            spillException = t;
+            spillLock.notifyAll();
+          }
+        }
+      }
+    }
+
+    /** Hands the collect buffer over to the spill thread. If a spill is
+     * already running, we either keep collecting (and return false) or, if
+     * the caller cannot proceed, wait for the running spill to finish.
+     * @param block whether to wait for a running spill
+     * @return true if the collect buffer was handed over
+     */
+    private boolean startSpill(boolean block) throws IOException {
+      synchronized (spillLock) {
+        if (spillBuffer != null && !block) {
+          return false;
+        }
+        waitForSpill();
+        spillBuffer = collectBuffer;
+        collectBuffer = (collectBuffer == buffers[0]) ? buffers[1] : buffers[0];
+        spillLock.notifyAll();
+        return true;
+      }
+    }
+
+    /** Waits for the running spill, if any, to finish. */
+    private void waitForSpill() throws IOException {
+      synchronized (spillLock) {
+        while (spillBuffer != null && spillException == null) {
+          try {
+            spillLock.wait();
+          } catch (InterruptedException ie) {
+            throw new IOException("Interrupted while waiting for the spill " +
+                                  "of map output");
+          }
+        }
+        if (spillException != null) {
+          IOException ioe = new IOException("Spill failed");
+          ioe.initCause(spillException);
+          throw ioe;
+        }
+      }
+    }
+
+    private void stopSpillThread() {
+      if (spillThread != null) {
+        spillThread.interrupt();
+        try {
+          spillThread.join();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+        }
+        spillThread = null;
+      }
     }
+
     public void startPartition(int partNumber) throws IOException {
       //We create the sort output as multiple sequence files within a spilled
       //file. So we create a writer for each partition. 
@@ -358,97 +510,96 @@ class MapTask extends Task {
       }
       
       synchronized (this) {
+        int partNumber = partitioner.getPartition(key, value, partitions);
+        if (partNumber < 0 || partNumber >= partitions) {
+          throw new IOException("Illegal partition for key " + key + " (" +
+                                partNumber + "), expected 0 to " +
+                                (partitions - 1));
+        }
+
         //dump the key/value to buffer
-        int keyOffset = keyValBuffer.getLength(); 
+        DataOutputBuffer keyValBuffer = collectBuffer.keyValBuffer;
+        int keyOffset = keyValBuffer.getLength();
         key.write(keyValBuffer);
         int keyLength = keyValBuffer.getLength() - keyOffset;
         value.write(keyValBuffer);
         int valLength = keyValBuffer.getLength() - (keyOffset + keyLength);
-      
-        int partNumber = partitioner.getPartition(key, value, partitions);
-        sortImpl[partNumber].addKeyValue(keyOffset, keyLength, valLength);
 
-        reporter.incrCounter(MAP_OUTPUT_RECORDS, 1);
-        reporter.incrCounter(MAP_OUTPUT_BYTES,
-                             (keyValBuffer.getLength() - keyOffset));
+        collectBuffer.sortImpl.addKeyValue(partNumber, keyOffset, keyLength,
+                                           valLength);
 
-        //now check whether we need to spill to disk
-        long totalMem = 0;
-        for (int i = 0; i < partitions; i++)
-          totalMem += sortImpl[i].getMemoryUtilized();
-        if ((keyValBuffer.getLength() + totalMem) >= maxBufferSize) {
+        mapOutputRecordCounter.increment(1);
+        mapOutputByteCounter.increment(keyValBuffer.getLength() - keyOffset);
 
-          // Start the progress thread
-          Thread progress = createProgressThread(umbilical);
+        //now check whether we need to spill to disk
+        long totalMem = collectBuffer.getMemoryUtilized();
+        if (totalMem >= softBufferLimit) {
+          startSpill(totalMem >= hardBufferLimit);
+        }
+      }
+    }
 
-          try {
-            sortAndSpillToDisk();
-            keyValBuffer.reset();
-            for (int i = 0; i < partitions; i++) {
-              sortImpl[i].close();
-            }
-          } finally {
-            // Stop the progress thread
-            progress.interrupt();
+    //sort, combine and spill to disk
+    private void sortAndSpillToDisk(SpillBuffer buffer) throws IOException {
+      DataOutputBuffer keyValBuffer = buffer.keyValBuffer;
+      BufferSorter sortImpl = buffer.sortImpl;
+      //approximate the length of the output file to be the length of the
+      //buffer + header lengths for the partitions
+      long size = keyValBuffer.getLength() +
+                  partitions * APPROX_HEADER_LENGTH;
+      Path filename = mapOutputFile.getSpillFileForWrite(getTaskId(), 
+                                    numSpills, size);
+      //we just create the FSDataOutputStream object here.
+      out = localFs.create(filename);
+      Path indexFilename = mapOutputFile.getSpillIndexFileForWrite(
+                           getTaskId(), numSpills, partitions * 16);
+      indexOut = localFs.create(indexFilename);
+      LOG.debug("opened "+
+                mapOutputFile.getSpillFile(getTaskId(), numSpills).getName());
+        
+      //invoke the sort; this orders the records of all the partitions
+      sortImpl.setInputBuffer(keyValBuffer);
+      sortImpl.sort();
+      for (int i = 0; i < partitions; i++) {
+        RawKeyValueIterator rIter = sortImpl.iterator(i);
+        
+        startPartition(i);
+        if (rIter != null) {
+          //invoke the combiner if one is defined
+          if (job.getCombinerClass() != null) {
+            combineAndSpill(rIter, writer);
           }
+          else //just spill the sorted data
+            spill(rIter);
         }
+        endPartition(i);
       }
+      numSpills++;
+      out.close();
+      indexOut.close();
     }
     
-    //sort, combine and spill to disk
-    private void sortAndSpillToDisk() throws IOException {
-      synchronized (this) {
-        //approximate the length of the output file to be the length of the
-        //buffer + header lengths for the partitions
-        long size = keyValBuffer.getLength() + 
-                    partitions * APPROX_HEADER_LENGTH;
-        Path filename = mapOutputFile.getSpillFileForWrite(getTaskId(), 
-                                      numSpills, size);
-        //we just create the FSDataOutputStream object here.
-        out = localFs.create(filename);
-        Path indexFilename = mapOutputFile.getSpillIndexFileForWrite(
-                             getTaskId(), numSpills, partitions * 16);
-        indexOut = localFs.create(indexFilename);
-        LOG.debug("opened "+
-                  mapOutputFile.getSpillFile(getTaskId(), numSpills).getName());
-          
-        //invoke the sort
-        for (int i = 0; i < partitions; i++) {
-          sortImpl[i].setInputBuffer(keyValBuffer);
-          RawKeyValueIterator rIter = sortImpl[i].sort();
-          
-          startPartition(i);
-          if (rIter != null) {
-            //invoke the combiner if one is defined
-            if (job.getCombinerClass() != null) {
-              //we instantiate and close the combiner for each partition. This
-              //is required for streaming where the combiner runs as a separate
-              //process and we want to make sure that the combiner process has
-              //got all the input key/val, processed, and output the result 
-              //key/vals before we write the partition header in the output file
-              Reducer combiner = (Reducer)ReflectionUtils.newInstance(
-                                                                      job.getCombinerClass(), job);
-              // make collector
-              OutputCollector combineCollector = new OutputCollector() {
-                  public void collect(WritableComparable key, Writable value)
-                    throws IOException {
-                    synchronized (this) {
-                      writer.append(key, value);
-                    }
-                  }
-                };
-              combineAndSpill(rIter, combiner, combineCollector);
-              combiner.close();
+    private void combineAndSpill(RawKeyValueIterator resultIter,
+                                 final SequenceFile.Writer writer)
+      throws IOException {
+      //we instantiate and close the combiner for each partition. This
+      //is required for streaming where the combiner runs as a separate
+      //process and we want to make sure that the combiner process has
+      //got all the input key/val, processed, and output the result 
+      //key/vals before we write the partition header in the output file
+      Reducer combiner = (Reducer)ReflectionUtils.newInstance(
+                                                              job.getCombinerClass(), job);
+      // make collector
+      OutputCollector combineCollector = new OutputCollector() {
+          public void collect(WritableComparable key, Writable value)
+            throws IOException {
+            synchronized (this) {
+              writer.append(key, value);
             }
-            else //just spill the sorted data
-              spill(rIter);
           }
-          endPartition(i);
-        }
-        numSpills++;
-        out.close();
-        indexOut.close();
-      }
+        };
+      combineAndSpill(resultIter, combiner, combineCollector);
+      combiner.close();
     }
     
     private void combineAndSpill(RawKeyValueIterator resultIter, 
@@ -459,11 +610,23 @@ class MapTask extends Task {
       while (values.more()) {
         combiner.reduce(values.getKey(), values, combineCollector, reporter);
         values.nextKey();
-        reporter.incrCounter(COMBINE_OUTPUT_RECORDS, 1);
+        combineOutputCounter.increment(1);
       }
     }
     
     private void spill(RawKeyValueIterator resultIter) throws IOException {
+      if (compressionType != CompressionType.RECORD) {
+        //the sorted key/value bytes can be copied as is to the writer
+        while (resultIter.next()) {
+          DataOutputBuffer rawKey = resultIter.getKey();
+          writer.appendRaw(rawKey.getData(), 0, rawKey.getLength(),
+                           resultIter.getValue());
+        }
+        return;
+      }
+      
+      //record compression needs the values compressed one at a time, so
+      //they are deserialized and handed over to the writer
       Writable key = null;
       Writable value = null;
 
@@ -545,6 +708,10 @@ class MapTask extends Task {
         //create a sorter object as we need access to the SegmentDescriptor
         //class and merge methods
         Sorter sorter = new Sorter(localFs, keyClass, valClass, job);
+        //with many spills, the same keys are likely to show up in several
+        //of them, so the combiner is run again over the merged records
+        boolean combine = job.getCombinerClass() != null &&
+                          numSpills >= minSpillsForCombine;
         
         for (int parts = 0; parts < partitions; parts++){
           List<SegmentDescriptor> segmentList =
@@ -565,8 +732,13 @@ class MapTask extends Task {
           SequenceFile.Writer writer = SequenceFile.createWriter(job, finalOut, 
                                                                  job.getMapOutputKeyClass(), job.getMapOutputValueClass(), 
                                                                  compressionType, codec);
-          sorter.writeFile(sorter.merge(segmentList, new Path(getTaskId())), 
-                           writer);
+          RawKeyValueIterator kvIter =
+            sorter.merge(segmentList, new Path(getTaskId()));
+          if (combine) {
+            combineAndSpill(kvIter, writer);
+          } else {
+            sorter.writeFile(kvIter, writer);
+          }
           //add a sync block - required esp. for block compression to ensure
           //partition data don't span partition boundaries
           writer.sync();
@@ -589,7 +761,7 @@ class MapTask extends Task {
     }
     
     public void close() throws IOException {
-      //empty for now
+      stopSpillThread();
     }
     
     private class CombineValuesIterator extends ValuesIterator {
@@ -602,9 +774,14 @@ class MapTask extends Task {
       }
       
       public Object next() {
-        reporter.incrCounter(COMBINE_INPUT_RECORDS, 1);
+        combineInputCounter.increment(1);
         return super.next();
       }
+
+      public DataInputBuffer nextRawValue() throws IOException {
+        combineInputCounter.increment(1);
+        return super.nextRawValue();
+      }
     }
 
     public void flush() throws IOException {
@@ -613,13 +790,19 @@ class MapTask extends Task {
       Thread progress = createProgressThread(umbilical);
 
       try {
-        //check whether the length of the key/value buffer is 0. If not, then
-        //we need to spill that to disk. Note that we reset the key/val buffer
-        //upon each spill (so a length > 0 means that we have not spilled yet)
-        if (keyValBuffer.getLength() > 0) {
-          sortAndSpillToDisk();
+        synchronized (this) {
+          //let the running spill, if any, finish. Then check whether the
+          //collect buffer is empty. If not, then we need to spill that to
+          //disk. Note that we reset a buffer upon each spill (so a non-empty
+          //buffer means that we have not spilled it yet)
+          waitForSpill();
+          stopSpillThread();
+          if (!collectBuffer.isEmpty()) {
+            sortAndSpillToDisk(collectBuffer);
+            collectBuffer.reset();
+          }
+          mergeParts();
         }
-        mergeParts();
       } finally {
         // Stop the progress thread
         progress.interrupt();
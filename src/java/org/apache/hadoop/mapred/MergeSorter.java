@@ -20,7 +20,6 @@ package org.apache.hadoop.mapred;
 import java.util.Comparator;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.util.MergeSort;
-import org.apache.hadoop.io.SequenceFile.Sorter.RawKeyValueIterator;
 
 /** This class implements the sort method from BasicTypeSorterBase class as
  * MergeSort. Note that this class is really a wrapper over the actual
@@ -38,16 +37,16 @@ class MergeSorter extends BasicTypeSorterBase
 implements Comparator<IntWritable> {
   
   /** The sort method derived from BasicTypeSorterBase and overridden here*/
-  public RawKeyValueIterator sort() {
-    MergeSort m = new MergeSort(this);
+  public void sort() {
     int count = super.count;
-    if (count == 0) return null;
-    int [] pointers = (int[])super.pointers;
+    if (count == 0) return;
+    normalizeKeys();
+    MergeSort m = new MergeSort(this);
+    int [] pointers = super.pointers;
     int [] pointersCopy = new int[count];
     System.arraycopy(pointers, 0, pointersCopy, 0, count);
-    m.mergeSort(pointers, pointersCopy, 0, count);
-    return new MRSortResultIterator(super.keyValBuffer, pointersCopy, 
-                                    super.startOffsets, super.keyLengths, super.valueLengths);
+    //the sorted indices end up in pointers
+    m.mergeSort(pointersCopy, pointers, 0, count);
   }
   /** The implementation of the compare method from Comparator. This basically
    * forwards the call to the super class's compare. Note that
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+/** This class implements the sort method from BasicTypeSorterBase class as
+ * an in-place introsort of the pointers array: a quicksort that switches to
+ * heapsort when the recursion gets too deep, and to insertion sort for small
+ * ranges. Unlike MergeSorter, it needs no copy of the pointers array and
+ * compares the record indices directly, without wrapping them in objects.
+ */
+class QuickSorter extends BasicTypeSorterBase {
+
+  //ranges smaller than this are insertion sorted
+  private static final int INSERTION_SORT_THRESHOLD = 13;
+
+  /** The sort method derived from BasicTypeSorterBase and overridden here*/
+  public void sort() {
+    if (count == 0) return;
+    normalizeKeys();
+    sort(0, count);
+  }
+
+  /** Sorts the pointers in the range [low, high) */
+  protected void sort(int low, int high) {
+    //allow twice the depth of a balanced recursion before giving up on
+    //quicksort
+    int depth = 0;
+    for (int n = high - low; n > 0; n >>>= 1) {
+      depth += 2;
+    }
+    introSort(low, high, depth);
+  }
+
+  private void introSort(int low, int high, int depth) {
+    while (high - low > INSERTION_SORT_THRESHOLD) {
+      if (depth-- == 0) {
+        heapSort(low, high);
+        return;
+      }
+      //order the first, middle and last records so that the ends act as
+      //sentinels for the partitioning below, and the median is the pivot
+      int mid = (low + high) >>> 1;
+      if (comparePointers(mid, low) < 0) swap(mid, low);
+      if (comparePointers(high - 1, mid) < 0) {
+        swap(high - 1, mid);
+        if (comparePointers(mid, low) < 0) swap(mid, low);
+      }
+      int pivot = pointers[mid];
+      int i = low;
+      int j = high - 1;
+      while (true) {
+        while (compare(pointers[++i], pivot) < 0);
+        while (compare(pivot, pointers[--j]) < 0);
+        if (i >= j) break;
+        swap(i, j);
+      }
+      //[low, j] is now no greater than the pivot, and [j+1, high) is no
+      //less. Recurse into the smaller half and loop over the larger one
+      if (j + 1 - low < high - (j + 1)) {
+        introSort(low, j + 1, depth);
+        low = j + 1;
+      } else {
+        introSort(j + 1, high, depth);
+        high = j + 1;
+      }
+    }
+    insertionSort(low, high);
+  }
+
+  private void insertionSort(int low, int high) {
+    for (int i = low + 1; i < high; i++) {
+      for (int j = i; j > low && comparePointers(j, j - 1) < 0; j--) {
+        swap(j, j - 1);
+      }
+    }
+  }
+
+  private void heapSort(int low, int high) {
+    int n = high - low;
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(low, i, n);
+    }
+    for (int i = n - 1; i > 0; i--) {
+      swap(low, low + i);
+      siftDown(low, 0, i);
+    }
+  }
+
+  private void siftDown(int low, int i, int n) {
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= n) return;
+      if (child + 1 < n &&
+          comparePointers(low + child, low + child + 1) < 0) {
+        child++;
+      }
+      if (comparePointers(low + i, low + child) >= 0) return;
+      swap(low + i, low + child);
+      i = child;
+    }
+  }
+
+  //Compares the records at the given positions of the pointers array
+  private int comparePointers(int i, int j) {
+    return compare(pointers[i], pointers[j]);
+  }
+
+  private void swap(int i, int j) {
+    int t = pointers[i];
+    pointers[i] = pointers[j];
+    pointers[j] = t;
+  }
+}
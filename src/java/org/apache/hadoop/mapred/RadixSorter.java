@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.util.Arrays;
+
+/** This class implements the sort method from BasicTypeSorterBase class as
+ * an LSD radix sort of the pointers array on the partitions and the
+ * normalized keys of the records, one byte per pass. The records that share
+ * both are then ordered by the full key compare, using the quicksort of the
+ * super class. If the key comparator does not provide normalized keys, the
+ * whole buffer is quicksorted.
+ */
+class RadixSorter extends QuickSorter {
+
+  private int[] pointersCopy; //the scratch array of the radix passes
+  private int[] counts = new int[256]; //the no. of records per byte value
+
+  /** The sort method derived from BasicTypeSorterBase and overridden here*/
+  public void sort() {
+    if (count == 0) return;
+    normalizeKeys();
+    if (normalizer == null) {
+      sort(0, count);
+      return;
+    }
+    radixSort();
+    //order the runs of records with equal partitions and normalized keys
+    int start = 0;
+    for (int i = 1; i <= count; i++) {
+      if (i == count || !samePrefix(pointers[start], pointers[i])) {
+        if (i - start > 1) {
+          sort(start, i);
+        }
+        start = i;
+      }
+    }
+  }
+
+  public long getMemoryUtilized() {
+    long scratch = (pointersCopy == null) ? 0 : pointersCopy.length * 4L;
+    return super.getMemoryUtilized() + scratch;
+  }
+
+  private void radixSort() {
+    if (pointersCopy == null || pointersCopy.length != pointers.length) {
+      pointersCopy = new int[pointers.length];
+    }
+    int maxPartition = 0;
+    for (int meta = 0; meta < count * RECORD_META; meta += RECORD_META) {
+      maxPartition = Math.max(maxPartition, kvindices[meta + PARTITION]);
+    }
+    //the least significant digits go first: the normalized key and then
+    //the partition
+    for (int shift = 0; shift < 32; shift += 8) {
+      radixPass(KEYPREFIX, shift);
+    }
+    for (int shift = 0; shift < 32 && (maxPartition >>> shift) != 0;
+         shift += 8) {
+      radixPass(PARTITION, shift);
+    }
+  }
+
+  //A stable counting sort of the pointers on one byte of the given field of
+  //the record metadata. The pass is skipped if all the records share the
+  //byte
+  private void radixPass(int field, int shift) {
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < count; i++) {
+      counts[digit(pointers[i], field, shift)]++;
+    }
+    if (counts[digit(pointers[0], field, shift)] == count) {
+      return;
+    }
+    int start = 0;
+    for (int b = 0; b < counts.length; b++) {
+      int n = counts[b];
+      counts[b] = start;
+      start += n;
+    }
+    for (int i = 0; i < count; i++) {
+      pointersCopy[counts[digit(pointers[i], field, shift)]++] = pointers[i];
+    }
+    //the sorted pointers become the pointers
+    int[] t = pointers;
+    pointers = pointersCopy;
+    pointersCopy = t;
+  }
+
+  private int digit(int record, int field, int shift) {
+    return (kvindices[record * RECORD_META + field] >>> shift) & 0xff;
+  }
+
+  private boolean samePrefix(int i, int j) {
+    int mi = i * RECORD_META;
+    int mj = j * RECORD_META;
+    return kvindices[mi + PARTITION] == kvindices[mj + PARTITION] &&
+      kvindices[mi + KEYPREFIX] == kvindices[mj + KEYPREFIX];
+  }
+}
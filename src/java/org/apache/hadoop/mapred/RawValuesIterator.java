@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.DataInputBuffer;
+
+/** The values passed to a {@link Reducer} by the framework.  Besides
+ * iterating over the values as objects, a reducer may read them as they are
+ * serialized, which saves creating an object per value:
+ * <pre>
+ *   if (values instanceof RawValuesIterator) {
+ *     RawValuesIterator raw = (RawValuesIterator)values;
+ *     while (raw.hasNext()) {
+ *       value.readFields(raw.nextRawValue());
+ *       ...
+ * </pre>
+ */
+public interface RawValuesIterator extends Iterator {
+  /** Returns the next value, serialized.  The buffer is only valid until the
+   * next call to this iterator. */
+  DataInputBuffer nextRawValue() throws IOException;
+}
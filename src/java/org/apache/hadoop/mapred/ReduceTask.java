@@ -19,6 +19,7 @@
 package org.apache.hadoop.mapred;
 
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
@@ -28,10 +29,12 @@ import java.net.URLClassLoader;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -90,6 +93,16 @@ class ReduceTask extends Task {
   private Progress copyPhase = getProgress().addPhase("copy");
   private Progress sortPhase  = getProgress().addPhase("sort");
   private Progress reducePhase = getProgress().addPhase("reduce");
+  private Counters.Handle reduceInputCounter = 
+    getCounters().getHandle(REDUCE_INPUT_RECORDS);
+  private Counters.Handle reduceInputGroupCounter = 
+    getCounters().getHandle(REDUCE_INPUT_GROUPS);
+  private Counters.Handle reduceOutputCounter = 
+    getCounters().getHandle(REDUCE_OUTPUT_RECORDS);
+  private Counters.Handle combineInputCounter = 
+    getCounters().getHandle(COMBINE_INPUT_RECORDS);
+  private Counters.Handle combineOutputCounter = 
+    getCounters().getHandle(COMBINE_OUTPUT_RECORDS);
 
   public ReduceTask() {}
 
@@ -130,17 +143,20 @@ class ReduceTask extends Task {
   }
 
   /** Iterates values while keys match in sorted input. */
-  static class ValuesIterator implements Iterator {
+  static class ValuesIterator implements RawValuesIterator {
     private SequenceFile.Sorter.RawKeyValueIterator in; //input iterator
     private WritableComparable key;               // current key
-    private Writable value;                       // current value
     private boolean hasNext;                      // more w/ this key
     private boolean more;                         // more in file
     private WritableComparator comparator;
+    private boolean rawGrouping;                  // keys compared serialized
+    private WritableComparable nextKey;           // read ahead, if not
     private Class keyClass;
     private Class valClass;
     private Configuration conf;
-    private DataOutputBuffer valOut = new DataOutputBuffer();
+    private DataOutputBuffer keyOut = new DataOutputBuffer(); // current key
+    private DataOutputBuffer valOut = new DataOutputBuffer(); // next value
+    private DataOutputBuffer lastValOut = new DataOutputBuffer();
     private DataInputBuffer valIn = new DataInputBuffer();
     private DataInputBuffer keyIn = new DataInputBuffer();
     protected Reporter reporter;
@@ -153,6 +169,7 @@ class ReduceTask extends Task {
       this.in = in;
       this.conf = conf;
       this.comparator = comparator;
+      this.rawGrouping = WritableComparator.isRawComparator(comparator);
       this.keyClass = keyClass;
       this.valClass = valClass;
       this.reporter = reporter;
@@ -164,19 +181,32 @@ class ReduceTask extends Task {
     public boolean hasNext() { return hasNext; }
 
     public Object next() {
-      Object result = value;                      // save value
+      Writable value;
       try {
-        getNext();                                  // move to next
-      } catch (IOException e) {
+        value = (Writable)ReflectionUtils.newInstance(valClass, this.conf);
+      } catch (Exception e) {
         throw new RuntimeException(e);
       }
-      // ignore the error, since failures in progress shouldn't kill us
       try {
-        reporter.progress();
-      } catch (IOException ie) { 
-        LOG.debug("caught exception from progress", ie);
+        valIn.reset(valOut.getData(), valOut.getLength());
+        value.readFields(valIn);
+        getNext();                                  // move to next
+      } catch (IOException e) {
+        throw new RuntimeException(e);
       }
-      return result;                              // return saved value
+      progress();
+      return value;
+    }
+
+    public DataInputBuffer nextRawValue() throws IOException {
+      // keep the bytes of this value while those of the next are read
+      DataOutputBuffer value = valOut;
+      valOut = lastValOut;
+      lastValOut = value;
+      getNext();                                    // move to next
+      progress();
+      valIn.reset(value.getData(), value.getLength());
+      return valIn;
     }
 
     public void remove() { throw new RuntimeException("not implemented"); }
@@ -185,7 +215,11 @@ class ReduceTask extends Task {
 
     /** Start processing next unique key. */
     public void nextKey() {
-      while (hasNext) { next(); }                 // skip any unread
+      try {
+        while (hasNext) { nextRawValue(); }       // skip any unread
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
       hasNext = more;
     }
 
@@ -195,33 +229,63 @@ class ReduceTask extends Task {
     /** The current key. */
     public WritableComparable getKey() { return key; }
 
-    private void getNext() throws IOException {
-      Writable lastKey = key;                     // save previous key
+    private void progress() {
+      // ignore the error, since failures in progress shouldn't kill us
       try {
-        key = (WritableComparable)ReflectionUtils.newInstance(keyClass, this.conf);
-        value = (Writable)ReflectionUtils.newInstance(valClass, this.conf);
-      } catch (Exception e) {
-        throw new RuntimeException(e);
+        reporter.progress();
+      } catch (IOException ie) { 
+        LOG.debug("caught exception from progress", ie);
       }
+    }
+
+    private void getNext() throws IOException {
       more = in.next();
       if (more) {
-        //de-serialize the raw key/value
-        keyIn.reset(in.getKey().getData(), in.getKey().getLength());
-        key.readFields(keyIn);
-        valOut.reset();
-        (in.getValue()).writeUncompressedBytes(valOut);
-        valIn.reset(valOut.getData(), valOut.getLength());
-        value.readFields(valIn);
-
-        if (lastKey == null) {
-          hasNext = true;
+        DataOutputBuffer rawKey = in.getKey();
+        boolean first = (key == null);
+        boolean sameKey;
+        if (rawGrouping) {
+          // compare the raw keys, and only deserialize the first of each group
+          sameKey = !first &&
+            comparator.compare(keyOut.getData(), 0, keyOut.getLength(),
+                               rawKey.getData(), 0, rawKey.getLength()) == 0;
+          if (!sameKey) {
+            keyOut.reset();
+            keyOut.write(rawKey.getData(), 0, rawKey.getLength());
+            key = newKey();
+            keyIn.reset(keyOut.getData(), keyOut.getLength());
+            key.readFields(keyIn);
+          }
         } else {
-          hasNext = (comparator.compare(key, lastKey) == 0);
+          // the comparator would read both keys for every compare of the
+          // raw keys, so each key is read once and compared as an object
+          if (nextKey == null) {
+            nextKey = newKey();
+          }
+          keyIn.reset(rawKey.getData(), rawKey.getLength());
+          nextKey.readFields(keyIn);
+          sameKey = !first && comparator.compare(key, nextKey) == 0;
+          if (!sameKey) {
+            key = nextKey;
+            nextKey = null;
+          }
         }
+        hasNext = sameKey || first;
+        valOut.reset();
+        (in.getValue()).writeUncompressedBytes(valOut);
       } else {
         hasNext = false;
       }
     }
+
+    private WritableComparable newKey() {
+      try {
+        return (WritableComparable)
+          ReflectionUtils.newInstance(keyClass, this.conf);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
   }
   private class ReduceValuesIterator extends ValuesIterator {
     public ReduceValuesIterator (SequenceFile.Sorter.RawKeyValueIterator in,
@@ -240,9 +304,30 @@ class ReduceTask extends Task {
       }
     }
     public Object next() {
-      reporter.incrCounter(REDUCE_INPUT_RECORDS, 1);
+      reduceInputCounter.increment(1);
+      return super.next();
+    }
+    public DataInputBuffer nextRawValue() throws IOException {
+      reduceInputCounter.increment(1);
+      return super.nextRawValue();
+    }
+  }
+  private class CombineValuesIterator extends ValuesIterator {
+    public CombineValuesIterator(SequenceFile.Sorter.RawKeyValueIterator in,
+                                 WritableComparator comparator, Class keyClass,
+                                 Class valClass,
+                                 Configuration conf, Reporter reporter)
+      throws IOException {
+      super(in, comparator, keyClass, valClass, conf, reporter);
+    }
+    public Object next() {
+      combineInputCounter.increment(1);
       return super.next();
     }
+    public DataInputBuffer nextRawValue() throws IOException {
+      combineInputCounter.increment(1);
+      return super.nextRawValue();
+    }
   }
 
   public void run(JobConf job, final TaskUmbilicalProtocol umbilical)
@@ -252,125 +337,137 @@ class ReduceTask extends Task {
                                                            job.getReducerClass(), job);
     FileSystem lfs = FileSystem.getLocal(job);
 
-    if (!job.get("mapred.job.tracker", "local").equals("local")) {
-      reduceCopier = new ReduceCopier(umbilical, job);
-      if (!reduceCopier.fetchOutputs()) {
-        throw new IOException(getTaskId() + "The reduce copier failed");
+    try {
+      if (!job.get("mapred.job.tracker", "local").equals("local")) {
+        reduceCopier = new ReduceCopier(umbilical, job);
+        if (!reduceCopier.fetchOutputs()) {
+          throw new IOException(getTaskId() + "The reduce copier failed");
+        }
       }
-    }
-    copyPhase.complete();                         // copy is already complete
+      copyPhase.complete();                         // copy is already complete
     
 
-    // open a file to collect map output
-    // since we don't know how many map outputs got merged in memory, we have
-    // to check whether a given map output exists, and if it does, add it in
-    // the list of files to merge, otherwise not.
-    List<Path> mapFilesList = new ArrayList<Path>();
-    for(int i=0; i < numMaps; i++) {
-      Path f;
-      try {
-        //catch and ignore DiskErrorException, since some map outputs will
-        //really be absent (inmem merge).
-        f = mapOutputFile.getInputFile(i, getTaskId());
-      } catch (DiskErrorException d) { 
-        continue;
+      // open a file to collect map output
+      // since we don't know how many map outputs got merged in memory, we have
+      // to check whether a given map output exists, and if it does, add it in
+      // the list of files to merge, otherwise not.
+      List<Path> mapFilesList = new ArrayList<Path>();
+      for(int i=0; i < numMaps; i++) {
+        Path f;
+        try {
+          //catch and ignore DiskErrorException, since some map outputs will
+          //really be absent (inmem merge).
+          f = mapOutputFile.getInputFile(i, getTaskId());
+        } catch (DiskErrorException d) { 
+          continue;
+        }
+        if (lfs.exists(f))
+          mapFilesList.add(f);
       }
-      if (lfs.exists(f))
-        mapFilesList.add(f);
-    }
-    Path[] mapFiles = new Path[mapFilesList.size()];
-    mapFiles = mapFilesList.toArray(mapFiles);
+      // the map outputs that are still in memory are merged from there
+      if (reduceCopier != null) {
+        mapFilesList.addAll(Arrays.asList(reduceCopier.getInMemOutputs()));
+      }
+      Path[] mapFiles = new Path[mapFilesList.size()];
+      mapFiles = mapFilesList.toArray(mapFiles);
     
-    // spawn a thread to give sort progress heartbeats
-    Thread sortProgress = new Thread() {
-        public void run() {
-          while (!sortComplete.get()) {
-            try {
-              reportProgress(umbilical);
-              Thread.sleep(PROGRESS_INTERVAL);
-            } catch (InterruptedException e) {
-              return;
-            } catch (Throwable e) {
-              System.out.println("Thread Exception in " +
-                                 "reporting sort progress\n" +
-                                 StringUtils.stringifyException(e));
-              continue;
+      // spawn a thread to give sort progress heartbeats
+      Thread sortProgress = new Thread() {
+          public void run() {
+            while (!sortComplete.get()) {
+              try {
+                reportProgress(umbilical);
+                Thread.sleep(PROGRESS_INTERVAL);
+              } catch (InterruptedException e) {
+                return;
+              } catch (Throwable e) {
+                System.out.println("Thread Exception in " +
+                                   "reporting sort progress\n" +
+                                   StringUtils.stringifyException(e));
+                continue;
+              }
             }
           }
-        }
-      };
-    sortProgress.setDaemon(true);
-    sortProgress.setName("Sort progress reporter for task "+getTaskId());
+        };
+      sortProgress.setDaemon(true);
+      sortProgress.setName("Sort progress reporter for task "+getTaskId());
 
-    Path tempDir = new Path(getTaskId()); 
+      Path tempDir = new Path(getTaskId()); 
 
-    WritableComparator comparator = job.getOutputValueGroupingComparator();
+      WritableComparator comparator = job.getOutputValueGroupingComparator();
     
-    SequenceFile.Sorter.RawKeyValueIterator rIter;
+      SequenceFile.Sorter.RawKeyValueIterator rIter;
  
-    try {
-      setPhase(TaskStatus.Phase.SORT); 
-      sortProgress.start();
+      try {
+        setPhase(TaskStatus.Phase.SORT); 
+        sortProgress.start();
 
-      // sort the input file
-      SequenceFile.Sorter sorter =
-        new SequenceFile.Sorter(lfs, comparator, valueClass, job);
-      rIter = sorter.merge(mapFiles, tempDir, 
-                           !conf.getKeepFailedTaskFiles()); // sort
+        // sort the input file
+        SequenceFile.Sorter sorter =
+          new SequenceFile.Sorter(lfs, comparator, valueClass, job);
+        rIter = sorter.merge(mapFiles, tempDir, 
+                             !conf.getKeepFailedTaskFiles()); // sort
 
-    } finally {
-      sortComplete.set(true);
-    }
+      } finally {
+        sortComplete.set(true);
+      }
 
-    sortPhase.complete();                         // sort is complete
-    setPhase(TaskStatus.Phase.REDUCE); 
+      sortPhase.complete();                         // sort is complete
+      setPhase(TaskStatus.Phase.REDUCE); 
 
-    final Reporter reporter = getReporter(umbilical);
+      final Reporter reporter = getReporter(umbilical);
     
-    // make output collector
-    String finalName = getOutputName(getPartition());
-    FileSystem fs = FileSystem.get(job);
+      // make output collector
+      String finalName = getOutputName(getPartition());
+      FileSystem fs = FileSystem.get(job);
 
-    final RecordWriter out = 
-      job.getOutputFormat().getRecordWriter(fs, job, finalName, reporter);  
+      final RecordWriter out = 
+        job.getOutputFormat().getRecordWriter(fs, job, finalName, reporter);  
     
-    OutputCollector collector = new OutputCollector() {
-        public void collect(WritableComparable key, Writable value)
-          throws IOException {
-          out.write(key, value);
-          reporter.incrCounter(REDUCE_OUTPUT_RECORDS, 1);
-          reportProgress(umbilical);
-        }
-      };
+      OutputCollector collector = new OutputCollector() {
+          public void collect(WritableComparable key, Writable value)
+            throws IOException {
+            out.write(key, value);
+            reduceOutputCounter.increment(1);
+            reportProgress(umbilical);
+          }
+        };
     
-    // apply reduce function
-    try {
-      Class keyClass = job.getMapOutputKeyClass();
-      Class valClass = job.getMapOutputValueClass();
-      ReduceValuesIterator values = new ReduceValuesIterator(rIter, comparator, 
-                                                             keyClass, valClass, job, reporter);
-      values.informReduceProgress();
-      while (values.more()) {
-        reporter.incrCounter(REDUCE_INPUT_GROUPS, 1);
-        reducer.reduce(values.getKey(), values, collector, reporter);
-        values.nextKey();
+      // apply reduce function
+      try {
+        Class keyClass = job.getMapOutputKeyClass();
+        Class valClass = job.getMapOutputValueClass();
+        ReduceValuesIterator values = new ReduceValuesIterator(rIter, comparator, 
+                                                               keyClass, valClass, job, reporter);
         values.informReduceProgress();
-      }
+        while (values.more()) {
+          reduceInputGroupCounter.increment(1);
+          reducer.reduce(values.getKey(), values, collector, reporter);
+          values.nextKey();
+          values.informReduceProgress();
+        }
 
-      //Clean up: repeated in catch block below
-      reducer.close();
-      out.close(reporter);
-      //End of clean up.
-    } catch (IOException ioe) {
-      try {
+        //Clean up: repeated in catch block below
         reducer.close();
-      } catch (IOException ignored) {}
-        
-      try {
         out.close(reporter);
-      } catch (IOException ignored) {}
+        //End of clean up.
+      } catch (IOException ioe) {
+        try {
+          reducer.close();
+        } catch (IOException ignored) {}
+        
+        try {
+          out.close(reporter);
+        } catch (IOException ignored) {}
       
-      throw ioe;
+        throw ioe;
+      }
+    } finally {
+      // the in-memory file system of the copier is released even if the
+      // reduce fails
+      if (reduceCopier != null) {
+        reduceCopier.close();
+      }
     }
     done(umbilical);
   }
@@ -405,9 +502,9 @@ class ReduceTask extends Task {
     private ReduceTask reduceTask;
     
     /**
-     * the list of map outputs currently being copied
+     * the batches of map outputs waiting to be copied, each from one host
      */
-    private List<MapOutputLocation> scheduledCopies;
+    private List<List<MapOutputLocation>> scheduledCopies;
     
     /**
      *  the results of dispatched copy attempts
@@ -419,6 +516,12 @@ class ReduceTask extends Task {
      */
     private int numCopiers;
     
+    /**
+     *  the maximum number of map outputs copied from a host over one 
+     *  connection
+     */
+    private int copyBatchSize;
+    
     /**
      * the maximum amount of time (less 1 minute) to wait to 
      * contact a host after a copy from it fails. We wait for (1 min +
@@ -433,9 +536,10 @@ class ReduceTask extends Task {
     private Map<String, Long> penaltyBox;
     
     /**
-     * the set of unique hosts from which we are copying
+     * the unique hosts from which we are copying, with the number of map
+     * outputs being copied from each
      */
-    private Set<String> uniqueHosts;
+    private Map<String, Integer> uniqueHosts;
     
     /**
      * the last time we polled the job tracker
@@ -472,6 +576,12 @@ class ReduceTask extends Task {
      */
     private int mergeThreshold = 500;
     
+    /**
+     * When at least this many map outputs are merged in ram, the combiner 
+     * (if any) is run over the merged records
+     */
+    private int minFilesForCombine;
+    
     /**
      * The threads for fetching the files.
      */
@@ -511,6 +621,17 @@ class ReduceTask extends Task {
      */
     private long ramfsMergeOutputSize;
     
+    /**
+     * the map outputs in ramfs are kept in memory for the reduce, rather
+     * than merged to disk, if they use at most this fraction of the ramfs
+     */
+    private float maxInMemReduce;
+    
+    /**
+     * the map outputs kept in ramfs for the reduce
+     */
+    private Path[] inMemOutputs = new Path[0];
+    
     /** Represents the result of an attempt to copy a map output */
     private class CopyResult {
       
@@ -626,26 +747,16 @@ class ReduceTask extends Task {
       public void run() {
         while (true) {        
           try {
-            MapOutputLocation loc = null;
-            long size = -1;
+            List<MapOutputLocation> locs = null;
             
             synchronized (scheduledCopies) {
               while (scheduledCopies.isEmpty()) {
                 scheduledCopies.wait();
               }
-              loc = scheduledCopies.remove(0);
+              locs = scheduledCopies.remove(0);
             }
             
-            try {
-              start(loc);
-              size = copyOutput(loc);
-            } catch (IOException e) {
-              LOG.warn(reduceTask.getTaskId() + " copy failed: " +
-                       loc.getMapTaskId() + " from " + loc.getHost());
-              LOG.warn(StringUtils.stringifyException(e));
-            } finally {
-              finish(size);
-            }
+            copyOutputs(locs);
           } catch (InterruptedException e) { 
             return; // ALL DONE
           } catch (Throwable th) {
@@ -666,21 +777,128 @@ class ReduceTask extends Task {
         if (!neededOutputs.contains(loc.getMapId())) {
           return CopyResult.OBSOLETE;
         }
-        String reduceId = reduceTask.getTaskId();
-        LOG.info(reduceId + " Copying " + loc.getMapTaskId() +
+        LOG.info(reduceTask.getTaskId() + " Copying " + loc.getMapTaskId() +
                  " output from " + loc.getHost() + ".");
-        // a temp filename. If this file gets created in ramfs, we're fine,
-        // else, we will check the localFS to find a suitable final location
-        // for this path
+        // this copies the map output file
+        Path tmpFilename = loc.getFile(inMemFileSys, localFileSys, 
+                                       shuffleMetrics, getTmpFilename(loc), 
+                                       lDirAlloc, conf, 
+                                       reduceTask.getPartition(), 
+                                       STALLED_COPY_TIMEOUT);
+        return commitOutput(loc, tmpFilename);
+      }
+      
+      /** Copies the map outputs of one or more maps from the tasktracker 
+       * they all completed on, over a single connection. A copy result is given for
+       * every one of them: the map outputs that were not received when the
+       * copy fails are failed too.
+       * @param locs the map output locations to be copied
+       * @throws InterruptedException if the copier should give up
+       */
+      private void copyOutputs(List<MapOutputLocation> locs
+                               ) throws InterruptedException {
+        String reduceId = reduceTask.getTaskId();
+        String host = locs.get(0).getHost();
+        Map<String, MapOutputLocation> pending = 
+          new LinkedHashMap<String, MapOutputLocation>();
+        for (MapOutputLocation loc : locs) {
+          if (neededOutputs.contains(loc.getMapId())) {
+            pending.put(loc.getMapTaskId(), loc);
+          } else {
+            start(loc);
+            finish(CopyResult.OBSOLETE);
+          }
+        }
+        if (pending.size() == 1) {
+          MapOutputLocation loc = pending.values().iterator().next();
+          long size = -1;
+          try {
+            start(loc);
+            size = copyOutput(loc);
+          } catch (IOException e) {
+            LOG.warn(reduceId + " copy failed: " +
+                     loc.getMapTaskId() + " from " + loc.getHost());
+            LOG.warn(StringUtils.stringifyException(e));
+          } finally {
+            finish(size);
+          }
+          return;
+        } else if (pending.isEmpty()) {
+          return;
+        }
+        LOG.info(reduceId + " Copying " + pending.size() + 
+                 " map outputs from " + host + ".");
+        DataInputStream input = null;
+        try {
+          input = MapOutputLocation.openMapOutputs(pending.values(), 
+                                                   reduceTask.getPartition(),
+                                                   STALLED_COPY_TIMEOUT);
+          while (!pending.isEmpty()) {
+            String mapTaskId = input.readUTF();
+            long length = input.readLong();
+            MapOutputLocation loc = pending.remove(mapTaskId);
+            if (loc == null) {
+              throw new IOException("Unexpected map output " + mapTaskId + 
+                                    " from " + host);
+            }
+            start(loc);
+            long size = -1;
+            if (length < 0) {
+              LOG.warn(reduceId + " copy failed: " + mapTaskId + 
+                       " is not available from " + host);
+            } else {
+              // this copies the map output file
+              Path tmpFilename = loc.getFile(input, length, inMemFileSys, 
+                                             localFileSys, shuffleMetrics, 
+                                             getTmpFilename(loc), 
+                                             lDirAlloc, conf);
+              size = commitOutput(loc, tmpFilename);
+            }
+            finish(size);
+          }
+        } catch (IOException e) {
+          LOG.warn(reduceId + " copy failed: " +
+                   (pending.size() + (getLocation() == null ? 0 : 1)) + 
+                   " map outputs from " + host);
+          LOG.warn(StringUtils.stringifyException(e));
+        } finally {
+          finish(-1);
+          for (MapOutputLocation loc : pending.values()) {
+            start(loc);
+            finish(-1);
+          }
+          if (input != null) {
+            try {
+              input.close();
+            } catch (IOException ie) {
+              // IGNORED because we are cleaning up
+            }
+          }
+        }
+      }
+      
+      /** A working filename that will be unique to this attempt. If this
+       * file gets created in ramfs, we're fine, else, we will check the 
+       * localFS to find a suitable final location for this path
+       */
+      private Path getTmpFilename(MapOutputLocation loc) {
+        return new Path("/" + reduceTask.getTaskId() + "/map_" +
+                        loc.getMapId() + ".out-" + id);
+      }
+      
+      /** Renames a copied map output to its final name, unless it is no 
+       * longer needed, and triggers a merge of the in memory files if 
+       * needed.
+       * @param loc the map output location that was copied
+       * @param tmpFilename the path (fully qualified) of the copied file
+       * @return the size of the map output
+       * @throws IOException if the map output cannot be renamed
+       */
+      private long commitOutput(MapOutputLocation loc, Path tmpFilename
+                                ) throws IOException {
+        String reduceId = reduceTask.getTaskId();
         Path filename = new Path("/" + reduceId + "/map_" +
                                  loc.getMapId() + ".out");
-        // a working filename that will be unique to this attempt
-        Path tmpFilename = new Path(filename + "-" + id);
-        // this copies the map output file
-        tmpFilename = loc.getFile(inMemFileSys, localFileSys, shuffleMetrics,
-                                  tmpFilename, lDirAlloc, 
-                                  conf, reduceTask.getPartition(), 
-                                  STALLED_COPY_TIMEOUT);
         if (!neededOutputs.contains(loc.getMapId())) {
           if (tmpFilename != null) {
             FileSystem fs = tmpFilename.getFileSystem(conf);
@@ -689,7 +907,7 @@ class ReduceTask extends Task {
           return CopyResult.OBSOLETE;
         }
         if (tmpFilename == null)
-          throw new IOException("File " + filename + "-" + id + 
+          throw new IOException("File " + getTmpFilename(loc) + 
                                 " not created");
         long bytes = -1;
         // lock the ReduceTask while we do the rename
@@ -784,11 +1002,14 @@ class ReduceTask extends Task {
       configureClasspath(conf);
       this.umbilical = umbilical;      
       this.reduceTask = ReduceTask.this;
-      this.scheduledCopies = new ArrayList<MapOutputLocation>(100);
+      this.scheduledCopies = new ArrayList<List<MapOutputLocation>>(100);
       this.copyResults = new ArrayList<CopyResult>(100);    
       this.numCopiers = conf.getInt("mapred.reduce.parallel.copies", 5);
+      this.copyBatchSize = 
+        Math.max(1, conf.getInt("mapred.reduce.copy.batch.size", 50));
       this.maxBackoff = conf.getInt("mapred.reduce.copy.backoff", 300);
       this.mergeThreshold = conf.getInt("mapred.inmem.merge.threshold", 1000);
+      this.minFilesForCombine = conf.getInt("min.num.spills.for.combine", 3);
       
       //we want to distinguish inmem fs instances for different reduces. Hence,
       //append a unique string in the uri for the inmem fs name
@@ -798,6 +1019,8 @@ class ReduceTask extends Task {
                + uri);
       ramfsMergeOutputSize = (long)(MAX_INMEM_FILESYS_USE * 
                                     inMemFileSys.getFSSize());
+      maxInMemReduce = 
+        conf.getFloat("mapred.job.reduce.input.buffer.percent", 0.0f);
       localFileSys = FileSystem.getLocal(conf);
       //create an instance of the sorter
       sorter =
@@ -808,7 +1031,7 @@ class ReduceTask extends Task {
       this.penaltyBox = new Hashtable<String, Long>();
       
       // hostnames
-      this.uniqueHosts = new HashSet<String>();
+      this.uniqueHosts = new HashMap<String, Integer>();
       
       this.lastPollTime = 0;
       
@@ -903,6 +1126,9 @@ class ReduceTask extends Task {
           LOG.info(reduceTask.getTaskId() + " Got " + numKnown + 
                    " known map output location(s); scheduling...");
           
+          // the batches scheduled from each tasktracker (host:port)
+          Map<String, List<MapOutputLocation>> batches = 
+            new HashMap<String, List<MapOutputLocation>>();
           synchronized (scheduledCopies) {
             // Randomize the map output locations to prevent 
             // all reduce-tasks swamping the same tasktracker
@@ -920,13 +1146,24 @@ class ReduceTask extends Task {
               if (penaltyEnd != null && currentTime < penaltyEnd.longValue()) {
                 penalized = true; numSlow++;
               }
-              if (uniqueHosts.contains(loc.getHost())) {
+              // a host that is being copied from already is a duplicate, 
+              // unless there is room in the batch scheduled from the same
+              // tasktracker now
+              String tracker = loc.getHost() + ":" + loc.getPort();
+              List<MapOutputLocation> batch = batches.get(tracker);
+              if ((batch == null && uniqueHosts.containsKey(loc.getHost())) ||
+                  (batch != null && batch.size() >= copyBatchSize)) {
                 duplicate = true; numDups++;
               }
               
               if (!penalized && !duplicate) {
-                uniqueHosts.add(loc.getHost());
-                scheduledCopies.add(loc);
+                if (batch == null) {
+                  batch = new ArrayList<MapOutputLocation>();
+                  batches.put(tracker, batch);
+                  scheduledCopies.add(batch);
+                }
+                batch.add(loc);
+                uniqueHosts.put(loc.getHost(), batch.size());
                 locIt.remove();  // remove from knownOutputs
                 numInFlight++; numScheduled++;
               }
@@ -973,14 +1210,18 @@ class ReduceTask extends Task {
               } else {
                 retryFetches.add(cr.getLocation());
                 
-                // wait a random amount of time for next contact
+                // wait a random amount of time for next contact, unless
+                // the host was penalized by another copy of the same batch
                 currentTime = System.currentTimeMillis();
-                long nextContact = currentTime + 60 * 1000 +
-                  backoff.nextInt(maxBackoff*1000);
-                penaltyBox.put(cr.getHost(), new Long(nextContact));          
-                LOG.warn(reduceTask.getTaskId() + " adding host " +
-                         cr.getHost() + " to penalty box, next contact in " +
-                         ((nextContact-currentTime)/1000) + " seconds");
+                Long penaltyEnd = penaltyBox.get(cr.getHost());
+                if (penaltyEnd == null || currentTime >= penaltyEnd.longValue()) {
+                  long nextContact = currentTime + 60 * 1000 +
+                    backoff.nextInt(maxBackoff*1000);
+                  penaltyBox.put(cr.getHost(), new Long(nextContact));          
+                  LOG.warn(reduceTask.getTaskId() + " adding host " +
+                           cr.getHost() + " to penalty box, next contact in " +
+                           ((nextContact-currentTime)/1000) + " seconds");
+                }
                 
                 // other outputs from the failed host may be present in the
                 // knownOutputs cache, purge them. This is important in case
@@ -996,7 +1237,13 @@ class ReduceTask extends Task {
                   }
                 }
               }
-              uniqueHosts.remove(cr.getHost());
+              // the host is free once all its map outputs are copied
+              int hostInFlight = uniqueHosts.get(cr.getHost()) - 1;
+              if (hostInFlight > 0) {
+                uniqueHosts.put(cr.getHost(), hostInFlight);
+              } else {
+                uniqueHosts.remove(cr.getHost());
+              }
               numInFlight--;
             }
             
@@ -1050,6 +1297,19 @@ class ReduceTask extends Task {
                        inMemFileSys.getUri());
               return neededOutputs.isEmpty();
             }
+            //if the map outputs fit in the memory allowed for the reduce, 
+            //they are merged into the reduce straight from memory
+            if (neededOutputs.isEmpty() && 
+                inMemFileSys.getPercentUsed() <= maxInMemReduce) {
+              inMemOutputs = new Path[inMemClosedFiles.length];
+              for (int i = 0; i < inMemClosedFiles.length; i++) {
+                inMemOutputs[i] = inMemFileSys.makeQualified(inMemClosedFiles[i]);
+              }
+              LOG.info(reduceTask.getTaskId() + " Keeping the " + 
+                       inMemOutputs.length + " files in " + 
+                       inMemFileSys.getUri() + " for the reduce");
+              return true;
+            }
             //name this output file same as the name of the first file that is 
             //there in the current list of inmem files (this is guaranteed to be
             //absent on the disk currently. So we don't overwrite a prev. 
@@ -1076,7 +1336,12 @@ class ReduceTask extends Task {
               localFileSys.delete(inMemClosedFiles[0]);
               throw new IOException (StringUtils.stringifyException(e));
             }
-            sorter.writeFile(rIter, writer);
+            if (conf.getCombinerClass() != null &&
+                inMemClosedFiles.length >= minFilesForCombine) {
+              combineAndWrite(rIter, writer);
+            } else {
+              sorter.writeFile(rIter, writer);
+            }
             writer.close();
             LOG.info(reduceTask.getTaskId() +
                      " Merge of the " +inMemClosedFiles.length +
@@ -1091,11 +1356,24 @@ class ReduceTask extends Task {
         }
         return mergeThrowable == null && neededOutputs.isEmpty();
       } finally {
-        inMemFileSys.close();
+        if (inMemOutputs.length == 0) {
+          inMemFileSys.close();
+        }
         copyProgress.interrupt();
       }
     }
     
+    /** The map outputs that were kept in memory for the reduce to merge, 
+     * as qualified paths of the in memory file system. */
+    public Path[] getInMemOutputs() {
+      return inMemOutputs;
+    }
+    
+    /** Releases the map outputs that were kept in memory. */
+    public void close() throws IOException {
+      inMemFileSys.close();
+    }
+    
     
     private CopyResult getCopyResult() {  
       synchronized (copyResults) {
@@ -1207,7 +1485,12 @@ class ReduceTask extends Task {
               localFileSys.delete(outputPath);
               throw new IOException (StringUtils.stringifyException(e));
             }
-            sorter.writeFile(rIter, writer);
+            if (conf.getCombinerClass() != null &&
+                inMemClosedFiles.length >= minFilesForCombine) {
+              combineAndWrite(rIter, writer);
+            } else {
+              sorter.writeFile(rIter, writer);
+            }
             writer.close();
             LOG.info(reduceTask.getTaskId() + 
                      " Merge of the " +inMemClosedFiles.length +
@@ -1229,6 +1512,37 @@ class ReduceTask extends Task {
         }
       }
     }
+    
+    /** Runs the combiner over the merged map outputs and writes its output
+     * in place of the merged records. */
+    private void combineAndWrite(SequenceFile.Sorter.RawKeyValueIterator rIter,
+                                 final SequenceFile.Writer writer)
+      throws IOException {
+      Reducer combiner = 
+        (Reducer)ReflectionUtils.newInstance(conf.getCombinerClass(), conf);
+      Reporter reporter = getReporter(umbilical);
+      OutputCollector combineCollector = new OutputCollector() {
+          public void collect(WritableComparable key, Writable value)
+            throws IOException {
+            writer.append(key, value);
+          }
+        };
+      ValuesIterator values = 
+        new CombineValuesIterator(rIter, conf.getOutputKeyComparator(), 
+                                  conf.getMapOutputKeyClass(), 
+                                  conf.getMapOutputValueClass(), conf, 
+                                  reporter);
+      try {
+        while (values.more()) {
+          combiner.reduce(values.getKey(), values, combineCollector, reporter);
+          values.nextKey();
+          combineOutputCounter.increment(1);
+        }
+      } finally {
+        combiner.close();
+      }
+    }
+    
     final private PathFilter MAP_OUTPUT_FILTER = new PathFilter() {
         public boolean accept(Path file) {
           return file.toString().endsWith(".out");
@@ -61,6 +61,16 @@ public class TaskLogAppender extends AppenderSkeleton {
     return true;
   }
 
+  /**
+   * Close the current task's log and log to that of the given task, which is
+   * run next in the same child-vm.
+   */
+  public synchronized void switchTask(String taskId) {
+    close();
+    this.taskId = taskId;
+    activateOptions();
+  }
+
   public synchronized void close() {
     if (taskLogWriter != null) {
       try {
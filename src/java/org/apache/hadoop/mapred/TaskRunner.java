@@ -44,6 +44,22 @@ abstract class TaskRunner extends Thread {
   private TaskLog.Writer taskStdOutLogWriter;
   private TaskLog.Writer taskStdErrLogWriter;
 
+  // When the job reuses child JVMs (mapred.job.reuse.jvm.num.tasks), the
+  // runner that launched the JVM runs further tasks in it. The fields below
+  // are only used on that runner and, except for logOwner, are guarded by the
+  // tracker's lock on its idle JVMs.
+  private volatile TaskRunner jvm = this;  // the runner whose JVM runs us
+  private volatile TaskRunner current = this; // task the JVM runs, or null
+  private int numTasks = 1;                // tasks given to the JVM so far
+  private long idleSince = 0;              // when the JVM went idle
+  private final Object logLock = new Object();
+  private TaskRunner logOwner = this;      // task receiving stdout/stderr
+  // The JVM runs in the working directory of the task that launched it, so
+  // the local files of that task are kept until the JVM exits. Guarded by
+  // this runner.
+  private boolean exited = false;
+  private boolean deleteFilesOnExit = false;
+
   /** 
    * for cleaning up old map outputs
    */
@@ -72,6 +88,52 @@ abstract class TaskRunner extends Thread {
   public Task getTask() { return t; }
   public TaskTracker getTracker() { return tracker; }
 
+  /** The runner that launched the JVM this task runs in. */
+  TaskRunner getJvm() { return jvm; }
+
+  /** The runner of the task the JVM runs, or null if the JVM is idle. */
+  TaskRunner getCurrent() { return current; }
+
+  /** The number of tasks given to the JVM so far. */
+  int getNumTasks() { return numTasks; }
+
+  /** The time the JVM went idle, or 0 if it is running a task. */
+  long getIdleSince() { return idleSince; }
+
+  /** The JVM has finished its current task and waits for another one. */
+  void jvmIdle(long now) {
+    current = null;
+    idleSince = now;
+  }
+
+  /** Give the idle JVM another task to run. */
+  void jvmReuse(TaskRunner next) {
+    next.jvm = this;
+    current = next;
+    idleSince = 0;
+    numTasks++;
+  }
+
+  /**
+   * Called when the local files of the task are no longer needed.
+   * @return true if they are to be deleted when the JVM launched by the
+   * task exits, because it is still running
+   */
+  synchronized boolean deleteFilesOnExit() {
+    if (jvm != this || exited || !isAlive()) {
+      return false;
+    }
+    deleteFilesOnExit = true;
+    return true;
+  }
+
+  /** The JVM has exited.  Returns the runner of the task it was running. */
+  TaskRunner jvmExited() {
+    TaskRunner last = current;
+    current = null;
+    return last;
+  }
+
   /** Called to assemble this task's input.  This method is run in the parent
    * process before the child is spawned.  It should not execute user code,
    * only system code. */
@@ -98,69 +160,90 @@ abstract class TaskRunner extends Thread {
     return str;
   }
   
-  public final void run() {
-    try {
-      
-      //before preparing the job localize 
-      //all the archives
-      File workDir = new File(t.getJobFile()).getParentFile();
-      File jobCacheDir = new File(workDir.getParent(), "work");
-      URI[] archives = DistributedCache.getCacheArchives(conf);
-      URI[] files = DistributedCache.getCacheFiles(conf);
-      if ((archives != null) || (files != null)) {
-        if (archives != null) {
-          String[] md5 = DistributedCache.getArchiveMd5(conf);
-          Path[] p = new Path[archives.length];
-          for (int i = 0; i < archives.length;i++){
-            p[i] = DistributedCache.getLocalCache(archives[i], conf, 
-                                                  conf.getLocalPath(TaskTracker.getCacheSubdir()), true, md5[i], new Path(workDir.getAbsolutePath()));
-          }
-          DistributedCache.setLocalArchives(conf, stringifyPathArray(p));
-        }
-        if ((files != null)) {
-          String[] md5 = DistributedCache.getFileMd5(conf);
-          Path[] p = new Path[files.length];
-          for (int i = 0; i < files.length;i++){
-            p[i] = DistributedCache.getLocalCache(files[i], conf, conf.getLocalPath(TaskTracker
-                                                                                    .getCacheSubdir()), false, md5[i], new Path(workDir.getAbsolutePath()));
-          }
-          DistributedCache.setLocalFiles(conf, stringifyPathArray(p));
+  /**
+   * Localize the task's cache files and working directory and call
+   * {@link #prepare()}.  This is run for each task in its runner's thread,
+   * before the task gets a JVM of its own or is given to an idle one.
+   */
+  private boolean setupTask() throws IOException {
+    //before preparing the job localize 
+    //all the archives
+    File workDir = new File(t.getJobFile()).getParentFile();
+    File jobCacheDir = new File(workDir.getParent(), "work");
+    URI[] archives = DistributedCache.getCacheArchives(conf);
+    URI[] files = DistributedCache.getCacheFiles(conf);
+    if ((archives != null) || (files != null)) {
+      if (archives != null) {
+        String[] md5 = DistributedCache.getArchiveMd5(conf);
+        Path[] p = new Path[archives.length];
+        for (int i = 0; i < archives.length;i++){
+          p[i] = DistributedCache.getLocalCache(archives[i], conf, 
+                                                conf.getLocalPath(TaskTracker.getCacheSubdir()), true, md5[i], new Path(workDir.getAbsolutePath()));
         }
-        Path localTaskFile = new Path(t.getJobFile());
-        FileSystem localFs = FileSystem.getLocal(conf);
-        localFs.delete(localTaskFile);
-        OutputStream out = localFs.create(localTaskFile);
-        try {
-          conf.write(out);
-        } finally {
-          out.close();
+        DistributedCache.setLocalArchives(conf, stringifyPathArray(p));
+      }
+      if ((files != null)) {
+        String[] md5 = DistributedCache.getFileMd5(conf);
+        Path[] p = new Path[files.length];
+        for (int i = 0; i < files.length;i++){
+          p[i] = DistributedCache.getLocalCache(files[i], conf, conf.getLocalPath(TaskTracker
+                                                                                  .getCacheSubdir()), false, md5[i], new Path(workDir.getAbsolutePath()));
         }
+        DistributedCache.setLocalFiles(conf, stringifyPathArray(p));
+      }
+      Path localTaskFile = new Path(t.getJobFile());
+      FileSystem localFs = FileSystem.getLocal(conf);
+      localFs.delete(localTaskFile);
+      OutputStream out = localFs.create(localTaskFile);
+      try {
+        conf.write(out);
+      } finally {
+        out.close();
       }
+    }
+    
+    // create symlinks for all the files in job cache dir in current
+    // workingdir for streaming
+    try{
+      DistributedCache.createAllSymlink(conf, jobCacheDir, 
+                                        workDir);
+    } catch(IOException ie){
+      // Do not exit even if symlinks have not been created.
+      LOG.warn(StringUtils.stringifyException(ie));
+    }
     
-      // create symlinks for all the files in job cache dir in current
-      // workingdir for streaming
-      try{
-        DistributedCache.createAllSymlink(conf, jobCacheDir, 
-                                          workDir);
-      } catch(IOException ie){
-        // Do not exit even if symlinks have not been created.
-        LOG.warn(StringUtils.stringifyException(ie));
+    if (!prepare()) {
+      return false;
+    }
+    if (!workDir.mkdirs()) {
+      if (!workDir.isDirectory()) {
+        LOG.fatal("Mkdirs failed to create " + workDir.toString());
       }
-      
-      if (!prepare()) {
+    }
+    return true;
+  }
+
+  public final void run() {
+    try {
+      if (!setupTask()) {
+        return;
+      }
+      // the task is run in an idle JVM of its job if there is one, now that
+      // it is set up
+      if (tracker.reuseIdleJvm(this)) {
         return;
       }
 
+      File workDir = new File(t.getJobFile()).getParentFile();
+      File jobCacheDir = new File(workDir.getParent(), "work");
+      URI[] archives = DistributedCache.getCacheArchives(conf);
+      URI[] files = DistributedCache.getCacheFiles(conf);
+
       String sep = System.getProperty("path.separator");
       StringBuffer classPath = new StringBuffer();
       // start with same classpath as parent process
       classPath.append(System.getProperty("java.class.path"));
       classPath.append(sep);
-      if (!workDir.mkdirs()) {
-        if (!workDir.isDirectory()) {
-          LOG.fatal("Mkdirs failed to create " + workDir.toString());
-        }
-      }
 	  
       String jar = conf.getJar();
       if (jar != null) {       
@@ -288,39 +371,82 @@ abstract class TaskRunner extends Thread {
         runChild((String[])vargs.toArray(new String[0]), workDir);
     } catch (FSError e) {
       LOG.fatal("FSError", e);
+      String taskId = getCurrentTaskId();
       try {
-        tracker.fsError(t.getTaskId(), e.getMessage());
+        tracker.fsError(taskId, e.getMessage());
       } catch (IOException ie) {
-        LOG.fatal(t.getTaskId()+" reporting FSError", ie);
+        LOG.fatal(taskId+" reporting FSError", ie);
       }
     } catch (Throwable throwable) {
-      LOG.warn(t.getTaskId()+" Child Error", throwable);
+      String taskId = getCurrentTaskId();
+      LOG.warn(taskId+" Child Error", throwable);
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       throwable.printStackTrace(new PrintStream(baos));
       try {
-        tracker.reportDiagnosticInfo(t.getTaskId(), baos.toString());
+        tracker.reportDiagnosticInfo(taskId, baos.toString());
       } catch (IOException e) {
-        LOG.warn(t.getTaskId()+" Reporting Diagnostics", e);
+        LOG.warn(taskId+" Reporting Diagnostics", e);
       }
     } finally {
-      try{
-        URI[] archives = DistributedCache.getCacheArchives(conf);
-        URI[] files = DistributedCache.getCacheFiles(conf);
-        if (archives != null){
-          for (int i = 0; i < archives.length; i++){
-            DistributedCache.releaseCache(archives[i], conf);
-          }
+      if (jvm == this) {
+        jvmFinished();
+      }
+    }
+  }
+
+  /**
+   * Report the task the JVM was running finished, and delete the local
+   * files of this task if they were kept for the JVM.
+   */
+  private void jvmFinished() {
+    TaskRunner last = tracker.jvmExited(this);
+    if (last != null) {
+      last.taskFinished();
+    }
+    boolean deleteFiles;
+    synchronized (this) {
+      exited = true;
+      deleteFiles = deleteFilesOnExit;
+    }
+    if (deleteFiles) {
+      try {
+        conf.deleteLocalFiles(TaskTracker.getLocalTaskDir(t.getJobId(), 
+                                                          t.getTaskId()));
+      } catch (IOException e) {
+        LOG.warn(t.getTaskId() + " Error deleting task files", e);
+      }
+    }
+  }
+
+  /** The id of the task the JVM runs, or of its first task if it is idle. */
+  private String getCurrentTaskId() {
+    TaskRunner runner = current;
+    return (runner != null ? runner : this).t.getTaskId();
+  }
+
+  /**
+   * Release the task's cache files and report it finished to the tracker.
+   * This is called once per task, when its JVM exits or moves on to
+   * another task.
+   */
+  void taskFinished() {
+    try{
+      URI[] archives = DistributedCache.getCacheArchives(conf);
+      URI[] files = DistributedCache.getCacheFiles(conf);
+      if (archives != null){
+        for (int i = 0; i < archives.length; i++){
+          DistributedCache.releaseCache(archives[i], conf);
         }
-        if (files != null){
-          for(int i = 0; i < files.length; i++){
-            DistributedCache.releaseCache(files[i], conf);
-          }
+      }
+      if (files != null){
+        for(int i = 0; i < files.length; i++){
+          DistributedCache.releaseCache(files[i], conf);
         }
-      }catch(IOException ie){
-        LOG.warn("Error releasing caches : Cache files might not have been cleaned up");
       }
-      tracker.reportTaskFinished(t.getTaskId());
+    }catch(IOException ie){
+      LOG.warn("Error releasing caches : Cache files might not have been cleaned up");
     }
+    tracker.reportTaskFinished(t.getTaskId());
   }
 
   
@@ -395,12 +521,12 @@ abstract class TaskRunner extends Thread {
       // Copy stderr of the child-process via a thread
       logStdErrThread = logStream((t.getTaskId() + " - " + "stderr"), 
                                    process.getErrorStream(), 
-                                   taskStdErrLogWriter);
+                                   TaskLog.LogFilter.STDERR);
       
       // Copy stdout of the child-process via a thread
       logStdOutThread = logStream((t.getTaskId() + " - " + "stdout"), 
                                   process.getInputStream(), 
-                                  taskStdOutLogWriter); 
+                                  TaskLog.LogFilter.STDOUT); 
       
       int exit_code = process.waitFor();
      
@@ -435,32 +561,62 @@ abstract class TaskRunner extends Thread {
    * Kill the child process
    */
   public void kill() {
-    if (process != null) {
+    if (jvm != this) {
+      jvm.kill();
+    } else if (process != null) {
       process.destroy();
     }
     killed = true;
   }
 
+  /**
+   * Send the rest of the JVM's output to the logs of the given task, which
+   * it is about to run.  The output of the previous task is flushed into its
+   * own logs first, which are then closed.
+   */
+  void switchLogs(TaskRunner next) throws IOException {
+    synchronized (logLock) {
+      if (process != null) {
+        copyLog(process.getInputStream(), TaskLog.LogFilter.STDOUT);
+        copyLog(process.getErrorStream(), TaskLog.LogFilter.STDERR);
+      }
+      logOwner.taskStdOutLogWriter.close();
+      logOwner.taskStdErrLogWriter.close();
+      logOwner = next;
+    }
+  }
+
+  /** Copy what is available of a child-jvm's stream to the current log. */
+  private void copyLog(InputStream stream, TaskLog.LogFilter filter
+                       ) throws IOException {
+    TaskLog.Writer taskLog = (filter == TaskLog.LogFilter.STDOUT) ?
+      logOwner.taskStdOutLogWriter : logOwner.taskStdErrLogWriter;
+    byte[] buf = new byte[512];
+    while (stream.available() > 0) {
+      int n = stream.read(buf, 0, buf.length);
+      taskLog.write(buf, 0, n);
+    }
+  }
+
   /**
    * Spawn a new thread to copy the child-jvm's stdout/stderr streams
    * via a {@link TaskLog.Writer}
    * 
    * @param threadName thread name
    * @param stream child-jvm's stdout/stderr stream
-   * @param writer {@link TaskLog.Writer} used to copy the child-jvm's data
+   * @param filter the {@link TaskLog.LogFilter} of the logs the child-jvm's
+   *        data is copied to, those of the task it currently runs
    * @return Return the newly created thread
    */
   private Thread logStream(String threadName, 
                            final InputStream stream, 
-                           final TaskLog.Writer taskLog) {
+                           final TaskLog.LogFilter filter) {
     Thread loggerThread = new Thread() {
       public void run() {
         try {
-          byte[] buf = new byte[512];
           while (!Thread.interrupted()) {
-            while (stream.available() > 0) {
-              int n = stream.read(buf, 0, buf.length);
-              taskLog.write(buf, 0, n);
+            synchronized (logLock) {
+              copyLog(stream, filter);
             }
             Thread.sleep(1000);
           }
@@ -471,7 +627,13 @@ abstract class TaskRunner extends Thread {
         } finally {
           try {
             stream.close();
-            taskLog.close();
+            synchronized (logLock) {
+              if (filter == TaskLog.LogFilter.STDOUT) {
+                logOwner.taskStdOutLogWriter.close();
+              } else {
+                logOwner.taskStdErrLogWriter.close();
+              }
+            }
           } catch (IOException e) {
             LOG.warn(t.getTaskId()+" Error closing child output", e);
           }
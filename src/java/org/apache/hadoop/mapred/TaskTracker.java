@@ -19,6 +19,7 @@
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
@@ -28,6 +29,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -51,6 +53,7 @@ import org.apache.hadoop.fs.FSError;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.LocalDirAllocator;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.ipc.RemoteException;
@@ -65,7 +68,9 @@ import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.RunJar;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.DiskChecker.DiskErrorException;
+import org.apache.log4j.Appender;
 import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 
 /*******************************************************
  * TaskTracker is a process that starts and tracks MR Tasks
@@ -77,6 +82,11 @@ import org.apache.log4j.LogManager;
 public class TaskTracker 
              implements MRConstants, TaskUmbilicalProtocol, Runnable {
   static final long WAIT_FOR_DONE = 3 * 1000;
+  /**
+   * How long a child JVM that may be reused waits for another task of its
+   * job before it exits.
+   */
+  static final long JVM_IDLE_TIMEOUT = 10 * 1000;
   private int httpPort;
 
   static enum State {NORMAL, STALE, INTERRUPTED, DENIED}
@@ -146,6 +156,11 @@ public class TaskTracker
   private int maxCurrentTasks;
   private int failures;
   private int finishedCount[] = new int[1];
+  /**
+   * the minimum interval between heartbeats, when they are sent early to
+   * report finished tasks
+   */
+  private long minHeartbeatInterval;
   private MapEventsFetcherThread mapEventsFetcher;
   /**
    * the minimum interval between jobtracker polls
@@ -170,6 +185,18 @@ public class TaskTracker
       }
     }
       
+    synchronized void indexCacheHit() {
+      if (metricsRecord != null) {
+        metricsRecord.incrMetric("index_cache_hits", 1);
+      }
+    }
+      
+    synchronized void indexCacheMiss() {
+      if (metricsRecord != null) {
+        metricsRecord.incrMetric("index_cache_misses", 1);
+      }
+    }
+      
     synchronized void update() {
       if (metricsRecord != null) {
         metricsRecord.setMetric("maps_running", mapTotal);
@@ -180,6 +207,23 @@ public class TaskTracker
   }
     
   private TaskTrackerMetrics myMetrics = null;
+  
+  /**
+   * The index files of the map outputs served to the reduces.
+   */
+  private IndexCache indexCache = null;
+
+  /**
+   * The child JVMs that have finished a task and wait for another one,
+   * keyed by job id and task type.
+   */
+  private Map<String, List<TaskRunner>> idleJvms = 
+    new HashMap<String, List<TaskRunner>>();
+
+  /**
+   * The tasks run in reused child JVMs, mapped to the first task of the JVM.
+   */
+  private Map<String, String> reusedJvmTasks = new HashMap<String, String>();
 
   /**
    * A list of tips that should be cleaned up.
@@ -267,6 +311,11 @@ public class TaskTracker
   static String getJobCacheSubdir() {
     return TaskTracker.SUBDIR + Path.SEPARATOR + TaskTracker.JOBCACHE;
   }
+
+  static String getLocalTaskDir(String jobId, String taskId) {
+    return getJobCacheSubdir() + Path.SEPARATOR + jobId + 
+      Path.SEPARATOR + taskId;
+  }
     
   public long getProtocolVersion(String protocol, 
                                  long clientVersion) throws IOException {
@@ -305,12 +354,15 @@ public class TaskTracker
         
     this.minSpaceStart = this.fConf.getLong("mapred.local.dir.minspacestart", 0L);
     this.minSpaceKill = this.fConf.getLong("mapred.local.dir.minspacekill", 0L);
+    this.minHeartbeatInterval = 
+      this.fConf.getLong("mapred.tasktracker.heartbeat.min.interval", 1000L);
     int numCopiers = this.fConf.getInt("mapred.reduce.parallel.copies", 5);
     //tweak the probe sample size (make it a function of numCopiers)
     probe_sample_size = Math.max(numCopiers*5, 50);
         
         
     this.myMetrics = new TaskTrackerMetrics();
+    this.indexCache = new IndexCache(this.fConf);
         
     // port numbers
     this.taskReportPort = this.fConf.getInt("mapred.task.tracker.report.port", 50050);
@@ -729,8 +781,18 @@ public class TaskTracker
             if (finishedCount[0] == 0) {
               finishedCount.wait(waitTime);
             }
+          }
+          // but keeps the early heartbeats apart, so that the tasks that
+          // finish close together are reported together
+          waitTime = minHeartbeatInterval - 
+                     (System.currentTimeMillis() - lastHeartbeat);
+          if (waitTime > 0) {
+            Thread.sleep(waitTime);
+          }
+          synchronized(finishedCount) {
             finishedCount[0] = 0;
           }
+          now = System.currentTimeMillis();
         }
 
         // Send the heartbeat and process the jobtracker's directives
@@ -1455,6 +1517,7 @@ public class TaskTracker
                                            ) throws IOException {
       if (runstate == TaskStatus.State.SUCCEEDED) {
         LOG.info("Reporting output lost:"+task.getTaskId());
+        indexCache.removeIndex(task.getTaskId());
         runstate = TaskStatus.State.FAILED;    // change status to failure
         progress = 0.0f;
         reportDiagnosticInfo("Map output lost, rescheduling: " + 
@@ -1491,10 +1554,13 @@ public class TaskTracker
           if (runner != null) {
             runner.close();
           }
-          defaultJobConf.deleteLocalFiles(SUBDIR + Path.SEPARATOR + 
-                                          JOBCACHE + Path.SEPARATOR + 
-                                          task.getJobId() + 
-                                          Path.SEPARATOR + taskId);
+          // a JVM that is still running, possibly a later task of the job,
+          // has its working directory among the files of the task
+          if (runner == null || !runner.deleteFilesOnExit()) {
+            defaultJobConf.deleteLocalFiles(
+              getLocalTaskDir(task.getJobId(), taskId));
+          }
+          indexCache.removeIndex(taskId);
         } catch (Throwable ie) {
           LOG.info("Error cleaning up task runner: " + 
                    StringUtils.stringifyException(ie));
@@ -1558,6 +1624,132 @@ public class TaskTracker
     }
   }
 
+  /**
+   * Called by a child JVM that has finished its task, and polled until it
+   * is given another task of the same job or should exit.
+   */
+  public String getNextTask(String taskid) throws IOException {
+    TaskInProgress tip;
+    synchronized (this) {
+      tip = tasks.get(taskid);
+    }
+    if (tip == null || tip.runner == null) {
+      return null;
+    }
+    TaskRunner jvm = tip.runner.getJvm();
+    TaskRunner next;
+    synchronized (idleJvms) {
+      next = jvm.getCurrent();
+      if (next == tip.runner) {
+        // the task is done: keep the JVM if the job allows it
+        int maxTasks = 
+          tip.getJobConf().getInt("mapred.job.reuse.jvm.num.tasks", 1);
+        if (!tip.done || shuttingDown || maxTasks == 1 || 
+            (maxTasks > 0 && jvm.getNumTasks() >= maxTasks)) {
+          return null;
+        }
+        jvm.jvmIdle(System.currentTimeMillis());
+        String key = getJvmKey(tip.getTask());
+        List<TaskRunner> jvms = idleJvms.get(key);
+        if (jvms == null) {
+          jvms = new LinkedList<TaskRunner>();
+          idleJvms.put(key, jvms);
+        }
+        jvms.add(jvm);
+      } else if (next == null) {
+        // still idle
+        if (System.currentTimeMillis() - jvm.getIdleSince() < 
+            JVM_IDLE_TIMEOUT) {
+          return "";
+        }
+        removeIdleJvm(jvm);
+        return null;
+      }
+    }
+    if (next == tip.runner) {
+      // report the task finished, so that its slot is given a new task
+      tip.runner.taskFinished();
+      return "";
+    }
+
+    String nextId = next.getTask().getTaskId();
+    LOG.info("Running " + nextId + " in the JVM of " + 
+             jvm.getTask().getTaskId());
+    try {
+      jvm.switchLogs(next);
+    } catch (Throwable e) {
+      String error = StringUtils.stringifyException(e);
+      LOG.warn(nextId + " Error starting in the JVM of " + 
+               jvm.getTask().getTaskId() + ": " + error);
+      reportDiagnosticInfo(nextId, error);
+      return null;
+    }
+    synchronized (idleJvms) {
+      reusedJvmTasks.put(nextId, jvm.getTask().getTaskId());
+    }
+    return nextId;
+  }
+
+  /**
+   * Get the tasks run in reused child JVMs, mapped to the first task run in
+   * each JVM.
+   * Used by the automatic tests to check that child JVMs are reused.
+   */
+  Map<String, String> getReusedJvmTasks() {
+    synchronized (idleJvms) {
+      return new HashMap<String, String>(reusedJvmTasks);
+    }
+  }
+
+  private static String getJvmKey(Task task) {
+    return task.getJobId() + (task.isMapTask() ? "_m" : "_r");
+  }
+
+  /**
+   * Run the task in an idle JVM of its job, if there is one.  The task must
+   * be set up already, since the JVM starts it as soon as it next polls.
+   * @return true if the task was given to an idle JVM
+   */
+  boolean reuseIdleJvm(TaskRunner runner) {
+    synchronized (idleJvms) {
+      List<TaskRunner> jvms = idleJvms.get(getJvmKey(runner.getTask()));
+      if (jvms == null) {
+        return false;
+      }
+      long now = System.currentTimeMillis();
+      while (!jvms.isEmpty()) {
+        TaskRunner jvm = jvms.remove(0);
+        if (now - jvm.getIdleSince() < JVM_IDLE_TIMEOUT) {
+          jvm.jvmReuse(runner);
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private void removeIdleJvm(TaskRunner jvm) {
+    String key = getJvmKey(jvm.getTask());
+    List<TaskRunner> jvms = idleJvms.get(key);
+    if (jvms != null) {
+      jvms.remove(jvm);
+      if (jvms.isEmpty()) {
+        idleJvms.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Called by the runner that launched a child JVM once it has exited.
+   * @return the runner of the task the JVM was running, if any
+   */
+  TaskRunner jvmExited(TaskRunner jvm) {
+    synchronized (idleJvms) {
+      removeIdleJvm(jvm);
+      return jvm.jvmExited();
+    }
+  }
+
   /** Child checking to see if we're alive.  Normally does nothing.*/
   public synchronized boolean ping(String taskid) throws IOException {
     return tasks.get(taskid) != null;
@@ -1618,15 +1810,23 @@ public class TaskTracker
     }
     if (tip != null) {
       tip.taskFinished();
-      synchronized(finishedCount) {
-        finishedCount[0]++;
-        finishedCount.notify();
-      }
+      triggerHeartbeat();
     } else {
       LOG.warn("Unknown child task finshed: "+taskid+". Ignored.");
     }
   }
 
+  /**
+   * Wake up the main service loop to send a heartbeat as soon as it may,
+   * to report a task that is no longer running.
+   */
+  private void triggerHeartbeat() {
+    synchronized(finishedCount) {
+      finishedCount[0]++;
+      finishedCount.notify();
+    }
+  }
+
   /**
    * A completed map task's output has been lost.
    */
@@ -1635,6 +1835,7 @@ public class TaskTracker
     TaskInProgress tip = (TaskInProgress) tasks.get(taskid);
     if (tip != null) {
       tip.mapOutputLost(errorMsg);
+      triggerHeartbeat();
     } else {
       LOG.warn("Unknown child with bad map output: "+taskid+". Ignored.");
     }
@@ -1680,6 +1881,12 @@ public class TaskTracker
    * The main() for child processes. 
    */
   public static class Child {
+    /** how often a child waiting for the next task of its job polls */
+    private static final long NEXT_TASK_POLL_INTERVAL = 500;
+
+    /** the task the child runs, which is the one it pings the parent for */
+    private static volatile String currentTaskId;
+
     public static void main(String[] args) throws Throwable {
       //LogFactory.showTime(false);
       LOG.debug("Child starting");
@@ -1694,17 +1901,43 @@ public class TaskTracker
                                             defaultConf);
             
       Task task = umbilical.getTask(taskid);
-      JobConf job = new JobConf(task.getJobFile());
-      task.setConf(job);
-          
       defaultConf.addFinalResource(new Path(task.getJobFile()));
 
-      startPinging(umbilical, taskid);        // start pinging parent
+      currentTaskId = taskid;
+      startPinging(umbilical);                // start pinging parent
 
       try {
-        // use job-specified working directory
-        FileSystem.get(job).setWorkingDirectory(job.getWorkingDirectory());
-        task.run(job, umbilical);             // run the task
+        while (true) {
+          // each task gets a fresh configuration, also when it is run in a
+          // JVM reused from an earlier task of the job
+          JobConf job = new JobConf(task.getJobFile());
+          task.setConf(job);
+          // use job-specified working directory
+          FileSystem.get(job).setWorkingDirectory(job.getWorkingDirectory());
+          task.run(job, umbilical);           // run the task
+
+          if (job.getInt("mapred.job.reuse.jvm.num.tasks", 1) == 1) {
+            break;
+          }
+          // the output of the task goes to its own logs
+          System.out.flush();
+          System.err.flush();
+          String nextId = getNextTask(umbilical, taskid);
+          if (nextId == null) {
+            break;
+          }
+          task = umbilical.getTask(nextId);
+          if (task == null) {
+            break;
+          }
+          taskid = nextId;
+          currentTaskId = taskid;
+          Appender appender = Logger.getRootLogger().getAppender("TLA");
+          if (appender instanceof TaskLogAppender) {
+            ((TaskLogAppender)appender).switchTask(taskid);
+          }
+          LOG.info("Running " + taskid + " in a reused JVM");
+        }
       } catch (FSError e) {
         LOG.fatal("FSError from child", e);
         umbilical.fsError(taskid, e.getMessage());
@@ -1724,14 +1957,30 @@ public class TaskTracker
       }
     }
 
+    /**
+     * Wait for the parent to give the JVM another task of the job.
+     * @return the id of the task, or null if the JVM should exit
+     */
+    private static String getNextTask(TaskUmbilicalProtocol umbilical,
+                                      String taskid
+                                      ) throws IOException, 
+                                               InterruptedException {
+      String nextId = umbilical.getNextTask(taskid);
+      while ("".equals(nextId)) {
+        Thread.sleep(NEXT_TASK_POLL_INTERVAL);
+        nextId = umbilical.getNextTask(taskid);
+      }
+      return nextId;
+    }
+
     /** Periodically ping parent and exit when this fails.*/
-    private static void startPinging(final TaskUmbilicalProtocol umbilical,
-                                     final String taskid) {
+    private static void startPinging(final TaskUmbilicalProtocol umbilical) {
       Thread thread = new Thread(new Runnable() {
           public void run() {
             final int MAX_RETRIES = 3;
             int remainingRetries = MAX_RETRIES;
             while (true) {
+              String taskid = currentTaskId;
               try {
                 if (!umbilical.ping(taskid)) {
                   LOG.warn("Parent died.  Exiting "+taskid);
@@ -1754,7 +2003,7 @@ public class TaskTracker
               }
             }
           }
-        }, "Pinger for "+taskid);
+        }, "Pinger for "+currentTaskId);
       thread.setDaemon(true);
       thread.start();
     }
@@ -1829,6 +2078,14 @@ public class TaskTracker
                                    "all local directories are not writable");
   }
     
+  /**
+   * Get the cache of the index files of the map outputs served by this 
+   * task tracker.
+   */
+  IndexCache getIndexCache() {
+    return indexCache;
+  }
+    
   /**
    * Is this task tracker idle?
    * @return has this task tracker finished and cleaned up all of its tasks?
@@ -1868,12 +2125,14 @@ public class TaskTracker
     public void doGet(HttpServletRequest request, 
                       HttpServletResponse response
                       ) throws ServletException, IOException {
-      String mapId = request.getParameter("map");
+      String mapIds = request.getParameter("map");
       String reduceId = request.getParameter("reduce");
-      if (mapId == null || reduceId == null) {
+      if (mapIds == null || reduceId == null) {
         throw new IOException("map and reduce parameters are required");
       }
       ServletContext context = getServletContext();
+      TaskTracker tracker = 
+        (TaskTracker) context.getAttribute("task.tracker");
       int reduce = Integer.parseInt(reduceId);
       byte[] buffer = new byte[MAX_BYTES_TO_READ];
       OutputStream outStream = response.getOutputStream();
@@ -1882,94 +2141,200 @@ public class TaskTracker
         (LocalDirAllocator)context.getAttribute("localDirAllocator");
       FileSystem fileSys = 
         (FileSystem) context.getAttribute("local.file.system");
-
-      // Index file
-      Path indexFileName = lDirAlloc.getLocalPathToRead(
-                                            mapId+"/file.out.index", conf);
-      FSDataInputStream indexIn = null;
-         
-      // Map-output file
-      Path mapOutputFileName = lDirAlloc.getLocalPathToRead(
-                                            mapId+"/file.out", conf);
-      FSDataInputStream mapOutputIn = null;
-        
-      // true iff IOException was caused by attempt to access input
-      boolean isInputException = true;
-        
-      try {
-        /**
-         * Read the index file to get the information about where
-         * the map-output for the given reducer is available. 
-         */
-        //open index file
-        indexIn = fileSys.open(indexFileName);
-
-        //seek to the correct offset for the given reduce
-        indexIn.seek(reduce * 16);
+      Log log = (Log) context.getAttribute("log");
+      // failures to write are not mistaken for lost map outputs
+      ReduceOutputStream reduceOut = new ReduceOutputStream(outStream);
+
+      //use the same buffersize as used for reading the data from disk
+      response.setBufferSize(MAX_BYTES_TO_READ);
+
+      if (mapIds.indexOf(',') < 0) {
+        String mapId = mapIds;
+        // Map-output file
+        Path mapOutputFileName = lDirAlloc.getLocalPathToRead(
+                                              mapId+"/file.out", conf);
+        try {
+          long[] partition = getPartition(tracker, mapId, reduce, conf, 
+                                          lDirAlloc, fileSys);
           
-        //read the offset and length of the partition data
-        long startOffset = indexIn.readLong();
-        long partLength = indexIn.readLong();
-
-        indexIn.close();
-        indexIn = null;
+          //set the custom "Map-Output-Length" http header to 
+          //the actual number of bytes being transferred
+          response.setHeader(MAP_OUTPUT_LENGTH, Long.toString(partition[1]));
           
-        //set the custom "Map-Output-Length" http header to 
-        //the actual number of bytes being transferred
-        response.setHeader(MAP_OUTPUT_LENGTH, Long.toString(partLength));
-
-        //use the same buffersize as used for reading the data from disk
-        response.setBufferSize(MAX_BYTES_TO_READ);
-        
+          sendPartition(mapOutputFileName, partition[0], partition[1], 
+                        reduceOut, buffer, fileSys);
+          reduceOut.flush();
+        } catch (IOException ie) {
+          String errorMsg = mapOutputFailed(tracker, log, mapId, reduceId, 
+                                            reduceOut, ie);
+          response.sendError(HttpServletResponse.SC_GONE, errorMsg);
+          throw ie;
+        }
+      } else {
         /**
-         * Read the data from the sigle map-output file and
-         * send it to the reducer.
+         * Send the map outputs of several maps one after the other, each as
+         * the map task id, the length of its partition (or -1 if the map 
+         * output is not available) and the partition itself.
          */
-        //open the map-output file
-        mapOutputIn = fileSys.open(mapOutputFileName);
+        DataOutputBuffer header = new DataOutputBuffer();
+        String[] maps = mapIds.split(",");
+        for (int i = 0; i < maps.length; i++) {
+          String mapId = maps[i];
+          Path mapOutputFileName = null;
+          long[] partition = null;
+          try {
+            mapOutputFileName = lDirAlloc.getLocalPathToRead(
+                                              mapId+"/file.out", conf);
+          } catch (DiskErrorException de) {
+            log.warn("getMapOutput(" + mapId + "," + reduceId + 
+                     ") failed : " + de.getMessage());
+          }
+          if (mapOutputFileName != null) {
+            try {
+              partition = getPartition(tracker, mapId, reduce, conf, 
+                                       lDirAlloc, fileSys);
+            } catch (IOException ie) {
+              mapOutputFailed(tracker, log, mapId, reduceId, reduceOut, ie);
+            }
+          }
+          header.reset();
+          header.writeUTF(mapId);
+          header.writeLong(partition == null ? -1 : partition[1]);
+          reduceOut.write(header.getData(), 0, header.getLength());
+          if (partition != null) {
+            try {
+              sendPartition(mapOutputFileName, partition[0], partition[1], 
+                            reduceOut, buffer, fileSys);
+            } catch (IOException ie) {
+              // the reduce cannot tell where this map output ends, so the 
+              // rest of the map outputs cannot be sent either
+              mapOutputFailed(tracker, log, mapId, reduceId, reduceOut, ie);
+              throw ie;
+            }
+          }
+        }
+        reduceOut.flush();
+      }
+      outStream.close();
+    }
+
+    /**
+     * Get the index of the map-output, from the cache or else from the
+     * index file, to find where the map-output for the given reducer
+     * is available. 
+     * @return the offset and the length of the partition
+     */
+    private long[] getPartition(TaskTracker tracker, String mapId, 
+                                int reduce, JobConf conf, 
+                                LocalDirAllocator lDirAlloc,
+                                FileSystem fileSys) throws IOException {
+      long[] index = tracker.indexCache.getIndex(mapId);
+      if (index != null) {
+        tracker.myMetrics.indexCacheHit();
+      } else {
+        tracker.myMetrics.indexCacheMiss();
+        Path indexFileName = lDirAlloc.getLocalPathToRead(
+                                          mapId+"/file.out.index", conf);
+        index = tracker.indexCache.readIndex(mapId, fileSys, indexFileName);
+      }
+      if (reduce < 0 || 2 * reduce + 1 >= index.length) {
+        throw new IOException("No partition " + reduce + " in the index" +
+                              " of the map output");
+      }
+      return new long[] {index[2 * reduce], index[2 * reduce + 1]};
+    }
+
+    /**
+     * Send a partition of the map-output file to the reducer.
+     */
+    private void sendPartition(Path mapOutputFileName, long startOffset,
+                               long partLength, OutputStream reduceOut,
+                               byte[] buffer, FileSystem fileSys
+                               ) throws IOException {
+      /**
+       * Read the data from the sigle map-output file and
+       * send it to the reducer. The response is buffered, so it is not
+       * flushed after every chunk.
+       */
+      //open the map-output file
+      FSDataInputStream mapOutputIn = fileSys.open(mapOutputFileName);
+      try {
         //seek to the correct offset for the reduce
         mapOutputIn.seek(startOffset);
-          
+        
         long totalRead = 0;
-        int len = mapOutputIn.read(buffer, 0,
-                                   partLength < MAX_BYTES_TO_READ 
-                                   ? (int)partLength : MAX_BYTES_TO_READ);
-        while (len > 0) {
-          try {
-            outStream.write(buffer, 0, len);
-            outStream.flush();
-          } catch (IOException ie) {
-            isInputException = false;
-            throw ie;
+        while (totalRead < partLength) {
+          int len = mapOutputIn.read(buffer, 0, 
+                                     (int)Math.min(buffer.length, 
+                                                   partLength - totalRead));
+          if (len <= 0) {
+            throw new IOException("Map output " + mapOutputFileName + 
+                                  " ended before the partition did");
           }
+          reduceOut.write(buffer, 0, len);
           totalRead += len;
-          if (totalRead == partLength) break;
-          len = mapOutputIn.read(buffer, 0, 
-                                 (partLength - totalRead) < MAX_BYTES_TO_READ
-                                 ? (int)(partLength - totalRead) : MAX_BYTES_TO_READ);
         }
+      } finally {
+        mapOutputIn.close();
+      }
+    }
+
+    /**
+     * Log the failure to send a map output, and report the map output as
+     * lost unless it was the reducer that could not be written to.
+     * @return the error message
+     */
+    private String mapOutputFailed(TaskTracker tracker, Log log, 
+                                   String mapId, String reduceId,
+                                   ReduceOutputStream reduceOut,
+                                   IOException ie) throws IOException {
+      String errorMsg = ("getMapOutput(" + mapId + "," + reduceId + 
+                         ") failed :\n"+
+                         StringUtils.stringifyException(ie));
+      log.warn(errorMsg);
+      if (!reduceOut.failed) {
+        tracker.mapOutputLost(mapId, errorMsg);
+      }
+      return errorMsg;
+    }
+  }
+
+  /**
+   * Remembers the failures to write to the reducer, so that they are not
+   * mistaken for a lost map output.
+   */
+  private static class ReduceOutputStream extends FilterOutputStream {
+    private boolean failed = false;
+    
+    ReduceOutputStream(OutputStream out) {
+      super(out);
+    }
+    
+    public void write(int b) throws IOException {
+      try {
+        out.write(b);
       } catch (IOException ie) {
-        TaskTracker tracker = 
-          (TaskTracker) context.getAttribute("task.tracker");
-        Log log = (Log) context.getAttribute("log");
-        String errorMsg = ("getMapOutput(" + mapId + "," + reduceId + 
-                           ") failed :\n"+
-                           StringUtils.stringifyException(ie));
-        log.warn(errorMsg);
-        if (isInputException) {
-          tracker.mapOutputLost(mapId, errorMsg);
-        }
-        response.sendError(HttpServletResponse.SC_GONE, errorMsg);
+        failed = true;
+        throw ie;
+      }
+    }
+    
+    public void write(byte[] b, int off, int len) throws IOException {
+      try {
+        out.write(b, off, len);
+      } catch (IOException ie) {
+        failed = true;
+        throw ie;
+      }
+    }
+    
+    public void flush() throws IOException {
+      try {
+        out.flush();
+      } catch (IOException ie) {
+        failed = true;
         throw ie;
-      } finally {
-        if (indexIn != null) {
-          indexIn.close();
-        }
-        if (mapOutputIn != null) {
-          mapOutputIn.close();
-        }
       }
-      outStream.close();
     }
   }
 }
@@ -29,12 +29,21 @@ import org.apache.hadoop.ipc.VersionedProtocol;
  * and parent is via this protocol. */ 
 interface TaskUmbilicalProtocol extends VersionedProtocol {
 
-  /** Changed the version to 2, since we have a new method getMapOutputs */
-  public static final long versionID = 2L;
+  /** Changed the version to 3, since we have a new method getNextTask */
+  public static final long versionID = 3L;
   
   /** Called when a child task process starts, to get its task.*/
   Task getTask(String taskid) throws IOException;
 
+  /** Called by a child process whose task is done, to get the id of the next
+   * task of the same job to run in the same process.  The child should call
+   * it again later if the empty string is returned.
+   * @param taskid the id of the task that is done
+   * @return the id of the next task, "" if there is none yet, or null if the
+   * child should exit
+   */
+  String getNextTask(String taskid) throws IOException;
+
   /** Report child's progress to parent.
    * @param taskid the id of the task
    * @param progress value between zero and one
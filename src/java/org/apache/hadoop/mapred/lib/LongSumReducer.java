@@ -21,6 +21,7 @@ package org.apache.hadoop.mapred.lib;
 import java.io.IOException;
 import java.util.Iterator;
 
+import org.apache.hadoop.mapred.RawValuesIterator;
 import org.apache.hadoop.mapred.Reducer;
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
@@ -38,8 +39,18 @@ public class LongSumReducer extends MapReduceBase implements Reducer {
 
     // sum all values for this key
     long sum = 0;
-    while (values.hasNext()) {
-      sum += ((LongWritable)values.next()).get();
+    if (values instanceof RawValuesIterator) {
+      // read the values in place rather than as an object each
+      RawValuesIterator raw = (RawValuesIterator)values;
+      LongWritable value = new LongWritable();
+      while (raw.hasNext()) {
+        value.readFields(raw.nextRawValue());
+        sum += value.get();
+      }
+    } else {
+      while (values.hasNext()) {
+        sum += ((LongWritable)values.next()).get();
+      }
     }
 
     // output sum
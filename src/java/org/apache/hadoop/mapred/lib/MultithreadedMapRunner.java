@@ -1,6 +1,9 @@
 package org.apache.hadoop.mapred.lib;
 
 import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.MapRunnable;
@@ -13,8 +16,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,6 +38,15 @@ import java.util.concurrent.TimeUnit;
  * the number of thread the thread-pool can use (using the
  * <b>mapred.map.multithreadedrunner.threads</b> property).
  * <p>
+ * The input is handed to the threads in chunks of records (of
+ * <b>mapred.map.multithreadedrunner.batch.size</b> records), which each
+ * thread takes as soon as it is done with its previous chunk.  The output
+ * of a chunk is buffered by its thread, and added to the map output for a
+ * whole chunk at a time, in the order of the input.
+ * <p>
+ * The threads count the records they map, and the time they spend mapping
+ * them, in the {@link Counter} counters of the job.
+ * <p>
  *
  * @author Alejandro Abdelnur
  */
@@ -38,14 +54,47 @@ public class MultithreadedMapRunner implements MapRunnable {
   private static final Log LOG =
     LogFactory.getLog(MultithreadedMapRunner.class.getName());
 
+  /** The counters of the mapper threads, summed over all threads. */
+  public static enum Counter {
+    /** The records mapped. */
+    THREAD_MAP_RECORDS,
+    /** The milliseconds spent mapping them. */
+    THREAD_MAP_MILLIS
+  }
+
   private JobConf job;
   private Mapper mapper;
-  private ExecutorService executorService;
+  private int numberOfThreads;
+  private int batchSize;
+  private Class keyClass;
+  private Class valClass;
   private volatile IOException ioException;
 
+  // chunks that may be filled, and chunks filled that are to be mapped
+  private BlockingQueue<Chunk> freeChunks;
+  private BlockingQueue<Chunk> filledChunks;
+
+  // chunks mapped whose output waits for that of earlier chunks, by number
+  private Map<Long, Chunk> mappedChunks = new HashMap<Long, Chunk>();
+  private long nextChunkToCollect = 0;
+  // whether a thread is collecting the output of the mapped chunks
+  private boolean collecting = false;
+
+  // used by the collecting thread only: the chunks it collects, and the
+  // pairs to deserialize the buffered output into
+  private List<Chunk> readyChunks = new ArrayList<Chunk>();
+  private WritableComparable outKey;
+  private Writable outValue;
+  private DataInputBuffer outBuffer = new DataInputBuffer();
+
+  /** Tells a thread that there are no more chunks. */
+  private static final Chunk END = new Chunk(0, null);
+
   public void configure(JobConf job) {
-    int numberOfThreads =
+    this.numberOfThreads =
       job.getInt("mapred.map.multithreadedrunner.threads", 10);
+    this.batchSize = 
+      Math.max(1, job.getInt("mapred.map.multithreadedrunner.batch.size", 10));
     if (LOG.isDebugEnabled()) {
       LOG.debug("Configuring job " + job.getJobName() +
                 " to use " + numberOfThreads + " threads");
@@ -54,40 +103,45 @@ public class MultithreadedMapRunner implements MapRunnable {
     this.job = job;
     this.mapper = (Mapper)ReflectionUtils.newInstance(job.getMapperClass(),
                                                       job);
-
-    // Creating a threadpool of the configured size to execute the Mapper
-    // map method in parallel.
-    executorService = Executors.newFixedThreadPool(numberOfThreads);
+    this.keyClass = job.getMapOutputKeyClass();
+    this.valClass = job.getMapOutputValueClass();
+    this.outKey = (WritableComparable)ReflectionUtils.newInstance(keyClass, 
+                                                                  job);
+    this.outValue = (Writable)ReflectionUtils.newInstance(valClass, job);
   }
 
   public void run(RecordReader input, OutputCollector output,
                   Reporter reporter)
     throws IOException {
+    // two chunks per thread: one being mapped, and one ready for it
+    freeChunks = new LinkedBlockingQueue<Chunk>();
+    filledChunks = new LinkedBlockingQueue<Chunk>();
+    for (int i = 0; i < 2 * numberOfThreads; i++) {
+      freeChunks.add(new Chunk(batchSize, input));
+    }
+    MapperThread[] threads = new MapperThread[numberOfThreads];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new MapperThread(i, output, reporter);
+      threads[i].start();
+    }
     try {
-      // allocate key & value instances these objects will not be reused
-      // because execution of Mapper.map is not serialized.
-      WritableComparable key = input.createKey();
-      Writable value = input.createValue();
-
-      while (input.next(key, value)) {
-
-        // Run Mapper.map execution asynchronously in a separate thread.
-        // If threads are not available from the thread-pool this method
-        // will block until there is a thread available.
-        executorService.execute(
-                                new MapperInvokeRunable(key, value, output, reporter));
-
-        // Checking if a Mapper.map within a Runnable has generated an
-        // IOException. If so we rethrow it to force an abort of the Map
-        // operation thus keeping the semantics of the default
-        // implementation.
-        if (ioException != null) {
-          throw ioException;
+      long chunkNumber = 0;
+      boolean more = true;
+      while (more) {
+        Chunk chunk = takeFreeChunk();
+        chunk.number = chunkNumber++;
+        chunk.size = 0;
+        while (chunk.size < batchSize && 
+               (more = input.next(chunk.keys[chunk.size], 
+                                  chunk.values[chunk.size]))) {
+          chunk.size++;
+        }
+        if (chunk.size > 0) {
+          filledChunks.add(chunk);
+        } else {
+          chunkNumber--;
+          freeChunks.add(chunk);
         }
-
-        // Allocate new key & value instances as mapper is running in parallel
-        key = input.createKey();
-        value = input.createValue();
       }
 
       if (LOG.isDebugEnabled()) {
@@ -95,104 +149,207 @@ public class MultithreadedMapRunner implements MapRunnable {
                   + job.getJobName());
       }
 
-      // Graceful shutdown of the Threadpool, it will let all scheduled
-      // Runnables to end.
-      executorService.shutdown();
-
-      try {
-
-        // Now waiting for all Runnables to end.
-        while (!executorService.awaitTermination(100, TimeUnit.MILLISECONDS)) {
-          if (LOG.isDebugEnabled()) {
-            LOG.debug("Awaiting all running Mappper.map calls to finish, job "
-                      + job.getJobName());
-          }
-
-          // Checking if a Mapper.map within a Runnable has generated an
+      // Let the threads finish the chunks left, and wait for them.
+      for (int i = 0; i < threads.length; i++) {
+        filledChunks.add(END);
+      }
+      for (int i = 0; i < threads.length; i++) {
+        while (threads[i].isAlive()) {
+          // Checking if a Mapper.map within a thread has generated an
           // IOException. If so we rethrow it to force an abort of the Map
           // operation thus keeping the semantics of the default
           // implementation.
-          // NOTE: while Mapper.map dispatching has concluded there are still
-          // map calls in progress.
-          if (ioException != null) {
-            throw ioException;
-          }
-        }
-
-        // Checking if a Mapper.map within a Runnable has generated an
-        // IOException. If so we rethrow it to force an abort of the Map
-        // operation thus keeping the semantics of the default
-        // implementation.
-        // NOTE: it could be that a map call has had an exception after the
-        // call for awaitTermination() returing true. And edge case but it
-        // could happen.
-        if (ioException != null) {
-          throw ioException;
+          checkException();
+          threads[i].join(100);
         }
       }
-      catch (IOException ioEx) {
-        // Forcing a shutdown of all thread of the threadpool and rethrowing
-        // the IOException
-        executorService.shutdownNow();
-        throw ioEx;
+      checkException();
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].logThroughput();
       }
-      catch (InterruptedException iEx) {
-        throw new IOException(iEx.getMessage());
+    } catch (InterruptedException iEx) {
+      throw new IOException(iEx.getMessage());
+    } finally {
+      // Stopping the threads, if the map was aborted.
+      for (int i = 0; i < threads.length; i++) {
+        threads[i].interrupt();
       }
+      mapper.close();
+    }
+  }
+
+  /**
+   * Wait for a chunk to fill.  Chunks are freed as their output is
+   * collected; the wait stops if a thread fails.
+   */
+  private Chunk takeFreeChunk() throws IOException, InterruptedException {
+    Chunk chunk = null;
+    while (chunk == null) {
+      checkException();
+      chunk = freeChunks.poll(100, TimeUnit.MILLISECONDS);
+    }
+    return chunk;
+  }
+
+  private void checkException() throws IOException {
+    if (ioException != null) {
+      throw ioException;
+    }
+  }
 
+  private synchronized void setException(IOException e) {
+    if (ioException == null) {
+      ioException = e;
+    }
+  }
+
+  /**
+   * Add the output of a chunk to the map output, once the output of all
+   * the chunks before it has been, and with it that of the chunks after it
+   * which are already mapped.  One thread at a time collects, outside the
+   * lock of the runner: the threads that map a chunk meanwhile leave its
+   * output to that thread.  The collector is locked once per chunk.
+   */
+  private void chunkMapped(Chunk chunk, OutputCollector output
+                           ) throws IOException {
+    synchronized (this) {
+      mappedChunks.put(chunk.number, chunk);
+      if (collecting) {
+        return;
+      }
+      collecting = true;
+    }
+    boolean done = false;
+    try {
+      while (true) {
+        synchronized (this) {
+          Chunk next = mappedChunks.remove(nextChunkToCollect);
+          while (next != null) {
+            readyChunks.add(next);
+            next = mappedChunks.remove(++nextChunkToCollect);
+          }
+          if (readyChunks.isEmpty()) {
+            collecting = false;
+            done = true;
+            return;
+          }
+        }
+        for (Chunk next : readyChunks) {
+          synchronized (output) {
+            outBuffer.reset(next.output.getData(), next.output.getLength());
+            for (int i = 0; i < next.numOutputs; i++) {
+              outKey.readFields(outBuffer);
+              outValue.readFields(outBuffer);
+              output.collect(outKey, outValue);
+            }
+          }
+          next.output.reset();
+          next.numOutputs = 0;
+          freeChunks.add(next);
+        }
+        readyChunks.clear();
+      }
     } finally {
-      mapper.close();
+      if (!done) {
+        synchronized (this) {
+          collecting = false;
+        }
+      }
     }
   }
 
+  /**
+   * A chunk of input records, with the output buffered while they are
+   * mapped.  Chunks and their key/value instances are reused.
+   */
+  private static class Chunk {
+    long number;
+    int size;
+    WritableComparable[] keys;
+    Writable[] values;
+    DataOutputBuffer output = new DataOutputBuffer();
+    int numOutputs;
+
+    Chunk(int capacity, RecordReader input) {
+      keys = new WritableComparable[capacity];
+      values = new Writable[capacity];
+      for (int i = 0; i < capacity; i++) {
+        keys[i] = input.createKey();
+        values[i] = input.createValue();
+      }
+    }
+  }
 
   /**
-   * Runnable to execute a single Mapper.map call from a forked thread.
+   * A thread that maps chunks of records, as long as there are some.
    */
-  private class MapperInvokeRunable implements Runnable {
-    private WritableComparable key;
-    private Writable value;
+  private class MapperThread extends Thread implements OutputCollector {
     private OutputCollector output;
     private Reporter reporter;
+    private Chunk chunk;                  // the chunk being mapped
+    private long records = 0;
+    private long mapTime = 0;
 
-    /**
-     * Collecting all required parameters to execute a Mapper.map call.
-     * <p>
-     *
-     * @param key
-     * @param value
-     * @param output
-     * @param reporter
-     */
-    public MapperInvokeRunable(WritableComparable key, Writable value,
-                               OutputCollector output, Reporter reporter) {
-      this.key = key;
-      this.value = value;
+    MapperThread(int id, OutputCollector output, Reporter reporter) {
       this.output = output;
       this.reporter = reporter;
+      setName("Mapper thread " + id);
+      setDaemon(true);
     }
 
-    /**
-     * Executes a Mapper.map call with the given Mapper and parameters.
-     * <p>
-     * This method is called from the thread-pool thread.
-     *
-     */
     public void run() {
       try {
-        // map pair to output
-        MultithreadedMapRunner.this.mapper.map(key, value, output, reporter);
-      }
-      catch (IOException ex) {
+        chunk = filledChunks.take();
+        while (chunk != END) {
+          long start = System.currentTimeMillis();
+          for (int i = 0; i < chunk.size; i++) {
+            // map pair to the chunk's output
+            mapper.map(chunk.keys[i], chunk.values[i], this, reporter);
+          }
+          long time = System.currentTimeMillis() - start;
+          mapTime += time;
+          records += chunk.size;
+          reporter.incrCounter(Counter.THREAD_MAP_RECORDS, chunk.size);
+          reporter.incrCounter(Counter.THREAD_MAP_MILLIS, time);
+          chunkMapped(chunk, output);
+          chunk = filledChunks.take();
+        }
+      } catch (InterruptedException ie) {
+        // the map was aborted
+      } catch (IOException ex) {
         // If there is an IOException during the call it is set in an instance
         // variable of the MultithreadedMapRunner from where it will be
         // rethrown.
-        synchronized (MultithreadedMapRunner.this) {
-          if (MultithreadedMapRunner.this.ioException == null) {
-            MultithreadedMapRunner.this.ioException = ex;
-          }
-        }
+        setException(ex);
+      } catch (Throwable t) {
+        setException(new IOException(getName() + " failed: " + 
+                                     StringUtils.stringifyException(t)));
+      }
+    }
+
+    /** Buffer an output pair of the chunk being mapped. */
+    public void collect(WritableComparable key, Writable value
+                        ) throws IOException {
+      if (key.getClass() != keyClass) {
+        throw new IOException("Type mismatch in key from map: expected "
+                              + keyClass.getName() + ", recieved "
+                              + key.getClass().getName());
+      }
+      if (value.getClass() != valClass) {
+        throw new IOException("Type mismatch in value from map: expected "
+                              + valClass.getName() + ", recieved "
+                              + value.getClass().getName());
       }
+      key.write(chunk.output);
+      value.write(chunk.output);
+      chunk.numOutputs++;
+    }
+
+    void logThroughput() {
+      LOG.info(getName() + " mapped " + records + " records in " + 
+               mapTime + " ms (" + 
+               (mapTime > 0 ? (records * 1000 / mapTime) : records) + 
+               " records/s)");
     }
   }
 
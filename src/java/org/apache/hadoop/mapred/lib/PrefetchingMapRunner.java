@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred.lib;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapRunnable;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+
+/**
+ * Prefetching implementation of {@link MapRunnable}.
+ * <p>
+ * It can be used instead of the default implementation, 
+ * {@link org.apache.hadoop.mapred.MapRunner}, when reading the input is
+ * slow enough to keep the map waiting, e.g. because of the latency of
+ * the distributed filesystem or the cost of decompression.  Records are
+ * read by a background thread into a bounded ring of key/value pairs, while
+ * the Mapper maps the records read before them, so that reading and mapping
+ * overlap.
+ * <p>
+ * The key/value pairs are reused, as they are by the default
+ * implementation, so the Mapper must not keep references to them across
+ * calls.  The Mapper itself is called from a single thread.
+ * <p>
+ * The Map-Reduce job has to be configured to use this MapRunnable class
+ * (using the <b>mapred.map.runner.class</b> property) and the number of 
+ * records that may be read ahead (using the 
+ * <b>mapred.map.prefetchingrunner.records</b> property).
+ */
+public class PrefetchingMapRunner implements MapRunnable {
+  private static final Log LOG =
+    LogFactory.getLog(PrefetchingMapRunner.class.getName());
+
+  /** How long a map that failed waits for the reader to stop. */
+  private static final long READER_STOP_TIMEOUT = 10 * 1000;
+
+  private Mapper mapper;
+  private int numRecords;
+
+  /** A key/value pair of the ring. */
+  private static class Record {
+    WritableComparable key;
+    Writable value;
+  }
+
+  /** Marks the end of the input, or the failure of the reader. */
+  private static final Record EOF = new Record();
+
+  private BlockingQueue<Record> free;     // pairs that may be read into
+  private BlockingQueue<Record> full;     // pairs read, to be mapped
+  private volatile Throwable readerException;
+
+  public void configure(JobConf job) {
+    numRecords = job.getInt("mapred.map.prefetchingrunner.records", 100);
+    if (numRecords < 1) {
+      numRecords = 1;
+    }
+    this.mapper = (Mapper)ReflectionUtils.newInstance(job.getMapperClass(),
+                                                      job);
+  }
+
+  public void run(RecordReader input, OutputCollector output,
+                  Reporter reporter)
+    throws IOException {
+    // the ring: one more slot in full than there are pairs, for EOF
+    free = new ArrayBlockingQueue<Record>(numRecords);
+    full = new ArrayBlockingQueue<Record>(numRecords + 1);
+    for (int i = 0; i < numRecords; i++) {
+      Record record = new Record();
+      record.key = input.createKey();
+      record.value = input.createValue();
+      free.add(record);
+    }
+    Thread reader = new ReaderThread(input);
+    reader.start();
+    try {
+      Record record = full.take();
+      while (record != EOF) {
+        // map pair to output
+        mapper.map(record.key, record.value, output, reporter);
+        free.add(record);
+        record = full.take();
+      }
+      if (readerException != null) {
+        if (readerException instanceof IOException) {
+          throw (IOException) readerException;
+        }
+        throw new IOException("Error reading the input: " + 
+                              StringUtils.stringifyException(readerException));
+      }
+      // the reader is done once it has queued EOF
+      reader.join();
+    } catch (InterruptedException ie) {
+      throw new IOException(ie.toString());
+    } finally {
+      // stop reading ahead if the map failed, and let the reader leave the
+      // input before the caller closes it
+      if (reader.isAlive()) {
+        reader.interrupt();
+        try {
+          reader.join(READER_STOP_TIMEOUT);
+        } catch (InterruptedException ie) {}
+        if (reader.isAlive()) {
+          LOG.warn("The map input prefetcher did not stop within " + 
+                   READER_STOP_TIMEOUT + " ms");
+        }
+      }
+      mapper.close();
+    }
+  }
+
+  /**
+   * Reads the input into the free pairs of the ring, and queues them for
+   * the Mapper until the end of the input.
+   */
+  private class ReaderThread extends Thread {
+    private RecordReader input;
+
+    ReaderThread(RecordReader input) {
+      this.input = input;
+      setName("Map input prefetcher");
+      setDaemon(true);
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          Record record = free.take();
+          if (!input.next(record.key, record.value)) {
+            break;
+          }
+          full.add(record);
+        }
+      } catch (InterruptedException ie) {
+        // the map failed: nobody waits for more records
+        return;
+      } catch (Throwable t) {
+        LOG.warn("Error reading the map input: " + 
+                 StringUtils.stringifyException(t));
+        readerException = t;
+      }
+      full.add(EOF);
+    }
+  }
+
+}
@@ -47,7 +47,7 @@ public class UniqValueCount implements ValueAggregator {
    * 
    */
   public void addNextValue(Object val) {
-    uniqItems.put(val, "1");
+    uniqItems.put(val.toString(), "1");
 
   }
 
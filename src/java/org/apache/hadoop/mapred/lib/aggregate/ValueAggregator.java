@@ -27,7 +27,8 @@ import java.util.ArrayList;
 public interface ValueAggregator {
 
   /**
-   * add a value to the aggregator
+   * add a value to the aggregator. The value object may be reused by the
+   * caller once this returns, so it has to be copied to be kept.
    * 
    * @param val the value to be added
    */
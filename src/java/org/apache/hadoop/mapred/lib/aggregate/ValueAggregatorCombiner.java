@@ -34,10 +34,10 @@ import org.apache.hadoop.mapred.Reporter;
 public class ValueAggregatorCombiner extends ValueAggregatorJobBase {
 
   /**
-   * Combiner does not need to configure.
+   * Combiner only needs the class of the values it reads.
    */
   public void configure(JobConf job) {
-
+    configureValueClass(job);
   }
 
   /** Combines values for a given key.  
@@ -53,9 +53,7 @@ public class ValueAggregatorCombiner extends ValueAggregatorJobBase {
     String type = keyStr.substring(0, pos);
     ValueAggregator aggregator = ValueAggregatorBaseDescriptor
       .generateValueAggregator(type);
-    while (values.hasNext()) {
-      aggregator.addNextValue(values.next());
-    }
+    addValues(aggregator, values);
     Iterator outputs = aggregator.getCombinerOutput().iterator();
 
     while (outputs.hasNext()) {
@@ -20,10 +20,15 @@ package org.apache.hadoop.mapred.lib.aggregate;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.RawValuesIterator;
 import org.apache.hadoop.mapred.Reducer;
+import org.apache.hadoop.util.ReflectionUtils;
 
 /**
  * This abstract class implements some common functionalities of the
@@ -34,11 +39,24 @@ public abstract class ValueAggregatorJobBase implements Mapper, Reducer {
 
   protected ArrayList<ValueAggregatorDescriptor> aggregatorDescriptorList = null;
 
+  private Class valueClass = Text.class;        // of the values aggregated
+  private JobConf job;
+
   public void configure(JobConf job) {
+    this.configureValueClass(job);
     this.initializeMySpec(job);
     this.logSpec();
   }
 
+  /**
+   * Take the class of the values that the reducer and the combiner
+   * aggregate from the map output value class of the job.
+   */
+  protected void configureValueClass(JobConf job) {
+    this.valueClass = job.getMapOutputValueClass();
+    this.job = job;
+  }
+
   private static ValueAggregatorDescriptor getValueAggregatorDescriptor(
       String spec, JobConf job) {
     if (spec == null)
@@ -75,6 +93,27 @@ public abstract class ValueAggregatorJobBase implements Mapper, Reducer {
     }
   }
 
+  /**
+   * Add the values of a key to an aggregator. If they can be read as they
+   * are serialized, the values are all read into the same object, of the
+   * map output value class.
+   */
+  protected void addValues(ValueAggregator aggregator, Iterator values)
+    throws IOException {
+    if (values instanceof RawValuesIterator) {
+      RawValuesIterator raw = (RawValuesIterator) values;
+      Writable value = (Writable) ReflectionUtils.newInstance(valueClass, job);
+      while (raw.hasNext()) {
+        value.readFields(raw.nextRawValue());
+        aggregator.addNextValue(value);
+      }
+    } else {
+      while (values.hasNext()) {
+        aggregator.addNextValue(values.next());
+      }
+    }
+  }
+
   protected void logSpec() {
     StringBuffer sb = new StringBuffer();
     sb.append("\n");
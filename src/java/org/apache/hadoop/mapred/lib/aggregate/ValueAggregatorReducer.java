@@ -53,9 +53,7 @@ public class ValueAggregatorReducer extends ValueAggregatorJobBase {
 
     ValueAggregator aggregator = ValueAggregatorBaseDescriptor
       .generateValueAggregator(type);
-    while (values.hasNext()) {
-      aggregator.addNextValue(values.next());
-    }
+    addValues(aggregator, values);
 
     String val = aggregator.getReport();
     key = new Text(keyStr);
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.net;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Reads or writes a socket channel in non-blocking mode, waiting for the
+ * channel with a selector of its own when it is not ready.  Unlike the
+ * streams of a socket opened from a channel, a reader and a writer of the
+ * same channel don't block each other, and waits can time out.
+ */
+abstract class SocketIOWithTimeout {
+  // the longest wait before checking that the channel is still open:
+  // closing it from another thread does not wake up all selectors
+  private static final long MAX_SELECT_WAIT = 1000;
+
+  private SocketChannel channel;
+  private int ops;
+  private long timeout;
+  private Selector selector;            // opened on the first wait
+
+  /**
+   * @param channel the channel, which is made non-blocking
+   * @param ops the operation to wait for, a SelectionKey constant
+   * @param timeout how long to wait for the channel in milliseconds, or 0
+   *                to wait for ever
+   */
+  SocketIOWithTimeout(SocketChannel channel, int ops, long timeout)
+    throws IOException {
+    this.channel = channel;
+    this.ops = ops;
+    this.timeout = timeout;
+    channel.configureBlocking(false);
+  }
+
+  SocketChannel getChannel() {
+    return channel;
+  }
+
+  /**
+   * Transfer what can be transferred without blocking.
+   * @return the number of bytes transferred, or -1 at the end of the stream
+   */
+  abstract int performIO(ByteBuffer buf) throws IOException;
+
+  /**
+   * Transfer some bytes, waiting for the channel if none can be
+   * transferred yet.
+   * @return the number of bytes transferred, 0 only if buf has no bytes
+   *         remaining, or -1 at the end of the stream
+   */
+  int doIO(ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining()) {
+      int n = performIO(buf);
+      if (n != 0) {
+        return n;
+      }
+      waitForIO();
+    }
+    return 0;
+  }
+
+  /**
+   * Wait until the channel is ready for the operation.
+   * @throws SocketTimeoutException if the timeout passes first
+   * @throws ClosedChannelException if the channel is closed meanwhile
+   */
+  void waitForIO() throws IOException {
+    if (selector == null) {
+      selector = Selector.open();
+      channel.register(selector, ops);
+    }
+    long deadline = System.currentTimeMillis() + timeout;
+    while (true) {
+      if (!channel.isOpen()) {
+        throw new ClosedChannelException();
+      }
+      long wait = MAX_SELECT_WAIT;
+      if (timeout > 0) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new SocketTimeoutException(
+            timeout + " millis timeout while waiting for " + channel);
+        }
+        wait = Math.min(wait, remaining);
+      }
+      if (selector.select(wait) > 0) {
+        selector.selectedKeys().clear();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Close the selector, and the channel.
+   */
+  void close() throws IOException {
+    try {
+      if (selector != null) {
+        selector.close();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+}
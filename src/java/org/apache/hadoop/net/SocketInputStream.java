@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An input stream reading a socket channel with a timeout.  A read waiting
+ * longer than the timeout for data throws a
+ * {@link java.net.SocketTimeoutException}, as with
+ * {@link java.net.Socket#setSoTimeout(int)}, and it does not keep another
+ * thread from writing to the channel meanwhile.  The channel is made
+ * non-blocking.
+ */
+public class SocketInputStream extends InputStream {
+  private Reader reader;
+  private byte[] oneByte = new byte[1];
+
+  private static class Reader extends SocketIOWithTimeout {
+    Reader(SocketChannel channel, long timeout) throws IOException {
+      super(channel, SelectionKey.OP_READ, timeout);
+    }
+
+    int performIO(ByteBuffer buf) throws IOException {
+      return getChannel().read(buf);
+    }
+  }
+
+  /**
+   * @param channel the channel to read from
+   * @param timeout how long a read may wait in milliseconds, 0 for ever
+   */
+  public SocketInputStream(SocketChannel channel, long timeout)
+    throws IOException {
+    reader = new Reader(channel, timeout);
+  }
+
+  public int read() throws IOException {
+    int n = read(oneByte, 0, 1);
+    return (n > 0) ? (oneByte[0] & 0xff) : -1;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    return reader.doIO(ByteBuffer.wrap(b, off, len));
+  }
+
+  /**
+   * Close the stream and the channel.
+   */
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An output stream writing to a socket channel with a timeout.  A write
+ * waiting longer than the timeout for room in the socket throws a
+ * {@link java.net.SocketTimeoutException}, and it does not keep another
+ * thread from reading the channel meanwhile.  The channel is made
+ * non-blocking.
+ */
+public class SocketOutputStream extends OutputStream {
+  private Writer writer;
+  private byte[] oneByte = new byte[1];
+
+  private static class Writer extends SocketIOWithTimeout {
+    Writer(SocketChannel channel, long timeout) throws IOException {
+      super(channel, SelectionKey.OP_WRITE, timeout);
+    }
+
+    int performIO(ByteBuffer buf) throws IOException {
+      return getChannel().write(buf);
+    }
+  }
+
+  /**
+   * @param channel the channel to write to
+   * @param timeout how long a write may wait in milliseconds, 0 for ever
+   */
+  public SocketOutputStream(SocketChannel channel, long timeout)
+    throws IOException {
+    writer = new Writer(channel, timeout);
+  }
+
+  public void write(int b) throws IOException {
+    oneByte[0] = (byte) b;
+    write(oneByte, 0, 1);
+  }
+
+  public void write(byte[] b, int off, int len) throws IOException {
+    ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+    while (buf.hasRemaining()) {
+      if (writer.doIO(buf) < 0) {
+        throw new IOException("The stream is closed");
+      }
+    }
+  }
+
+  /**
+   * Send a region of a file with {@link FileChannel#transferTo}, which
+   * lets the kernel copy it from the file cache to the socket.
+   * @throws EOFException if the file ends before the region
+   */
+  public void transferToFully(FileChannel fileCh, long position, long count)
+    throws IOException {
+    while (count > 0) {
+      long sent = transferTo(fileCh, position, count);
+      position += sent;
+      count -= sent;
+    }
+  }
+
+  /**
+   * Send the start of a region of a file with {@link FileChannel#transferTo},
+   * waiting for room in the socket if none of it can be sent yet.
+   * @return the number of bytes sent, more than 0 unless count is 0
+   * @throws EOFException if the file ends at position
+   */
+  public long transferTo(FileChannel fileCh, long position, long count)
+    throws IOException {
+    while (count > 0) {
+      long sent = fileCh.transferTo(position, count, writer.getChannel());
+      if (sent > 0) {
+        return sent;
+      }
+      if (position >= fileCh.size()) {
+        throw new EOFException("EOF of " + fileCh + " at " + position +
+                               " with " + count + " bytes left to send");
+      }
+      writer.waitForIO();
+    }
+    return 0;
+  }
+
+  /**
+   * Close the stream and the channel.
+   */
+  public void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.dfs;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.UTF8;
+
+/**
+ * Fails the first datanode of the pipeline of a block while the block is
+ * written, and checks that the client recovers the write.
+ */
+public class TestBlockWriteRecovery extends TestCase {
+  private static final int PACKET_SIZE = 1024;
+  private static final long BLOCK_SIZE = 1024 * 1024;
+  private static final short REPLICATION = 3;
+
+  private MiniDFSCluster cluster;
+  private DFSClient client;
+  private FileSystem fs;
+
+  protected void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt("dfs.write.packet.size", PACKET_SIZE);
+    cluster = new MiniDFSCluster(conf, REPLICATION, true, null);
+    client = new DFSClient(new InetSocketAddress("localhost",
+                                                 cluster.getNameNodePort()),
+                           conf);
+    fs = cluster.getFileSystem();
+  }
+
+  protected void tearDown() throws Exception {
+    client.close();
+    cluster.shutdown();
+  }
+
+  private DFSClient.DFSOutputStream create(String name, short replication)
+    throws IOException {
+    return (DFSClient.DFSOutputStream)
+      client.create(new UTF8(name), true, replication, BLOCK_SIZE, null);
+  }
+
+  private DataNode getDataNode(DatanodeInfo node) {
+    for (DataNode dn : cluster.getDataNodes()) {
+      if (dn.dnRegistration.getName().equals(node.getName())) {
+        return dn;
+      }
+    }
+    fail("no datanode " + node.getName());
+    return null;
+  }
+
+  /** Closes the socket the datanode receives its only block on.
+   * @return the block */
+  private Block closeWriter(DataNode dn) throws IOException {
+    synchronized (dn.blockWriters) {
+      assertEquals(1, dn.blockWriters.size());
+      Block b = dn.blockWriters.keySet().iterator().next();
+      dn.blockWriters.get(b).s.close();
+      return b;
+    }
+  }
+
+  private void checkFile(String name, byte[] expected, Block lost,
+                         short replication) throws Exception {
+    byte[] actual = new byte[expected.length];
+    FSDataInputStream in = fs.open(new Path(name));
+    in.readFully(actual);
+    assertEquals(-1, in.read());
+    in.close();
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("byte " + i, expected[i], actual[i]);
+    }
+
+    LocatedBlock[] blocks = client.namenode.open(name);
+    assertEquals(1, blocks.length);
+    if (lost != null) {
+      assertFalse(lost.equals(blocks[0].getBlock()));
+    }
+    // the block is replicated again if it was written to fewer datanodes
+    long timeout = System.currentTimeMillis() + 60000;
+    while (blocks[0].getLocations().length < replication) {
+      assertTrue("timed out waiting for the replicas",
+                 System.currentTimeMillis() < timeout);
+      Thread.sleep(500);
+      blocks = client.namenode.open(name);
+    }
+    assertEquals(replication, blocks[0].getLocations().length);
+  }
+
+  /** A datanode failing after data of the block was acknowledged is dropped
+   * from the pipeline, and the rest of the pipeline carries on. */
+  public void testFirstDatanodeFailure() throws Exception {
+    String name = "/recovery/continued";
+    // more packets than may be unacknowledged, so some are acknowledged
+    byte[] data = new byte[400 * PACKET_SIZE + 123];
+    new Random().nextBytes(data);
+    int half = 200 * PACKET_SIZE + 17;
+
+    DFSClient.DFSOutputStream out = create(name, REPLICATION);
+    out.write(data, 0, half);
+    DatanodeInfo[] pipeline = out.getPipeline();
+    assertEquals(REPLICATION, pipeline.length);
+    Block b = closeWriter(getDataNode(pipeline[0]));
+    out.write(data, half, data.length - half);
+    out.close();
+
+    assertEquals(REPLICATION - 1, out.getPipeline().length);
+    assertEquals(pipeline[1].getName(), out.getPipeline()[0].getName());
+    // the block was continued rather than started again
+    LocatedBlock[] blocks = client.namenode.open(name);
+    assertEquals(b, blocks[0].getBlock());
+    checkFile(name, data, null, REPLICATION);
+  }
+
+  /** Holds the lock of the metrics of a datanode until opened. */
+  private static class Gate extends Thread {
+    private Object lock;
+    private boolean held = false;
+    private boolean open = false;
+
+    Gate(DataNode dn) {
+      this.lock = dn.myMetrics;
+      setDaemon(true);
+      start();
+      synchronized (this) {
+        while (!held) {
+          try {
+            wait();
+          } catch (InterruptedException ie) {
+          }
+        }
+      }
+    }
+
+    public void run() {
+      synchronized (lock) {
+        synchronized (this) {
+          held = true;
+          notifyAll();
+          while (!open) {
+            try {
+              wait();
+            } catch (InterruptedException ie) {
+            }
+          }
+        }
+      }
+    }
+
+    void open() throws InterruptedException {
+      synchronized (this) {
+        open = true;
+        notifyAll();
+      }
+      join();
+    }
+  }
+
+  /** A datanode failing before any data of the block was acknowledged
+   * gets the block abandoned, and started again on a new pipeline. */
+  public void testFailureBeforeAcknowledgement() throws Exception {
+    String name = "/recovery/restarted";
+    byte[] data = new byte[3 * PACKET_SIZE + 45];
+    new Random().nextBytes(data);
+
+    // a datanode alone in the pipeline starts the block without updating
+    // its metrics, but does not acknowledge packets until it can
+    List<Gate> gates = new ArrayList<Gate>();
+    for (DataNode dn : cluster.getDataNodes()) {
+      gates.add(new Gate(dn));
+    }
+    DFSClient.DFSOutputStream out = create(name, (short) 1);
+    Block b;
+    try {
+      out.write(data, 0, 3 * PACKET_SIZE);
+      DatanodeInfo[] pipeline = out.getPipeline();
+      assertEquals(1, pipeline.length);
+      b = closeWriter(getDataNode(pipeline[0]));
+    } finally {
+      for (Gate gate : gates) {
+        gate.open();
+      }
+    }
+    out.write(data, 3 * PACKET_SIZE, data.length - 3 * PACKET_SIZE);
+    out.close();
+
+    assertEquals(1, out.getPipeline().length);
+    checkFile(name, data, b, (short) 1);
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.dfs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Keeps the only xceiver of a datanode busy, and checks that the
+ * connections it refuses are told so and retried.
+ */
+public class TestBusyDatanode extends TestCase {
+  // how long the xceiver is kept busy, less than the retries of a client
+  private static final long HOLD_TIME = 2 * FSConstants.BUSY_RETRY_INTERVAL;
+
+  private MiniDFSCluster cluster;
+  private FileSystem fs;
+  private DataNode dn;
+  private Socket hog;
+
+  protected void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt("dfs.datanode.max.xceivers", 1);
+    conf.setInt("dfs.datanode.xceiver.queue.size", 0);
+    cluster = new MiniDFSCluster(conf, 1, true, null);
+    fs = cluster.getFileSystem();
+    dn = cluster.getDataNodes().get(0);
+  }
+
+  protected void tearDown() throws Exception {
+    if (hog != null) {
+      hog.close();
+    }
+    fs.close();
+    cluster.shutdown();
+  }
+
+  private Socket connect() throws IOException {
+    Socket s = new Socket();
+    s.connect(DataNode.createSocketAddr(dn.dnRegistration.getName()));
+    return s;
+  }
+
+  /** Open a connection which keeps the xceiver waiting for a request. */
+  private void holdXceiver() throws Exception {
+    hog = connect();
+    long timeout = System.currentTimeMillis() + 60000;
+    while ("0".equals(String.valueOf(dn.xceiverCount))) {
+      assertTrue("timed out waiting for the xceiver",
+                 System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+  }
+
+  /** Free the xceiver after HOLD_TIME, from another thread. */
+  private void releaseXceiverLater() {
+    new Thread() {
+      public void run() {
+        try {
+          Thread.sleep(HOLD_TIME);
+          hog.close();
+        } catch (Exception e) {
+        }
+      }
+    }.start();
+  }
+
+  private byte[] writeFile(Path file) throws IOException {
+    byte[] data = new byte[10000];
+    new Random().nextBytes(data);
+    FSDataOutputStream out = fs.create(file);
+    out.write(data);
+    out.close();
+    return data;
+  }
+
+  private void checkFile(Path file, byte[] expected) throws IOException {
+    byte[] actual = new byte[expected.length];
+    FSDataInputStream in = fs.open(file);
+    in.readFully(actual);
+    in.close();
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("byte " + i, expected[i], actual[i]);
+    }
+  }
+
+  public void testBusyReply() throws Exception {
+    holdXceiver();
+    Socket s = connect();
+    try {
+      DataOutputStream out = new DataOutputStream(s.getOutputStream());
+      out.write(FSConstants.OP_READ_BLOCK);
+      new Block(1, 0).write(out);
+      out.flush();
+      DataInputStream in =
+        new DataInputStream(new BufferedInputStream(s.getInputStream()));
+      assertEquals(FSConstants.DATANODE_BUSY, in.readLong());
+      assertEquals(-1, in.read());
+    } finally {
+      s.close();
+    }
+  }
+
+  public void testReadRetried() throws Exception {
+    Path file = new Path("/busy/read");
+    byte[] data = writeFile(file);
+    holdXceiver();
+    long start = System.currentTimeMillis();
+    releaseXceiverLater();
+    checkFile(file, data);
+    assertTrue(System.currentTimeMillis() - start >= HOLD_TIME);
+  }
+
+  public void testWriteRetried() throws Exception {
+    Path file = new Path("/busy/write");
+    holdXceiver();
+    long start = System.currentTimeMillis();
+    releaseXceiverLater();
+    byte[] data = writeFile(file);
+    assertTrue(System.currentTimeMillis() - start >= HOLD_TIME);
+    checkFile(file, data);
+  }
+}
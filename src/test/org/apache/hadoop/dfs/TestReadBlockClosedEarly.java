@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.dfs;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Checks that a reader closing its connection in the middle of a block
+ * does not make the datanode take it for a disk error.
+ */
+public class TestReadBlockClosedEarly extends TestCase {
+  private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+  public void testReaderClosesEarly() throws Exception {
+    Configuration conf = new Configuration();
+    MiniDFSCluster cluster = new MiniDFSCluster(conf, 1, true, null);
+    FileSystem fs = cluster.getFileSystem();
+    try {
+      Path file = new Path("/closedearly/file");
+      byte[] data = new byte[FILE_SIZE];
+      new Random().nextBytes(data);
+      FSDataOutputStream out = fs.create(file);
+      out.write(data);
+      out.close();
+
+      DataNode dn = cluster.getDataNodes().get(0);
+      Block b = dn.data.getBlockReport()[0];
+      Socket s = new Socket();
+      s.connect(DataNode.createSocketAddr(dn.dnRegistration.getName()));
+      DataOutputStream request = new DataOutputStream(s.getOutputStream());
+      request.write(FSConstants.OP_READ_BLOCK);
+      b.write(request);
+      request.flush();
+      DataInputStream reply =
+        new DataInputStream(new BufferedInputStream(s.getInputStream()));
+      assertEquals(FILE_SIZE, reply.readLong());
+      byte[] start = new byte[1000];
+      reply.readFully(start);
+      for (int i = 0; i < start.length; i++) {
+        assertEquals("byte " + i, data[i], start[i]);
+      }
+      s.close();
+
+      // the datanode still serves the whole block
+      byte[] actual = new byte[FILE_SIZE];
+      FSDataInputStream in = fs.open(file);
+      in.readFully(actual);
+      in.close();
+      for (int i = 0; i < FILE_SIZE; i++) {
+        assertEquals("byte " + i, data[i], actual[i]);
+      }
+    } finally {
+      fs.close();
+      cluster.shutdown();
+    }
+  }
+}
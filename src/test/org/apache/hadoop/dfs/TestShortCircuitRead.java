@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.dfs;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.UTF8;
+
+/**
+ * Reads a file from datanodes on the same machine, with the blocks read
+ * straight from the local file system.
+ */
+public class TestShortCircuitRead extends TestCase {
+  private static final int PACKET_SIZE = 4096;
+  private static final long BLOCK_SIZE = 16 * PACKET_SIZE;
+  private static final int NUM_BLOCKS = 3;
+  private static final String FILE = "/shortcircuit/file";
+
+  private MiniDFSCluster cluster;
+  private byte[] data;
+
+  protected void setUp() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setInt("dfs.write.packet.size", PACKET_SIZE);
+    cluster = new MiniDFSCluster(conf, 2, true, null);
+    // the last block is partial
+    data = new byte[(int) ((NUM_BLOCKS - 1) * BLOCK_SIZE) + 1234];
+    new Random().nextBytes(data);
+    DFSClient client = createClient(false);
+    try {
+      OutputStream out =
+        client.create(new UTF8(FILE), true, (short) 2, BLOCK_SIZE, null);
+      out.write(data);
+      out.close();
+    } finally {
+      client.close();
+    }
+  }
+
+  protected void tearDown() throws Exception {
+    cluster.shutdown();
+  }
+
+  /** Create a client, with local reads enabled or left to the default. */
+  private DFSClient createClient(boolean shortCircuit) throws IOException {
+    Configuration conf = new Configuration();
+    if (shortCircuit) {
+      conf.setBoolean("dfs.client.read.shortcircuit", true);
+    }
+    return new DFSClient(new InetSocketAddress("localhost",
+                                               cluster.getNameNodePort()),
+                         conf);
+  }
+
+  private void checkBytes(byte[] actual, int off, int pos, int len) {
+    for (int i = 0; i < len; i++) {
+      assertEquals("byte " + (pos + i), data[pos + i], actual[off + i]);
+    }
+  }
+
+  /** Read the file through a new stream, and return the stream. */
+  private DFSClient.DFSInputStream readFile(DFSClient client)
+    throws IOException {
+    DFSClient.DFSInputStream in = client.open(new UTF8(FILE));
+    byte[] actual = new byte[data.length];
+    int n = 0;
+    while (n < actual.length) {
+      int read = in.read(actual, n, actual.length - n);
+      assertTrue("EOF at " + n, read > 0);
+      n += read;
+    }
+    assertEquals(-1, in.read());
+    in.close();
+    checkBytes(actual, 0, 0, data.length);
+    return in;
+  }
+
+  public void testDisabledByDefault() throws Exception {
+    DFSClient client = createClient(false);
+    try {
+      assertEquals(0, readFile(client).getLocalBlockReads());
+    } finally {
+      client.close();
+    }
+  }
+
+  public void testLocalRead() throws Exception {
+    DFSClient client = createClient(true);
+    try {
+      assertEquals(NUM_BLOCKS, readFile(client).getLocalBlockReads());
+    } finally {
+      client.close();
+    }
+  }
+
+  /** A replica the datanode reports another length of is not read locally,
+   * and the block is read from the next datanode. */
+  public void testLengthMismatch() throws Exception {
+    DFSClient client = createClient(true);
+    try {
+      // make the replica of the first block which is read first longer
+      DFSClient.DFSInputStream in = client.open(new UTF8(FILE));
+      DatanodeInfo first = in.getDataNodes()[0][0];
+      DatanodeInfo second = in.getDataNodes()[0][1];
+      in.close();
+      Block b = client.namenode.open(FILE)[0].getBlock();
+      for (DataNode dn : cluster.getDataNodes()) {
+        if (dn.dnRegistration.getName().equals(first.getName())) {
+          OutputStream out = new FileOutputStream(dn.data.getFile(b), true);
+          out.write(0);
+          out.close();
+        }
+      }
+
+      in = client.open(new UTF8(FILE));
+      byte[] actual = new byte[10];
+      assertEquals(actual.length, in.read(actual, 0, actual.length));
+      checkBytes(actual, 0, 0, actual.length);
+      assertEquals(second.getName(), in.getCurrentDatanode().getName());
+      assertEquals(1, in.getLocalBlockReads());
+      in.close();
+
+      assertEquals(NUM_BLOCKS, readFile(client).getLocalBlockReads());
+    } finally {
+      client.close();
+    }
+  }
+
+  public void testPositionalRead() throws Exception {
+    DFSClient client = createClient(true);
+    try {
+      DFSClient.DFSInputStream in = client.open(new UTF8(FILE));
+      // a positional read stops at the end of a block
+      int pos = (int) BLOCK_SIZE - 3000;
+      byte[] actual = new byte[6000];
+      assertEquals(3000, in.read(pos, actual, 0, actual.length));
+      assertEquals(3000, in.read(pos + 3000, actual, 3000, 3000));
+      checkBytes(actual, 0, pos, actual.length);
+      assertEquals(2, in.getLocalBlockReads());
+
+      // the end of the file, and a range in the middle of a block
+      pos = data.length - 100;
+      assertEquals(100, in.read(pos, actual, 0, actual.length));
+      checkBytes(actual, 0, pos, 100);
+      pos = (int) BLOCK_SIZE + 10;
+      assertEquals(500, in.read(pos, actual, 50, 500));
+      checkBytes(actual, 50, pos, 500);
+      assertEquals(4, in.getLocalBlockReads());
+      in.close();
+    } finally {
+      client.close();
+    }
+  }
+}
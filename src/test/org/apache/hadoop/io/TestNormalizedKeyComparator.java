@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/** Checks that the normalized keys of the optimized comparators never
+ * contradict their full compare, and that sorts using them order keys as
+ * the full compare does. */
+public class TestNormalizedKeyComparator extends TestCase {
+
+  private static Configuration conf = new Configuration();
+  private Random random = new Random();
+
+  public void testIntWritable() throws Exception {
+    List<WritableComparable> keys = new ArrayList<WritableComparable>();
+    int[] values = {Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -65536, -1, 0,
+                    1, 65536, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+    for (int i = 0; i < values.length; i++) {
+      keys.add(new IntWritable(values[i]));
+    }
+    for (int i = 0; i < 100; i++) {
+      keys.add(new IntWritable(random.nextInt()));
+    }
+    //an int fits in the normalized key, so it decides every compare
+    checkNormalizedKeys(IntWritable.class, keys, true);
+  }
+
+  public void testLongWritable() throws Exception {
+    List<WritableComparable> keys = new ArrayList<WritableComparable>();
+    long[] values = {Long.MIN_VALUE, Long.MIN_VALUE + 1, -(1L << 32) - 1,
+                     -(1L << 32), -(1L << 32) + 1, -1, 0, 1, (1L << 32) - 1,
+                     1L << 32, (1L << 32) + 1, Long.MAX_VALUE - 1,
+                     Long.MAX_VALUE};
+    for (int i = 0; i < values.length; i++) {
+      keys.add(new LongWritable(values[i]));
+    }
+    for (int i = 0; i < 100; i++) {
+      keys.add(new LongWritable(random.nextLong()));
+      //values that only differ in their low int
+      keys.add(new LongWritable(random.nextInt()));
+    }
+    checkNormalizedKeys(LongWritable.class, keys, false);
+  }
+
+  public void testBytesWritable() throws Exception {
+    List<WritableComparable> keys = new ArrayList<WritableComparable>();
+    byte[][] values = {{}, {0}, {0, 0, 0, 0}, {0, 0, 0, 0, 0}, {1},
+                       {1, 2, 3}, {1, 2, 3, 4}, {1, 2, 3, 4, 5},
+                       {1, 2, 3, 5}, {(byte)0x7f}, {(byte)0x80},
+                       {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff},
+                       {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff, 0}};
+    for (int i = 0; i < values.length; i++) {
+      keys.add(new BytesWritable(values[i]));
+    }
+    for (int i = 0; i < 100; i++) {
+      byte[] bytes = new byte[random.nextInt(8)];
+      random.nextBytes(bytes);
+      keys.add(new BytesWritable(bytes));
+    }
+    checkNormalizedKeys(BytesWritable.class, keys, false);
+  }
+
+  /** Sorts files with SequenceFile.Sorter, whose sort pass compares the
+   * normalized keys first. */
+  public void testSequenceFileSorter() throws Exception {
+    FileSystem fs = FileSystem.getLocal(conf);
+    Path dir = new Path(System.getProperty("test.build.data", "."),
+                        "normalizedkeys");
+    fs.delete(dir);
+    checkSorter(fs, dir, LongWritable.class);
+    checkSorter(fs, dir, BytesWritable.class);
+  }
+
+  private void checkNormalizedKeys(Class keyClass,
+                                   List<WritableComparable> keys,
+                                   boolean exact) throws IOException {
+    WritableComparator comparator = WritableComparator.get(keyClass);
+    NormalizedKeyComparator normalizer =
+      WritableComparator.getNormalizedKeyComparator(comparator);
+    assertNotNull(normalizer);
+    DataOutputBuffer[] serialized = new DataOutputBuffer[keys.size()];
+    int[] normalized = new int[keys.size()];
+    for (int i = 0; i < keys.size(); i++) {
+      serialized[i] = new DataOutputBuffer();
+      keys.get(i).write(serialized[i]);
+      normalized[i] = normalizer.getNormalizedKey(serialized[i].getData(), 0,
+                                                  serialized[i].getLength());
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      for (int j = 0; j < keys.size(); j++) {
+        int cmp = signum(comparator.compare(serialized[i].getData(), 0,
+                                            serialized[i].getLength(),
+                                            serialized[j].getData(), 0,
+                                            serialized[j].getLength()));
+        assertEquals(signum(comparator.compare(keys.get(i), keys.get(j))),
+                     cmp);
+        int prefixCmp = WritableComparator.compareNormalizedKeys(
+                          normalized[i], normalized[j]);
+        String pair = keys.get(i) + " and " + keys.get(j);
+        if (exact) {
+          assertEquals(pair, cmp, prefixCmp);
+        } else if (prefixCmp != 0) {
+          assertEquals(pair, cmp, prefixCmp);
+        }
+      }
+    }
+  }
+
+  private void checkSorter(FileSystem fs, Path dir, Class keyClass)
+    throws IOException {
+    Path in = new Path(dir, "in.seq");
+    Path out = new Path(dir, "out.seq");
+    int count = 10000;
+    SequenceFile.Writer writer =
+      SequenceFile.createWriter(fs, conf, in, keyClass, IntWritable.class);
+    for (int i = 0; i < count; i++) {
+      writer.append(randomKey(keyClass), new IntWritable(i));
+    }
+    writer.close();
+
+    SequenceFile.Sorter sorter =
+      new SequenceFile.Sorter(fs, keyClass, IntWritable.class, conf);
+    sorter.sort(in, out);
+
+    SequenceFile.Reader reader = new SequenceFile.Reader(fs, out, conf);
+    WritableComparator comparator = WritableComparator.get(keyClass);
+    WritableComparable previous = null;
+    WritableComparable key = randomKey(keyClass);
+    IntWritable value = new IntWritable();
+    int records = 0;
+    while (reader.next(key, value)) {
+      if (previous != null) {
+        assertTrue(previous + " sorted before " + key,
+                   comparator.compare(previous, key) <= 0);
+      }
+      previous = key;
+      key = randomKey(keyClass);
+      records++;
+    }
+    reader.close();
+    assertEquals(count, records);
+    fs.delete(in);
+    fs.delete(out);
+  }
+
+  /** Random keys, many of which share their normalized key. */
+  private WritableComparable randomKey(Class keyClass) {
+    if (keyClass == LongWritable.class) {
+      long high = random.nextInt(4) - 2;
+      return new LongWritable((high << 32) | (random.nextInt() & 0xffffffffL));
+    }
+    byte[] bytes = new byte[random.nextInt(7)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)(i < 3 ? random.nextInt(2) : random.nextInt());
+    }
+    return new BytesWritable(bytes);
+  }
+
+  private static int signum(int i) {
+    return i < 0 ? -1 : (i == 0 ? 0 : 1);
+  }
+}
@@ -404,6 +404,68 @@ public class TestSequenceFile extends TestCase {
     writer.close();
   }
   
+  /** The raw bytes of a value held outside of any SequenceFile, as the map
+   * output sorters hand them over to appendRaw. */
+  private static class BufferValueBytes implements SequenceFile.ValueBytes {
+    private DataOutputBuffer buffer = new DataOutputBuffer();
+
+    public void writeUncompressedBytes(DataOutputStream outStream)
+      throws IOException {
+      outStream.write(buffer.getData(), 0, buffer.getLength());
+    }
+
+    public void writeCompressedBytes(DataOutputStream outStream) {
+      throw new IllegalArgumentException("Not compressed");
+    }
+
+    public int getSize() {
+      return buffer.getLength();
+    }
+  }
+
+  /** Unit tests for appending raw records from a foreign ValueBytes. */
+  public void testAppendRaw() throws Exception {
+    Path file = new Path(System.getProperty("test.build.data",".") +
+                         "/test.raw.seq");
+    FileSystem fs = FileSystem.getLocal(conf);
+    int count = 1024;
+    int seed = new Random().nextInt();
+    CompressionType[] types = {CompressionType.NONE, CompressionType.BLOCK};
+    for (int t = 0; t < types.length; t++) {
+      LOG.info("Appending raw records with " + types[t] + " compression");
+      fs.delete(file);
+      SequenceFile.Writer writer =
+        SequenceFile.createWriter(fs, conf, file, RandomDatum.class,
+                                  RandomDatum.class, types[t],
+                                  new DefaultCodec());
+      RandomDatum.Generator generator = new RandomDatum.Generator(seed);
+      DataOutputBuffer key = new DataOutputBuffer();
+      BufferValueBytes value = new BufferValueBytes();
+      for (int i = 0; i < count; i++) {
+        generator.next();
+        key.reset();
+        generator.getKey().write(key);
+        value.buffer.reset();
+        generator.getValue().write(value.buffer);
+        writer.appendRaw(key.getData(), 0, key.getLength(), value);
+      }
+      writer.close();
+
+      SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+      generator = new RandomDatum.Generator(seed);
+      RandomDatum k = new RandomDatum();
+      RandomDatum v = new RandomDatum();
+      for (int i = 0; i < count; i++) {
+        generator.next();
+        assertTrue(reader.next(k, v));
+        assertEquals(generator.getKey(), k);
+        assertEquals(generator.getValue(), v);
+      }
+      assertFalse(reader.next(k, v));
+      reader.close();
+    }
+  }
+
   /** For debugging and testing. */
   public static void main(String[] args) throws Exception {
     int count = 1024 * 1024;
@@ -181,6 +181,14 @@ public class TestText extends TestCase {
           
       assertEquals(ret1, ret2);
           
+      // the normalized keys must not contradict the full compare
+      int ret3 = WritableComparator.compareNormalizedKeys(
+                   comparator.getNormalizedKey(out1.getData(), 0, 
+                                               out1.getLength()),
+                   comparator.getNormalizedKey(out2.getData(), 0,
+                                               out2.getLength()));
+      assertTrue(ret3 == 0 || (ret3 < 0) == (ret1 < 0));
+          
       // test equal
       assertEquals(txt1.compareTo(txt3), 0);
       assertEquals(comparator.compare(out1.getData(), 0, out3.getLength(),
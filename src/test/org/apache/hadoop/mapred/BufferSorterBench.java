@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Benchmark for the in-memory sorts of the map output: MergeSorter,
+ * QuickSorter and RadixSorter, on Text and LongWritable keys.
+ */
+public class BufferSorterBench {
+
+  private static final long SEED = 0xDEADBEEFL;
+
+  private static final Class[] SORTERS = {
+    MergeSorter.class, QuickSorter.class, RadixSorter.class
+  };
+
+  /** The serialized records that every sorter is timed on. */
+  private static class Records {
+    DataOutputBuffer buffer = new DataOutputBuffer();
+    int[] partitions;
+    int[] keyOffsets;
+    int[] keyLengths;
+    int[] valLengths;
+
+    Records(Class<? extends WritableComparable> keyClass, int numRecords,
+            int numPartitions)
+      throws IOException {
+      Random rand = new Random(SEED);
+      partitions = new int[numRecords];
+      keyOffsets = new int[numRecords];
+      keyLengths = new int[numRecords];
+      valLengths = new int[numRecords];
+      Text value = new Text("value");
+      for (int i = 0; i < numRecords; i++) {
+        partitions[i] = rand.nextInt(numPartitions);
+        keyOffsets[i] = buffer.getLength();
+        randomKey(keyClass, rand).write(buffer);
+        keyLengths[i] = buffer.getLength() - keyOffsets[i];
+        value.write(buffer);
+        valLengths[i] = buffer.getLength() - (keyOffsets[i] + keyLengths[i]);
+      }
+    }
+
+    private static WritableComparable randomKey(
+        Class<? extends WritableComparable> keyClass, Random rand) {
+      if (keyClass == Text.class) {
+        final int STRLEN = 32;
+        StringBuffer sb = new StringBuffer(STRLEN);
+        for (int i = 0; i < STRLEN; i++) {
+          sb.append((char)('a' + rand.nextInt(26)));
+        }
+        return new Text(sb.toString());
+      }
+      return new LongWritable(rand.nextLong());
+    }
+  }
+
+  /** Do not allow to create a new instance of BufferSorterBench */
+  private BufferSorterBench() {}
+
+  private static long time(Class sorterClass, JobConf conf, Records records,
+                           int numRecords) {
+    BufferSorter sorter =
+      (BufferSorter)ReflectionUtils.newInstance(sorterClass, conf);
+    for (int i = 0; i < numRecords; i++) {
+      sorter.addKeyValue(records.partitions[i], records.keyOffsets[i],
+                         records.keyLengths[i], records.valLengths[i]);
+    }
+    sorter.setInputBuffer(records.buffer);
+    long start = System.currentTimeMillis();
+    sorter.sort();
+    long elapsed = System.currentTimeMillis() - start;
+    sorter.close();
+    return elapsed;
+  }
+
+  private static void runBenchmark(Class<? extends WritableComparable> keyClass,
+                                   int numRecords, int numPartitions,
+                                   int numRuns)
+    throws IOException {
+    JobConf conf = new JobConf();
+    conf.setMapOutputKeyClass(keyClass);
+    Records records = new Records(keyClass, numRecords, numPartitions);
+    for (int s = 0; s < SORTERS.length; s++) {
+      time(SORTERS[s], conf, records, numRecords);   // warm up
+      long total = 0;
+      for (int run = 0; run < numRuns; run++) {
+        total += time(SORTERS[s], conf, records, numRecords);
+      }
+      System.out.println(keyClass.getName() + "\t" + SORTERS[s].getName() +
+                         "\t" + (total / numRuns) + " ms");
+    }
+  }
+
+  private static void printUsage() {
+    System.err.println("BufferSorterBench [-records n] [-partitions n] " +
+                       "[-runs n]");
+    System.exit(1);
+  }
+
+  /**
+   * @param args the command line arguments
+   */
+  public static void main(String[] args) throws IOException {
+    int numRecords = 1000000;
+    int numPartitions = 100;
+    int numRuns = 5;
+    for (int i = 0; i < args.length; i++) {
+      if (i == args.length - 1) {
+        printUsage();
+      }
+      if ("-records".equals(args[i])) {
+        numRecords = Integer.parseInt(args[++i]);
+      } else if ("-partitions".equals(args[i])) {
+        numPartitions = Integer.parseInt(args[++i]);
+      } else if ("-runs".equals(args[i])) {
+        numRuns = Integer.parseInt(args[++i]);
+      } else {
+        printUsage();
+      }
+    }
+    runBenchmark(Text.class, numRecords, numPartitions, numRuns);
+    runBenchmark(LongWritable.class, numRecords, numPartitions, numRuns);
+  }
+}
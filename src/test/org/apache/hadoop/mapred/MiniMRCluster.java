@@ -184,6 +184,14 @@ public class MiniMRCluster {
             taskTrackerList.get(taskTracker)).getLocalDir();
   }
 
+  /**
+   * Get the Nth task tracker, or null if it is not running
+   * @param taskTracker the index of the task tracker
+   */
+  TaskTracker getTaskTracker(int taskTracker) {
+    return taskTrackerList.get(taskTracker).tt;
+  }
+
   /**
    * Get the number of task trackers in the cluster
    */
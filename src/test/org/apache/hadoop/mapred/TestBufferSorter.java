@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.SequenceFile.Sorter.RawKeyValueIterator;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/** Checks that all the BufferSorter implementations order the map output
+ * by partition and then by key. */
+public class TestBufferSorter extends TestCase {
+
+  private static final int NUM_RECORDS = 10000;
+  private static final int NUM_PARTITIONS = 7;
+
+  private static final Class[] SORTERS = {
+    MergeSorter.class, QuickSorter.class, RadixSorter.class
+  };
+
+  /** A Text comparator that does not provide normalized keys. */
+  public static class PlainTextComparator extends WritableComparator {
+    public PlainTextComparator() {
+      super(Text.class);
+    }
+  }
+
+  private Random random = new Random();
+
+  public void testTextKeys() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setMapOutputKeyClass(Text.class);
+    checkSorters(conf);
+  }
+
+  public void testLongKeys() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setMapOutputKeyClass(LongWritable.class);
+    checkSorters(conf);
+  }
+
+  public void testKeysWithoutNormalizedKeys() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setOutputKeyComparatorClass(PlainTextComparator.class);
+    checkSorters(conf);
+  }
+
+  /** Sorts records of only a few partitions, twice with the same sorter,
+   * and checks that the other partitions are empty and that each record
+   * comes back in its own partition. */
+  public void testEmptyPartitions() throws Exception {
+    JobConf conf = new JobConf();
+    conf.setMapOutputKeyClass(LongWritable.class);
+    int[] used = {1, 4};
+    for (int s = 0; s < SORTERS.length; s++) {
+      BufferSorter sorter =
+        (BufferSorter)ReflectionUtils.newInstance(SORTERS[s], conf);
+      //the first round grows the metadata arrays; the second reuses them
+      //for fewer records
+      for (int numRecords = 5000; numRecords > 0; numRecords -= 4000) {
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        for (int i = 0; i < numRecords; i++) {
+          int keyOffset = buffer.getLength();
+          //the keys of the later partition are the smaller ones
+          new LongWritable(numRecords - i).write(buffer);
+          int keyLength = buffer.getLength() - keyOffset;
+          new IntWritable(i).write(buffer);
+          sorter.addKeyValue(used[i % used.length], keyOffset, keyLength,
+                             buffer.getLength() - keyOffset - keyLength);
+        }
+        sorter.setInputBuffer(buffer);
+        sorter.sort();
+        int records = 0;
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+          RawKeyValueIterator iter = sorter.iterator(p);
+          if (p != used[0] && p != used[1]) {
+            assertNull(SORTERS[s].getName() + " partition " + p, iter);
+            continue;
+          }
+          long previous = Long.MIN_VALUE;
+          while (iter.next()) {
+            long key = WritableComparator.readLong(iter.getKey().getData(), 0);
+            assertTrue(previous < key);
+            DataOutputBuffer value = new DataOutputBuffer();
+            iter.getValue().writeUncompressedBytes(value);
+            int record = WritableComparator.readInt(value.getData(), 0);
+            assertEquals(p, used[record % used.length]);
+            assertEquals(numRecords - record, key);
+            previous = key;
+            records++;
+          }
+        }
+        assertEquals(numRecords, records);
+        sorter.close();
+      }
+    }
+  }
+
+  private WritableComparable randomKey(Class keyClass) {
+    if (keyClass == Text.class) {
+      //short keys over a small alphabet, so that the normalized keys of
+      //many records are equal
+      StringBuffer s = new StringBuffer();
+      int length = random.nextInt(8);
+      for (int i = 0; i < length; i++) {
+        s.append((char)('a' + random.nextInt(3)));
+      }
+      return new Text(s.toString());
+    }
+    //both small and large values, positive and negative
+    long value = random.nextBoolean() ? random.nextLong() :
+                                        random.nextInt(100) - 50;
+    return new LongWritable(value);
+  }
+
+  private void checkSorters(JobConf conf) throws IOException {
+    DataOutputBuffer buffer = new DataOutputBuffer();
+    int[] partitions = new int[NUM_RECORDS];
+    int[] keyOffsets = new int[NUM_RECORDS];
+    int[] keyLengths = new int[NUM_RECORDS];
+    int[] valLengths = new int[NUM_RECORDS];
+    for (int i = 0; i < NUM_RECORDS; i++) {
+      partitions[i] = random.nextInt(NUM_PARTITIONS);
+      keyOffsets[i] = buffer.getLength();
+      randomKey(conf.getMapOutputKeyClass()).write(buffer);
+      keyLengths[i] = buffer.getLength() - keyOffsets[i];
+      new IntWritable(i).write(buffer);
+      valLengths[i] = buffer.getLength() - (keyOffsets[i] + keyLengths[i]);
+    }
+
+    WritableComparator comparator = conf.getOutputKeyComparator();
+    List<DataOutputBuffer> expected = null;
+    for (int s = 0; s < SORTERS.length; s++) {
+      BufferSorter sorter =
+        (BufferSorter)ReflectionUtils.newInstance(SORTERS[s], conf);
+      for (int i = 0; i < NUM_RECORDS; i++) {
+        sorter.addKeyValue(partitions[i], keyOffsets[i], keyLengths[i],
+                           valLengths[i]);
+      }
+      sorter.setInputBuffer(buffer);
+      sorter.sort();
+
+      List<DataOutputBuffer> keys = new ArrayList<DataOutputBuffer>();
+      int records = 0;
+      for (int p = 0; p < NUM_PARTITIONS; p++) {
+        RawKeyValueIterator iter = sorter.iterator(p);
+        DataOutputBuffer previous = null;
+        while (iter != null && iter.next()) {
+          DataOutputBuffer key = new DataOutputBuffer();
+          key.write(iter.getKey().getData(), 0, iter.getKey().getLength());
+          if (previous != null) {
+            assertTrue(SORTERS[s].getName() + " misordered keys",
+                       comparator.compare(previous.getData(), 0,
+                                          previous.getLength(),
+                                          key.getData(), 0,
+                                          key.getLength()) <= 0);
+          }
+          //the value must be the one the key was added with
+          DataOutputBuffer value = new DataOutputBuffer();
+          iter.getValue().writeUncompressedBytes(value);
+          int record = WritableComparator.readInt(value.getData(), 0);
+          assertEquals(p, partitions[record]);
+          keys.add(key);
+          previous = key;
+          records++;
+        }
+      }
+      assertEquals(NUM_RECORDS, records);
+
+      if (expected == null) {
+        expected = keys;
+      } else {
+        for (int i = 0; i < NUM_RECORDS; i++) {
+          assertEquals(SORTERS[s].getName() + " differs from " +
+                       SORTERS[0].getName(), 0,
+                       WritableComparator.compareBytes(
+                         expected.get(i).getData(), 0,
+                         expected.get(i).getLength(),
+                         keys.get(i).getData(), 0, keys.get(i).getLength()));
+        }
+      }
+      sorter.close();
+    }
+  }
+}
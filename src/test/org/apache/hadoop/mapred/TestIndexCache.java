@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FilterFileSystem;
+import org.apache.hadoop.fs.Path;
+
+/** Unit tests for the cache of map output index files. */
+public class TestIndexCache extends TestCase {
+
+  private static final int NUM_PARTITIONS = 1000;
+  //the memory the cache accounts for one index of NUM_PARTITIONS partitions
+  private static final long ENTRY_SIZE = NUM_PARTITIONS * 16 + 128;
+
+  private JobConf conf;
+  private FileSystem fs;
+  private Path indexFile;
+
+  protected void setUp() throws Exception {
+    conf = new JobConf();
+    conf.setInt("tasktracker.indexcache.mb", 1);
+    fs = FileSystem.getLocal(conf);
+    indexFile = new Path(System.getProperty("test.build.data", "."),
+                         "indexcache/file.out.index");
+    FSDataOutputStream out = fs.create(indexFile);
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      out.writeLong(i * 100L);
+      out.writeLong(100L);
+    }
+    out.close();
+  }
+
+  public void testEviction() throws Exception {
+    IndexCache cache = new IndexCache(conf);
+    int capacity = (int)(1024 * 1024 / ENTRY_SIZE);
+    int numMaps = capacity + 30;
+    for (int i = 0; i < numMaps; i++) {
+      long[] index = cache.readIndex("map" + i, fs, indexFile);
+      assertEquals(2 * NUM_PARTITIONS, index.length);
+      assertEquals(100L * 7, index[2 * 7]);
+      assertEquals(100L, index[2 * 7 + 1]);
+      //keep the first index in use
+      assertNotNull(cache.getIndex("map0"));
+    }
+    //the least recently used indices are the ones dropped
+    assertNotNull(cache.getIndex("map0"));
+    for (int i = 1; i < numMaps; i++) {
+      boolean recent = i >= numMaps - (capacity - 1);
+      assertEquals("map" + i, recent, cache.getIndex("map" + i) != null);
+    }
+  }
+
+  public void testRemove() throws Exception {
+    IndexCache cache = new IndexCache(conf);
+    cache.readIndex("map0", fs, indexFile);
+    cache.readIndex("map1", fs, indexFile);
+    cache.removeIndex("map0");
+    assertNull(cache.getIndex("map0"));
+    assertNotNull(cache.getIndex("map1"));
+    //the memory of a removed index is given back
+    int capacity = (int)(1024 * 1024 / ENTRY_SIZE);
+    for (int i = 2; i <= capacity; i++) {
+      cache.readIndex("map" + i, fs, indexFile);
+    }
+    assertNotNull(cache.getIndex("map1"));
+  }
+
+  /** Removes the index of a map output while its index file is read. */
+  private static class RemovingFileSystem extends FilterFileSystem {
+    private IndexCache cache;
+    private String mapTaskId;
+
+    RemovingFileSystem(FileSystem fs, IndexCache cache, String mapTaskId) {
+      super(fs);
+      this.cache = cache;
+      this.mapTaskId = mapTaskId;
+    }
+
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+      cache.removeIndex(mapTaskId);
+      return super.open(f, bufferSize);
+    }
+  }
+
+  public void testRemoveWhileReading() throws Exception {
+    IndexCache cache = new IndexCache(conf);
+    FileSystem removingFs = new RemovingFileSystem(fs, cache, "map0");
+    long[] index = cache.readIndex("map0", removingFs, indexFile);
+    assertEquals(2 * NUM_PARTITIONS, index.length);
+    //the index read before the removal is not cached after it
+    assertNull(cache.getIndex("map0"));
+    cache.readIndex("map0", fs, indexFile);
+    assertNotNull(cache.getIndex("map0"));
+  }
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.lib.HashPartitioner;
+
+/** Checks that the map output is spilled in the background while the map
+ * keeps collecting, and that a failed spill or a partition out of range
+ * fails the map. */
+public class TestMapOutputBuffer extends TestCase {
+
+  private static final int NUM_PARTITIONS = 3;
+  private static final long TIMEOUT = 60 * 1000;
+
+  private static Path testDir =
+    new Path(System.getProperty("test.build.data", "."), "mapoutputbuffer");
+
+  private static final Object lock = new Object();
+  private static boolean combinerStarted;
+  private static boolean combinerReleased;
+
+  /** A pass-through combiner that holds up the first spill until the test
+   * releases it. */
+  public static class BlockingCombiner extends MapReduceBase
+    implements Reducer {
+    public void reduce(WritableComparable key, Iterator values,
+                       OutputCollector output, Reporter reporter)
+      throws IOException {
+      synchronized (lock) {
+        combinerStarted = true;
+        lock.notifyAll();
+        while (!combinerReleased) {
+          try {
+            lock.wait();
+          } catch (InterruptedException ie) {
+            throw new IOException("Interrupted");
+          }
+        }
+      }
+      while (values.hasNext()) {
+        output.collect(key, (IntWritable)values.next());
+      }
+    }
+  }
+
+  /** A combiner that fails the spill. */
+  public static class FailingCombiner extends MapReduceBase
+    implements Reducer {
+    public void reduce(WritableComparable key, Iterator values,
+                       OutputCollector output, Reporter reporter)
+      throws IOException {
+      throw new IOException("Combiner failed");
+    }
+  }
+
+  /** A partitioner which takes the partition from the value as it is. */
+  public static class ValuePartitioner implements Partitioner {
+    public void configure(JobConf job) { }
+    public int getPartition(WritableComparable key, Writable value,
+                            int numPartitions) {
+      return ((IntWritable)value).get();
+    }
+  }
+
+  private static class FakeUmbilical implements TaskUmbilicalProtocol {
+    public long getProtocolVersion(String protocol, long clientVersion) {
+      return versionID;
+    }
+    public Task getTask(String taskid) { return null; }
+    public String getNextTask(String taskid) { return null; }
+    public void progress(String taskid, float progress, String state,
+                         TaskStatus.Phase phase, Counters counters) { }
+    public void reportDiagnosticInfo(String taskid, String trace) { }
+    public boolean ping(String taskid) { return true; }
+    public void done(String taskid) { }
+    public void fsError(String taskId, String message) { }
+    public TaskCompletionEvent[] getMapCompletionEvents(String jobId,
+                                                        int fromIndex,
+                                                        int maxLocs) {
+      return TaskCompletionEvent.EMPTY_ARRAY;
+    }
+  }
+
+  private JobConf conf;
+  private MapTask task;
+
+  protected void setUp() throws Exception {
+    conf = new JobConf();
+    FileSystem.getLocal(conf).delete(testDir);
+    conf.set("mapred.local.dir", testDir.toString());
+    conf.setInt("io.sort.mb", 1);
+    conf.setNumReduceTasks(NUM_PARTITIONS);
+    conf.setMapOutputKeyClass(Text.class);
+    conf.setMapOutputValueClass(IntWritable.class);
+    task = new MapTask("job_0001", "job.xml", "tip_0001_m_000000",
+                       "task_0001_m_000000_0", 0, "", new BytesWritable());
+    task.setConf(conf);
+    synchronized (lock) {
+      combinerStarted = false;
+      combinerReleased = false;
+    }
+  }
+
+  private MapTask.MapOutputBuffer createBuffer() throws IOException {
+    return task.new MapOutputBuffer(new FakeUmbilical(), conf, Reporter.NULL);
+  }
+
+  private static void collect(MapTask.MapOutputBuffer buffer, int record)
+    throws IOException {
+    buffer.collect(new Text("key" + (record * 7919 % 10007)),
+                   new IntWritable(record));
+  }
+
+  public void testCollectWhileSpilling() throws Exception {
+    conf.setCombinerClass(BlockingCombiner.class);
+    final MapTask.MapOutputBuffer buffer = createBuffer();
+    //about half of these records fill the first buffer past the soft limit;
+    //the rest stay well below the hard limit of the second buffer
+    final int numRecords = 20000;
+    for (int i = 0; i < numRecords; i++) {
+      collect(buffer, i);
+    }
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    synchronized (lock) {
+      while (!combinerStarted && System.currentTimeMillis() < deadline) {
+        lock.wait(1000);
+      }
+      assertTrue("The spill did not start", combinerStarted);
+    }
+    //while the spill is held up, the map must be able to keep collecting
+    //into the other buffer
+    final IOException[] error = new IOException[1];
+    Thread collector = new Thread() {
+        public void run() {
+          try {
+            for (int i = numRecords; i < numRecords + 1000; i++) {
+              collect(buffer, i);
+            }
+          } catch (IOException e) {
+            error[0] = e;
+          }
+        }
+      };
+    collector.start();
+    collector.join(TIMEOUT);
+    boolean blocked = collector.isAlive();
+    synchronized (lock) {
+      combinerReleased = true;
+      lock.notifyAll();
+    }
+    collector.join();
+    assertFalse("Collect waited for the running spill", blocked);
+    assertNull(error[0]);
+    buffer.flush();
+    buffer.close();
+    checkOutput(numRecords + 1000);
+  }
+
+  public void testSpillFailure() throws Exception {
+    conf.setCombinerClass(FailingCombiner.class);
+    MapTask.MapOutputBuffer buffer = createBuffer();
+    //the failure must reach the map once the other buffer is full
+    int record = 0;
+    try {
+      while (record < 1000000) {
+        collect(buffer, record++);
+      }
+      fail("The spill failure was not reported to the map");
+    } catch (IOException e) {
+      assertEquals("Combiner failed", e.getCause().getMessage());
+    }
+    //and again when the map is done
+    try {
+      buffer.flush();
+      fail("The spill failure was not reported on flush");
+    } catch (IOException e) {
+      assertEquals("Combiner failed", e.getCause().getMessage());
+    }
+    buffer.close();
+  }
+
+  public void testIllegalPartition() throws Exception {
+    conf.setPartitionerClass(ValuePartitioner.class);
+    MapTask.MapOutputBuffer buffer = createBuffer();
+    buffer.collect(new Text("good"), new IntWritable(NUM_PARTITIONS - 1));
+    int[] illegal = { -1, NUM_PARTITIONS, Integer.MIN_VALUE };
+    for (int i = 0; i < illegal.length; i++) {
+      try {
+        buffer.collect(new Text("bad"), new IntWritable(illegal[i]));
+        fail("Partition " + illegal[i] + " was accepted");
+      } catch (IOException e) {
+        assertTrue(e.getMessage(),
+                   e.getMessage().startsWith("Illegal partition for key bad"));
+      }
+    }
+    buffer.flush();
+    buffer.close();
+  }
+
+  /** Checks that every record is in the final map output, in its
+   * partition and in sorted order. */
+  private void checkOutput(int records) throws IOException {
+    FileSystem localFs = FileSystem.getLocal(conf);
+    MapOutputFile mapOutputFile = new MapOutputFile();
+    mapOutputFile.setConf(conf);
+    Path output = mapOutputFile.getOutputFile(task.getTaskId());
+    Path index = mapOutputFile.getOutputIndexFile(task.getTaskId());
+    Partitioner partitioner = new HashPartitioner();
+    boolean[] seen = new boolean[records];
+    FSDataInputStream indexIn = localFs.open(index);
+    FSDataInputStream in = localFs.open(output);
+    for (int p = 0; p < NUM_PARTITIONS; p++) {
+      //copy the segment of the partition to a file of its own, as the
+      //shuffle does
+      long segmentOffset = indexIn.readLong();
+      long segmentLength = indexIn.readLong();
+      byte[] segment = new byte[(int)segmentLength];
+      in.readFully(segmentOffset, segment);
+      Path segmentFile = new Path(testDir, "segment" + p);
+      FSDataOutputStream out = localFs.create(segmentFile);
+      out.write(segment);
+      out.close();
+
+      SequenceFile.Reader reader =
+        new SequenceFile.Reader(localFs, segmentFile, conf);
+      Text previous = null;
+      Text key = new Text();
+      IntWritable value = new IntWritable();
+      while (reader.next(key, value)) {
+        assertEquals(p, partitioner.getPartition(key, value, NUM_PARTITIONS));
+        if (previous != null) {
+          assertTrue(previous.compareTo(key) <= 0);
+        }
+        assertFalse(seen[value.get()]);
+        seen[value.get()] = true;
+        previous = new Text(key);
+      }
+      reader.close();
+    }
+    indexIn.close();
+    in.close();
+    for (int i = 0; i < records; i++) {
+      assertTrue("Record " + i + " is missing", seen[i]);
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.lib.IdentityReducer;
+
+/**
+ * Runs jobs on a mini map-reduce cluster and checks how the task tracker
+ * serves their map outputs.
+ */
+public class TestMapOutputServlet extends TestCase {
+
+  private static final int NUM_MAPS = 3;
+  private static final int NUM_REDUCES = 2;
+
+  private static String TEST_ROOT_DIR =
+    new File(System.getProperty("test.build.data", "/tmp"), "mapoutputservlet")
+    .toString().replace(' ', '+');
+
+  private MiniMRCluster mr;
+
+  protected void setUp() throws Exception {
+    mr = new MiniMRCluster(1, "local", 1);
+  }
+
+  protected void tearDown() throws Exception {
+    if (mr != null) {
+      mr.shutdown();
+    }
+  }
+
+  /** Passes its input through, once the flag file of the test exists. */
+  public static class BlockingReducer extends IdentityReducer {
+    private JobConf conf;
+
+    public void configure(JobConf conf) {
+      this.conf = conf;
+    }
+
+    public void reduce(WritableComparable key, Iterator values,
+                       OutputCollector output, Reporter reporter)
+      throws IOException {
+      Path flag = new Path(conf.get("test.mapoutputservlet.flag"));
+      FileSystem fs = FileSystem.get(conf);
+      while (!fs.exists(flag)) {
+        reporter.progress();
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException ie) {
+          throw new IOException(ie.toString());
+        }
+      }
+      super.reduce(key, values, output, reporter);
+    }
+  }
+
+  private JobConf createJobConf(String name) throws IOException {
+    JobConf conf = mr.createJobConf();
+    FileSystem fs = FileSystem.get(conf);
+    Path inDir = new Path(TEST_ROOT_DIR, name + "/in");
+    Path outDir = new Path(TEST_ROOT_DIR, name + "/out");
+    fs.delete(inDir);
+    fs.delete(outDir);
+    for (int i = 0; i < NUM_MAPS; i++) {
+      DataOutputStream file = fs.create(new Path(inDir, "part" + i));
+      for (int j = 0; j < 100; j++) {
+        file.writeBytes("line " + j + " of file " + i + "\n");
+      }
+      file.close();
+    }
+    conf.setJobName(name);
+    conf.setInputPath(inDir);
+    conf.setOutputPath(outDir);
+    conf.setNumMapTasks(NUM_MAPS);
+    conf.setNumReduceTasks(NUM_REDUCES);
+    return conf;
+  }
+
+  /** @return the successful maps among the completion events of a job */
+  private List<TaskCompletionEvent> getMaps(RunningJob job)
+    throws IOException {
+    List<TaskCompletionEvent> maps = new ArrayList<TaskCompletionEvent>();
+    TaskCompletionEvent[] events = job.getTaskCompletionEvents(0);
+    for (int i = 0; i < events.length; i++) {
+      if (events[i].isMapTask() &&
+          events[i].getTaskStatus() == TaskCompletionEvent.Status.SUCCEEDED) {
+        maps.add(events[i]);
+      }
+    }
+    return maps;
+  }
+
+  private boolean isSucceeded(RunningJob job, String taskId)
+    throws IOException {
+    for (TaskCompletionEvent map : getMaps(job)) {
+      if (map.getTaskId().equals(taskId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void waitFor(String what, long timeout) throws InterruptedException {
+    assertTrue("timed out waiting for " + what,
+               System.currentTimeMillis() < timeout);
+    Thread.sleep(100);
+  }
+
+  /** The cached indices of map outputs are dropped with the map outputs. */
+  public void testIndexRemoval() throws Exception {
+    TaskTracker tracker = mr.getTaskTracker(0);
+    IndexCache cache = tracker.getIndexCache();
+    long timeout = System.currentTimeMillis() + 120000;
+
+    //hold the reduces back until a map output was lost
+    JobConf conf = createJobConf("lost");
+    Path flag = new Path(TEST_ROOT_DIR, "lost/flag");
+    FileSystem fs = FileSystem.get(conf);
+    fs.delete(flag);
+    conf.set("test.mapoutputservlet.flag", flag.toString());
+    conf.setReducerClass(BlockingReducer.class);
+    RunningJob job = new JobClient(conf).submitJob(conf);
+
+    try {
+      List<TaskCompletionEvent> maps = getMaps(job);
+      while (maps.size() < NUM_MAPS) {
+        waitFor("the maps", timeout);
+        maps = getMaps(job);
+      }
+      //the indices are cached once the reduces fetched the map outputs
+      for (TaskCompletionEvent map : maps) {
+        while (cache.getIndex(map.getTaskId()) == null) {
+          waitFor("the index of " + map.getTaskId(), timeout);
+        }
+      }
+      //lose a map output right after a regular heartbeat
+      JobTracker jobTracker = JobTracker.getTracker();
+      String trackerName = tracker.taskTrackerName;
+      TaskTrackerStatus seen = jobTracker.getTaskTracker(trackerName);
+      while (jobTracker.getTaskTracker(trackerName) == seen) {
+        waitFor("a heartbeat", timeout);
+      }
+      String lost = maps.get(0).getTaskId();
+      long lostTime = System.currentTimeMillis();
+      tracker.mapOutputLost(lost, "lost by the test");
+      assertNull(cache.getIndex(lost));
+      assertNotNull(cache.getIndex(maps.get(1).getTaskId()));
+
+      //the tracker reports it without waiting for the next regular heartbeat
+      while (isSucceeded(job, lost)) {
+        waitFor("the report of " + lost, timeout);
+      }
+      assertTrue(System.currentTimeMillis() - lostTime <
+                 MRConstants.HEARTBEAT_INTERVAL / 2);
+    } finally {
+      //let the reduces finish
+      fs.create(flag).close();
+    }
+
+    //the map outputs of a job are removed once it is done
+    job.waitForCompletion();
+    assertTrue(job.isSuccessful());
+    mr.waitUntilIdle();
+    for (TaskCompletionEvent map : getMaps(job)) {
+      assertNull(cache.getIndex(map.getTaskId()));
+    }
+  }
+
+  /** Reads what is left of a stream. */
+  private byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      out.write(buffer, 0, n);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
+  /** A batch of map outputs is sent in the order it was asked for, and a
+   * missing map output is sent as -1 without ending the batch. */
+  public void testBatchedFetch() throws Exception {
+    JobConf conf = createJobConf("batch");
+    //keep the map outputs once the job is done
+    conf.setKeepTaskFilesPattern(".*_m_.*");
+    RunningJob job = JobClient.runJob(conf);
+    List<TaskCompletionEvent> maps = getMaps(job);
+    assertEquals(NUM_MAPS, maps.size());
+
+    List<MapOutputLocation> locs = new ArrayList<MapOutputLocation>();
+    for (TaskCompletionEvent map : maps) {
+      URI u = URI.create(map.getTaskTrackerHttp());
+      locs.add(new MapOutputLocation(map.getTaskId(), map.idWithinJob(),
+                                     u.getHost(), u.getPort()));
+    }
+    MapOutputLocation first = locs.get(0);
+    String missing = "task_9999_m_000009_0";
+    locs.add(1, new MapOutputLocation(missing, 9, first.getHost(),
+                                      first.getPort()));
+
+    for (int reduce = 0; reduce < NUM_REDUCES; reduce++) {
+      DataInputStream in = MapOutputLocation.openMapOutputs(locs, reduce, 0);
+      for (MapOutputLocation loc : locs) {
+        assertEquals(loc.getMapTaskId(), in.readUTF());
+        long length = in.readLong();
+        if (loc.getMapTaskId().equals(missing)) {
+          assertEquals(-1, length);
+          continue;
+        }
+        byte[] batched = new byte[(int)length];
+        in.readFully(batched);
+        //the same bytes as the map output fetched on its own
+        URL url = new URL(loc.toString() + "&reduce=" + reduce);
+        byte[] single = readAll(url.openStream());
+        assertTrue(single.length > 0);
+        assertTrue(loc.getMapTaskId(), Arrays.equals(single, batched));
+      }
+      assertEquals(-1, in.read());
+      in.close();
+    }
+  }
+}
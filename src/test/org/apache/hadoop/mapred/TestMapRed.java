@@ -318,6 +318,62 @@ public class TestMapRed extends TestCase {
     }
   }
     
+  /**
+   * Runs a word count with a combiner and a sort buffer small enough for the
+   * map to spill several times, so that the combiner also runs on the merge
+   * of the spills.
+   */
+  public void testCombinerOnMerge() throws Exception {
+    final int LINES = 20000;
+    JobConf conf = new JobConf(TestMapRed.class);
+    Path testdir = new Path("build/test/test.mapred.combine");
+    Path inDir = new Path(testdir, "in");
+    Path outDir = new Path(testdir, "out");
+    FileSystem fs = FileSystem.get(conf);
+    fs.delete(testdir);
+    conf.setInputPath(inDir);
+    conf.setOutputPath(outDir);
+    conf.setMapperClass(TokenCountMapper.class);
+    conf.setCombinerClass(LongSumReducer.class);
+    conf.setReducerClass(LongSumReducer.class);
+    conf.setOutputKeyClass(Text.class);
+    conf.setOutputValueClass(LongWritable.class);
+    conf.setInt("io.sort.mb", 1);
+    conf.setInt("min.num.spills.for.combine", 2);
+    try {
+      if (!fs.mkdirs(inDir)) {
+        throw new IOException("Mkdirs failed to create " + inDir.toString());
+      }
+      DataOutputStream f = fs.create(new Path(inDir, "part0"));
+      for (int i = 0; i < LINES; i++) {
+        f.writeBytes("a b c d e\n");
+      }
+      f.close();
+      RunningJob rj = JobClient.runJob(conf);
+      assertTrue("job was successful", rj.isSuccessful());
+
+      BufferedReader rdr = new BufferedReader(new InputStreamReader(
+        fs.open(new Path(outDir, ReduceTask.getOutputName(0)))));
+      int words = 0;
+      String line;
+      while ((line = rdr.readLine()) != null) {
+        assertTrue("wrong count: " + line, line.endsWith("\t" + LINES));
+        words++;
+      }
+      rdr.close();
+      assertEquals(5, words);
+
+      //the merge feeds the combiner again, so it sees more records than
+      //the map emitted
+      Counters counters = rj.getCounters();
+      assertTrue("combiner not run on the merge",
+                 counters.getCounter(Task.Counter.COMBINE_INPUT_RECORDS) >
+                 counters.getCounter(Task.Counter.MAP_OUTPUT_RECORDS));
+    } finally {
+      fs.delete(testdir);
+    }
+  }
+    
   public void testCompression() throws Exception {
     for(int compressMap=0; compressMap < 2; ++compressMap) {
       for(int compressOut=0; compressOut < 2; ++compressOut) {
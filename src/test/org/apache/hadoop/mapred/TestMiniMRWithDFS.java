@@ -149,6 +149,34 @@ public class TestMiniMRWithDFS extends TestCase {
     }
   }
   
+  /**
+   * Make sure that some tasks ran in the child JVM of another task of their
+   * job, and that each of them logged it from that JVM.
+   * @param mr the map-reduce cluster
+   * @param taskPrefix the prefix of the ids of the tasks run in reused JVMs
+   */
+  private static void checkReusedJvms(MiniMRCluster mr, String taskPrefix)
+    throws IOException {
+    int reused = 0;
+    for (int i = 0; i < mr.getNumTaskTrackers(); ++i) {
+      Map<String, String> tasks = mr.getTaskTracker(i).getReusedJvmTasks();
+      for (Map.Entry<String, String> entry : tasks.entrySet()) {
+        String taskId = entry.getKey();
+        String firstId = entry.getValue();
+        assertTrue("Task " + taskId + " of another job reused a JVM",
+                   taskId.startsWith(taskPrefix));
+        assertTrue("Task " + taskId + " ran in the JVM of " + firstId,
+                   firstId.startsWith(taskPrefix) && !firstId.equals(taskId));
+        String log = new String(new TaskLog.Reader(taskId, 
+                                  TaskLog.LogFilter.SYSLOG).fetchAll());
+        assertTrue("Task " + taskId + " did not log its reused JVM",
+                   log.contains("Running " + taskId + " in a reused JVM"));
+        reused++;
+      }
+    }
+    assertTrue("No task ran in a reused JVM", reused > 0);
+  }
+
   public void testWithDFS() throws IOException {
     MiniDFSCluster dfs = null;
     MiniMRCluster mr = null;
@@ -170,6 +198,8 @@ public class TestMiniMRWithDFS extends TestCase {
       JobConf jobConf = mr.createJobConf();
       // Keeping tasks that match this pattern
       jobConf.setKeepTaskFilesPattern("task_[0-9]*_m_000001_.*");
+      // and merging the map outputs into the reduce straight from memory
+      jobConf.set("mapred.job.reduce.input.buffer.percent", "1.0");
       String result;
       result = launchWordCount(jobConf, 
                                "The quick brown fox\nhas many silly\n" + 
@@ -182,6 +212,16 @@ public class TestMiniMRWithDFS extends TestCase {
       jobConf = mr.createJobConf();
       result = launchWordCount(jobConf, "owen is oom", 0, 1);
       assertEquals("is\t1\noom\t1\nowen\t1\n", result);
+      // test with the child jvms reused for more maps than there are slots
+      jobConf = mr.createJobConf();
+      jobConf.setInt("mapred.job.reuse.jvm.num.tasks", -1);
+      result = launchWordCount(jobConf,
+                               "The quick brown fox\nhas many silly\n" +
+                               "red fox sox\n",
+                               12, 1);
+      assertEquals("The\t1\nbrown\t1\nfox\t2\nhas\t1\nmany\t1\n" +
+                   "quick\t1\nred\t1\nsilly\t1\nsox\t1\n", result);
+      checkReusedJvms(mr, "task_0004_m_");
     } finally {
       if (fileSys != null) { fileSys.close(); }
       if (dfs != null) { dfs.shutdown(); }
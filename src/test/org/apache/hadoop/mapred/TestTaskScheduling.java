@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Sends heartbeats of made-up task trackers to the job tracker of a mini
+ * cluster, and checks which tasks it hands out to them.
+ */
+public class TestTaskScheduling extends TestCase {
+
+  private static final int NUM_MAPS = 6;
+
+  private static String TEST_ROOT_DIR =
+    new File(System.getProperty("test.build.data", "/tmp"), "taskscheduling")
+    .toString().replace(' ', '+');
+
+  private MiniMRCluster mr;
+  private JobTracker jobTracker;
+
+  protected void setUp() throws Exception {
+    //no real task trackers, so that the test decides who asks for tasks
+    mr = new MiniMRCluster(0, "local", 1);
+    jobTracker = JobTracker.getTracker();
+  }
+
+  protected void tearDown() throws Exception {
+    if (mr != null) {
+      mr.shutdown();
+    }
+  }
+
+  /** A made-up task tracker, with the statuses of the tasks it was given. */
+  private class FakeTracker {
+    private String name;
+    private String host;
+    private List<TaskStatus> statuses = new ArrayList<TaskStatus>();
+    private HeartbeatResponse response = null;
+    //the reduces launched by the last heartbeat
+    List<Task> reduces = new ArrayList<Task>();
+
+    FakeTracker(String host) {
+      this.name = "tracker_" + host + ":1";
+      this.host = host;
+    }
+
+    /** Sends a heartbeat, and marks the tasks it got as running.
+     * @return the maps the job tracker launched on this tracker
+     */
+    List<Task> heartbeat() throws Exception {
+      TaskTrackerStatus status =
+        new TaskTrackerStatus(name, host, 0, statuses, 0);
+      response = jobTracker.heartbeat(status, response == null, true,
+                                      response == null ? 0 :
+                                      response.getResponseId());
+      //the tasks that are done are only reported once
+      for (int i = statuses.size() - 1; i >= 0; i--) {
+        if (statuses.get(i).getRunState() != TaskStatus.State.RUNNING) {
+          statuses.remove(i);
+        }
+      }
+      List<Task> maps = new ArrayList<Task>();
+      reduces.clear();
+      TaskTrackerAction[] actions = response.getActions();
+      for (int i = 0; actions != null && i < actions.length; i++) {
+        if (actions[i].getActionId() !=
+            TaskTrackerAction.ActionType.LAUNCH_TASK) {
+          continue;
+        }
+        Task task = ((LaunchTaskAction)actions[i]).getTask();
+        statuses.add(newStatus(task, TaskStatus.State.RUNNING));
+        if (task.isMapTask()) {
+          maps.add(task);
+        } else {
+          reduces.add(task);
+        }
+      }
+      return maps;
+    }
+
+    /** Reports a task as failed in the next heartbeat. */
+    void fail(Task task) {
+      for (int i = 0; i < statuses.size(); i++) {
+        if (statuses.get(i).getTaskId().equals(task.getTaskId())) {
+          statuses.set(i, newStatus(task, TaskStatus.State.FAILED));
+        }
+      }
+    }
+
+    private TaskStatus newStatus(Task task, TaskStatus.State state) {
+      return new TaskStatus(task.getTaskId(), task.isMapTask(), 0.0f, state,
+                            "", "", name,
+                            task.isMapTask() ? TaskStatus.Phase.MAP :
+                                               TaskStatus.Phase.SHUFFLE,
+                            new Counters());
+    }
+  }
+
+  private void submitJob(int numReduces) throws Exception {
+    JobConf conf = mr.createJobConf();
+    FileSystem fs = FileSystem.get(conf);
+    Path inDir = new Path(TEST_ROOT_DIR, "in");
+    Path outDir = new Path(TEST_ROOT_DIR, "out");
+    fs.delete(inDir);
+    fs.delete(outDir);
+    for (int i = 0; i < NUM_MAPS; i++) {
+      DataOutputStream file = fs.create(new Path(inDir, "part" + i));
+      file.writeBytes("input of map " + i + "\n");
+      file.close();
+    }
+    conf.setInputPath(inDir);
+    conf.setOutputPath(outDir);
+    conf.setNumMapTasks(NUM_MAPS);
+    conf.setNumReduceTasks(numReduces);
+    RunningJob job = new JobClient(conf).submitJob(conf);
+    JobInProgress jip = jobTracker.getJob(job.getJobID());
+    long timeout = System.currentTimeMillis() + 60000;
+    while (jip.getStatus().getRunState() != JobStatus.RUNNING) {
+      assertTrue("timed out initializing the job",
+                 System.currentTimeMillis() < timeout);
+      Thread.sleep(100);
+    }
+    assertEquals(NUM_MAPS, jip.desiredMaps());
+  }
+
+  private void assertMaps(int[] expected, List<Task> maps) {
+    assertEquals(expected.length, maps.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], maps.get(i).getPartition());
+    }
+  }
+
+  /** The maps are handed out in their order, and a failed map is run
+   * after the maps that have not run yet. */
+  public void testMapOrder() throws Exception {
+    submitJob(1);
+    FakeTracker first = new FakeTracker("host1");
+    List<Task> maps = first.heartbeat();
+    assertMaps(new int[]{0, 1}, maps);
+
+    first.fail(maps.get(0));
+    assertMaps(new int[]{2}, first.heartbeat());
+
+    //the failed map went to the end of the maps waiting to run
+    FakeTracker second = new FakeTracker("host2");
+    assertMaps(new int[]{3, 4}, second.heartbeat());
+    FakeTracker third = new FakeTracker("host3");
+    assertMaps(new int[]{5, 0}, third.heartbeat());
+
+    //no maps are left, and a running map is not given out again at once
+    assertMaps(new int[]{}, new FakeTracker("host4").heartbeat());
+  }
+
+  /** A tracker gets as many tasks in one heartbeat as it has free slots,
+   * and the maps are spread over the trackers. */
+  public void testTasksPerHeartbeat() throws Exception {
+    submitJob(2);
+    //mapred.tasktracker.tasks.maximum is 2, for maps and for reduces
+    FakeTracker first = new FakeTracker("host1");
+    List<Task> maps = first.heartbeat();
+    assertEquals(2, maps.size());
+    assertEquals(2, first.reduces.size());
+
+    //no slot is free until a task is done
+    assertEquals(0, first.heartbeat().size());
+    assertEquals(0, first.reduces.size());
+    first.fail(maps.get(1));
+    assertEquals(1, first.heartbeat().size());
+
+    //the maps left are shared with the trackers that join
+    FakeTracker second = new FakeTracker("host2");
+    assertEquals(2, second.heartbeat().size());
+    assertEquals(0, second.reduces.size());
+    //the last map and the one that failed
+    FakeTracker third = new FakeTracker("host3");
+    assertEquals(2, third.heartbeat().size());
+    assertEquals(0, new FakeTracker("host4").heartbeat().size());
+  }
+}
@@ -163,6 +163,26 @@ public class TestTextInputFormat extends TestCase {
     assertEquals("end of file", 0, LineRecordReader.readLine(in, out));
   }
   
+  public void testLineReader() throws Exception {
+    String input = "a\nbb\n\nccc\rdddd\r\neeeee\r\r\n\rf";
+    String[] lines = {"a", "bb", "", "ccc", "dddd", "eeeee", "", "", "f"};
+    int[] lengths = {2, 3, 1, 4, 6, 6, 2, 1, 1};
+    // with the ends of lines at every position of the buffer
+    for (int bufferSize = 1; bufferSize <= input.length() + 1; bufferSize++) {
+      LineRecordReader.LineReader in =
+        new LineRecordReader.LineReader(makeStream(input), bufferSize);
+      Text line = new Text();
+      for (int i = 0; i < lines.length; i++) {
+        assertEquals("line" + i + " length with buffer " + bufferSize,
+                     lengths[i], in.readLine(line));
+        assertEquals("line" + i + " with buffer " + bufferSize,
+                     lines[i], line.toString());
+      }
+      assertEquals("end of file", 0, in.readLine(line));
+      assertEquals("empty at end of file", 0, line.getLength());
+    }
+  }
+
   private static void writeFile(FileSystem fs, Path name, 
                                 CompressionCodec codec,
                                 String contents) throws IOException {
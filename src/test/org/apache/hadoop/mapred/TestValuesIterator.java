@@ -0,0 +1,351 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred;
+
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.lib.LongSumReducer;
+import org.apache.hadoop.mapred.lib.aggregate.ValueAggregatorCombiner;
+import org.apache.hadoop.mapred.lib.aggregate.ValueAggregatorReducer;
+import org.apache.hadoop.util.Progress;
+
+/** Unit tests for the values iterator passed to reducers and combiners. */
+public class TestValuesIterator extends TestCase {
+
+  private static JobConf conf = new JobConf();
+
+  /** Iterates over pairs serialized in memory, as a merge would. */
+  private static class ListIterator
+    implements SequenceFile.Sorter.RawKeyValueIterator {
+    private List<DataOutputBuffer> keys = new ArrayList<DataOutputBuffer>();
+    private List<DataOutputBuffer> values = new ArrayList<DataOutputBuffer>();
+    private int current = -1;
+
+    void add(Writable key, Writable value) throws IOException {
+      DataOutputBuffer keyOut = new DataOutputBuffer();
+      key.write(keyOut);
+      keys.add(keyOut);
+      DataOutputBuffer valueOut = new DataOutputBuffer();
+      value.write(valueOut);
+      values.add(valueOut);
+    }
+
+    public DataOutputBuffer getKey() {
+      return keys.get(current);
+    }
+
+    public SequenceFile.ValueBytes getValue() {
+      final DataOutputBuffer value = values.get(current);
+      return new SequenceFile.ValueBytes() {
+          public void writeUncompressedBytes(DataOutputStream out)
+            throws IOException {
+            out.write(value.getData(), 0, value.getLength());
+          }
+          public void writeCompressedBytes(DataOutputStream out) {
+            throw new IllegalArgumentException("not compressed");
+          }
+          public int getSize() {
+            return value.getLength();
+          }
+        };
+    }
+
+    public boolean next() {
+      return ++current < keys.size();
+    }
+
+    public void close() {
+    }
+
+    public Progress getProgress() {
+      return new Progress();
+    }
+  }
+
+  /** Groups text keys by their first letter, comparing them as objects. */
+  public static class FirstLetterComparator extends WritableComparator {
+    public FirstLetterComparator() {
+      this(Text.class);
+    }
+
+    protected FirstLetterComparator(Class keyClass) {
+      super(keyClass);
+    }
+
+    public int compare(WritableComparable a, WritableComparable b) {
+      return a.toString().charAt(0) - b.toString().charAt(0);
+    }
+  }
+
+  /** Text keys which count how many times they are read. */
+  public static class CountingText extends Text {
+    static int reads = 0;
+
+    public void readFields(DataInput in) throws IOException {
+      reads++;
+      super.readFields(in);
+    }
+  }
+
+  /** Keeps the pairs collected, copied to strings. */
+  private static class ListCollector implements OutputCollector {
+    List<String> pairs = new ArrayList<String>();
+
+    public void collect(WritableComparable key, Writable value) {
+      pairs.add(key + "=" + value);
+    }
+  }
+
+  private ReduceTask.ValuesIterator createIterator(ListIterator in,
+                                                   WritableComparator comparator,
+                                                   Class keyClass,
+                                                   Class valueClass)
+    throws IOException {
+    return new ReduceTask.ValuesIterator(in, comparator, keyClass, valueClass,
+                                         conf, Reporter.NULL);
+  }
+
+  private ListIterator textPairs(String[][] pairs) throws IOException {
+    ListIterator in = new ListIterator();
+    for (int i = 0; i < pairs.length; i++) {
+      in.add(new Text(pairs[i][0]), new Text(pairs[i][1]));
+    }
+    return in;
+  }
+
+  /** Reads the groups of an iterator as key=[values].  As for a reducer, the
+   * key of a group is taken before its values are read. */
+  private List<String> readGroups(ReduceTask.ValuesIterator values) {
+    List<String> groups = new ArrayList<String>();
+    while (values.more()) {
+      WritableComparable key = values.getKey();
+      List<String> group = new ArrayList<String>();
+      while (values.hasNext()) {
+        group.add(values.next().toString());
+      }
+      groups.add(key + "=" + group);
+      values.nextKey();
+    }
+    return groups;
+  }
+
+  public void testGrouping() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"a", "1"}, {"a", "2"}, {"b", "3"}, {"c", "4"}, {"c", "5"}});
+    List<String> groups = readGroups(
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, Text.class));
+    assertEquals("[a=[1, 2], b=[3], c=[4, 5]]", groups.toString());
+  }
+
+  /** A comparator that only compares objects is used for the raw keys. */
+  public void testObjectComparator() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"apple", "1"}, {"avocado", "2"}, {"banana", "3"}, {"cherry", "4"},
+        {"citron", "5"}, {"coconut", "6"}});
+    List<String> groups = readGroups(
+      createIterator(in, new FirstLetterComparator(), Text.class, Text.class));
+    //the key of a group is its first key
+    assertEquals("[apple=[1, 2], banana=[3], cherry=[4, 5, 6]]",
+                 groups.toString());
+  }
+
+  /** Keys grouped by a comparator which only compares objects are each
+   * read once. */
+  public void testObjectComparatorReadsKeysOnce() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"apple", "1"}, {"avocado", "2"}, {"banana", "3"}, {"cherry", "4"},
+        {"citron", "5"}, {"coconut", "6"}});
+    CountingText.reads = 0;
+    List<String> groups = readGroups(
+      createIterator(in, new FirstLetterComparator(CountingText.class),
+                     CountingText.class, Text.class));
+    assertEquals("[apple=[1, 2], banana=[3], cherry=[4, 5, 6]]",
+                 groups.toString());
+    assertEquals(6, CountingText.reads);
+  }
+
+  /** The values not read when the next key is started are skipped. */
+  public void testSkippedValues() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"a", "1"}, {"a", "2"}, {"a", "3"}, {"b", "4"}, {"c", "5"},
+        {"c", "6"}, {"d", "7"}});
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, Text.class);
+    List<String> read = new ArrayList<String>();
+    while (values.more()) {
+      String key = values.getKey().toString();
+      //read the first value of a and d, and none of b and c
+      if (values.hasNext() && (key.equals("a") || key.equals("d"))) {
+        read.add(key + "=" + values.next());
+      } else {
+        read.add(key);
+      }
+      values.nextKey();
+    }
+    assertEquals("[a=1, b, c, d=7]", read.toString());
+  }
+
+  /** Values read as objects and as raw bytes can be mixed. */
+  public void testMixedReads() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"a", "1"}, {"a", "2"}, {"a", "3"}, {"a", "4"}, {"b", "5"},
+        {"b", "6"}});
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, Text.class);
+    Text raw = new Text();
+    List<String> read = new ArrayList<String>();
+    while (values.more()) {
+      WritableComparable key = values.getKey();
+      boolean asObject = true;
+      while (values.hasNext()) {
+        if (asObject) {
+          read.add(key + "=" + values.next());
+        } else {
+          raw.readFields(values.nextRawValue());
+          read.add(key + "=" + raw + " raw");
+        }
+        asObject = !asObject;
+      }
+      values.nextKey();
+    }
+    assertEquals("[a=1, a=2 raw, a=3, a=4 raw, b=5, b=6 raw]",
+                 read.toString());
+  }
+
+  public void testLongSumReducer() throws Exception {
+    ListIterator in = new ListIterator();
+    Map<String, Long> sums = new HashMap<String, Long>();
+    String[] words = {"x", "y", "z"};
+    for (int i = 0; i < words.length; i++) {
+      long sum = 0;
+      for (long j = 0; j < 10 * (i + 1); j++) {
+        in.add(new Text(words[i]), new LongWritable(j - 5));
+        sum += j - 5;
+      }
+      sums.put(words[i], sum);
+    }
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, LongWritable.class);
+    ListCollector output = new ListCollector();
+    LongSumReducer reducer = new LongSumReducer();
+    while (values.more()) {
+      reducer.reduce(values.getKey(), values, output, Reporter.NULL);
+      values.nextKey();
+    }
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < words.length; i++) {
+      expected.add(words[i] + "=" + sums.get(words[i]));
+    }
+    assertEquals(expected, output.pairs);
+
+    //the same sums from a plain iterator of the values
+    output = new ListCollector();
+    List<LongWritable> plain = new ArrayList<LongWritable>();
+    plain.add(new LongWritable(3));
+    plain.add(new LongWritable(-1));
+    reducer.reduce(new Text("w"), plain.iterator(), output, Reporter.NULL);
+    assertEquals("[w=2]", output.pairs.toString());
+  }
+
+  public void testAggregateReducer() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"LongValueSum:count", "3"}, {"LongValueSum:count", "4"},
+        {"LongValueSum:count", "5"}, {"UniqValueCount:words", "the"},
+        {"UniqValueCount:words", "cat"}, {"UniqValueCount:words", "the"},
+        {"UniqValueCount:words", "hat"}});
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, Text.class);
+    ListCollector output = new ListCollector();
+    ValueAggregatorReducer reducer = new ValueAggregatorReducer();
+    reducer.configure(conf);
+    while (values.more()) {
+      reducer.reduce(values.getKey(), values, output, Reporter.NULL);
+      values.nextKey();
+    }
+    //the unique values survive being read into the same object
+    assertEquals("[count=12, words=3]", output.pairs.toString());
+  }
+
+  /** The values are read as the map output value class of the job. */
+  public void testAggregateLongValues() throws Exception {
+    ListIterator in = new ListIterator();
+    for (long i = 1; i <= 4; i++) {
+      in.add(new Text("LongValueMax:max"), new LongWritable(i * 10));
+    }
+    for (long i = 1; i <= 4; i++) {
+      in.add(new Text("LongValueSum:sum"), new LongWritable(i));
+    }
+    JobConf job = new JobConf();
+    job.setMapOutputValueClass(LongWritable.class);
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, LongWritable.class);
+    ListCollector output = new ListCollector();
+    ValueAggregatorReducer reducer = new ValueAggregatorReducer();
+    reducer.configure(job);
+    while (values.more()) {
+      reducer.reduce(values.getKey(), values, output, Reporter.NULL);
+      values.nextKey();
+    }
+    assertEquals("[max=40, sum=10]", output.pairs.toString());
+  }
+
+  public void testAggregateCombiner() throws Exception {
+    ListIterator in = textPairs(new String[][] {
+        {"LongValueSum:count", "3"}, {"LongValueSum:count", "4"},
+        {"UniqValueCount:words", "the"}, {"UniqValueCount:words", "the"},
+        {"UniqValueCount:words", "cat"}});
+    ReduceTask.ValuesIterator values =
+      createIterator(in, WritableComparator.get(Text.class),
+                     Text.class, Text.class);
+    ListCollector output = new ListCollector();
+    ValueAggregatorCombiner combiner = new ValueAggregatorCombiner();
+    combiner.configure(conf);
+    while (values.more()) {
+      combiner.reduce(values.getKey(), values, output, Reporter.NULL);
+      values.nextKey();
+    }
+    assertEquals(3, output.pairs.size());
+    assertEquals("LongValueSum:count=7", output.pairs.get(0));
+    List<String> words = output.pairs.subList(1, 3);
+    assertTrue(words.toString(),
+               words.contains("UniqValueCount:words=the"));
+    assertTrue(words.toString(),
+               words.contains("UniqValueCount:words=cat"));
+  }
+}
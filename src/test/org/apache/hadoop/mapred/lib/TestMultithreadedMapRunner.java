@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred.lib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/** Runs maps with the MultithreadedMapRunner over made-up input. */
+public class TestMultithreadedMapRunner extends TestCase {
+
+  /** Reads the numbers from 0 to limit. */
+  private static class NumberReader implements RecordReader {
+    private long limit;
+    private long next = 0;
+
+    NumberReader(long limit) {
+      this.limit = limit;
+    }
+
+    public boolean next(Writable key, Writable value) {
+      if (next == limit) {
+        return false;
+      }
+      ((LongWritable)key).set(next);
+      ((Text)value).set("record " + next);
+      next++;
+      return true;
+    }
+
+    public WritableComparable createKey() {
+      return new LongWritable();
+    }
+
+    public Writable createValue() {
+      return new Text();
+    }
+
+    public long getPos() {
+      return next;
+    }
+
+    public void close() {
+    }
+
+    public float getProgress() {
+      return 0.0f;
+    }
+  }
+
+  /** The key to fail at. */
+  private static long mapFailAt;
+
+  /** Emits two pairs for each record, after a random pause. */
+  public static class SlowMapper extends MapReduceBase implements Mapper {
+    private Random random = new Random();
+
+    public void map(WritableComparable key, Writable value,
+                    OutputCollector output, Reporter reporter)
+      throws IOException {
+      long n = ((LongWritable)key).get();
+      if (n == mapFailAt) {
+        throw new IOException("failed mapping record " + n);
+      }
+      if (random.nextInt(10) == 0) {
+        try {
+          Thread.sleep(random.nextInt(5));
+        } catch (InterruptedException ie) {
+          throw new IOException(ie.toString());
+        }
+      }
+      output.collect(new LongWritable(n), value);
+      output.collect(new LongWritable(n), new Text("again " + n));
+    }
+  }
+
+  /** Keeps the pairs collected, copied. */
+  private static class ListCollector implements OutputCollector {
+    List<Long> keys = new ArrayList<Long>();
+    List<String> values = new ArrayList<String>();
+
+    public void collect(WritableComparable key, Writable value) {
+      keys.add(((LongWritable)key).get());
+      values.add(value.toString());
+    }
+  }
+
+  /** Keeps the counters incremented. */
+  private static class CountingReporter implements Reporter {
+    Counters counters = new Counters();
+
+    public void setStatus(String status) {
+    }
+
+    public void progress() {
+    }
+
+    public void incrCounter(Enum key, long amount) {
+      counters.incrCounter(key, amount);
+    }
+
+    public InputSplit getInputSplit() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private MultithreadedMapRunner createRunner() {
+    JobConf conf = new JobConf();
+    conf.setMapperClass(SlowMapper.class);
+    conf.setMapOutputKeyClass(LongWritable.class);
+    conf.setMapOutputValueClass(Text.class);
+    conf.setInt("mapred.map.multithreadedrunner.threads", 4);
+    conf.setInt("mapred.map.multithreadedrunner.batch.size", 3);
+    MultithreadedMapRunner runner = new MultithreadedMapRunner();
+    runner.configure(conf);
+    return runner;
+  }
+
+  public void testOutputOrder() throws Exception {
+    mapFailAt = -1;
+    int numRecords = 1000;
+    ListCollector output = new ListCollector();
+    CountingReporter reporter = new CountingReporter();
+    createRunner().run(new NumberReader(numRecords), output, reporter);
+
+    //the output of the records is collected in the order of the input
+    assertEquals(2 * numRecords, output.keys.size());
+    for (int i = 0; i < numRecords; i++) {
+      assertEquals(i, output.keys.get(2 * i).longValue());
+      assertEquals("record " + i, output.values.get(2 * i));
+      assertEquals(i, output.keys.get(2 * i + 1).longValue());
+      assertEquals("again " + i, output.values.get(2 * i + 1));
+    }
+    assertEquals(numRecords, reporter.counters.getCounter(
+                   MultithreadedMapRunner.Counter.THREAD_MAP_RECORDS));
+    assertTrue(reporter.counters.getCounter(
+                 MultithreadedMapRunner.Counter.THREAD_MAP_MILLIS) >= 0);
+    Counters.Group group = reporter.counters.getGroup(
+      MultithreadedMapRunner.Counter.class.getName());
+    assertEquals("Multithreaded Map Runner", group.getDisplayName());
+  }
+
+  public void testMapFailure() throws Exception {
+    mapFailAt = 500;
+    ListCollector output = new ListCollector();
+    try {
+      createRunner().run(new NumberReader(1000), output, Reporter.NULL);
+      fail("the exception of the map was lost");
+    } catch (IOException e) {
+      assertEquals("failed mapping record 500", e.getMessage());
+    }
+    //what was collected is the output of the records before the failure
+    assertTrue(output.keys.size() <= 2 * 500);
+    for (int i = 0; i < output.keys.size(); i++) {
+      assertEquals(i / 2, output.keys.get(i).longValue());
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.mapred.lib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/** Runs maps with the PrefetchingMapRunner over made-up input. */
+public class TestPrefetchingMapRunner extends TestCase {
+
+  private static final int RING_SIZE = 3;
+
+  /** Reads the numbers from 0, failing at failAt if it is not negative. */
+  private static class NumberReader implements RecordReader {
+    private long failAt;
+    private long limit;
+    long delay = 0;
+    volatile long next = 0;
+
+    NumberReader(long limit, long failAt) {
+      this.limit = limit;
+      this.failAt = failAt;
+    }
+
+    public boolean next(Writable key, Writable value) throws IOException {
+      //a slow read, which is not cut short by an interrupt
+      long end = System.currentTimeMillis() + delay;
+      boolean interrupted = false;
+      for (long left = delay; left > 0; 
+           left = end - System.currentTimeMillis()) {
+        try {
+          Thread.sleep(left);
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (next == failAt) {
+        throw new IOException("failed reading record " + next);
+      }
+      if (next == limit) {
+        return false;
+      }
+      ((LongWritable)key).set(next);
+      ((Text)value).set("record " + next);
+      next++;
+      return true;
+    }
+
+    public WritableComparable createKey() {
+      return new LongWritable();
+    }
+
+    public Writable createValue() {
+      return new Text();
+    }
+
+    public long getPos() {
+      return next;
+    }
+
+    public void close() {
+    }
+
+    public float getProgress() {
+      return 0.0f;
+    }
+  }
+
+  /** The keys mapped by the last map, and the key to fail at. */
+  private static List<Long> mapped = new ArrayList<Long>();
+  private static long mapFailAt;
+
+  /** Checks that each value belongs to its key, and records the key. */
+  public static class RecordingMapper extends MapReduceBase implements Mapper {
+    public void map(WritableComparable key, Writable value,
+                    OutputCollector output, Reporter reporter)
+      throws IOException {
+      long n = ((LongWritable)key).get();
+      assertEquals("record " + n, value.toString());
+      if (n == mapFailAt) {
+        throw new IOException("failed mapping record " + n);
+      }
+      mapped.add(n);
+    }
+  }
+
+  private PrefetchingMapRunner createRunner() {
+    JobConf conf = new JobConf();
+    conf.setMapperClass(RecordingMapper.class);
+    conf.setInt("mapred.map.prefetchingrunner.records", RING_SIZE);
+    PrefetchingMapRunner runner = new PrefetchingMapRunner();
+    runner.configure(conf);
+    mapped.clear();
+    return runner;
+  }
+
+  public void testRecordOrder() throws Exception {
+    mapFailAt = -1;
+    PrefetchingMapRunner runner = createRunner();
+    int numRecords = 1000;
+    runner.run(new NumberReader(numRecords, -1), null, Reporter.NULL);
+    assertFalse(isReaderAlive());
+    assertEquals(numRecords, mapped.size());
+    for (int i = 0; i < numRecords; i++) {
+      assertEquals(i, mapped.get(i).longValue());
+    }
+  }
+
+  public void testReaderException() throws Exception {
+    mapFailAt = -1;
+    PrefetchingMapRunner runner = createRunner();
+    try {
+      runner.run(new NumberReader(1000, 100), null, Reporter.NULL);
+      fail("the exception of the reader was lost");
+    } catch (IOException e) {
+      assertEquals("failed reading record 100", e.getMessage());
+    }
+    //the records read before the failure are all mapped
+    assertEquals(100, mapped.size());
+  }
+
+  public void testMapFailure() throws Exception {
+    mapFailAt = 100;
+    PrefetchingMapRunner runner = createRunner();
+    NumberReader input = new NumberReader(Long.MAX_VALUE, -1);
+    input.delay = 20;
+    try {
+      runner.run(input, null, Reporter.NULL);
+      fail("the exception of the map was lost");
+    } catch (IOException e) {
+      assertEquals("failed mapping record 100", e.getMessage());
+    }
+    //the reader stopped, and is gone by the time the input is closed
+    assertFalse(isReaderAlive());
+    assertTrue(input.next <= 100 + 1 + RING_SIZE);
+  }
+
+  private static boolean isReaderAlive() {
+    Thread[] threads = new Thread[Thread.activeCount() + 10];
+    int n = Thread.enumerate(threads);
+    for (int i = 0; i < n; i++) {
+      if (threads[i].getName().equals("Map input prefetcher")) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
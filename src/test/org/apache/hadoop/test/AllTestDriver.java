@@ -19,6 +19,7 @@
 package org.apache.hadoop.test;
 
 import org.apache.hadoop.util.ProgramDriver;
+import org.apache.hadoop.mapred.BufferSorterBench;
 import org.apache.hadoop.mapred.MRBench;
 import org.apache.hadoop.mapred.SortValidator;
 import org.apache.hadoop.mapred.TestMapRed;
@@ -46,6 +47,7 @@ public class AllTestDriver {
     try {
       pgd.addClass("mrbench", MRBench.class, "A map/reduce benchmark that can create many small jobs");
       pgd.addClass("nnbench", NNBench.class, "A benchmark that stresses the namenode.");
+      pgd.addClass("sortbench", BufferSorterBench.class, "A benchmark of the in-memory sorts of the map output.");
       pgd.addClass("mapredtest", TestMapRed.class, "A map/reduce test check.");
       pgd.addClass("clustertestdfs", ClusterTestDFS.class, "A pseudo distributed test for DFS.");
       pgd.addClass("testfilesystem", TestFileSystem.class, "A test for FileSystem read/write.");